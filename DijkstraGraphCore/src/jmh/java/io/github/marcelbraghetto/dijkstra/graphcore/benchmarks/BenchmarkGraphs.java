@@ -0,0 +1,47 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import java.util.Random;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.GraphGenerator;
+
+/**
+ * Synthetic graphs for the benchmarks, made by the {@link GraphGenerator}.
+ * The same size and seed always give the same graph, so results can be
+ * compared between runs.
+ */
+final class BenchmarkGraphs {
+    private BenchmarkGraphs() { }
+
+    /**
+     * Build a grid graph of about the given size, like a street map.
+     *
+     * @param nodeCount roughly how many nodes the graph should have.
+     * @param seed for the position jitter.
+     *
+     * @return the new graph.
+     */
+    static CompactGraph createGrid(int nodeCount, long seed) {
+        return GraphGenerator.generate(GraphGenerator.Type.GRID, nodeCount, 4, seed);
+    }
+
+    /**
+     * Pick random origin and target pairs for path queries.
+     *
+     * @param graph to pick nodes from.
+     * @param queryCount how many pairs to pick.
+     * @param seed for choosing the nodes.
+     *
+     * @return origin and target node indices, side by side.
+     */
+    static int[] createQueries(CompactGraph graph, int queryCount, long seed) {
+        Random random = new Random(seed);
+        int[] queries = new int[queryCount * 2];
+
+        for(int i = 0; i < queries.length; i++) {
+            queries[i] = random.nextInt(graph.getNodeCount());
+        }
+
+        return queries;
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchy;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchyBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchyQuery;
+
+/**
+ * How long a contraction hierarchy takes to build, and how long
+ * queries on it take. Building is far slower than a plain search,
+ * so the largest graphs are left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+public class ContractionHierarchyBenchmark {
+    private static final int QUERY_COUNT = 1024;
+
+    @Param({"1000", "10000", "20000"})
+    public int nodeCount;
+
+    private CompactGraph mGraph;
+    private ContractionHierarchyQuery mQuery;
+    private int[] mQueries;
+    private int mNextQuery;
+
+    @Setup
+    public void setUp() {
+        mGraph = BenchmarkGraphs.createGrid(nodeCount, 1L);
+        mQuery = new ContractionHierarchyQuery(new ContractionHierarchyBuilder().build(mGraph));
+        mQueries = BenchmarkGraphs.createQueries(mGraph, QUERY_COUNT, 2L);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ContractionHierarchy build() {
+        return new ContractionHierarchyBuilder().build(mGraph);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public CompactPath query() {
+        int query = mNextQuery;
+        mNextQuery = (mNextQuery + 1) % QUERY_COUNT;
+        return mQuery.findPath(mQueries[query * 2], mQueries[query * 2 + 1]);
+    }
+}
@@ -0,0 +1,34 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraphBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.GraphGenerator;
+
+/**
+ * How long it takes to build a compact graph from scratch,
+ * adding every node and edge through the builder.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphBuildBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodeCount;
+
+    @Benchmark
+    public CompactGraph build() {
+        CompactGraphBuilder builder = new CompactGraphBuilder(nodeCount, nodeCount * 4);
+        GraphGenerator.generate(builder, GraphGenerator.Type.GRID, nodeCount, 4, 1L);
+        return builder.build();
+    }
+}
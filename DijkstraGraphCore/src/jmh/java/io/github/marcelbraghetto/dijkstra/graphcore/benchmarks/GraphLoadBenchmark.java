@@ -0,0 +1,47 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.BinaryGraphFormat;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+
+/**
+ * How long it takes to load a graph saved in the binary graph format.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GraphLoadBenchmark {
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodeCount;
+
+    private File mFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("graph", ".bin");
+        BinaryGraphFormat.write(BenchmarkGraphs.createGrid(nodeCount, 1L), mFile);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    @Benchmark
+    public CompactGraph load() throws IOException {
+        return BinaryGraphFormat.read(mFile);
+    }
+}
@@ -0,0 +1,58 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.GraphGenerator;
+import io.github.marcelbraghetto.dijkstra.graphcore.KShortestPaths;
+
+/**
+ * How long finding the k shortest paths between random pairs of
+ * nodes takes with Yen's algorithm, on each kind of generated graph.
+ * A single path (k = 1) is included to show the cost of the backward
+ * search every query starts with, apart from the spur searches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class KShortestPathsBenchmark {
+    private static final int QUERY_COUNT = 256;
+
+    @Param({"10000", "40000"})
+    public int nodeCount;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "DELAUNAY_LIKE", "SCALE_FREE"})
+    public GraphGenerator.Type graphType;
+
+    @Param({"1", "10"})
+    public int maxPaths;
+
+    private KShortestPaths mKShortestPaths;
+    private int[] mQueries;
+    private int mNextQuery;
+
+    @Setup
+    public void setUp() {
+        CompactGraph graph = GraphGenerator.generate(graphType, nodeCount, 6, 1L);
+        mKShortestPaths = new KShortestPaths(graph);
+        mQueries = BenchmarkGraphs.createQueries(graph, QUERY_COUNT, 2L);
+    }
+
+    @Benchmark
+    public List<CompactPath> findPaths() {
+        int query = mNextQuery;
+        mNextQuery = (mNextQuery + 1) % QUERY_COUNT;
+        return mKShortestPaths.findPaths(mQueries[query * 2], mQueries[query * 2 + 1], maxPaths);
+    }
+}
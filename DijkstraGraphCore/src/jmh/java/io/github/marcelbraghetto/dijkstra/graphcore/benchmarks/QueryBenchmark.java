@@ -0,0 +1,73 @@
+package io.github.marcelbraghetto.dijkstra.graphcore.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactDijkstrasAlgorithm;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.GraphGenerator;
+
+/**
+ * How long Dijkstra searches between random pairs of nodes take,
+ * either one query at a time, or a batch of queries run back to
+ * back through the same algorithm (reported per query), on
+ * each kind of generated graph.
+ *
+ * Each benchmark thread has its own algorithm, as an algorithm
+ * keeps its search arrays between queries.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark {
+    private static final int QUERY_COUNT = 1024;
+    private static final int BATCH_SIZE = 64;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int nodeCount;
+
+    @Param({"GRID", "RANDOM_GEOMETRIC", "DELAUNAY_LIKE", "SCALE_FREE"})
+    public GraphGenerator.Type graphType;
+
+    private CompactGraph mGraph;
+    private CompactDijkstrasAlgorithm mAlgorithm;
+    private int[] mQueries;
+    private int mNextQuery;
+
+    @Setup
+    public void setUp() {
+        mGraph = GraphGenerator.generate(graphType, nodeCount, 6, 1L);
+        mAlgorithm = new CompactDijkstrasAlgorithm();
+        mQueries = BenchmarkGraphs.createQueries(mGraph, QUERY_COUNT, 2L);
+    }
+
+    @Benchmark
+    public CompactPath singleQuery() {
+        return runNextQuery();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void batchQuery(Blackhole blackhole) {
+        for(int i = 0; i < BATCH_SIZE; i++) {
+            blackhole.consume(runNextQuery());
+        }
+    }
+
+    private CompactPath runNextQuery() {
+        int query = mNextQuery;
+        mNextQuery = (mNextQuery + 1) % QUERY_COUNT;
+        return mAlgorithm.findPath(mGraph, mQueries[query * 2], mQueries[query * 2 + 1]);
+    }
+}
@@ -0,0 +1,289 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Calculates the shortest distance between every pair of nodes in
+ * a compact graph, filling in a {@link DistanceMatrix}.
+ *
+ * For sparse graphs a full Dijkstra search is run from every node,
+ * with the searches shared between a pool of worker threads. For
+ * dense graphs the Floyd-Warshall algorithm is used instead, which
+ * works through the matrix in small square blocks so the rows it
+ * is combining stay in the CPU cache.
+ */
+public class AllPairsShortestPaths {
+    // Graphs with at least this fraction of all possible edges
+    // are considered dense enough to prefer Floyd-Warshall.
+    private static final double DENSE_GRAPH_RATIO = 0.25;
+
+    // Width of the square blocks Floyd-Warshall works through,
+    // 64 x 64 doubles is 32KB which fits typical L1/L2 caches.
+    private static final int BLOCK_SIZE = 64;
+
+    private final int mNumThreads;
+
+    public AllPairsShortestPaths() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public AllPairsShortestPaths(int numThreads) {
+        mNumThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Fill the given matrix using whichever algorithm
+     * suits the density of the graph.
+     *
+     * @param graph to calculate the distances for.
+     * @param matrix to fill, sized for the node count of the graph.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public void compute(CompactGraph graph, DistanceMatrix matrix) throws InterruptedException {
+        long numNodes = graph.getNodeCount();
+
+        if(graph.getEdgeCount() >= DENSE_GRAPH_RATIO * numNodes * numNodes) {
+            computeWithFloydWarshall(graph, matrix);
+        } else {
+            computeWithDijkstra(graph, matrix);
+        }
+    }
+
+    /**
+     * Fill the given matrix by running a full Dijkstra search from
+     * every node, spread across the worker threads.
+     *
+     * @param graph to calculate the distances for.
+     * @param matrix to fill, sized for the node count of the graph.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public void computeWithDijkstra(final CompactGraph graph, final DistanceMatrix matrix) throws InterruptedException {
+        final int numNodes = graph.getNodeCount();
+
+        // Workers claim origins one at a time from a shared counter,
+        // so a few expensive searches don't hold up a whole slice.
+        final AtomicInteger nextOrigin = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(mNumThreads);
+        List<Future<?>> futures = new ArrayList<>(mNumThreads);
+
+        try {
+            for(int i = 0; i < mNumThreads; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        SearchContext context = new SearchContext();
+                        int[] hops = new int[numNodes];
+                        IndexedPriorityQueue tiedNodes = new IndexedPriorityQueue(numNodes);
+
+                        for(int origin = nextOrigin.getAndIncrement(); origin < numNodes; origin = nextOrigin.getAndIncrement()) {
+                            computeRow(graph, matrix, origin, context, hops, tiedNodes);
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Fill the given matrix using a cache blocked Floyd-Warshall,
+     * which considers every node in turn as a possible stepping
+     * stone between every pair of nodes.
+     *
+     * @param graph to calculate the distances for.
+     * @param matrix to fill, sized for the node count of the graph.
+     */
+    public void computeWithFloydWarshall(CompactGraph graph, DistanceMatrix matrix) {
+        int numNodes = graph.getNodeCount();
+
+        // Start with the direct edges between nodes.
+        for(int i = 0; i < numNodes; i++) {
+            matrix.setDistance(i, i, 0.0);
+
+            if(matrix.hasNextHops()) {
+                matrix.setNextHop(i, i, i);
+            }
+
+            for(int edge = graph.getEdgeStart(i); edge < graph.getEdgeEnd(i); edge++) {
+                int j = graph.getEdgeTarget(edge);
+                double weight = graph.getEdgeWeight(edge);
+
+                if(weight < matrix.getDistance(i, j)) {
+                    matrix.setDistance(i, j, weight);
+
+                    if(matrix.hasNextHops()) {
+                        matrix.setNextHop(i, j, j);
+                    }
+                }
+            }
+        }
+
+        // For each diagonal block, first update the block itself, then
+        // the blocks sharing its rows and columns, then all the rest. Each
+        // phase only depends on blocks finished by an earlier phase.
+        for(int kBlock = 0; kBlock < numNodes; kBlock += BLOCK_SIZE) {
+            int kEnd = Math.min(numNodes, kBlock + BLOCK_SIZE);
+
+            relaxBlock(matrix, kBlock, kEnd, kBlock, kEnd, kBlock, kEnd);
+
+            for(int block = 0; block < numNodes; block += BLOCK_SIZE) {
+                if(block == kBlock) {
+                    continue;
+                }
+
+                int end = Math.min(numNodes, block + BLOCK_SIZE);
+                relaxBlock(matrix, kBlock, kEnd, block, end, kBlock, kEnd);
+                relaxBlock(matrix, block, end, kBlock, kEnd, kBlock, kEnd);
+            }
+
+            for(int iBlock = 0; iBlock < numNodes; iBlock += BLOCK_SIZE) {
+                if(iBlock == kBlock) {
+                    continue;
+                }
+
+                int iEnd = Math.min(numNodes, iBlock + BLOCK_SIZE);
+
+                for(int jBlock = 0; jBlock < numNodes; jBlock += BLOCK_SIZE) {
+                    if(jBlock == kBlock) {
+                        continue;
+                    }
+
+                    relaxBlock(matrix, iBlock, iEnd, jBlock, Math.min(numNodes, jBlock + BLOCK_SIZE), kBlock, kEnd);
+                }
+            }
+        }
+    }
+
+    /**
+     * Try to shorten each path from rows [iStart, iEnd) to columns
+     * [jStart, jEnd) by going via each of the nodes [kStart, kEnd).
+     */
+    private void relaxBlock(DistanceMatrix matrix, int iStart, int iEnd, int jStart, int jEnd, int kStart, int kEnd) {
+        boolean hasNextHops = matrix.hasNextHops();
+
+        for(int k = kStart; k < kEnd; k++) {
+            for(int i = iStart; i < iEnd; i++) {
+                double distanceToK = matrix.getDistance(i, k);
+
+                if(distanceToK == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                for(int j = jStart; j < jEnd; j++) {
+                    double distanceViaK = distanceToK + matrix.getDistance(k, j);
+
+                    if(distanceViaK < matrix.getDistance(i, j)) {
+                        matrix.setDistance(i, j, distanceViaK);
+
+                        if(hasNextHops) {
+                            matrix.setNextHop(i, j, matrix.getNextHop(i, k));
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Run a full Dijkstra search from the given origin and
+     * write the results into its row of the matrix.
+     *
+     * Where several paths share the shortest distance, the one with the
+     * fewest edges is kept, so every row agrees on which way to go. The
+     * next hop from a node toward a target then always leads to a node
+     * which is either nearer the target, or as near but fewer edges
+     * away, so following next hops can't go round in circles even
+     * across zero weight edges. (This assumes no edge is so light that
+     * adding it to a distance rounds away to nothing.)
+     */
+    private void computeRow(CompactGraph graph, DistanceMatrix matrix, int origin,
+                            SearchContext context, int[] hops, IndexedPriorityQueue tiedNodes) {
+        context.begin(graph.getNodeCount());
+        IndexedPriorityQueue queue = context.getQueue();
+        boolean hasNextHops = matrix.hasNextHops();
+
+        context.update(origin, SearchContext.NO_PARENT, 0.0);
+        hops[origin] = 0;
+        queue.offer(origin, 0.0);
+
+        while(!queue.isEmpty()) {
+            // Take every node at the nearest distance, then complete them
+            // in order of how many edges away they are. Zero weight edges
+            // add more nodes at the same distance as they are followed.
+            double currentDistance = queue.peekPriority();
+
+            while(!queue.isEmpty() && queue.peekPriority() == currentDistance) {
+                int node = queue.poll();
+
+                // Skip nodes already completed through a zero weight edge.
+                if(!context.isComplete(node)) {
+                    tiedNodes.offer(node, hops[node]);
+                }
+            }
+
+            while(!tiedNodes.isEmpty()) {
+                int currentIndex = tiedNodes.poll();
+                context.setComplete(currentIndex);
+                matrix.setDistance(origin, currentIndex, currentDistance);
+
+                // Nodes complete in order of distance then edges, so the parent's
+                // next hop is always known by the time its children complete.
+                if(hasNextHops) {
+                    int parent = context.getParent(currentIndex);
+
+                    if(parent == SearchContext.NO_PARENT || parent == origin) {
+                        matrix.setNextHop(origin, currentIndex, currentIndex);
+                    } else {
+                        matrix.setNextHop(origin, currentIndex, matrix.getNextHop(origin, parent));
+                    }
+                }
+
+                int edgeHops = hops[currentIndex] + 1;
+                int edgeEnd = graph.getEdgeEnd(currentIndex);
+
+                for(int edge = graph.getEdgeStart(currentIndex); edge < edgeEnd; edge++) {
+                    int edgeTargetIndex = graph.getEdgeTarget(edge);
+
+                    if(context.isComplete(edgeTargetIndex)) {
+                        continue;
+                    }
+
+                    double distanceToEdgeTarget = currentDistance + graph.getEdgeWeight(edge);
+                    double previousDistance = context.getDistance(edgeTargetIndex);
+
+                    if(distanceToEdgeTarget < previousDistance
+                            || (distanceToEdgeTarget == previousDistance
+                                && context.isReached(edgeTargetIndex) && edgeHops < hops[edgeTargetIndex])) {
+                        context.update(edgeTargetIndex, currentIndex, distanceToEdgeTarget);
+                        hops[edgeTargetIndex] = edgeHops;
+
+                        if(distanceToEdgeTarget == currentDistance) {
+                            tiedNodes.offer(edgeTargetIndex, edgeHops);
+                        } else {
+                            queue.offer(edgeTargetIndex, distanceToEdgeTarget);
+                        }
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+/**
+ * Reads and writes compact graphs in a binary file format, which
+ * is memory mapped rather than parsed, so loading a large graph is
+ * mostly a matter of bulk copying its arrays out of the file.
+ *
+ * All values are little endian, and every section starts on a
+ * 4 byte boundary:
+ *
+ * Header (24 bytes):
+ *   int magic number ('DGRF')
+ *   int format version
+ *   int number of nodes (n)
+ *   int number of edges (e), counting each direction separately
+ *   int size of the key data in bytes (k)
+ *   int reserved, always 0
+ *
+ * Key table:
+ *   int[n + 1] offset of each node key in the key data
+ *   byte[k] UTF-8 node keys, padded to a multiple of 4 bytes
+ *
+ * Coordinates:
+ *   float[2n] X and Y of each node
+ *
+ * Edges, in compressed sparse row form:
+ *   int[n + 1] offset of each node's first edge in the targets
+ *   int[e] target node of each edge
+ *
+ * Nodes are stored in node index order. Edge weights are not stored,
+ * each edge is weighted by the straight line distance between its
+ * nodes when the graph is read.
+ */
+public final class BinaryGraphFormat {
+    private static final int MAGIC = 0x46524744;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 24;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private BinaryGraphFormat() { }
+
+    /**
+     * Write the nodes and edges of the graph into the given file,
+     * replacing anything already in it.
+     *
+     * @param graph to write.
+     * @param file to write to.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(CompactGraph graph, File file) throws IOException {
+        int numNodes = graph.getNodeCount();
+        int numEdges = graph.getEdgeCount();
+        byte[][] keys = new byte[numNodes][];
+        int keyDataSize = 0;
+
+        for(int i = 0; i < numNodes; i++) {
+            keys[i] = graph.getNodeKey(i).getBytes(UTF_8);
+            keyDataSize += keys[i].length;
+        }
+
+        long fileSize = getFileSize(numNodes, numEdges, keyDataSize);
+
+        if(fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Graph is too large for the binary format: " + numNodes + " nodes");
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            randomAccessFile.setLength(fileSize);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(numNodes);
+            buffer.putInt(numEdges);
+            buffer.putInt(keyDataSize);
+            buffer.putInt(0);
+
+            // Key table.
+            int keyOffset = 0;
+
+            for(int i = 0; i < numNodes; i++) {
+                buffer.putInt(keyOffset);
+                keyOffset += keys[i].length;
+            }
+
+            buffer.putInt(keyOffset);
+
+            for(int i = 0; i < numNodes; i++) {
+                buffer.put(keys[i]);
+            }
+
+            buffer.position(buffer.position() + padding(keyDataSize));
+
+            // Coordinates.
+            for(int i = 0; i < numNodes; i++) {
+                buffer.putFloat(graph.getNodeX(i));
+                buffer.putFloat(graph.getNodeY(i));
+            }
+
+            // Edges.
+            for(int i = 0; i < numNodes; i++) {
+                buffer.putInt(graph.getEdgeStart(i));
+            }
+
+            buffer.putInt(numEdges);
+
+            for(int edge = 0; edge < numEdges; edge++) {
+                buffer.putInt(graph.getEdgeTarget(edge));
+            }
+
+            buffer.force();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Read the graph in the given file.
+     *
+     * @param file to read from.
+     *
+     * @return the graph in the file.
+     *
+     * @throws IOException if the file could not be read, or is not a
+     * graph file in a version we understand.
+     */
+    public static CompactGraph read(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            if(channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a binary graph file: " + file);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the file is closed.
+            randomAccessFile.close();
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a binary graph file: " + file);
+        }
+
+        int version = buffer.getInt(4);
+
+        if(version != VERSION) {
+            throw new IOException("Unsupported binary graph version " + version + ": " + file);
+        }
+
+        int numNodes = buffer.getInt(8);
+        int numEdges = buffer.getInt(12);
+        int keyDataSize = buffer.getInt(16);
+
+        if(numNodes == 0) {
+            throw new IOException("Binary graph file has no nodes: " + file);
+        }
+
+        if(numNodes < 0 || numEdges < 0 || keyDataSize < 0
+                || getFileSize(numNodes, numEdges, keyDataSize) > buffer.capacity()) {
+            throw new IOException("Truncated binary graph file: " + file);
+        }
+
+        // Bulk copy each section of the mapped file.
+        int position = HEADER_SIZE;
+        int[] keyOffsets = new int[numNodes + 1];
+        intView(buffer, position).get(keyOffsets);
+        position += (numNodes + 1) * 4;
+
+        int keyDataStart = position;
+        position += keyDataSize + padding(keyDataSize);
+
+        float[] coordinates = new float[numNodes * 2];
+        floatView(buffer, position).get(coordinates);
+        position += numNodes * 2 * 4;
+
+        int[] edgeOffsets = new int[numNodes + 1];
+        intView(buffer, position).get(edgeOffsets);
+        position += (numNodes + 1) * 4;
+
+        int[] edgeTargets = new int[numEdges];
+        intView(buffer, position).get(edgeTargets);
+
+        // Keys are decoded one at a time through a small scratch array.
+        String[] keys = new String[numNodes];
+        byte[] keyBytes = new byte[64];
+
+        for(int i = 0; i < numNodes; i++) {
+            int keyStart = keyOffsets[i];
+            int keyLength = keyOffsets[i + 1] - keyStart;
+
+            if(keyStart < 0 || keyLength < 0 || keyStart + keyLength > keyDataSize) {
+                throw new IOException("Corrupt key in binary graph file: " + file);
+            }
+
+            if(keyLength > keyBytes.length) {
+                keyBytes = new byte[Math.max(keyLength, keyBytes.length * 2)];
+            }
+
+            buffer.position(keyDataStart + keyStart);
+            buffer.get(keyBytes, 0, keyLength);
+            keys[i] = new String(keyBytes, 0, keyLength, UTF_8);
+        }
+
+        float[] positionsX = new float[numNodes];
+        float[] positionsY = new float[numNodes];
+
+        for(int i = 0; i < numNodes; i++) {
+            positionsX[i] = coordinates[i * 2];
+            positionsY[i] = coordinates[i * 2 + 1];
+        }
+
+        // Check the edges hang together, then weigh them.
+        if(edgeOffsets[0] != 0 || edgeOffsets[numNodes] != numEdges) {
+            throw new IOException("Corrupt edges in binary graph file: " + file);
+        }
+
+        double[] edgeWeights = new double[numEdges];
+
+        for(int i = 0; i < numNodes; i++) {
+            int start = edgeOffsets[i];
+            int end = edgeOffsets[i + 1];
+
+            if(end < start) {
+                throw new IOException("Corrupt edges in binary graph file: " + file);
+            }
+
+            for(int edge = start; edge < end; edge++) {
+                int target = edgeTargets[edge];
+
+                if(target < 0 || target >= numNodes) {
+                    throw new IOException("Corrupt edge in binary graph file: " + file);
+                }
+
+                edgeWeights[edge] = CompactGraphBuilder.distanceBetween(
+                        positionsX[i], positionsY[i], positionsX[target], positionsY[target]);
+            }
+        }
+
+        return new CompactGraph(keys, positionsX, positionsY, edgeOffsets, edgeTargets, edgeWeights);
+    }
+
+    private static long getFileSize(int numNodes, int numEdges, int keyDataSize) {
+        return HEADER_SIZE
+                + (numNodes + 1L) * 4
+                + keyDataSize + padding(keyDataSize)
+                + numNodes * 2L * 4
+                + (numNodes + 1L) * 4
+                + numEdges * 4L;
+    }
+
+    private static int padding(int size) {
+        return (4 - (size & 3)) & 3;
+    }
+
+    private static IntBuffer intView(ByteBuffer buffer, int position) {
+        buffer.position(position);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static FloatBuffer floatView(ByteBuffer buffer, int position) {
+        buffer.position(position);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer();
+    }
+}
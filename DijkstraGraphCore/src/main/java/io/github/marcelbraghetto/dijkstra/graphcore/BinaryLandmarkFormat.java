@@ -0,0 +1,231 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads and writes {@link Landmarks} in a binary file kept alongside
+ * the graph they were built for, so the landmark searches only have
+ * to be run once. Like {@link BinaryGraphFormat} the file is memory
+ * mapped and its arrays bulk copied out.
+ *
+ * All values are little endian, and every section starts on an
+ * 8 byte boundary:
+ *
+ * Header (32 bytes):
+ *   int magic number ('DLMK')
+ *   int format version
+ *   int number of nodes (n)
+ *   int number of edges (e)
+ *   int number of landmarks (l)
+ *   int reserved, always 0
+ *   long fingerprint of the graph's edges and weights
+ *
+ * Landmarks:
+ *   int[l] node index of each landmark, padded to a multiple of 8 bytes
+ *
+ * Distances, node major (the l distances of node 0, then node 1 ...):
+ *   double[n * l] distance from each landmark to each node
+ *   double[n * l] distance from each node to each landmark
+ *
+ * The fingerprint lets a reader reject landmarks which were built for
+ * a different version of the graph, as their bounds could be wrong.
+ */
+public final class BinaryLandmarkFormat {
+    private static final int MAGIC = 0x4B4D4C44;
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final String FILE_SUFFIX = ".landmarks";
+
+    private BinaryLandmarkFormat() { }
+
+    /**
+     * Where the landmarks for a graph file are kept.
+     *
+     * @param graphFile the graph is stored in.
+     *
+     * @return the landmark file alongside the graph file.
+     */
+    public static File getLandmarkFile(File graphFile) {
+        return new File(graphFile.getPath() + FILE_SUFFIX);
+    }
+
+    /**
+     * Write the landmarks into the given file, replacing
+     * anything already in it.
+     *
+     * @param landmarks to write.
+     * @param graph the landmarks were built for.
+     * @param file to write to.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void write(Landmarks landmarks, CompactGraph graph, File file) throws IOException {
+        int numNodes = graph.getNodeCount();
+        int numLandmarks = landmarks.getLandmarkCount();
+
+        if(landmarks.getNodeCount() != numNodes) {
+            throw new IllegalArgumentException("Landmarks are for " + landmarks.getNodeCount()
+                    + " nodes but the graph has " + numNodes);
+        }
+
+        long fileSize = getFileSize(numNodes, numLandmarks);
+
+        if(fileSize > Integer.MAX_VALUE) {
+            throw new IOException("Landmarks are too large for the binary format: " + numNodes + " nodes");
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            randomAccessFile.setLength(fileSize);
+            MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+            buffer.putInt(MAGIC);
+            buffer.putInt(VERSION);
+            buffer.putInt(numNodes);
+            buffer.putInt(graph.getEdgeCount());
+            buffer.putInt(numLandmarks);
+            buffer.putInt(0);
+            buffer.putLong(getFingerprint(graph));
+
+            int position = HEADER_SIZE;
+            intView(buffer, position).put(landmarks.getLandmarks());
+            position += getLandmarkSectionSize(numLandmarks);
+
+            doubleView(buffer, position).put(landmarks.getDistancesFrom());
+            position += numNodes * numLandmarks * 8;
+
+            doubleView(buffer, position).put(landmarks.getDistancesTo());
+
+            buffer.force();
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Read the landmarks in the given file.
+     *
+     * @param file to read from.
+     * @param graph the landmarks are expected to have been built for.
+     *
+     * @return the landmarks in the file.
+     *
+     * @throws IOException if the file could not be read, is not a
+     * landmark file in a version we understand, or was built for
+     * a different graph.
+     */
+    public static Landmarks read(File file, CompactGraph graph) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+
+            if(channel.size() < HEADER_SIZE) {
+                throw new IOException("Not a landmark file: " + file);
+            }
+
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            // The mapping stays valid after the file is closed.
+            randomAccessFile.close();
+        }
+
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+
+        if(buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a landmark file: " + file);
+        }
+
+        int version = buffer.getInt(4);
+
+        if(version != VERSION) {
+            throw new IOException("Unsupported landmark file version " + version + ": " + file);
+        }
+
+        int numNodes = buffer.getInt(8);
+        int numEdges = buffer.getInt(12);
+        int numLandmarks = buffer.getInt(16);
+
+        if(numNodes != graph.getNodeCount()
+                || numEdges != graph.getEdgeCount()
+                || buffer.getLong(24) != getFingerprint(graph)) {
+            throw new IOException("Landmark file was built for a different graph: " + file);
+        }
+
+        if(numLandmarks <= 0 || getFileSize(numNodes, numLandmarks) > buffer.capacity()) {
+            throw new IOException("Truncated landmark file: " + file);
+        }
+
+        int position = HEADER_SIZE;
+        int[] landmarks = new int[numLandmarks];
+        intView(buffer, position).get(landmarks);
+        position += getLandmarkSectionSize(numLandmarks);
+
+        for(int landmark : landmarks) {
+            if(landmark < 0 || landmark >= numNodes) {
+                throw new IOException("Corrupt landmark in landmark file: " + file);
+            }
+        }
+
+        double[] distancesFrom = new double[numNodes * numLandmarks];
+        doubleView(buffer, position).get(distancesFrom);
+        position += numNodes * numLandmarks * 8;
+
+        double[] distancesTo = new double[numNodes * numLandmarks];
+        doubleView(buffer, position).get(distancesTo);
+
+        return new Landmarks(landmarks, distancesFrom, distancesTo);
+    }
+
+    /**
+     * Hash of the node count and every edge with its weight, which
+     * changes if the graph gains, loses or re-weighs any edge.
+     */
+    private static long getFingerprint(CompactGraph graph) {
+        // 64 bit FNV-1a over the values rather than their bytes.
+        long hash = 0xcbf29ce484222325L;
+        hash = (hash ^ graph.getNodeCount()) * 0x100000001b3L;
+
+        for(int node = 0; node < graph.getNodeCount(); node++) {
+            hash = (hash ^ graph.getEdgeStart(node)) * 0x100000001b3L;
+        }
+
+        for(int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            hash = (hash ^ graph.getEdgeTarget(edge)) * 0x100000001b3L;
+            hash = (hash ^ Double.doubleToLongBits(graph.getEdgeWeight(edge))) * 0x100000001b3L;
+        }
+
+        return hash;
+    }
+
+    private static long getFileSize(int numNodes, int numLandmarks) {
+        return HEADER_SIZE
+                + getLandmarkSectionSize(numLandmarks)
+                + numNodes * (long) numLandmarks * 8L * 2L;
+    }
+
+    private static int getLandmarkSectionSize(int numLandmarks) {
+        return (numLandmarks * 4 + 7) & ~7;
+    }
+
+    private static IntBuffer intView(ByteBuffer buffer, int position) {
+        buffer.position(position);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+    }
+
+    private static DoubleBuffer doubleView(ByteBuffer buffer, int position) {
+        buffer.position(position);
+        return buffer.slice().order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+    }
+}
@@ -0,0 +1,126 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstras algorithm running over a compact (CSR) graph.
+ *
+ * All path finding data is held in primitive arrays indexed
+ * by node index rather than inside the nodes themselves, and
+ * the arrays are kept between queries so repeated searches on
+ * the same graph don't need to allocate them again.
+ */
+public class CompactDijkstrasAlgorithm {
+    private static final int NO_PARENT = -1;
+
+    private double[] mDistances = new double[0];
+    private int[] mParents = new int[0];
+    private boolean[] mComplete = new boolean[0];
+
+    // Queue of node indices ordered by distance from the origin.
+    private final IndexedPriorityQueue mRemainingNodes = new IndexedPriorityQueue(16);
+
+    private final PathBuffer mPath = new PathBuffer();
+
+    /**
+     * Attempt to calculate the shortest path between the
+     * given origin node and target node.
+     *
+     * @param graph to search.
+     * @param origin index of the node to start from.
+     * @param target index of the node to attempt to find the shortest path to.
+     *
+     * @return the shortest path, or null if no
+     * path to the target could be found.
+     */
+    public CompactPath findPath(CompactGraph graph, int origin, int target) {
+        if(!findPath(graph, origin, target, mPath)) {
+            return null;
+        }
+
+        return new CompactPath(mPath.toArray(), mPath.getTotalDistance());
+    }
+
+    /**
+     * Attempt to calculate the shortest path between the given origin
+     * node and target node, filling it into the given buffer without
+     * allocating anything.
+     *
+     * @param graph to search.
+     * @param origin index of the node to start from.
+     * @param target index of the node to attempt to find the shortest path to.
+     * @param path buffer to fill with the path, which is left
+     *             empty if the target can't be reached.
+     *
+     * @return true if a path was found.
+     */
+    public boolean findPath(CompactGraph graph, int origin, int target, PathBuffer path) {
+        path.clear();
+        prepare(graph.getNodeCount());
+
+        mDistances[origin] = 0.0;
+        mRemainingNodes.offer(origin, 0.0);
+
+        while(!mRemainingNodes.isEmpty()) {
+            int currentNode = mRemainingNodes.poll();
+            double currentDistance = mDistances[currentNode];
+            mComplete[currentNode] = true;
+
+            if(currentNode == target) {
+                break;
+            }
+
+            // Relax each outgoing edge, which are stored side by side.
+            int edgeEnd = graph.getEdgeEnd(currentNode);
+
+            for(int edge = graph.getEdgeStart(currentNode); edge < edgeEnd; edge++) {
+                int edgeTarget = graph.getEdgeTarget(edge);
+
+                if(mComplete[edgeTarget]) {
+                    continue;
+                }
+
+                double distanceToEdgeTarget = currentDistance + graph.getEdgeWeight(edge);
+
+                if(distanceToEdgeTarget < mDistances[edgeTarget]) {
+                    mDistances[edgeTarget] = distanceToEdgeTarget;
+                    mParents[edgeTarget] = currentNode;
+                    mRemainingNodes.offer(edgeTarget, distanceToEdgeTarget);
+                }
+            }
+        }
+
+        if(!mComplete[target]) {
+            return false;
+        }
+
+        // Walk back from the target to the origin, then flip the steps over.
+        for(int step = target; step != NO_PARENT; step = mParents[step]) {
+            path.addStep(step);
+        }
+
+        path.reverse();
+        path.setTotalDistance(mDistances[target]);
+        return true;
+    }
+
+    /**
+     * Reset the path finding arrays for a graph with the
+     * given number of nodes, growing them if needed.
+     *
+     * @param numNodes in the graph about to be searched.
+     */
+    private void prepare(int numNodes) {
+        if(mDistances.length < numNodes) {
+            mDistances = new double[numNodes];
+            mParents = new int[numNodes];
+            mComplete = new boolean[numNodes];
+        }
+
+        Arrays.fill(mDistances, 0, numNodes, Double.POSITIVE_INFINITY);
+        Arrays.fill(mParents, 0, numNodes, NO_PARENT);
+        Arrays.fill(mComplete, 0, numNodes, false);
+        mRemainingNodes.ensureCapacity(numNodes);
+        mRemainingNodes.clear();
+    }
+}
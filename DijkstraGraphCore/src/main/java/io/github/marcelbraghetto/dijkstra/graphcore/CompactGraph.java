@@ -0,0 +1,129 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Frozen, int indexed graph stored in 'compressed sparse row'
+ * (CSR) form, built with a {@link CompactGraphBuilder}.
+ *
+ * Every node is given an index between 0 and n - 1, and all the
+ * edges for node i are stored contiguously in the target and weight
+ * arrays between mEdgeOffsets[i] (inclusive) and mEdgeOffsets[i + 1]
+ * (exclusive). This avoids per node objects and hash maps, so walking
+ * the neighbours of a node is a simple array scan.
+ *
+ * A compact graph does not change once it has been built, so it can
+ * be shared by any number of threads. If the source graph changes a
+ * new compact graph should be built.
+ */
+public class CompactGraph {
+    // Node keys, indexed by node index.
+    private final String[] mKeys;
+
+    // Node positions, indexed by node index.
+    private final float[] mPositionsX;
+    private final float[] mPositionsY;
+
+    // Start offset of the edges for each node, with one extra
+    // trailing entry holding the total number of edges.
+    private final int[] mEdgeOffsets;
+
+    // Target node index for each edge.
+    private final int[] mEdgeTargets;
+
+    // Weight for each edge.
+    private final double[] mEdgeWeights;
+
+    // Lookup to find the node index for a given node key, which
+    // is only built if it is needed as big graphs rarely use it.
+    private Map<String, Integer> mIndices;
+
+    CompactGraph(String[] keys,
+                 float[] positionsX,
+                 float[] positionsY,
+                 int[] edgeOffsets,
+                 int[] edgeTargets,
+                 double[] edgeWeights) {
+        mKeys = keys;
+        mPositionsX = positionsX;
+        mPositionsY = positionsY;
+        mEdgeOffsets = edgeOffsets;
+        mEdgeTargets = edgeTargets;
+        mEdgeWeights = edgeWeights;
+    }
+
+    public int getNodeCount() {
+        return mKeys.length;
+    }
+
+    public int getEdgeCount() {
+        return mEdgeTargets.length;
+    }
+
+    /**
+     * Find the index of the node with the given key.
+     *
+     * @param key of the node to find.
+     *
+     * @return index of the node, or -1 if there is no node with the key.
+     */
+    public int getNodeIndex(String key) {
+        Integer index = getIndices().get(key);
+        return index == null ? -1 : index;
+    }
+
+    private synchronized Map<String, Integer> getIndices() {
+        if(mIndices == null) {
+            mIndices = new HashMap<>(mKeys.length * 2);
+
+            for(int i = 0; i < mKeys.length; i++) {
+                mIndices.put(mKeys[i], i);
+            }
+        }
+
+        return mIndices;
+    }
+
+    public String getNodeKey(int nodeIndex) {
+        return mKeys[nodeIndex];
+    }
+
+    public float getNodeX(int nodeIndex) {
+        return mPositionsX[nodeIndex];
+    }
+
+    public float getNodeY(int nodeIndex) {
+        return mPositionsY[nodeIndex];
+    }
+
+    /**
+     * The first edge index for the given node.
+     *
+     * @param nodeIndex to get the edges for.
+     *
+     * @return index of the first edge belonging to the node.
+     */
+    public int getEdgeStart(int nodeIndex) {
+        return mEdgeOffsets[nodeIndex];
+    }
+
+    /**
+     * The edge index just past the last edge for the given node.
+     *
+     * @param nodeIndex to get the edges for.
+     *
+     * @return index after the last edge belonging to the node.
+     */
+    public int getEdgeEnd(int nodeIndex) {
+        return mEdgeOffsets[nodeIndex + 1];
+    }
+
+    public int getEdgeTarget(int edgeIndex) {
+        return mEdgeTargets[edgeIndex];
+    }
+
+    public double getEdgeWeight(int edgeIndex) {
+        return mEdgeWeights[edgeIndex];
+    }
+}
@@ -0,0 +1,184 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Collects nodes and edges in any order, then packs them into a
+ * {@link CompactGraph}.
+ *
+ * Nodes are given indices in the order they are added, and each
+ * node's edges keep the order they were added in. Edges are gathered
+ * in flat primitive arrays and sorted into place by a counting sort
+ * when the graph is built, so even graphs with millions of edges
+ * build quickly and without an object per edge.
+ */
+public class CompactGraphBuilder {
+    private String[] mKeys;
+    private float[] mPositionsX;
+    private float[] mPositionsY;
+    private int mNodeCount;
+
+    private int[] mEdgeOrigins;
+    private int[] mEdgeTargets;
+    private double[] mEdgeWeights;
+    private int mEdgeCount;
+
+    public CompactGraphBuilder() {
+        this(16, 16);
+    }
+
+    /**
+     * @param expectedNodeCount how many nodes will probably be added.
+     * @param expectedEdgeCount how many edges will probably be added,
+     *                          counting each direction separately.
+     */
+    public CompactGraphBuilder(int expectedNodeCount, int expectedEdgeCount) {
+        mKeys = new String[Math.max(1, expectedNodeCount)];
+        mPositionsX = new float[mKeys.length];
+        mPositionsY = new float[mKeys.length];
+        mEdgeOrigins = new int[Math.max(1, expectedEdgeCount)];
+        mEdgeTargets = new int[mEdgeOrigins.length];
+        mEdgeWeights = new double[mEdgeOrigins.length];
+    }
+
+    public int getNodeCount() {
+        return mNodeCount;
+    }
+
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    /**
+     * Add a node.
+     *
+     * @param key of the node.
+     * @param x position of the node.
+     * @param y position of the node.
+     *
+     * @return index of the new node.
+     */
+    public int addNode(String key, float x, float y) {
+        if(mNodeCount == mKeys.length) {
+            int capacity = mNodeCount * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mPositionsX = Arrays.copyOf(mPositionsX, capacity);
+            mPositionsY = Arrays.copyOf(mPositionsY, capacity);
+        }
+
+        mKeys[mNodeCount] = key;
+        mPositionsX[mNodeCount] = x;
+        mPositionsY[mNodeCount] = y;
+        return mNodeCount++;
+    }
+
+    /**
+     * Add an edge in one direction only, weighted by
+     * the straight line distance between its nodes.
+     *
+     * @param origin index of the node the edge starts at.
+     * @param target index of the node the edge ends at.
+     */
+    public void addEdge(int origin, int target) {
+        checkNode(origin);
+        checkNode(target);
+        addEdge(origin, target, distanceBetween(
+                mPositionsX[origin], mPositionsY[origin],
+                mPositionsX[target], mPositionsY[target]));
+    }
+
+    /**
+     * Add an edge in one direction only.
+     *
+     * @param origin index of the node the edge starts at.
+     * @param target index of the node the edge ends at.
+     * @param weight of the edge.
+     */
+    public void addEdge(int origin, int target, double weight) {
+        checkNode(origin);
+        checkNode(target);
+
+        if(mEdgeCount == mEdgeOrigins.length) {
+            int capacity = mEdgeCount * 2;
+            mEdgeOrigins = Arrays.copyOf(mEdgeOrigins, capacity);
+            mEdgeTargets = Arrays.copyOf(mEdgeTargets, capacity);
+            mEdgeWeights = Arrays.copyOf(mEdgeWeights, capacity);
+        }
+
+        mEdgeOrigins[mEdgeCount] = origin;
+        mEdgeTargets[mEdgeCount] = target;
+        mEdgeWeights[mEdgeCount] = weight;
+        mEdgeCount++;
+    }
+
+    /**
+     * Join two nodes with an edge in each direction, weighted
+     * by the straight line distance between them.
+     *
+     * @param a index of the first node.
+     * @param b index of the second node.
+     */
+    public void connectNodes(int a, int b) {
+        addEdge(a, b);
+        addEdge(b, a);
+    }
+
+    /**
+     * Pack everything added so far into a compact graph. The
+     * builder can carry on being used afterward, without
+     * affecting the graphs it has already built.
+     *
+     * @return the new compact graph.
+     */
+    public CompactGraph build() {
+        int numNodes = mNodeCount;
+        int numEdges = mEdgeCount;
+
+        // Count the edges of each node, then turn the
+        // counts into the offset each node starts at.
+        int[] edgeOffsets = new int[numNodes + 1];
+
+        for(int edge = 0; edge < numEdges; edge++) {
+            edgeOffsets[mEdgeOrigins[edge] + 1]++;
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            edgeOffsets[node + 1] += edgeOffsets[node];
+        }
+
+        // Drop each edge into the next free slot of its origin.
+        int[] insertPositions = Arrays.copyOf(edgeOffsets, numNodes);
+        int[] edgeTargets = new int[numEdges];
+        double[] edgeWeights = new double[numEdges];
+
+        for(int edge = 0; edge < numEdges; edge++) {
+            int position = insertPositions[mEdgeOrigins[edge]]++;
+            edgeTargets[position] = mEdgeTargets[edge];
+            edgeWeights[position] = mEdgeWeights[edge];
+        }
+
+        return new CompactGraph(
+                Arrays.copyOf(mKeys, numNodes),
+                Arrays.copyOf(mPositionsX, numNodes),
+                Arrays.copyOf(mPositionsY, numNodes),
+                edgeOffsets,
+                edgeTargets,
+                edgeWeights);
+    }
+
+    /**
+     * The straight line distance between two points, worked out
+     * the same way as the weights of the edges of the apps' graphs.
+     *
+     * @return distance between the two points.
+     */
+    public static double distanceBetween(float x1, float y1, float x2, float y2) {
+        return Math.sqrt((x1 - x2) * (x1 - x2) + (y1 - y2) * (y1 - y2));
+    }
+
+    private void checkNode(int node) {
+        if(node < 0 || node >= mNodeCount) {
+            throw new IllegalArgumentException("No node with index " + node);
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+/**
+ * A path found through a {@link CompactGraph}, held as the
+ * indices of the nodes along it from the origin to the target.
+ */
+public class CompactPath {
+    private final int[] mNodes;
+    private final double mTotalDistance;
+
+    /**
+     * @param nodes indices of the nodes along the path, origin first.
+     * @param totalDistance length of the path.
+     */
+    public CompactPath(int[] nodes, double totalDistance) {
+        mNodes = nodes;
+        mTotalDistance = totalDistance;
+    }
+
+    /**
+     * How many nodes the path passes through,
+     * including the origin and the target.
+     *
+     * @return number of nodes in the path.
+     */
+    public int getLength() {
+        return mNodes.length;
+    }
+
+    /**
+     * The node at the given step of the path, where step 0 is
+     * the origin and step getLength() - 1 is the target.
+     *
+     * @param step along the path.
+     *
+     * @return index of the node at that step.
+     */
+    public int getNode(int step) {
+        return mNodes[step];
+    }
+
+    public double getTotalDistance() {
+        return mTotalDistance;
+    }
+}
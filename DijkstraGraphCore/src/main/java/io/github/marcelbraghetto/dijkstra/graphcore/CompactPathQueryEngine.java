@@ -0,0 +1,442 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Answers shortest path queries over a compact graph from many
+ * threads at once.
+ *
+ * Each thread keeps its own {@link SearchContext} which is reused for
+ * every query it runs, and a compact graph never changes, so it can be
+ * shared by all of them. The graph can be swapped for a newer snapshot
+ * at any time, and queries already running finish on the old one.
+ *
+ * Batches of queries are split across a fixed pool of worker
+ * threads, by default one per processor core.
+ *
+ * Graphs with small whole number edge weights are searched with a
+ * {@link MonotoneBucketQueue} in place of the priority queue held by
+ * the search context.
+ *
+ * If landmarks are set, queries are answered with A* guided by their
+ * lower bounds instead (see {@link LandmarkQuery}), which settles far
+ * fewer nodes whatever the edge weights are.
+ *
+ * If a {@link SearchStatsAggregator} is set, the work done by
+ * every query is recorded into it.
+ */
+public class CompactPathQueryEngine {
+    private final ExecutorService mExecutor;
+    private final int mNumThreads;
+
+    private final ThreadLocal<SearchContext> mSearchContexts = new ThreadLocal<SearchContext>() {
+        @Override
+        protected SearchContext initialValue() {
+            return new SearchContext();
+        }
+    };
+
+    private final ThreadLocal<PathBuffer> mPathBuffers = new ThreadLocal<PathBuffer>() {
+        @Override
+        protected PathBuffer initialValue() {
+            return new PathBuffer();
+        }
+    };
+
+    private final ThreadLocal<SearchStats> mSearchStats = new ThreadLocal<SearchStats>() {
+        @Override
+        protected SearchStats initialValue() {
+            return new SearchStats();
+        }
+    };
+
+    private final ThreadLocal<MonotoneBucketQueue> mBucketQueues = new ThreadLocal<>();
+    private final ThreadLocal<LandmarkQuery> mLandmarkQueries = new ThreadLocal<>();
+
+    // The graph and everything worked out from it, replaced as a whole
+    // so a query always sees a graph and landmarks that belong together.
+    private volatile Snapshot mSnapshot;
+
+    private volatile SearchStatsAggregator mStatsAggregator;
+
+    public CompactPathQueryEngine(CompactGraph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    public CompactPathQueryEngine(CompactGraph graph, int numThreads) {
+        mSnapshot = new Snapshot(graph, MonotoneBucketQueue.getMaxSmallIntegerWeight(graph), null);
+        mNumThreads = Math.max(1, numThreads);
+        mExecutor = Executors.newFixedThreadPool(mNumThreads);
+    }
+
+    public CompactGraph getGraph() {
+        return mSnapshot.mGraph;
+    }
+
+    /**
+     * Answer queries over a newer snapshot of the graph from now on.
+     * Any landmarks are dropped, as they were built for the old graph.
+     *
+     * @param graph to search.
+     */
+    public void setGraph(CompactGraph graph) {
+        mSnapshot = new Snapshot(graph, MonotoneBucketQueue.getMaxSmallIntegerWeight(graph), null);
+    }
+
+    /**
+     * Guide every query with the given landmarks, or go back to plain
+     * Dijkstra. The landmarks are usually built once with a
+     * {@link LandmarksBuilder} and saved, as choosing them takes a
+     * number of full searches of the graph.
+     *
+     * @param landmarks built for the current graph, or null to stop using them.
+     */
+    public void setLandmarks(Landmarks landmarks) {
+        Snapshot snapshot = mSnapshot;
+        LandmarkQuery landmarkQuery = landmarks == null ? null : new LandmarkQuery(snapshot.mGraph, landmarks);
+
+        mSnapshot = new Snapshot(snapshot.mGraph, snapshot.mMaxSmallIntegerWeight, landmarkQuery);
+    }
+
+    /**
+     * Set where to record the work done by each query.
+     *
+     * @param statsAggregator to record into, or null to stop recording.
+     */
+    public void setStatsAggregator(SearchStatsAggregator statsAggregator) {
+        mStatsAggregator = statsAggregator;
+    }
+
+    /**
+     * Find the shortest path between the nodes with the given keys on
+     * the calling thread. This is safe to call from any number of
+     * threads at the same time.
+     *
+     * @param originKey of the node to start from.
+     * @param targetKey of the node to find the shortest path to.
+     *
+     * @return the shortest path, or null if there is no path
+     * or either node does not exist.
+     */
+    public CompactPath findPath(String originKey, String targetKey) {
+        Snapshot snapshot = mSnapshot;
+        PathBuffer path = mPathBuffers.get();
+
+        if(!findPath(snapshot, snapshot.mGraph.getNodeIndex(originKey), snapshot.mGraph.getNodeIndex(targetKey), path)) {
+            return null;
+        }
+
+        return new CompactPath(path.toArray(), path.getTotalDistance());
+    }
+
+    /**
+     * Find the shortest path between the given nodes on the calling
+     * thread, filling it into the given buffer without allocating
+     * anything. This is safe to call from any number of threads at the
+     * same time, as long as each has its own buffer.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     * @param path buffer to fill with the path, which is left
+     *             empty if the target can't be reached.
+     *
+     * @return true if a path was found.
+     */
+    public boolean findPath(int origin, int target, PathBuffer path) {
+        return findPath(mSnapshot, origin, target, path);
+    }
+
+    /**
+     * Find the shortest paths for all the given queries, spreading
+     * the work across the worker threads. The calling thread blocks
+     * until every query has been answered.
+     *
+     * @param queries to answer.
+     *
+     * @return the path for each query in the same order as the
+     * queries, with null entries for queries that have no path.
+     *
+     * @throws InterruptedException if the calling thread is
+     * interrupted while waiting for the results.
+     */
+    public List<CompactPath> findPaths(final List<Query> queries) throws InterruptedException {
+        final CompactPath[] results = new CompactPath[queries.size()];
+
+        // The whole batch is answered over the same graph.
+        final Snapshot snapshot = mSnapshot;
+
+        // Hand each worker a contiguous slice of the queries, rather
+        // than one task per query, to keep the scheduling overhead low.
+        int sliceSize = (queries.size() + mNumThreads - 1) / mNumThreads;
+        List<Future<?>> futures = new ArrayList<>(mNumThreads);
+
+        for(int start = 0; start < queries.size(); start += sliceSize) {
+            final int sliceStart = start;
+            final int sliceEnd = Math.min(queries.size(), start + sliceSize);
+
+            futures.add(mExecutor.submit(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    PathBuffer path = mPathBuffers.get();
+
+                    for(int i = sliceStart; i < sliceEnd; i++) {
+                        Query query = queries.get(i);
+                        int origin = snapshot.mGraph.getNodeIndex(query.getOriginKey());
+                        int target = snapshot.mGraph.getNodeIndex(query.getTargetKey());
+
+                        if(findPath(snapshot, origin, target, path)) {
+                            results[i] = new CompactPath(path.toArray(), path.getTotalDistance());
+                        }
+                    }
+
+                    return null;
+                }
+            }));
+        }
+
+        for(Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+        }
+
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Stop the worker threads, the engine can't be
+     * used for batches of queries afterward.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private boolean findPath(Snapshot snapshot, int origin, int target, PathBuffer path) {
+        if(origin < 0 || target < 0) {
+            path.clear();
+            return false;
+        }
+
+        if(snapshot.mLandmarkQuery != null) {
+            return findLandmarkPath(snapshot, origin, target, path);
+        }
+
+        return findDijkstraPath(snapshot, origin, target, path);
+    }
+
+    /**
+     * Dijkstras algorithm keeping all the path finding state
+     * in the calling thread's search context.
+     */
+    private boolean findDijkstraPath(Snapshot snapshot, int origin, int target, PathBuffer path) {
+        SearchStatsAggregator statsAggregator = mStatsAggregator;
+        long startTime = statsAggregator == null ? 0L : System.nanoTime();
+
+        CompactGraph graph = snapshot.mGraph;
+        path.clear();
+
+        int settledNodes = 0;
+        int edgesRelaxed = 0;
+        int improvements = 0;
+        int peakFrontierSize = 1;
+
+        SearchContext context = mSearchContexts.get();
+        context.begin(graph.getNodeCount());
+        IndexedPriorityQueue queue = context.getQueue();
+        MonotoneBucketQueue buckets = getBucketQueue(graph.getNodeCount(), snapshot.mMaxSmallIntegerWeight);
+
+        context.update(origin, SearchContext.NO_PARENT, 0.0);
+
+        if(buckets != null) {
+            buckets.offer(origin, 0.0);
+        } else {
+            queue.offer(origin, 0.0);
+        }
+
+        while(buckets != null ? !buckets.isEmpty() : !queue.isEmpty()) {
+            int currentNode = buckets != null ? buckets.poll() : queue.poll();
+            context.setComplete(currentNode);
+            settledNodes++;
+
+            if(currentNode == target) {
+                break;
+            }
+
+            double currentDistance = context.getDistance(currentNode);
+            int edgeEnd = graph.getEdgeEnd(currentNode);
+            edgesRelaxed += edgeEnd - graph.getEdgeStart(currentNode);
+
+            for(int edge = graph.getEdgeStart(currentNode); edge < edgeEnd; edge++) {
+                int edgeTarget = graph.getEdgeTarget(edge);
+
+                if(context.isComplete(edgeTarget)) {
+                    continue;
+                }
+
+                double distanceToEdgeTarget = currentDistance + graph.getEdgeWeight(edge);
+
+                if(distanceToEdgeTarget < context.getDistance(edgeTarget)) {
+                    context.update(edgeTarget, currentNode, distanceToEdgeTarget);
+                    improvements++;
+
+                    if(buckets != null) {
+                        buckets.offer(edgeTarget, distanceToEdgeTarget);
+                    } else {
+                        queue.offer(edgeTarget, distanceToEdgeTarget);
+                    }
+                }
+            }
+
+            peakFrontierSize = Math.max(peakFrontierSize, buckets != null ? buckets.size() : queue.size());
+        }
+
+        boolean found = context.isComplete(target);
+
+        if(statsAggregator != null) {
+            // Every node settled or still queued was pushed once, and
+            // every other improvement moved a queued node up instead.
+            int queuePushes = settledNodes + (buckets != null ? buckets.size() : queue.size());
+            SearchStats stats = mSearchStats.get();
+
+            stats.set(graph.getNodeKey(origin),
+                      graph.getNodeKey(target),
+                      found,
+                      settledNodes,
+                      edgesRelaxed,
+                      queuePushes,
+                      improvements + 1 - queuePushes,
+                      peakFrontierSize,
+                      System.nanoTime() - startTime);
+
+            statsAggregator.record(stats);
+        }
+
+        if(!found) {
+            return false;
+        }
+
+        // Walk back from the target to the origin, then flip the steps over.
+        for(int step = target; step != SearchContext.NO_PARENT; step = context.getParent(step)) {
+            path.addStep(step);
+        }
+
+        path.reverse();
+        path.setTotalDistance(context.getDistance(target));
+        return true;
+    }
+
+    /**
+     * A* guided by landmarks, using the calling thread's
+     * own copy of the snapshot's landmark query.
+     */
+    private boolean findLandmarkPath(Snapshot snapshot, int origin, int target, PathBuffer path) {
+        SearchStatsAggregator statsAggregator = mStatsAggregator;
+        long startTime = statsAggregator == null ? 0L : System.nanoTime();
+
+        LandmarkQuery sharedQuery = snapshot.mLandmarkQuery;
+        LandmarkQuery query = mLandmarkQueries.get();
+
+        if(query == null
+                || query.getGraph() != sharedQuery.getGraph()
+                || query.getLandmarks() != sharedQuery.getLandmarks()) {
+            query = new LandmarkQuery(sharedQuery.getGraph(), sharedQuery.getLandmarks());
+            mLandmarkQueries.set(query);
+        }
+
+        boolean found = query.findPath(origin, target, path);
+
+        if(statsAggregator != null) {
+            SearchStats stats = mSearchStats.get();
+
+            stats.set(snapshot.mGraph.getNodeKey(origin),
+                      snapshot.mGraph.getNodeKey(target),
+                      found,
+                      query.getSettledNodeCount(),
+                      query.getEdgesRelaxed(),
+                      query.getQueuePushes(),
+                      query.getQueueUpdates(),
+                      query.getPeakQueueSize(),
+                      System.nanoTime() - startTime);
+
+            statsAggregator.record(stats);
+        }
+
+        return found;
+    }
+
+    /**
+     * The calling thread's bucket queue, emptied and sized for
+     * the given heaviest edge weight.
+     *
+     * @param numNodes in the graph about to be searched.
+     * @param maxSmallIntegerWeight see {@link MonotoneBucketQueue#getMaxSmallIntegerWeight(CompactGraph)}.
+     *
+     * @return the bucket queue, or null if the edge weights
+     * aren't small whole numbers and the priority queue should
+     * be used instead.
+     */
+    private MonotoneBucketQueue getBucketQueue(int numNodes, int maxSmallIntegerWeight) {
+        if(maxSmallIntegerWeight < 0) {
+            return null;
+        }
+
+        MonotoneBucketQueue buckets = mBucketQueues.get();
+
+        if(buckets == null) {
+            buckets = new MonotoneBucketQueue(numNodes, maxSmallIntegerWeight);
+            mBucketQueues.set(buckets);
+        } else if(buckets.getMaxStep() != maxSmallIntegerWeight) {
+            buckets.setMaxStep(maxSmallIntegerWeight);
+        } else {
+            buckets.clear();
+        }
+
+        buckets.ensureCapacity(numNodes);
+        return buckets;
+    }
+
+    /**
+     * A single request to find the path between two nodes.
+     */
+    public static class Query {
+        private final String mOriginKey;
+        private final String mTargetKey;
+
+        public Query(String originKey, String targetKey) {
+            mOriginKey = originKey;
+            mTargetKey = targetKey;
+        }
+
+        public String getOriginKey() {
+            return mOriginKey;
+        }
+
+        public String getTargetKey() {
+            return mTargetKey;
+        }
+    }
+
+    /**
+     * A graph along with its bucket queue step and landmarks.
+     */
+    private static class Snapshot {
+        private final CompactGraph mGraph;
+        private final int mMaxSmallIntegerWeight;
+        private final LandmarkQuery mLandmarkQuery;
+
+        Snapshot(CompactGraph graph, int maxSmallIntegerWeight, LandmarkQuery landmarkQuery) {
+            mGraph = graph;
+            mMaxSmallIntegerWeight = maxSmallIntegerWeight;
+            mLandmarkQuery = landmarkQuery;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+/**
+ * The result of preprocessing a compact graph into a 'contraction
+ * hierarchy', see {@link ContractionHierarchyBuilder}.
+ *
+ * Every node has a rank (the order it was contracted in), and only
+ * the 'upward' edges from each node to higher ranked nodes are kept,
+ * stored in the same compressed sparse row layout as the compact
+ * graph. An edge is either an original edge of the graph, or a
+ * shortcut standing in for the two edges via its 'middle' node.
+ *
+ * Since our graphs are undirected, the same upward edges serve
+ * both the forward and the backward half of a query.
+ */
+public class ContractionHierarchy {
+    public static final int NO_MIDDLE = -1;
+
+    private final CompactGraph mGraph;
+    private final int[] mRanks;
+    private final int[] mEdgeOffsets;
+    private final int[] mEdgeTargets;
+    private final double[] mEdgeWeights;
+    private final int[] mEdgeMiddles;
+    private final int mShortcutCount;
+
+    ContractionHierarchy(CompactGraph graph,
+                         int[] ranks,
+                         int[] edgeOffsets,
+                         int[] edgeTargets,
+                         double[] edgeWeights,
+                         int[] edgeMiddles,
+                         int shortcutCount) {
+        mGraph = graph;
+        mRanks = ranks;
+        mEdgeOffsets = edgeOffsets;
+        mEdgeTargets = edgeTargets;
+        mEdgeWeights = edgeWeights;
+        mEdgeMiddles = edgeMiddles;
+        mShortcutCount = shortcutCount;
+    }
+
+    /**
+     * The compact graph this hierarchy was built from.
+     *
+     * @return source graph.
+     */
+    public CompactGraph getGraph() {
+        return mGraph;
+    }
+
+    public int getNodeCount() {
+        return mRanks.length;
+    }
+
+    public int getRank(int nodeIndex) {
+        return mRanks[nodeIndex];
+    }
+
+    /**
+     * How many shortcut edges were added while contracting.
+     *
+     * @return number of shortcuts.
+     */
+    public int getShortcutCount() {
+        return mShortcutCount;
+    }
+
+    public int getEdgeStart(int nodeIndex) {
+        return mEdgeOffsets[nodeIndex];
+    }
+
+    public int getEdgeEnd(int nodeIndex) {
+        return mEdgeOffsets[nodeIndex + 1];
+    }
+
+    public int getEdgeTarget(int edgeIndex) {
+        return mEdgeTargets[edgeIndex];
+    }
+
+    public double getEdgeWeight(int edgeIndex) {
+        return mEdgeWeights[edgeIndex];
+    }
+
+    /**
+     * The node a shortcut edge passes through.
+     *
+     * @param edgeIndex of the edge.
+     *
+     * @return middle node index, or NO_MIDDLE for an original edge.
+     */
+    public int getEdgeMiddle(int edgeIndex) {
+        return mEdgeMiddles[edgeIndex];
+    }
+
+    /**
+     * Find the upward edge joining the two given nodes, which
+     * is stored against whichever of them has the lower rank.
+     *
+     * @param a first node index.
+     * @param b second node index.
+     *
+     * @return index of the edge, or -1 if the nodes are not joined.
+     */
+    public int findEdge(int a, int b) {
+        int lower = mRanks[a] < mRanks[b] ? a : b;
+        int higher = lower == a ? b : a;
+        int end = mEdgeOffsets[lower + 1];
+
+        for(int edge = mEdgeOffsets[lower]; edge < end; edge++) {
+            if(mEdgeTargets[edge] == higher) {
+                return edge;
+            }
+        }
+
+        return -1;
+    }
+}
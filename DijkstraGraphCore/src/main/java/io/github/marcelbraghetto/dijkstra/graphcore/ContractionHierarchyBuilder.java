@@ -0,0 +1,487 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Preprocesses a compact graph into a {@link ContractionHierarchy}.
+ *
+ * Nodes are 'contracted' one at a time, least important first. To
+ * contract a node it is removed from the remaining graph, and for
+ * every pair of its remaining neighbours whose shortest path went
+ * through it, a shortcut edge is added directly between them. A
+ * short 'witness' search checks whether some other path is at least
+ * as short, in which case the shortcut is not needed.
+ *
+ * Importance is estimated by the 'edge difference' (shortcuts that
+ * would be added minus edges that would be removed), plus how many
+ * neighbours have already been contracted and how many levels of
+ * contracted nodes lie below, which keep contraction spread evenly
+ * over the graph. Finding the edge difference means simulating the
+ * contraction, so when a node is contracted its neighbours only have
+ * the other two terms refreshed, and their edge difference is brought
+ * up to date when they come off the queue.
+ *
+ * This is expected to run offline, or at least off the main thread,
+ * as it can take a while on large graphs.
+ */
+public class ContractionHierarchyBuilder {
+    // Witness searches give up after settling this many nodes, or on
+    // paths of more than this many edges, which may add a few unneeded
+    // shortcuts but keeps every search small however large the graph.
+    // Estimating importance only needs a rough count, so it uses
+    // much smaller limits than the real contraction does.
+    private static final int WITNESS_SETTLE_LIMIT = 500;
+    private static final int WITNESS_HOP_LIMIT = 5;
+    private static final int SIMULATED_WITNESS_SETTLE_LIMIT = 50;
+    private static final int SIMULATED_WITNESS_HOP_LIMIT = 3;
+
+    // Remaining graph, as a growable edge list per node. Each
+    // undirected edge is stored against both of its nodes.
+    private int[][] mTargets;
+    private double[][] mWeights;
+    private int[][] mMiddles;
+    private int[] mDegrees;
+
+    private boolean[] mContracted;
+    private int[] mContractedNeighbours;
+
+    // How many levels of contracted nodes lie below each node, and
+    // the edge difference each node had when last simulated.
+    private int[] mLevels;
+    private int[] mEdgeDifferences;
+
+    // Upward edges recorded as each node is contracted.
+    private int[][] mUpTargets;
+    private double[][] mUpWeights;
+    private int[][] mUpMiddles;
+    private int[] mUpDegrees;
+
+    private int mShortcutCount;
+
+    // Witness search state, with the number of edges on the path
+    // to each reached node, and the neighbours it is looking for
+    // marked with the current target stamp.
+    private final SearchContext mWitnessContext = new SearchContext();
+    private int[] mWitnessHops;
+    private int[] mWitnessTargetStamps;
+    private int mWitnessTargetStamp;
+
+    // Scratch space for the neighbours of the node being contracted.
+    private int[] mNeighbours = new int[16];
+    private double[] mNeighbourWeights = new double[16];
+
+    /**
+     * Build the contraction hierarchy for the given graph, which
+     * must be undirected (every edge exists in both directions with
+     * the same weight).
+     *
+     * @param graph to preprocess.
+     *
+     * @return the contraction hierarchy.
+     */
+    public ContractionHierarchy build(CompactGraph graph) {
+        int numNodes = graph.getNodeCount();
+        initialise(graph);
+
+        // Order every node by its initial importance.
+        IndexedPriorityQueue queue = new IndexedPriorityQueue(numNodes);
+
+        for(int node = 0; node < numNodes; node++) {
+            queue.offer(node, updateImportance(node));
+        }
+
+        int[] ranks = new int[numNodes];
+        int nextRank = 0;
+
+        while(!queue.isEmpty()) {
+            int node = queue.poll();
+
+            // Contracting other nodes may have changed this node's
+            // importance, if it is no longer the least important
+            // then put it back in line with its updated value.
+            double importance = updateImportance(node);
+
+            if(!queue.isEmpty() && importance > queue.peekPriority()) {
+                queue.offer(node, importance);
+                continue;
+            }
+
+            int numNeighbours = contract(node, false);
+            ranks[node] = nextRank++;
+
+            // The neighbours now have one more contracted neighbour and
+            // may be a level higher, which is cheap to refresh right away.
+            for(int i = 0; i < numNeighbours; i++) {
+                int neighbour = mNeighbours[i];
+                queue.update(neighbour, getImportance(neighbour));
+            }
+        }
+
+        return buildHierarchy(graph, ranks);
+    }
+
+    private void initialise(CompactGraph graph) {
+        int numNodes = graph.getNodeCount();
+
+        mTargets = new int[numNodes][];
+        mWeights = new double[numNodes][];
+        mMiddles = new int[numNodes][];
+        mDegrees = new int[numNodes];
+        mContracted = new boolean[numNodes];
+        mContractedNeighbours = new int[numNodes];
+        mLevels = new int[numNodes];
+        mEdgeDifferences = new int[numNodes];
+        mWitnessHops = new int[numNodes];
+        mWitnessTargetStamps = new int[numNodes];
+        mWitnessTargetStamp = 0;
+        mUpTargets = new int[numNodes][];
+        mUpWeights = new double[numNodes][];
+        mUpMiddles = new int[numNodes][];
+        mUpDegrees = new int[numNodes];
+        mShortcutCount = 0;
+
+        for(int node = 0; node < numNodes; node++) {
+            int capacity = Math.max(4, graph.getEdgeEnd(node) - graph.getEdgeStart(node));
+            mTargets[node] = new int[capacity];
+            mWeights[node] = new double[capacity];
+            mMiddles[node] = new int[capacity];
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            int end = graph.getEdgeEnd(node);
+
+            for(int edge = graph.getEdgeStart(node); edge < end; edge++) {
+                int target = graph.getEdgeTarget(edge);
+
+                if(target != node) {
+                    addOrShortenEdge(node, target, graph.getEdgeWeight(edge), ContractionHierarchy.NO_MIDDLE);
+                }
+            }
+        }
+    }
+
+    /**
+     * Simulate contracting a node to find its edge difference,
+     * then estimate how important it is.
+     */
+    private double updateImportance(int node) {
+        int shortcuts = contract(node, true);
+        int removedEdges = collectNeighbours(node);
+        mEdgeDifferences[node] = shortcuts - removedEdges;
+
+        return getImportance(node);
+    }
+
+    /**
+     * Estimate how important a node is from its last known edge
+     * difference, lower values are contracted first. The edge
+     * difference counts double, as it matters most for how many
+     * shortcuts end up in the hierarchy.
+     */
+    private double getImportance(int node) {
+        return 2 * mEdgeDifferences[node] + mContractedNeighbours[node] + mLevels[node];
+    }
+
+    /**
+     * Gather the remaining neighbours of a node into the scratch arrays.
+     *
+     * @return number of remaining neighbours.
+     */
+    private int collectNeighbours(int node) {
+        int count = 0;
+        int[] targets = mTargets[node];
+
+        for(int i = 0; i < mDegrees[node]; i++) {
+            int neighbour = targets[i];
+
+            if(mContracted[neighbour]) {
+                continue;
+            }
+
+            if(count == mNeighbours.length) {
+                mNeighbours = Arrays.copyOf(mNeighbours, count * 2);
+                mNeighbourWeights = Arrays.copyOf(mNeighbourWeights, count * 2);
+            }
+
+            mNeighbours[count] = neighbour;
+            mNeighbourWeights[count] = mWeights[node][i];
+            count++;
+        }
+
+        return count;
+    }
+
+    /**
+     * Contract the given node, or just count the shortcuts that
+     * contracting it would need.
+     *
+     * @param node to contract.
+     * @param simulate true to only count the shortcuts.
+     *
+     * @return number of shortcuts needed when simulating, otherwise
+     * the number of remaining neighbours the node had, which are
+     * left in the neighbour scratch arrays.
+     */
+    private int contract(int node, boolean simulate) {
+        int numNeighbours = collectNeighbours(node);
+
+        // Copy the neighbours, as adding shortcuts below may reuse the scratch arrays.
+        int[] neighbours = Arrays.copyOf(mNeighbours, numNeighbours);
+        double[] neighbourWeights = Arrays.copyOf(mNeighbourWeights, numNeighbours);
+
+        int shortcuts = 0;
+
+        for(int i = 0; i < numNeighbours; i++) {
+            int from = neighbours[i];
+
+            // The longest shortcut from this neighbour decides how
+            // far the witness search needs to look.
+            double maxDistance = 0.0;
+
+            for(int j = i + 1; j < numNeighbours; j++) {
+                maxDistance = Math.max(maxDistance, neighbourWeights[i] + neighbourWeights[j]);
+            }
+
+            if(i + 1 < numNeighbours) {
+                markWitnessTargets(neighbours, i + 1, numNeighbours);
+                runWitnessSearch(from, node, maxDistance, numNeighbours - i - 1,
+                        simulate ? SIMULATED_WITNESS_SETTLE_LIMIT : WITNESS_SETTLE_LIMIT,
+                        simulate ? SIMULATED_WITNESS_HOP_LIMIT : WITNESS_HOP_LIMIT);
+            }
+
+            for(int j = i + 1; j < numNeighbours; j++) {
+                int to = neighbours[j];
+                double viaDistance = neighbourWeights[i] + neighbourWeights[j];
+
+                if(mWitnessContext.getDistance(to) <= viaDistance) {
+                    continue;
+                }
+
+                shortcuts++;
+
+                if(!simulate) {
+                    addOrShortenEdge(from, to, viaDistance, node);
+                    addOrShortenEdge(to, from, viaDistance, node);
+                    mShortcutCount++;
+                }
+            }
+        }
+
+        if(!simulate) {
+            mContracted[node] = true;
+
+            // Every remaining neighbour is higher in the hierarchy,
+            // so the edges to them become this node's upward edges.
+            for(int i = 0; i < numNeighbours; i++) {
+                int neighbour = neighbours[i];
+                int edge = findEdge(node, neighbour);
+                addUpwardEdge(node, neighbour, mWeights[node][edge], mMiddles[node][edge]);
+                removeEdge(neighbour, node);
+                mContractedNeighbours[neighbour]++;
+                mLevels[neighbour] = Math.max(mLevels[neighbour], mLevels[node] + 1);
+            }
+
+            System.arraycopy(neighbours, 0, mNeighbours, 0, numNeighbours);
+            return numNeighbours;
+        }
+
+        return shortcuts;
+    }
+
+    /**
+     * Mark the given range of neighbours as the targets
+     * of the next witness search.
+     */
+    private void markWitnessTargets(int[] neighbours, int start, int end) {
+        // If we run out of stamps, clear them so
+        // none can match a recycled stamp.
+        if(mWitnessTargetStamp == Integer.MAX_VALUE) {
+            Arrays.fill(mWitnessTargetStamps, 0);
+            mWitnessTargetStamp = 0;
+        }
+
+        mWitnessTargetStamp++;
+
+        for(int i = start; i < end; i++) {
+            mWitnessTargetStamps[neighbours[i]] = mWitnessTargetStamp;
+        }
+    }
+
+    /**
+     * Dijkstra search from the given node over the remaining graph,
+     * ignoring the node being contracted, up to the given distance.
+     * The search stops early once every marked target is settled, as
+     * their distances can't improve, and doesn't follow paths of more
+     * than the given number of edges.
+     */
+    private void runWitnessSearch(int origin, int ignoredNode, double maxDistance,
+                                  int numTargets, int settleLimit, int hopLimit) {
+        mWitnessContext.begin(mTargets.length);
+        IndexedPriorityQueue queue = mWitnessContext.getQueue();
+
+        mWitnessContext.update(origin, SearchContext.NO_PARENT, 0.0);
+        mWitnessHops[origin] = 0;
+        queue.offer(origin, 0.0);
+
+        int settled = 0;
+        int remainingTargets = numTargets;
+
+        while(!queue.isEmpty() && settled < settleLimit && remainingTargets > 0) {
+            if(queue.peekPriority() > maxDistance) {
+                break;
+            }
+
+            int current = queue.poll();
+            mWitnessContext.setComplete(current);
+            settled++;
+
+            if(mWitnessTargetStamps[current] == mWitnessTargetStamp) {
+                remainingTargets--;
+            }
+
+            int hops = mWitnessHops[current] + 1;
+
+            if(hops > hopLimit) {
+                continue;
+            }
+
+            double currentDistance = mWitnessContext.getDistance(current);
+            int[] targets = mTargets[current];
+            double[] weights = mWeights[current];
+
+            for(int i = 0; i < mDegrees[current]; i++) {
+                int target = targets[i];
+
+                if(target == ignoredNode || mWitnessContext.isComplete(target)) {
+                    continue;
+                }
+
+                double distance = currentDistance + weights[i];
+
+                if(distance <= maxDistance && distance < mWitnessContext.getDistance(target)) {
+                    mWitnessContext.update(target, current, distance);
+                    mWitnessHops[target] = hops;
+                    queue.offer(target, distance);
+                }
+            }
+        }
+    }
+
+    private int findEdge(int from, int to) {
+        int[] targets = mTargets[from];
+
+        for(int i = 0; i < mDegrees[from]; i++) {
+            if(targets[i] == to) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Remove an edge from the remaining graph by moving the
+     * last edge of the node into its place.
+     */
+    private void removeEdge(int from, int to) {
+        int edge = findEdge(from, to);
+        int last = --mDegrees[from];
+
+        mTargets[from][edge] = mTargets[from][last];
+        mWeights[from][edge] = mWeights[from][last];
+        mMiddles[from][edge] = mMiddles[from][last];
+    }
+
+    /**
+     * Add an edge to the remaining graph, or if the nodes are already
+     * joined, keep whichever of the two edges is shorter.
+     */
+    private void addOrShortenEdge(int from, int to, double weight, int middle) {
+        int existing = findEdge(from, to);
+
+        if(existing >= 0) {
+            if(weight < mWeights[from][existing]) {
+                mWeights[from][existing] = weight;
+                mMiddles[from][existing] = middle;
+            }
+
+            return;
+        }
+
+        int degree = mDegrees[from];
+
+        if(degree == mTargets[from].length) {
+            mTargets[from] = Arrays.copyOf(mTargets[from], degree * 2);
+            mWeights[from] = Arrays.copyOf(mWeights[from], degree * 2);
+            mMiddles[from] = Arrays.copyOf(mMiddles[from], degree * 2);
+        }
+
+        mTargets[from][degree] = to;
+        mWeights[from][degree] = weight;
+        mMiddles[from][degree] = middle;
+        mDegrees[from]++;
+    }
+
+    private void addUpwardEdge(int from, int to, double weight, int middle) {
+        int degree = mUpDegrees[from];
+
+        if(mUpTargets[from] == null) {
+            mUpTargets[from] = new int[4];
+            mUpWeights[from] = new double[4];
+            mUpMiddles[from] = new int[4];
+        } else if(degree == mUpTargets[from].length) {
+            mUpTargets[from] = Arrays.copyOf(mUpTargets[from], degree * 2);
+            mUpWeights[from] = Arrays.copyOf(mUpWeights[from], degree * 2);
+            mUpMiddles[from] = Arrays.copyOf(mUpMiddles[from], degree * 2);
+        }
+
+        mUpTargets[from][degree] = to;
+        mUpWeights[from][degree] = weight;
+        mUpMiddles[from][degree] = middle;
+        mUpDegrees[from]++;
+    }
+
+    /**
+     * Pack the recorded upward edges into compressed sparse row arrays.
+     */
+    private ContractionHierarchy buildHierarchy(CompactGraph graph, int[] ranks) {
+        int numNodes = ranks.length;
+        int[] offsets = new int[numNodes + 1];
+
+        for(int node = 0; node < numNodes; node++) {
+            offsets[node + 1] = offsets[node] + mUpDegrees[node];
+        }
+
+        int numEdges = offsets[numNodes];
+        int[] targets = new int[numEdges];
+        double[] weights = new double[numEdges];
+        int[] middles = new int[numEdges];
+
+        for(int node = 0; node < numNodes; node++) {
+            int degree = mUpDegrees[node];
+
+            if(degree > 0) {
+                System.arraycopy(mUpTargets[node], 0, targets, offsets[node], degree);
+                System.arraycopy(mUpWeights[node], 0, weights, offsets[node], degree);
+                System.arraycopy(mUpMiddles[node], 0, middles, offsets[node], degree);
+            }
+        }
+
+        ContractionHierarchy hierarchy = new ContractionHierarchy(
+                graph, ranks, offsets, targets, weights, middles, mShortcutCount);
+
+        // Release the working data.
+        mTargets = null;
+        mWeights = null;
+        mMiddles = null;
+        mUpTargets = null;
+        mUpWeights = null;
+        mUpMiddles = null;
+        mWitnessHops = null;
+        mWitnessTargetStamps = null;
+        mLevels = null;
+        mEdgeDifferences = null;
+
+        return hierarchy;
+    }
+}
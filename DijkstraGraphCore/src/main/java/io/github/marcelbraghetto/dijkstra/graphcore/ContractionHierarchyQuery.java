@@ -0,0 +1,238 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Finds shortest paths using a {@link ContractionHierarchy}.
+ *
+ * A forward search from the origin and a backward search from the
+ * target only ever follow edges upward to higher ranked nodes, which
+ * keeps both searches tiny. The shortest path is found where the two
+ * searches meet at their highest point, then any shortcuts along it
+ * are unpacked back into the original edges.
+ *
+ * An instance reuses its search state between queries, so should
+ * only be used by one thread at a time.
+ */
+public class ContractionHierarchyQuery {
+    private final ContractionHierarchy mHierarchy;
+    private final SearchContext mForward = new SearchContext();
+    private final SearchContext mBackward = new SearchContext();
+
+    // Scratch space used while unpacking shortcuts.
+    private int[] mChainNodes = new int[32];
+    private int[] mUnpackStack = new int[32];
+    private final PathBuffer mPath = new PathBuffer(32);
+
+    private int mSettledNodeCount;
+
+    public ContractionHierarchyQuery(ContractionHierarchy hierarchy) {
+        mHierarchy = hierarchy;
+    }
+
+    /**
+     * Find the shortest path between the given nodes.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     *
+     * @return the shortest path, or null if the target can't be reached.
+     */
+    public CompactPath findPath(int origin, int target) {
+        if(!findPath(origin, target, mPath)) {
+            return null;
+        }
+
+        return new CompactPath(mPath.toArray(), mPath.getTotalDistance());
+    }
+
+    /**
+     * Find the shortest path between the given nodes, filling
+     * it into the given buffer without allocating anything.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     * @param path buffer to fill with the path, which is left
+     *             empty if the target can't be reached.
+     *
+     * @return true if a path was found.
+     */
+    public boolean findPath(int origin, int target, PathBuffer path) {
+        path.clear();
+
+        int numNodes = mHierarchy.getNodeCount();
+        mForward.begin(numNodes);
+        mBackward.begin(numNodes);
+        mSettledNodeCount = 0;
+
+        mForward.update(origin, SearchContext.NO_PARENT, 0.0);
+        mForward.getQueue().offer(origin, 0.0);
+        mBackward.update(target, SearchContext.NO_PARENT, 0.0);
+        mBackward.getQueue().offer(target, 0.0);
+
+        double bestDistance = origin == target ? 0.0 : Double.POSITIVE_INFINITY;
+        int meetingNode = origin == target ? origin : -1;
+
+        // Unlike a normal bidirectional search, the searches can't stop
+        // as soon as they meet, because the highest point of the shortest
+        // path may not have been reached yet. Each search continues until
+        // its nearest remaining node is already further than the best path.
+        while(true) {
+            boolean forwardActive = canContinue(mForward, bestDistance);
+            boolean backwardActive = canContinue(mBackward, bestDistance);
+
+            if(!forwardActive && !backwardActive) {
+                break;
+            }
+
+            boolean forward = forwardActive
+                    && (!backwardActive || mForward.getQueue().peekPriority() <= mBackward.getQueue().peekPriority());
+
+            SearchContext current = forward ? mForward : mBackward;
+            SearchContext other = forward ? mBackward : mForward;
+
+            int node = current.getQueue().poll();
+            current.setComplete(node);
+            mSettledNodeCount++;
+
+            double distance = current.getDistance(node);
+
+            if(other.isReached(node) && distance + other.getDistance(node) < bestDistance) {
+                bestDistance = distance + other.getDistance(node);
+                meetingNode = node;
+            }
+
+            int start = mHierarchy.getEdgeStart(node);
+            int end = mHierarchy.getEdgeEnd(node);
+
+            // Don't search onward from a node which the search has
+            // already reached by a shorter path from above, which
+            // can't be on the shortest path ('stall on demand').
+            if(isStalled(current, distance, start, end)) {
+                continue;
+            }
+
+            for(int edge = start; edge < end; edge++) {
+                int edgeTarget = mHierarchy.getEdgeTarget(edge);
+                double edgeTargetDistance = distance + mHierarchy.getEdgeWeight(edge);
+
+                if(edgeTargetDistance < current.getDistance(edgeTarget)) {
+                    current.update(edgeTarget, node, edgeTargetDistance);
+                    current.getQueue().offer(edgeTarget, edgeTargetDistance);
+                }
+            }
+        }
+
+        if(meetingNode < 0) {
+            return false;
+        }
+
+        buildPath(origin, meetingNode, bestDistance, path);
+        return true;
+    }
+
+    /**
+     * How many nodes were settled by both halves of the last query.
+     *
+     * @return number of nodes settled by the last query.
+     */
+    public int getSettledNodeCount() {
+        return mSettledNodeCount;
+    }
+
+    /**
+     * Whether the given distance to a node is beaten by going through one
+     * of its higher ranked neighbours. The edges are undirected, so the
+     * node's upward edges also lead down to it from those neighbours.
+     */
+    private boolean isStalled(SearchContext context, double distance, int start, int end) {
+        for(int edge = start; edge < end; edge++) {
+            if(context.getDistance(mHierarchy.getEdgeTarget(edge)) + mHierarchy.getEdgeWeight(edge) < distance) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    private boolean canContinue(SearchContext context, double bestDistance) {
+        return !context.getQueue().isEmpty() && context.getQueue().peekPriority() < bestDistance;
+    }
+
+    /**
+     * Join the two halves of the path at the meeting node, and
+     * unpack every shortcut into the original nodes it skipped.
+     */
+    private void buildPath(int origin, int meetingNode, double totalDistance, PathBuffer path) {
+        // Gather the hierarchy nodes from the origin up to the meeting node
+        // (collected backward then flipped), then down to the target.
+        int chainLength = 0;
+
+        for(int node = meetingNode; node != SearchContext.NO_PARENT; node = mForward.getParent(node)) {
+            mChainNodes = ensureSize(mChainNodes, chainLength + 1);
+            mChainNodes[chainLength++] = node;
+        }
+
+        reverse(mChainNodes, 0, chainLength);
+
+        for(int node = mBackward.getParent(meetingNode); node != SearchContext.NO_PARENT; node = mBackward.getParent(node)) {
+            mChainNodes = ensureSize(mChainNodes, chainLength + 1);
+            mChainNodes[chainLength++] = node;
+        }
+
+        // Expand each edge of the chain into the original nodes.
+        path.addStep(origin);
+        path.setTotalDistance(totalDistance);
+
+        for(int i = 0; i + 1 < chainLength; i++) {
+            appendUnpacked(mChainNodes[i], mChainNodes[i + 1], path);
+        }
+    }
+
+    /**
+     * Append the original nodes along the edge between the two given
+     * nodes, excluding 'from', recursively expanding shortcuts.
+     *
+     * @param from node the edge starts at.
+     * @param to node the edge ends at.
+     * @param path to append the nodes to.
+     */
+    private void appendUnpacked(int from, int to, PathBuffer path) {
+        // Explicit stack of (from, to) pairs still to be expanded,
+        // avoiding deep recursion on long chains of shortcuts.
+        int stackSize = 0;
+        mUnpackStack = ensureSize(mUnpackStack, 2);
+        mUnpackStack[stackSize++] = from;
+        mUnpackStack[stackSize++] = to;
+
+        while(stackSize > 0) {
+            int b = mUnpackStack[--stackSize];
+            int a = mUnpackStack[--stackSize];
+            int middle = mHierarchy.getEdgeMiddle(mHierarchy.findEdge(a, b));
+
+            if(middle == ContractionHierarchy.NO_MIDDLE) {
+                path.addStep(b);
+                continue;
+            }
+
+            // Push (middle, b) first so (a, middle) is expanded first.
+            mUnpackStack = ensureSize(mUnpackStack, stackSize + 4);
+            mUnpackStack[stackSize++] = middle;
+            mUnpackStack[stackSize++] = b;
+            mUnpackStack[stackSize++] = a;
+            mUnpackStack[stackSize++] = middle;
+        }
+    }
+
+    private static int[] ensureSize(int[] array, int size) {
+        return size <= array.length ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+    }
+
+    private static void reverse(int[] array, int start, int end) {
+        for(int i = start, j = end - 1; i < j; i++, j--) {
+            int swap = array[i];
+            array[i] = array[j];
+            array[j] = swap;
+        }
+    }
+}
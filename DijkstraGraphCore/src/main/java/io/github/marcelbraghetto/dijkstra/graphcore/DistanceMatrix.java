@@ -0,0 +1,250 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Square matrix holding the shortest distance between every
+ * pair of nodes in a graph, indexed by node index, and
+ * optionally the next node to step to along each path.
+ *
+ * The values are stored row by row in primitive buffers, which
+ * can either live on the heap or be memory mapped from a file
+ * so very large matrices don't need to fit in the heap and can
+ * be opened again later without being recalculated.
+ *
+ * A single buffer can't hold more than 2GB, so the rows are split
+ * into chunks of whole rows, each in its own buffer, which lets
+ * a matrix grow as large as the file (or heap) allows.
+ *
+ * A mapped file starts with a small header (the node count and
+ * whether next hops are included), followed by the distances and
+ * then the next hops if there are any.
+ */
+public class DistanceMatrix {
+    public static final int NO_NEXT_HOP = -1;
+
+    private static final int HEADER_SIZE = 16;
+
+    // Most bytes of distances in each chunk of rows.
+    private static final long MAX_CHUNK_SIZE = 1L << 30;
+
+    private final int mNumNodes;
+    private final int mRowsPerChunk;
+    private final DoubleBuffer[] mDistances;
+    private final IntBuffer[] mNextHops;
+
+    private DistanceMatrix(int numNodes, DoubleBuffer[] distances, IntBuffer[] nextHops) {
+        mNumNodes = numNodes;
+        mRowsPerChunk = getRowsPerChunk(numNodes);
+        mDistances = distances;
+        mNextHops = nextHops;
+    }
+
+    /**
+     * Create a matrix on the heap.
+     *
+     * @param numNodes in the graph.
+     * @param includeNextHops true to also store the next hop for every pair.
+     *
+     * @return new matrix with every distance set to infinity.
+     */
+    public static DistanceMatrix allocate(int numNodes, boolean includeNextHops) {
+        int rowsPerChunk = getRowsPerChunk(numNodes);
+        int numChunks = getChunkCount(numNodes, rowsPerChunk);
+        DoubleBuffer[] distances = new DoubleBuffer[numChunks];
+        IntBuffer[] nextHops = includeNextHops ? new IntBuffer[numChunks] : null;
+
+        for(int chunk = 0; chunk < numChunks; chunk++) {
+            int size = getChunkRowCount(numNodes, rowsPerChunk, chunk) * numNodes;
+            distances[chunk] = DoubleBuffer.wrap(new double[size]);
+
+            if(includeNextHops) {
+                nextHops[chunk] = IntBuffer.wrap(new int[size]);
+            }
+        }
+
+        DistanceMatrix matrix = new DistanceMatrix(numNodes, distances, nextHops);
+        matrix.clear();
+        return matrix;
+    }
+
+    /**
+     * Create a matrix memory mapped from the given file, replacing
+     * anything already in the file.
+     *
+     * @param file to map the matrix into.
+     * @param numNodes in the graph.
+     * @param includeNextHops true to also store the next hop for every pair.
+     *
+     * @return new matrix with every distance set to infinity.
+     *
+     * @throws IOException if the file could not be mapped.
+     */
+    public static DistanceMatrix map(File file, int numNodes, boolean includeNextHops) throws IOException {
+        long size = (long) numNodes * numNodes;
+        long fileSize = HEADER_SIZE + size * 8 + (includeNextHops ? size * 4 : 0);
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+
+        try {
+            randomAccessFile.setLength(fileSize);
+            FileChannel channel = randomAccessFile.getChannel();
+
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+            header.putInt(0, numNodes);
+            header.putInt(4, includeNextHops ? 1 : 0);
+
+            DistanceMatrix matrix = fromChannel(channel, FileChannel.MapMode.READ_WRITE, numNodes, includeNextHops);
+            matrix.clear();
+            return matrix;
+        } finally {
+            // The mappings stay valid after the file is closed.
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Open a matrix previously written with {@link #map(File, int, boolean)}.
+     *
+     * @param file containing the matrix.
+     *
+     * @return the matrix, mapped read only.
+     *
+     * @throws IOException if the file could not be mapped.
+     */
+    public static DistanceMatrix open(File file) throws IOException {
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+
+        try {
+            FileChannel channel = randomAccessFile.getChannel();
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            header.order(ByteOrder.nativeOrder());
+
+            return fromChannel(channel, FileChannel.MapMode.READ_ONLY, header.getInt(0), header.getInt(4) != 0);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    /**
+     * Map each chunk of rows of the distances, and of the next
+     * hops if there are any, from the given file.
+     */
+    private static DistanceMatrix fromChannel(FileChannel channel, FileChannel.MapMode mode, int numNodes, boolean includeNextHops) throws IOException {
+        int rowsPerChunk = getRowsPerChunk(numNodes);
+        int numChunks = getChunkCount(numNodes, rowsPerChunk);
+        long nextHopsStart = HEADER_SIZE + (long) numNodes * numNodes * 8;
+
+        DoubleBuffer[] distances = new DoubleBuffer[numChunks];
+        IntBuffer[] nextHops = includeNextHops ? new IntBuffer[numChunks] : null;
+
+        for(int chunk = 0; chunk < numChunks; chunk++) {
+            long firstCell = (long) chunk * rowsPerChunk * numNodes;
+            long size = (long) getChunkRowCount(numNodes, rowsPerChunk, chunk) * numNodes;
+
+            distances[chunk] = channel.map(mode, HEADER_SIZE + firstCell * 8, size * 8)
+                    .order(ByteOrder.nativeOrder()).asDoubleBuffer();
+
+            if(includeNextHops) {
+                nextHops[chunk] = channel.map(mode, nextHopsStart + firstCell * 4, size * 4)
+                        .order(ByteOrder.nativeOrder()).asIntBuffer();
+            }
+        }
+
+        return new DistanceMatrix(numNodes, distances, nextHops);
+    }
+
+    private static int getRowsPerChunk(int numNodes) {
+        long rowSize = Math.max(1, numNodes) * 8L;
+
+        if(rowSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Too many nodes for a distance matrix: " + numNodes);
+        }
+
+        return (int) (MAX_CHUNK_SIZE / rowSize);
+    }
+
+    private static int getChunkCount(int numNodes, int rowsPerChunk) {
+        return (numNodes + rowsPerChunk - 1) / rowsPerChunk;
+    }
+
+    private static int getChunkRowCount(int numNodes, int rowsPerChunk, int chunk) {
+        return Math.min(rowsPerChunk, numNodes - chunk * rowsPerChunk);
+    }
+
+    public int getNodeCount() {
+        return mNumNodes;
+    }
+
+    public boolean hasNextHops() {
+        return mNextHops != null;
+    }
+
+    /**
+     * The shortest distance from one node to another.
+     *
+     * @param origin node index.
+     * @param target node index.
+     *
+     * @return shortest distance, or infinity if the target can't be reached.
+     */
+    public double getDistance(int origin, int target) {
+        return mDistances[origin / mRowsPerChunk].get(getCell(origin, target));
+    }
+
+    /**
+     * The node to step to first when following the shortest
+     * path from one node to another. Following next hops from
+     * the origin will eventually arrive at the target.
+     *
+     * @param origin node index.
+     * @param target node index.
+     *
+     * @return index of the next node, the origin itself if it is
+     * also the target, or NO_NEXT_HOP if the target can't be reached.
+     */
+    public int getNextHop(int origin, int target) {
+        return mNextHops[origin / mRowsPerChunk].get(getCell(origin, target));
+    }
+
+    void setDistance(int origin, int target, double distance) {
+        mDistances[origin / mRowsPerChunk].put(getCell(origin, target), distance);
+    }
+
+    void setNextHop(int origin, int target, int nextHop) {
+        mNextHops[origin / mRowsPerChunk].put(getCell(origin, target), nextHop);
+    }
+
+    /**
+     * Position of a pair within the chunk holding the origin's row.
+     */
+    private int getCell(int origin, int target) {
+        return (origin % mRowsPerChunk) * mNumNodes + target;
+    }
+
+    private void clear() {
+        for(int chunk = 0; chunk < mDistances.length; chunk++) {
+            DoubleBuffer distances = mDistances[chunk];
+
+            for(int i = 0; i < distances.capacity(); i++) {
+                distances.put(i, Double.POSITIVE_INFINITY);
+            }
+
+            if(mNextHops != null) {
+                IntBuffer nextHops = mNextHops[chunk];
+
+                for(int i = 0; i < nextHops.capacity(); i++) {
+                    nextHops.put(i, NO_NEXT_HOP);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,501 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates synthetic graphs of any size for load testing and
+ * benchmarking the path finding code.
+ *
+ * Every graph is undirected (each connection is an edge in both
+ * directions), its nodes are keyed 'n0', 'n1'... and laid out about
+ * SPACING apart on average, and its edges are weighted by the straight
+ * line distance between their nodes, like the graphs in the apps.
+ *
+ * Only java.util.Random seeded with the given seed is used, and
+ * nothing depends on hash ordering, so the same arguments always
+ * give exactly the same graph.
+ *
+ * Graphs can also be written to a file from the command line:
+ *
+ * GraphGenerator type nodeCount degree seed outputFile
+ *
+ * where type is one of the Type names, and the file is written in
+ * the binary graph format if its name ends in '.bin', otherwise in
+ * the text graph format.
+ */
+public final class GraphGenerator {
+    /**
+     * Average distance between neighbouring nodes.
+     */
+    public static final float SPACING = 10f;
+
+    // How many cones the Delaunay-like graph looks for neighbours
+    // in, and how many grid cells out it looks in each direction.
+    private static final int DELAUNAY_CONES = 6;
+    private static final int DELAUNAY_MAX_RING = 3;
+
+    public enum Type {
+        /**
+         * Square grid with each node nudged off its grid point and joined
+         * to the nodes beside it, plus the diagonal ones if the degree is 8
+         * or more. Like a street map.
+         */
+        GRID,
+
+        /**
+         * Nodes scattered at random, with every pair closer together than
+         * the distance that gives the requested average degree joined up.
+         * Big graphs of this kind may not all be connected.
+         */
+        RANDOM_GEOMETRIC,
+
+        /**
+         * Nodes scattered at random, each joined to its nearest neighbour in
+         * each of six equal angled cones around it. This is a 'Yao graph',
+         * which is much quicker to build than a true Delaunay triangulation
+         * but similarly local and sparse. Its average degree is about 8
+         * whatever degree is asked for (a Delaunay triangulation has 6).
+         */
+        DELAUNAY_LIKE,
+
+        /**
+         * Preferential attachment (Barabasi-Albert) graph, where each new
+         * node joins degree / 2 existing nodes picked in proportion to how
+         * many edges they already have. This gives a few very busy hub
+         * nodes, like a social or airline network. Node positions are
+         * random, so edges can be long.
+         */
+        SCALE_FREE
+    }
+
+    private GraphGenerator() { }
+
+    /**
+     * Generate a graph.
+     *
+     * @param type of graph to generate.
+     * @param nodeCount how many nodes the graph should have (grids are
+     *                  rounded up to the next square number).
+     * @param degree roughly how many edges each node should have.
+     * @param seed for the random numbers.
+     *
+     * @return the new graph.
+     */
+    public static CompactGraph generate(Type type, int nodeCount, int degree, long seed) {
+        CompactGraphBuilder builder = new CompactGraphBuilder(nodeCount, nodeCount * Math.max(degree, 1));
+        generate(builder, type, nodeCount, degree, seed);
+        return builder.build();
+    }
+
+    /**
+     * Generate a graph into the given builder, which should be empty.
+     *
+     * @param builder to add the nodes and edges to.
+     * @param type of graph to generate.
+     * @param nodeCount how many nodes the graph should have (grids are
+     *                  rounded up to the next square number).
+     * @param degree roughly how many edges each node should have.
+     * @param seed for the random numbers.
+     */
+    public static void generate(CompactGraphBuilder builder, Type type, int nodeCount, int degree, long seed) {
+        if(nodeCount <= 0) {
+            throw new IllegalArgumentException("A graph needs at least one node");
+        }
+
+        Random random = new Random(seed);
+
+        switch(type) {
+            case GRID:
+                addGrid(builder, nodeCount, degree, random);
+                break;
+            case RANDOM_GEOMETRIC:
+                addRandomGeometric(builder, nodeCount, degree, random);
+                break;
+            case DELAUNAY_LIKE:
+                addDelaunayLike(builder, nodeCount, random);
+                break;
+            default:
+                addScaleFree(builder, nodeCount, degree, random);
+                break;
+        }
+    }
+
+    private static void addGrid(CompactGraphBuilder builder, int nodeCount, int degree, Random random) {
+        int side = (int) Math.ceil(Math.sqrt(nodeCount));
+
+        for(int row = 0; row < side; row++) {
+            for(int column = 0; column < side; column++) {
+                float x = (column + (random.nextFloat() - 0.5f) * 0.5f) * SPACING;
+                float y = (row + (random.nextFloat() - 0.5f) * 0.5f) * SPACING;
+                builder.addNode("n" + (row * side + column), x, y);
+            }
+        }
+
+        boolean diagonals = degree >= 8;
+
+        for(int row = 0; row < side; row++) {
+            for(int column = 0; column < side; column++) {
+                int node = row * side + column;
+
+                if(column + 1 < side) {
+                    builder.connectNodes(node, node + 1);
+                }
+
+                if(row + 1 < side) {
+                    builder.connectNodes(node, node + side);
+
+                    if(diagonals && column + 1 < side) {
+                        builder.connectNodes(node, node + side + 1);
+                    }
+
+                    if(diagonals && column > 0) {
+                        builder.connectNodes(node, node + side - 1);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addRandomGeometric(CompactGraphBuilder builder, int nodeCount, int degree, Random random) {
+        float[] positionsX = new float[nodeCount];
+        float[] positionsY = new float[nodeCount];
+        float size = addScatteredNodes(builder, positionsX, positionsY, random);
+
+        // With n nodes spread over an area A, a circle of radius r holds
+        // n * pi * r^2 / A other nodes on average, so solve for r.
+        double radius = Math.sqrt(degree * (double) size * size / (Math.PI * nodeCount));
+        PointGrid grid = new PointGrid(positionsX, positionsY, size, (float) radius);
+
+        for(int node = 0; node < nodeCount; node++) {
+            float x = grid.mPositionsX[node];
+            float y = grid.mPositionsY[node];
+            int cellX = grid.getCellX(x);
+            int cellY = grid.getCellY(y);
+
+            for(int neighbourY = cellY - 1; neighbourY <= cellY + 1; neighbourY++) {
+                for(int neighbourX = cellX - 1; neighbourX <= cellX + 1; neighbourX++) {
+                    if(!grid.isCell(neighbourX, neighbourY)) {
+                        continue;
+                    }
+
+                    int cell = neighbourY * grid.mColumns + neighbourX;
+
+                    for(int i = grid.mCellOffsets[cell]; i < grid.mCellOffsets[cell + 1]; i++) {
+                        int other = grid.mCellNodes[i];
+
+                        // Each pair only once.
+                        if(other > node && CompactGraphBuilder.distanceBetween(
+                                x, y, grid.mPositionsX[other], grid.mPositionsY[other]) <= radius) {
+                            builder.connectNodes(node, other);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static void addDelaunayLike(CompactGraphBuilder builder, int nodeCount, Random random) {
+        float[] positionsX = new float[nodeCount];
+        float[] positionsY = new float[nodeCount];
+        float size = addScatteredNodes(builder, positionsX, positionsY, random);
+        PointGrid grid = new PointGrid(positionsX, positionsY, size, SPACING);
+        LongSet connected = new LongSet(nodeCount * DELAUNAY_CONES);
+
+        int[] nearest = new int[DELAUNAY_CONES];
+        double[] nearestDistances = new double[DELAUNAY_CONES];
+
+        for(int node = 0; node < nodeCount; node++) {
+            float x = grid.mPositionsX[node];
+            float y = grid.mPositionsY[node];
+            int cellX = grid.getCellX(x);
+            int cellY = grid.getCellY(y);
+
+            Arrays.fill(nearest, -1);
+            Arrays.fill(nearestDistances, Double.POSITIVE_INFINITY);
+
+            // Search rings of cells outward, until nothing further out
+            // could be nearer than what each cone has already found.
+            for(int ring = 0; ring <= DELAUNAY_MAX_RING; ring++) {
+                for(int neighbourY = cellY - ring; neighbourY <= cellY + ring; neighbourY++) {
+                    for(int neighbourX = cellX - ring; neighbourX <= cellX + ring; neighbourX++) {
+                        boolean onRing = Math.abs(neighbourX - cellX) == ring || Math.abs(neighbourY - cellY) == ring;
+
+                        if(!onRing || !grid.isCell(neighbourX, neighbourY)) {
+                            continue;
+                        }
+
+                        int cell = neighbourY * grid.mColumns + neighbourX;
+
+                        for(int i = grid.mCellOffsets[cell]; i < grid.mCellOffsets[cell + 1]; i++) {
+                            int other = grid.mCellNodes[i];
+
+                            if(other == node) {
+                                continue;
+                            }
+
+                            double deltaX = grid.mPositionsX[other] - x;
+                            double deltaY = grid.mPositionsY[other] - y;
+                            double distance = Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+                            double angle = Math.atan2(deltaY, deltaX) + Math.PI;
+                            int cone = Math.min(DELAUNAY_CONES - 1, (int) (angle / (2.0 * Math.PI) * DELAUNAY_CONES));
+
+                            if(distance < nearestDistances[cone]) {
+                                nearestDistances[cone] = distance;
+                                nearest[cone] = other;
+                            }
+                        }
+                    }
+                }
+
+                double reach = ring * grid.mCellSize;
+                boolean done = true;
+
+                for(int cone = 0; cone < DELAUNAY_CONES; cone++) {
+                    if(nearestDistances[cone] > reach) {
+                        done = false;
+                        break;
+                    }
+                }
+
+                if(done) {
+                    break;
+                }
+            }
+
+            for(int cone = 0; cone < DELAUNAY_CONES; cone++) {
+                int other = nearest[cone];
+
+                // Two nodes can each pick the other, but only join them once.
+                if(other >= 0 && connected.add(Math.min(node, other) * (long) nodeCount + Math.max(node, other))) {
+                    builder.connectNodes(node, other);
+                }
+            }
+        }
+    }
+
+    private static void addScaleFree(CompactGraphBuilder builder, int nodeCount, int degree, Random random) {
+        addScatteredNodes(builder, new float[nodeCount], new float[nodeCount], random);
+
+        int edgesPerNode = Math.max(1, Math.min(degree / 2, nodeCount - 1));
+
+        // Every end of every edge so far, so picking a random entry picks
+        // a node with a chance in proportion to the edges it has.
+        int[] edgeEnds = new int[2 * edgesPerNode * nodeCount + edgesPerNode * edgesPerNode];
+        int numEdgeEnds = 0;
+
+        // Start with a small, fully connected core.
+        int coreSize = Math.min(nodeCount, edgesPerNode + 1);
+
+        for(int a = 0; a < coreSize; a++) {
+            for(int b = a + 1; b < coreSize; b++) {
+                builder.connectNodes(a, b);
+                edgeEnds[numEdgeEnds++] = a;
+                edgeEnds[numEdgeEnds++] = b;
+            }
+        }
+
+        int[] picked = new int[edgesPerNode];
+
+        for(int node = coreSize; node < nodeCount; node++) {
+            int numPicked = 0;
+
+            while(numPicked < edgesPerNode) {
+                int candidate = edgeEnds[random.nextInt(numEdgeEnds)];
+                boolean alreadyPicked = false;
+
+                for(int i = 0; i < numPicked; i++) {
+                    if(picked[i] == candidate) {
+                        alreadyPicked = true;
+                        break;
+                    }
+                }
+
+                if(!alreadyPicked) {
+                    picked[numPicked++] = candidate;
+                }
+            }
+
+            for(int i = 0; i < numPicked; i++) {
+                builder.connectNodes(node, picked[i]);
+                edgeEnds[numEdgeEnds++] = node;
+                edgeEnds[numEdgeEnds++] = picked[i];
+            }
+        }
+    }
+
+    /**
+     * Add one node for each entry of the position arrays, at random
+     * positions in a square sized so the nodes are about SPACING apart.
+     *
+     * @return width and height of the square.
+     */
+    private static float addScatteredNodes(CompactGraphBuilder builder, float[] positionsX, float[] positionsY, Random random) {
+        int nodeCount = positionsX.length;
+        float size = (float) Math.sqrt(nodeCount) * SPACING;
+
+        for(int node = 0; node < nodeCount; node++) {
+            positionsX[node] = random.nextFloat() * size;
+            positionsY[node] = random.nextFloat() * size;
+            builder.addNode("n" + node, positionsX[node], positionsY[node]);
+        }
+
+        return size;
+    }
+
+    /**
+     * Write a generated graph into a file, see the class comment.
+     *
+     * @param args type, node count, degree, seed and output file.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 5) {
+            System.err.println("Usage: GraphGenerator " + Arrays.toString(Type.values())
+                    + " nodeCount degree seed outputFile");
+            System.exit(1);
+        }
+
+        Type type = Type.valueOf(args[0]);
+        int nodeCount = Integer.parseInt(args[1]);
+        int degree = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+        File file = new File(args[4]);
+
+        CompactGraph graph = generate(type, nodeCount, degree, seed);
+
+        if(file.getName().endsWith(".bin")) {
+            BinaryGraphFormat.write(graph, file);
+        } else {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+
+            try {
+                TextGraphWriter.write(graph, writer);
+            } finally {
+                writer.close();
+            }
+        }
+
+        System.out.println("Wrote " + graph.getNodeCount() + " nodes and "
+                + graph.getEdgeCount() + " edges to " + file);
+    }
+
+    /**
+     * Node positions filed into square grid cells, in compressed
+     * sparse row form, to quickly find the nodes near a point.
+     */
+    private static class PointGrid {
+        final float[] mPositionsX;
+        final float[] mPositionsY;
+        final float mCellSize;
+        final int mColumns;
+        final int[] mCellOffsets;
+        final int[] mCellNodes;
+
+        PointGrid(float[] positionsX, float[] positionsY, float size, float cellSize) {
+            int nodeCount = positionsX.length;
+
+            mPositionsX = positionsX;
+            mPositionsY = positionsY;
+
+            // Cap the number of cells, a tiny radius would make far too many.
+            mColumns = Math.max(1, Math.min((int) Math.ceil(size / cellSize), (int) Math.sqrt(nodeCount) * 2 + 1));
+            mCellSize = size / mColumns;
+            mCellOffsets = new int[mColumns * mColumns + 1];
+            mCellNodes = new int[nodeCount];
+
+            int[] cells = new int[nodeCount];
+
+            for(int node = 0; node < nodeCount; node++) {
+                cells[node] = getCellY(mPositionsY[node]) * mColumns + getCellX(mPositionsX[node]);
+                mCellOffsets[cells[node] + 1]++;
+            }
+
+            for(int cell = 0; cell < mColumns * mColumns; cell++) {
+                mCellOffsets[cell + 1] += mCellOffsets[cell];
+            }
+
+            int[] insertPositions = Arrays.copyOf(mCellOffsets, mColumns * mColumns);
+
+            for(int node = 0; node < nodeCount; node++) {
+                mCellNodes[insertPositions[cells[node]]++] = node;
+            }
+        }
+
+        int getCellX(float x) {
+            return Math.max(0, Math.min(mColumns - 1, (int) (x / mCellSize)));
+        }
+
+        int getCellY(float y) {
+            return Math.max(0, Math.min(mColumns - 1, (int) (y / mCellSize)));
+        }
+
+        boolean isCell(int cellX, int cellY) {
+            return cellX >= 0 && cellY >= 0 && cellX < mColumns && cellY < mColumns;
+        }
+    }
+
+    /**
+     * Minimal open addressing hash set of non negative longs.
+     */
+    private static class LongSet {
+        private static final long EMPTY = -1L;
+
+        private long[] mTable;
+        private int mSize;
+
+        LongSet(int expectedSize) {
+            mTable = new long[Integer.highestOneBit(Math.max(expectedSize, 8)) * 4];
+            Arrays.fill(mTable, EMPTY);
+        }
+
+        /**
+         * @return true if the value was added, false if it was already there.
+         */
+        boolean add(long value) {
+            if(mSize * 2 >= mTable.length) {
+                grow();
+            }
+
+            int mask = mTable.length - 1;
+            int slot = hash(value) & mask;
+
+            while(mTable[slot] != EMPTY) {
+                if(mTable[slot] == value) {
+                    return false;
+                }
+
+                slot = (slot + 1) & mask;
+            }
+
+            mTable[slot] = value;
+            mSize++;
+            return true;
+        }
+
+        private void grow() {
+            long[] oldTable = mTable;
+            mTable = new long[oldTable.length * 2];
+            Arrays.fill(mTable, EMPTY);
+            mSize = 0;
+
+            for(long value : oldTable) {
+                if(value != EMPTY) {
+                    add(value);
+                }
+            }
+        }
+
+        private static int hash(long value) {
+            long mixed = value * 0x9E3779B97F4A7C15L;
+            return (int) (mixed ^ (mixed >>> 32));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int indices (typically node indices) ordered
+ * by a double priority, which supports lowering the priority of an
+ * index that is already in the queue ('decrease key').
+ *
+ * Because each index can only be in the queue once, the queue never
+ * holds more entries than there are indices and doesn't fill up with
+ * stale duplicates. All storage is in primitive arrays that are kept
+ * between uses, so adding and polling does not allocate anything
+ * unless the queue needs to grow to fit a larger index.
+ */
+public class IndexedPriorityQueue {
+    private static final int NOT_QUEUED = -1;
+
+    // Heap ordered indices.
+    private int[] mHeap;
+
+    // Priorities, indexed by index (not heap position).
+    private double[] mPriorities;
+
+    // Heap position of each index, or NOT_QUEUED.
+    private int[] mPositions;
+
+    private int mSize;
+
+    public IndexedPriorityQueue(int capacity) {
+        mHeap = new int[capacity];
+        mPriorities = new double[capacity];
+        mPositions = new int[capacity];
+        Arrays.fill(mPositions, NOT_QUEUED);
+    }
+
+    /**
+     * Make sure the queue can hold indices from 0 up to
+     * (but not including) the given capacity.
+     *
+     * @param capacity number of indices the queue must support.
+     */
+    public void ensureCapacity(int capacity) {
+        int oldCapacity = mPositions.length;
+
+        if(capacity <= oldCapacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, oldCapacity * 2);
+        mHeap = Arrays.copyOf(mHeap, newCapacity);
+        mPriorities = Arrays.copyOf(mPriorities, newCapacity);
+        mPositions = Arrays.copyOf(mPositions, newCapacity);
+        Arrays.fill(mPositions, oldCapacity, newCapacity, NOT_QUEUED);
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(int index) {
+        return index < mPositions.length && mPositions[index] != NOT_QUEUED;
+    }
+
+    /**
+     * Add the index with the given priority, or if the index is
+     * already in the queue lower its priority if the given one is
+     * smaller. A larger priority for a queued index is ignored.
+     *
+     * @param index to add or update.
+     * @param priority of the index, smaller values are polled first.
+     *
+     * @return true if the queue changed.
+     */
+    public boolean offer(int index, double priority) {
+        ensureCapacity(index + 1);
+
+        int position = mPositions[index];
+
+        if(position == NOT_QUEUED) {
+            mPriorities[index] = priority;
+            siftUp(mSize++, index);
+            return true;
+        }
+
+        if(priority < mPriorities[index]) {
+            mPriorities[index] = priority;
+            siftUp(position, index);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Add the index with the given priority, or if the index is
+     * already in the queue change its priority to the given one,
+     * whether that is smaller or larger.
+     *
+     * @param index to add or update.
+     * @param priority of the index, smaller values are polled first.
+     */
+    public void update(int index, double priority) {
+        ensureCapacity(index + 1);
+
+        int position = mPositions[index];
+
+        if(position == NOT_QUEUED) {
+            mPriorities[index] = priority;
+            siftUp(mSize++, index);
+            return;
+        }
+
+        double oldPriority = mPriorities[index];
+        mPriorities[index] = priority;
+
+        if(priority < oldPriority) {
+            siftUp(position, index);
+        } else {
+            siftDown(position, index);
+        }
+    }
+
+    /**
+     * The smallest priority in the queue, the queue
+     * must not be empty.
+     *
+     * @return priority of the next index to be polled.
+     */
+    public double peekPriority() {
+        return mPriorities[mHeap[0]];
+    }
+
+    /**
+     * The priority the given index was last queued with.
+     *
+     * @param index to get the priority for.
+     *
+     * @return priority of the index.
+     */
+    public double getPriority(int index) {
+        return mPriorities[index];
+    }
+
+    /**
+     * Remove and return the index with the smallest
+     * priority, the queue must not be empty.
+     *
+     * @return index with the smallest priority.
+     */
+    public int poll() {
+        int result = mHeap[0];
+        mPositions[result] = NOT_QUEUED;
+
+        int last = mHeap[--mSize];
+
+        if(mSize > 0) {
+            siftDown(0, last);
+        }
+
+        return result;
+    }
+
+    /**
+     * Remove all the indices from the queue. This only
+     * touches the entries that are currently queued.
+     */
+    public void clear() {
+        for(int i = 0; i < mSize; i++) {
+            mPositions[mHeap[i]] = NOT_QUEUED;
+        }
+
+        mSize = 0;
+    }
+
+    private void siftUp(int position, int index) {
+        double priority = mPriorities[index];
+
+        while(position > 0) {
+            int parentPosition = (position - 1) >>> 1;
+            int parent = mHeap[parentPosition];
+
+            if(mPriorities[parent] <= priority) {
+                break;
+            }
+
+            mHeap[position] = parent;
+            mPositions[parent] = position;
+            position = parentPosition;
+        }
+
+        mHeap[position] = index;
+        mPositions[index] = position;
+    }
+
+    private void siftDown(int position, int index) {
+        double priority = mPriorities[index];
+        int half = mSize >>> 1;
+
+        while(position < half) {
+            int childPosition = 2 * position + 1;
+            int child = mHeap[childPosition];
+            int rightPosition = childPosition + 1;
+
+            if(rightPosition < mSize && mPriorities[mHeap[rightPosition]] < mPriorities[child]) {
+                childPosition = rightPosition;
+                child = mHeap[childPosition];
+            }
+
+            if(priority <= mPriorities[child]) {
+                break;
+            }
+
+            mHeap[position] = child;
+            mPositions[child] = position;
+            position = childPosition;
+        }
+
+        mHeap[position] = index;
+        mPositions[index] = position;
+    }
+}
@@ -0,0 +1,418 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Finds the k shortest loopless paths between two nodes of a
+ * {@link CompactGraph} using Yen's algorithm, to offer alternative
+ * routes when everyone taking the single best one would be a problem.
+ *
+ * Yen's algorithm takes each path found so far, and for each node along
+ * it (the 'spur' node) searches for the best way on to the target which
+ * leaves the path there, without revisiting the nodes before the spur
+ * node (the 'root') or leaving the way an earlier path with the same
+ * root did. Each of these is a candidate, and the best candidate becomes
+ * the next path.
+ *
+ * That is a lot of spur searches, so they are made cheap:
+ *
+ * - A full search backward from the target first finds the shortest
+ *   distance from every node to it, and the next step to take.
+ * - If a spur node's own shortest way to the target doesn't touch the
+ *   root or a banned step, it is the answer and no search is needed.
+ * - Otherwise the spur search is an A* search using those distances,
+ *   which are exact whenever nothing is in the way, so it heads almost
+ *   straight for the target around whatever was banned.
+ * - The backward search is kept for the next call with the same target,
+ *   and the spur search arrays are reused from one search to the next.
+ *
+ * An instance is tied to one graph, which must not change while it is
+ * in use, and must only be used by one thread at a time.
+ */
+public class KShortestPaths {
+    private static final int NO_NEXT_HOP = -1;
+
+    private final CompactGraph mGraph;
+
+    // The graph's edges grouped by their target node rather than their
+    // origin, for searching backward from the target (reverse CSR).
+    private final int[] mReverseEdgeStarts;
+    private final int[] mReverseEdgeOrigins;
+    private final double[] mReverseEdgeWeights;
+
+    // Shortest distance from every node to the target of the
+    // backward search, and the next node to step to from each.
+    private final double[] mDistancesToTarget;
+    private final int[] mNextHops;
+    private final IndexedPriorityQueue mBackwardQueue;
+    private int mTreeTarget = NO_NEXT_HOP;
+
+    private final SearchContext mSpurSearch = new SearchContext();
+    private double mSpurDistance;
+    private int mSearchCount;
+
+    // Generation stamps for the nodes that can't be visited, and the
+    // nodes that can't be stepped to from the spur node, in a spur search.
+    private final int[] mBannedNodes;
+    private final int[] mBannedNextNodes;
+    private int mBanGeneration;
+
+    public KShortestPaths(CompactGraph graph) {
+        mGraph = graph;
+
+        int numNodes = graph.getNodeCount();
+        int numEdges = graph.getEdgeCount();
+
+        mReverseEdgeStarts = new int[numNodes + 1];
+        mReverseEdgeOrigins = new int[numEdges];
+        mReverseEdgeWeights = new double[numEdges];
+
+        for(int edge = 0; edge < numEdges; edge++) {
+            mReverseEdgeStarts[graph.getEdgeTarget(edge) + 1]++;
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            mReverseEdgeStarts[node + 1] += mReverseEdgeStarts[node];
+        }
+
+        int[] insertPositions = Arrays.copyOf(mReverseEdgeStarts, numNodes);
+
+        for(int node = 0; node < numNodes; node++) {
+            for(int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+                int position = insertPositions[graph.getEdgeTarget(edge)]++;
+                mReverseEdgeOrigins[position] = node;
+                mReverseEdgeWeights[position] = graph.getEdgeWeight(edge);
+            }
+        }
+
+        mDistancesToTarget = new double[numNodes];
+        mNextHops = new int[numNodes];
+        mBackwardQueue = new IndexedPriorityQueue(numNodes);
+        mBannedNodes = new int[numNodes];
+        mBannedNextNodes = new int[numNodes];
+    }
+
+    /**
+     * Find up to the given number of shortest loopless paths between
+     * the given nodes, shortest first.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find paths to.
+     * @param maxPaths the most paths to find.
+     *
+     * @return the paths found, which is fewer than asked for if there
+     * aren't that many different paths, and empty if there are none.
+     */
+    public List<CompactPath> findPaths(int origin, int target, int maxPaths) {
+        List<CompactPath> paths = new ArrayList<>();
+        mSearchCount = 0;
+
+        if(maxPaths <= 0) {
+            return paths;
+        }
+
+        searchBackward(target);
+
+        if(mDistancesToTarget[origin] == Double.POSITIVE_INFINITY) {
+            return paths;
+        }
+
+        List<int[]> foundPaths = new ArrayList<>();
+        int[] shortestPath = followNextHops(origin, new int[0], 0);
+        foundPaths.add(shortestPath);
+        paths.add(new CompactPath(shortestPath, mDistancesToTarget[origin]));
+
+        // The same candidate can come from more than one spur node,
+        // so remember every path seen to only queue each once.
+        Set<Candidate> seenPaths = new HashSet<>();
+        seenPaths.add(new Candidate(shortestPath, mDistancesToTarget[origin], 0L));
+
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(16, new Comparator<Candidate>() {
+            @Override
+            public int compare(Candidate a, Candidate b) {
+                int result = Double.compare(a.mDistance, b.mDistance);
+                return result != 0 ? result : (a.mSequence < b.mSequence ? -1 : (a.mSequence == b.mSequence ? 0 : 1));
+            }
+        });
+
+        long sequence = 0L;
+        int[] previousPath = shortestPath;
+
+        while(paths.size() < maxPaths) {
+            double rootDistance = 0.0;
+
+            for(int spurStep = 0; spurStep < previousPath.length - 1; spurStep++) {
+                int spurNode = previousPath[spurStep];
+
+                beginBans();
+
+                for(int step = 0; step < spurStep; step++) {
+                    mBannedNodes[previousPath[step]] = mBanGeneration;
+                }
+
+                for(int[] foundPath : foundPaths) {
+                    if(foundPath.length > spurStep + 1 && hasSameRoot(foundPath, previousPath, spurStep)) {
+                        mBannedNextNodes[foundPath[spurStep + 1]] = mBanGeneration;
+                    }
+                }
+
+                int[] candidatePath = findSpurPath(spurNode, target, previousPath, spurStep);
+
+                if(candidatePath != null) {
+                    Candidate candidate = new Candidate(candidatePath, rootDistance + mSpurDistance, sequence++);
+
+                    if(seenPaths.add(candidate)) {
+                        candidates.add(candidate);
+                    }
+                }
+
+                rootDistance += getStepDistance(spurNode, previousPath[spurStep + 1]);
+            }
+
+            Candidate best = candidates.poll();
+
+            if(best == null) {
+                break;
+            }
+
+            foundPaths.add(best.mNodes);
+            paths.add(new CompactPath(best.mNodes, best.mDistance));
+            previousPath = best.mNodes;
+        }
+
+        return paths;
+    }
+
+    /**
+     * How many spur searches the last call to findPaths needed,
+     * not counting spur paths that were found without a search.
+     *
+     * @return number of spur searches.
+     */
+    public int getSearchCount() {
+        return mSearchCount;
+    }
+
+    /**
+     * Find the shortest distance from every node to the target, unless
+     * that was already done for the same target.
+     */
+    private void searchBackward(int target) {
+        if(mTreeTarget == target) {
+            return;
+        }
+
+        Arrays.fill(mDistancesToTarget, Double.POSITIVE_INFINITY);
+        Arrays.fill(mNextHops, NO_NEXT_HOP);
+        mBackwardQueue.clear();
+
+        mDistancesToTarget[target] = 0.0;
+        mBackwardQueue.offer(target, 0.0);
+
+        while(!mBackwardQueue.isEmpty()) {
+            int currentNode = mBackwardQueue.poll();
+            double currentDistance = mDistancesToTarget[currentNode];
+
+            for(int edge = mReverseEdgeStarts[currentNode]; edge < mReverseEdgeStarts[currentNode + 1]; edge++) {
+                int edgeOrigin = mReverseEdgeOrigins[edge];
+                double distance = currentDistance + mReverseEdgeWeights[edge];
+
+                if(distance < mDistancesToTarget[edgeOrigin]) {
+                    mDistancesToTarget[edgeOrigin] = distance;
+                    mNextHops[edgeOrigin] = currentNode;
+                    mBackwardQueue.offer(edgeOrigin, distance);
+                }
+            }
+        }
+
+        mTreeTarget = target;
+    }
+
+    /**
+     * Find the shortest way from the spur node to the target which
+     * avoids the banned nodes and steps, and join it onto the root.
+     *
+     * @return the whole candidate path, or null if there is no way
+     * around the bans. The length of the spur part is left in
+     * mSpurDistance.
+     */
+    private int[] findSpurPath(int spurNode, int target, int[] rootPath, int spurStep) {
+        if(isNextHopPathClear(spurNode)) {
+            mSpurDistance = mDistancesToTarget[spurNode];
+            return followNextHops(spurNode, rootPath, spurStep);
+        }
+
+        mSearchCount++;
+        mSpurSearch.begin(mGraph.getNodeCount());
+        IndexedPriorityQueue queue = mSpurSearch.getQueue();
+
+        mSpurSearch.update(spurNode, SearchContext.NO_PARENT, 0.0);
+        queue.offer(spurNode, mDistancesToTarget[spurNode]);
+
+        while(!queue.isEmpty()) {
+            int currentNode = queue.poll();
+            mSpurSearch.setComplete(currentNode);
+
+            if(currentNode == target) {
+                break;
+            }
+
+            double currentDistance = mSpurSearch.getDistance(currentNode);
+            int edgeEnd = mGraph.getEdgeEnd(currentNode);
+
+            for(int edge = mGraph.getEdgeStart(currentNode); edge < edgeEnd; edge++) {
+                int edgeTarget = mGraph.getEdgeTarget(edge);
+
+                if(mBannedNodes[edgeTarget] == mBanGeneration
+                        || (currentNode == spurNode && mBannedNextNodes[edgeTarget] == mBanGeneration)
+                        || mDistancesToTarget[edgeTarget] == Double.POSITIVE_INFINITY
+                        || mSpurSearch.isComplete(edgeTarget)) {
+                    continue;
+                }
+
+                double distance = currentDistance + mGraph.getEdgeWeight(edge);
+
+                if(distance < mSpurSearch.getDistance(edgeTarget)) {
+                    mSpurSearch.update(edgeTarget, currentNode, distance);
+                    queue.offer(edgeTarget, distance + mDistancesToTarget[edgeTarget]);
+                }
+            }
+        }
+
+        if(!mSpurSearch.isComplete(target)) {
+            return null;
+        }
+
+        mSpurDistance = mSpurSearch.getDistance(target);
+
+        int spurLength = 0;
+
+        for(int step = target; step != SearchContext.NO_PARENT; step = mSpurSearch.getParent(step)) {
+            spurLength++;
+        }
+
+        int[] path = Arrays.copyOf(rootPath, spurStep + spurLength);
+        int position = path.length - 1;
+
+        for(int step = target; step != SearchContext.NO_PARENT; step = mSpurSearch.getParent(step)) {
+            path[position--] = step;
+        }
+
+        return path;
+    }
+
+    /**
+     * Whether the shortest way from the spur node to the target
+     * avoids every banned node and step.
+     */
+    private boolean isNextHopPathClear(int spurNode) {
+        int step = mNextHops[spurNode];
+
+        if(step == NO_NEXT_HOP || mBannedNextNodes[step] == mBanGeneration) {
+            return false;
+        }
+
+        for(; step != NO_NEXT_HOP; step = mNextHops[step]) {
+            if(mBannedNodes[step] == mBanGeneration) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Join the shortest way from the given node to the target
+     * onto the first nodes of the given root path.
+     */
+    private int[] followNextHops(int node, int[] rootPath, int rootLength) {
+        int length = 0;
+
+        for(int step = node; step != NO_NEXT_HOP; step = mNextHops[step]) {
+            length++;
+        }
+
+        int[] path = Arrays.copyOf(rootPath, rootLength + length);
+        int position = rootLength;
+
+        for(int step = node; step != NO_NEXT_HOP; step = mNextHops[step]) {
+            path[position++] = step;
+        }
+
+        return path;
+    }
+
+    /**
+     * Length of the shortest edge from one node to another.
+     */
+    private double getStepDistance(int origin, int target) {
+        double distance = Double.POSITIVE_INFINITY;
+
+        for(int edge = mGraph.getEdgeStart(origin); edge < mGraph.getEdgeEnd(origin); edge++) {
+            if(mGraph.getEdgeTarget(edge) == target) {
+                distance = Math.min(distance, mGraph.getEdgeWeight(edge));
+            }
+        }
+
+        return distance;
+    }
+
+    /**
+     * Whether the paths visit the same nodes up to and including the given step.
+     */
+    private static boolean hasSameRoot(int[] a, int[] b, int lastStep) {
+        for(int step = lastStep; step >= 0; step--) {
+            if(a[step] != b[step]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Start a new set of bans, which lifts all the previous ones.
+     */
+    private void beginBans() {
+        // If we run out of generations, clear the stamps
+        // so none of them can match a recycled generation.
+        if(mBanGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mBannedNodes, 0);
+            Arrays.fill(mBannedNextNodes, 0);
+            mBanGeneration = 0;
+        }
+
+        mBanGeneration++;
+    }
+
+    /**
+     * A path waiting to be chosen, equal to any other with the same nodes.
+     */
+    private static class Candidate {
+        final int[] mNodes;
+        final double mDistance;
+        final long mSequence;
+
+        Candidate(int[] nodes, double distance, long sequence) {
+            mNodes = nodes;
+            mDistance = distance;
+            mSequence = sequence;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Candidate && Arrays.equals(mNodes, ((Candidate) other).mNodes);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(mNodes);
+        }
+    }
+}
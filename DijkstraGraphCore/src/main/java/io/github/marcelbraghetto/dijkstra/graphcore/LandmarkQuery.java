@@ -0,0 +1,188 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+/**
+ * Finds shortest paths with A* guided by the lower bounds of a set of
+ * {@link Landmarks} (ALT), which works for any non negative weights
+ * rather than only those that follow the geometry of the graph.
+ *
+ * Nodes are queued by their distance from the origin plus the lower
+ * bound on their distance to the target, so the search heads toward
+ * the target and settles far fewer nodes than Dijkstra. Nodes which
+ * the landmarks show can't reach the target are never queued at all.
+ *
+ * The bounds are rounded down slightly but are not guaranteed to be
+ * perfectly consistent, so a node which has already been polled is
+ * queued again if a shorter way to it turns up. The search stops
+ * when the target is polled, and the path is always a shortest one.
+ *
+ * An instance reuses its search state between queries, so should
+ * only be used by one thread at a time.
+ */
+public class LandmarkQuery {
+    private final CompactGraph mGraph;
+    private final Landmarks mLandmarks;
+    private final SearchContext mContext = new SearchContext();
+    private final PathBuffer mPath = new PathBuffer();
+
+    // Work counters for the most recent query.
+    private int mSettledNodeCount;
+    private int mEdgesRelaxed;
+    private int mQueuePushes;
+    private int mQueueUpdates;
+    private int mPeakQueueSize;
+
+    /**
+     * @param graph to search.
+     * @param landmarks built for the graph.
+     */
+    public LandmarkQuery(CompactGraph graph, Landmarks landmarks) {
+        if(landmarks.getNodeCount() != graph.getNodeCount()) {
+            throw new IllegalArgumentException("Landmarks are for " + landmarks.getNodeCount()
+                    + " nodes but the graph has " + graph.getNodeCount());
+        }
+
+        mGraph = graph;
+        mLandmarks = landmarks;
+    }
+
+    /**
+     * Find the shortest path between the given nodes.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     *
+     * @return the shortest path, or null if the target can't be reached.
+     */
+    public CompactPath findPath(int origin, int target) {
+        if(!findPath(origin, target, mPath)) {
+            return null;
+        }
+
+        return new CompactPath(mPath.toArray(), mPath.getTotalDistance());
+    }
+
+    /**
+     * Find the shortest path between the given nodes, filling
+     * it into the given buffer without allocating anything.
+     *
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     * @param path buffer to fill with the path, which is left
+     *             empty if the target can't be reached.
+     *
+     * @return true if a path was found.
+     */
+    public boolean findPath(int origin, int target, PathBuffer path) {
+        path.clear();
+
+        mContext.begin(mGraph.getNodeCount());
+        IndexedPriorityQueue queue = mContext.getQueue();
+
+        mSettledNodeCount = 0;
+        mEdgesRelaxed = 0;
+        mQueuePushes = 0;
+        mQueueUpdates = 0;
+        mPeakQueueSize = 0;
+
+        double originBound = mLandmarks.getLowerBound(origin, target);
+
+        if(originBound == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        mContext.update(origin, SearchContext.NO_PARENT, 0.0);
+        queue.offer(origin, originBound);
+        mQueuePushes++;
+        mPeakQueueSize = 1;
+
+        boolean found = false;
+
+        while(!queue.isEmpty()) {
+            int currentNode = queue.poll();
+            mSettledNodeCount++;
+
+            if(currentNode == target) {
+                found = true;
+                break;
+            }
+
+            double currentDistance = mContext.getDistance(currentNode);
+            int edgeEnd = mGraph.getEdgeEnd(currentNode);
+            mEdgesRelaxed += edgeEnd - mGraph.getEdgeStart(currentNode);
+
+            for(int edge = mGraph.getEdgeStart(currentNode); edge < edgeEnd; edge++) {
+                int edgeTarget = mGraph.getEdgeTarget(edge);
+                double distance = currentDistance + mGraph.getEdgeWeight(edge);
+
+                if(distance >= mContext.getDistance(edgeTarget)) {
+                    continue;
+                }
+
+                double bound = mLandmarks.getLowerBound(edgeTarget, target);
+
+                // The target can't be reached through this node.
+                if(bound == Double.POSITIVE_INFINITY) {
+                    continue;
+                }
+
+                if(queue.contains(edgeTarget)) {
+                    mQueueUpdates++;
+                } else {
+                    mQueuePushes++;
+                }
+
+                mContext.update(edgeTarget, currentNode, distance);
+                queue.offer(edgeTarget, distance + bound);
+            }
+
+            mPeakQueueSize = Math.max(mPeakQueueSize, queue.size());
+        }
+
+        if(!found) {
+            return false;
+        }
+
+        // Walk back from the target to the origin, then flip the steps over.
+        for(int step = target; step != SearchContext.NO_PARENT; step = mContext.getParent(step)) {
+            path.addStep(step);
+        }
+
+        path.reverse();
+        path.setTotalDistance(mContext.getDistance(target));
+        return true;
+    }
+
+    public CompactGraph getGraph() {
+        return mGraph;
+    }
+
+    public Landmarks getLandmarks() {
+        return mLandmarks;
+    }
+
+    /**
+     * How many nodes were polled from the queue by the most recent
+     * query, counting a node each time it is polled.
+     *
+     * @return number of nodes settled by the last query.
+     */
+    public int getSettledNodeCount() {
+        return mSettledNodeCount;
+    }
+
+    public int getEdgesRelaxed() {
+        return mEdgesRelaxed;
+    }
+
+    public int getQueuePushes() {
+        return mQueuePushes;
+    }
+
+    public int getQueueUpdates() {
+        return mQueueUpdates;
+    }
+
+    public int getPeakQueueSize() {
+        return mPeakQueueSize;
+    }
+}
@@ -0,0 +1,140 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+/**
+ * The shortest distances from a handful of landmark nodes to every
+ * node of a graph, and from every node back to the landmarks, built
+ * with a {@link LandmarksBuilder} and searched with a
+ * {@link LandmarkQuery} (ALT: A*, landmarks and the triangle inequality).
+ *
+ * For any landmark L, nodes u and v, the triangle inequality gives
+ * d(u, v) >= d(L, v) - d(L, u) and d(u, v) >= d(u, L) - d(v, L). The
+ * largest of these over all the landmarks is a lower bound on the
+ * distance from u to v which, unlike a straight line distance, holds
+ * for any non negative edge weights, directed or not.
+ *
+ * The distances are kept in two primitive arrays, node major, so the
+ * distances of one node to and from all the landmarks sit side by side.
+ */
+public class Landmarks {
+    // Lower bounds are shrunk by this much so rounding in the stored
+    // distances can't make them overestimate a real distance.
+    private static final double LOWER_BOUND_SCALE = 1.0 - 1e-9;
+
+    // Node indices of the landmarks.
+    private final int[] mLandmarks;
+
+    // Distance from landmark i to node n, at [n * landmarks + i].
+    private final double[] mDistancesFrom;
+
+    // Distance from node n to landmark i, at [n * landmarks + i].
+    private final double[] mDistancesTo;
+
+    Landmarks(int[] landmarks, double[] distancesFrom, double[] distancesTo) {
+        mLandmarks = landmarks;
+        mDistancesFrom = distancesFrom;
+        mDistancesTo = distancesTo;
+    }
+
+    public int getLandmarkCount() {
+        return mLandmarks.length;
+    }
+
+    public int getNodeCount() {
+        return mLandmarks.length == 0 ? 0 : mDistancesFrom.length / mLandmarks.length;
+    }
+
+    /**
+     * @param landmark position of the landmark, between 0 and the landmark count (exclusive).
+     *
+     * @return node index of the landmark.
+     */
+    public int getLandmark(int landmark) {
+        return mLandmarks[landmark];
+    }
+
+    /**
+     * @param landmark position of the landmark, between 0 and the landmark count (exclusive).
+     * @param nodeIndex of the node to measure to.
+     *
+     * @return shortest distance from the landmark to the node, or infinity if unreachable.
+     */
+    public double getDistanceFrom(int landmark, int nodeIndex) {
+        return mDistancesFrom[nodeIndex * mLandmarks.length + landmark];
+    }
+
+    /**
+     * @param landmark position of the landmark, between 0 and the landmark count (exclusive).
+     * @param nodeIndex of the node to measure from.
+     *
+     * @return shortest distance from the node to the landmark, or infinity if unreachable.
+     */
+    public double getDistanceTo(int landmark, int nodeIndex) {
+        return mDistancesTo[nodeIndex * mLandmarks.length + landmark];
+    }
+
+    /**
+     * A distance the shortest path between the given nodes can't
+     * be shorter than. If a landmark shows the target can't be
+     * reached from the origin at all, this is infinity.
+     *
+     * @param from index of the origin node.
+     * @param to index of the target node.
+     *
+     * @return lower bound on the distance from the origin to the target.
+     */
+    public double getLowerBound(int from, int to) {
+        return getLowerBound(mDistancesFrom, mDistancesTo, mLandmarks.length, mLandmarks.length, from, to);
+    }
+
+    double[] getDistancesFrom() {
+        return mDistancesFrom;
+    }
+
+    double[] getDistancesTo() {
+        return mDistancesTo;
+    }
+
+    int[] getLandmarks() {
+        return mLandmarks;
+    }
+
+    /**
+     * The lower bound from the given distance arrays, using only the first
+     * numLandmarks of them, so landmarks can be chosen with the help of
+     * the ones chosen before them.
+     */
+    static double getLowerBound(double[] distancesFrom, double[] distancesTo, int stride, int numLandmarks, int from, int to) {
+        double bound = 0.0;
+        int fromOffset = from * stride;
+        int toOffset = to * stride;
+
+        for(int i = 0; i < numLandmarks; i++) {
+            double landmarkToFrom = distancesFrom[fromOffset + i];
+            double landmarkToTo = distancesFrom[toOffset + i];
+
+            // If the landmark reaches the origin but not the target,
+            // then nothing the origin reaches can be the target.
+            if(landmarkToTo == Double.POSITIVE_INFINITY) {
+                if(landmarkToFrom != Double.POSITIVE_INFINITY) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            } else if(landmarkToFrom != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, landmarkToTo - landmarkToFrom);
+            }
+
+            double fromToLandmark = distancesTo[fromOffset + i];
+            double toToLandmark = distancesTo[toOffset + i];
+
+            // Likewise if the target reaches the landmark but the origin doesn't.
+            if(fromToLandmark == Double.POSITIVE_INFINITY) {
+                if(toToLandmark != Double.POSITIVE_INFINITY) {
+                    return Double.POSITIVE_INFINITY;
+                }
+            } else if(toToLandmark != Double.POSITIVE_INFINITY) {
+                bound = Math.max(bound, fromToLandmark - toToLandmark);
+            }
+        }
+
+        return bound * LOWER_BOUND_SCALE;
+    }
+}
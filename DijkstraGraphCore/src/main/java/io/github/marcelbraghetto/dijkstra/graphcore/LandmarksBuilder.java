@@ -0,0 +1,352 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Chooses landmarks for a compact graph and measures the shortest
+ * distances between them and every node, producing {@link Landmarks}.
+ *
+ * Landmarks give the best lower bounds for queries heading away from
+ * them, so they should sit around the edges of the graph and well
+ * apart from each other. Two ways of choosing them are offered:
+ *
+ * FARTHEST picks each landmark as the node furthest from all of the
+ * landmarks picked so far, starting from the node furthest from a
+ * random node. Nodes that none of the landmarks reach count as the
+ * furthest of all, so every part of a disconnected graph gets one.
+ *
+ * AVOID grows a shortest path tree from a random node and gives every
+ * node a weight of how badly the landmarks so far underestimate its
+ * distance from the root. It then walks down from the root into the
+ * heaviest subtree without a landmark until it reaches a leaf, which
+ * becomes the next landmark. This places landmarks where the existing
+ * ones help least, and usually gives tighter bounds than FARTHEST.
+ *
+ * Each landmark costs two full Dijkstra searches (three for AVOID),
+ * so this is expected to run offline or off the main thread, with
+ * the results saved alongside the graph by {@link BinaryLandmarkFormat}.
+ */
+public class LandmarksBuilder {
+    public static final int DEFAULT_LANDMARK_COUNT = 8;
+
+    /**
+     * How landmarks are chosen, see {@link LandmarksBuilder}.
+     */
+    public enum Strategy {
+        FARTHEST,
+        AVOID
+    }
+
+    private static final int NO_PARENT = -1;
+
+    private final Strategy mStrategy;
+    private final int mLandmarkCount;
+    private final long mSeed;
+
+    // The graph's edges grouped by their target node rather than their
+    // origin, for measuring the distances back to each landmark.
+    private int[] mReverseEdgeStarts;
+    private int[] mReverseEdgeOrigins;
+    private double[] mReverseEdgeWeights;
+
+    // Scratch space for each full search.
+    private final IndexedPriorityQueue mQueue = new IndexedPriorityQueue(16);
+    private double[] mDistances = new double[0];
+    private int[] mParents = new int[0];
+    private int[] mSettleOrder = new int[0];
+    private int mSettledCount;
+
+    public LandmarksBuilder() {
+        this(Strategy.AVOID, DEFAULT_LANDMARK_COUNT, 0L);
+    }
+
+    /**
+     * @param strategy for choosing the landmarks.
+     * @param landmarkCount how many landmarks to choose, more landmarks
+     *                      give tighter bounds but take more memory and
+     *                      more time to check in each query.
+     * @param seed for the random choices, the same seed always gives
+     *             the same landmarks for the same graph.
+     */
+    public LandmarksBuilder(Strategy strategy, int landmarkCount, long seed) {
+        mStrategy = strategy;
+        mLandmarkCount = Math.max(1, landmarkCount);
+        mSeed = seed;
+    }
+
+    /**
+     * Choose the landmarks for the given graph and measure their
+     * distances. Edge weights must not be negative.
+     *
+     * @param graph to preprocess, which must have at least one node.
+     *
+     * @return the landmarks.
+     */
+    public Landmarks build(CompactGraph graph) {
+        int numNodes = graph.getNodeCount();
+
+        if(numNodes == 0) {
+            throw new IllegalArgumentException("Can't choose landmarks for an empty graph");
+        }
+
+        int numLandmarks = Math.min(mLandmarkCount, numNodes);
+        int[] landmarks = new int[numLandmarks];
+        double[] distancesFrom = new double[numNodes * numLandmarks];
+        double[] distancesTo = new double[numNodes * numLandmarks];
+        boolean[] isLandmark = new boolean[numNodes];
+
+        buildReverseEdges(graph);
+        prepare(numNodes);
+
+        Random random = new Random(mSeed);
+
+        // How close each node is to its nearest landmark, for FARTHEST.
+        double[] nearestLandmarkDistances = new double[numNodes];
+        Arrays.fill(nearestLandmarkDistances, Double.POSITIVE_INFINITY);
+
+        for(int i = 0; i < numLandmarks; i++) {
+            int landmark;
+
+            if(mStrategy == Strategy.AVOID) {
+                landmark = chooseAvoidLandmark(graph, distancesFrom, distancesTo, numLandmarks, i, isLandmark, random);
+            } else if(i == 0) {
+                search(graph, random.nextInt(numNodes), false);
+                landmark = findFurthestNode(mDistances, isLandmark);
+            } else {
+                landmark = findFurthestNode(nearestLandmarkDistances, isLandmark);
+            }
+
+            landmarks[i] = landmark;
+            isLandmark[landmark] = true;
+
+            search(graph, landmark, false);
+
+            for(int node = 0; node < numNodes; node++) {
+                distancesFrom[node * numLandmarks + i] = mDistances[node];
+                nearestLandmarkDistances[node] = Math.min(nearestLandmarkDistances[node], mDistances[node]);
+            }
+
+            search(graph, landmark, true);
+
+            for(int node = 0; node < numNodes; node++) {
+                distancesTo[node * numLandmarks + i] = mDistances[node];
+            }
+        }
+
+        return new Landmarks(landmarks, distancesFrom, distancesTo);
+    }
+
+    /**
+     * Build the landmarks for a binary graph file and save them
+     * alongside it, see {@link BinaryLandmarkFormat#getLandmarkFile(File)}:
+     *
+     * LandmarksBuilder graphFile strategy landmarkCount seed
+     */
+    public static void main(String[] args) throws IOException {
+        if(args.length != 4) {
+            System.err.println("Usage: LandmarksBuilder graphFile " + Arrays.toString(Strategy.values())
+                    + " landmarkCount seed");
+            System.exit(1);
+        }
+
+        File graphFile = new File(args[0]);
+        Strategy strategy = Strategy.valueOf(args[1]);
+        int landmarkCount = Integer.parseInt(args[2]);
+        long seed = Long.parseLong(args[3]);
+
+        CompactGraph graph = BinaryGraphFormat.read(graphFile);
+        Landmarks landmarks = new LandmarksBuilder(strategy, landmarkCount, seed).build(graph);
+        File landmarkFile = BinaryLandmarkFormat.getLandmarkFile(graphFile);
+
+        BinaryLandmarkFormat.write(landmarks, graph, landmarkFile);
+
+        System.out.println("Wrote " + landmarks.getLandmarkCount() + " landmarks for "
+                + graph.getNodeCount() + " nodes to " + landmarkFile);
+    }
+
+    /**
+     * Choose the next landmark with the AVOID strategy, using the
+     * landmarks chosen so far to find where bounds are weakest.
+     */
+    private int chooseAvoidLandmark(CompactGraph graph,
+                                    double[] distancesFrom,
+                                    double[] distancesTo,
+                                    int stride,
+                                    int numLandmarks,
+                                    boolean[] isLandmark,
+                                    Random random) {
+
+        int numNodes = graph.getNodeCount();
+        int root = random.nextInt(numNodes);
+
+        // Landmarks are never chosen twice, so the root must not be one.
+        while(isLandmark[root]) {
+            root = (root + 1) % numNodes;
+        }
+
+        search(graph, root, false);
+
+        // Total weight of each subtree, or -1 if it holds a landmark.
+        // Children always settle after their parents, so walking the
+        // settle order backward finishes each subtree before its parent.
+        double[] subtreeWeights = new double[numNodes];
+
+        for(int i = mSettledCount - 1; i >= 0; i--) {
+            int node = mSettleOrder[i];
+
+            if(isLandmark[node]) {
+                subtreeWeights[node] = -1.0;
+            } else if(subtreeWeights[node] >= 0.0) {
+                subtreeWeights[node] += mDistances[node]
+                        - Landmarks.getLowerBound(distancesFrom, distancesTo, stride, numLandmarks, root, node);
+            }
+
+            int parent = mParents[node];
+
+            if(parent != NO_PARENT && subtreeWeights[parent] >= 0.0) {
+                subtreeWeights[parent] = subtreeWeights[node] < 0.0 ? -1.0 : subtreeWeights[parent] + subtreeWeights[node];
+            }
+        }
+
+        // Group the children of each node together, in settle order.
+        int[] childStarts = new int[numNodes + 1];
+        int[] children = new int[mSettledCount];
+
+        for(int i = 0; i < mSettledCount; i++) {
+            int parent = mParents[mSettleOrder[i]];
+
+            if(parent != NO_PARENT) {
+                childStarts[parent + 1]++;
+            }
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            childStarts[node + 1] += childStarts[node];
+        }
+
+        int[] insertPositions = Arrays.copyOf(childStarts, numNodes);
+
+        for(int i = 0; i < mSettledCount; i++) {
+            int node = mSettleOrder[i];
+
+            if(mParents[node] != NO_PARENT) {
+                children[insertPositions[mParents[node]]++] = node;
+            }
+        }
+
+        // Walk down into the heaviest subtree without a landmark.
+        int node = root;
+
+        while(true) {
+            int heaviestChild = NO_PARENT;
+
+            for(int i = childStarts[node]; i < childStarts[node + 1]; i++) {
+                int child = children[i];
+
+                if(subtreeWeights[child] >= 0.0
+                        && (heaviestChild == NO_PARENT || subtreeWeights[child] > subtreeWeights[heaviestChild])) {
+                    heaviestChild = child;
+                }
+            }
+
+            if(heaviestChild == NO_PARENT) {
+                return node;
+            }
+
+            node = heaviestChild;
+        }
+    }
+
+    /**
+     * The node with the largest of the given distances which
+     * isn't already a landmark, with unreachable nodes counting
+     * as furthest of all.
+     */
+    private int findFurthestNode(double[] distances, boolean[] isLandmark) {
+        int furthest = NO_PARENT;
+
+        for(int node = 0; node < isLandmark.length; node++) {
+            if(!isLandmark[node] && (furthest == NO_PARENT || distances[node] > distances[furthest])) {
+                furthest = node;
+            }
+        }
+
+        return furthest;
+    }
+
+    /**
+     * Run a full Dijkstra search from the given node, along the edges
+     * or against them, leaving the distances, parents and the order
+     * the nodes were settled in in the scratch arrays.
+     */
+    private void search(CompactGraph graph, int origin, boolean reverse) {
+        Arrays.fill(mDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(mParents, NO_PARENT);
+        mQueue.clear();
+        mSettledCount = 0;
+
+        mDistances[origin] = 0.0;
+        mQueue.offer(origin, 0.0);
+
+        while(!mQueue.isEmpty()) {
+            int currentNode = mQueue.poll();
+            double currentDistance = mDistances[currentNode];
+            mSettleOrder[mSettledCount++] = currentNode;
+
+            int edgeStart = reverse ? mReverseEdgeStarts[currentNode] : graph.getEdgeStart(currentNode);
+            int edgeEnd = reverse ? mReverseEdgeStarts[currentNode + 1] : graph.getEdgeEnd(currentNode);
+
+            for(int edge = edgeStart; edge < edgeEnd; edge++) {
+                int edgeTarget = reverse ? mReverseEdgeOrigins[edge] : graph.getEdgeTarget(edge);
+                double distance = currentDistance + (reverse ? mReverseEdgeWeights[edge] : graph.getEdgeWeight(edge));
+
+                // Settled nodes can't improve, so never get queued again.
+                if(distance < mDistances[edgeTarget]) {
+                    mDistances[edgeTarget] = distance;
+                    mParents[edgeTarget] = currentNode;
+                    mQueue.offer(edgeTarget, distance);
+                }
+            }
+        }
+    }
+
+    private void prepare(int numNodes) {
+        if(mDistances.length != numNodes) {
+            mDistances = new double[numNodes];
+            mParents = new int[numNodes];
+            mSettleOrder = new int[numNodes];
+        }
+
+        mQueue.ensureCapacity(numNodes);
+    }
+
+    private void buildReverseEdges(CompactGraph graph) {
+        int numNodes = graph.getNodeCount();
+        int numEdges = graph.getEdgeCount();
+
+        mReverseEdgeStarts = new int[numNodes + 1];
+        mReverseEdgeOrigins = new int[numEdges];
+        mReverseEdgeWeights = new double[numEdges];
+
+        for(int edge = 0; edge < numEdges; edge++) {
+            mReverseEdgeStarts[graph.getEdgeTarget(edge) + 1]++;
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            mReverseEdgeStarts[node + 1] += mReverseEdgeStarts[node];
+        }
+
+        int[] insertPositions = Arrays.copyOf(mReverseEdgeStarts, numNodes);
+
+        for(int node = 0; node < numNodes; node++) {
+            for(int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+                int position = insertPositions[graph.getEdgeTarget(edge)]++;
+                mReverseEdgeOrigins[position] = node;
+                mReverseEdgeWeights[position] = graph.getEdgeWeight(edge);
+            }
+        }
+    }
+}
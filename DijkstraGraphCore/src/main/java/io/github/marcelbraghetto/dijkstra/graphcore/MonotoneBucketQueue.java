@@ -0,0 +1,263 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Queue of int indices (typically node indices) ordered by a whole
+ * number priority, for Dijkstra searches over graphs whose edge
+ * weights are all small whole numbers (Dial's algorithm). It has the
+ * same operations as {@link IndexedPriorityQueue}, including lowering
+ * the priority of a queued index, but each of them takes constant
+ * time rather than a walk up or down a heap.
+ *
+ * There is one bucket per priority, each a linked list threaded
+ * through primitive arrays. The queue only works for monotone searches:
+ * no index may be offered with a priority below the last one polled,
+ * or more than maxStep above it, where maxStep is the heaviest edge.
+ * That means only maxStep + 1 buckets are ever in use at once, so
+ * they are kept in a ring and reused as the search moves outward.
+ * Polling walks forward past empty buckets, which is cheap while
+ * maxStep is small compared to the number of nodes in the queue.
+ */
+public class MonotoneBucketQueue {
+    // Graphs whose edge weights are all whole numbers up to this
+    // can be searched with a bucket queue, see getMaxSmallIntegerWeight.
+    public static final int MAX_SMALL_INTEGER_WEIGHT = 1 << 12;
+
+    private static final int NONE = -1;
+    private static final long NOT_QUEUED = -1L;
+
+    // First index in each bucket of the ring, or NONE.
+    private int[] mBucketHeads;
+
+    // Neighbours of each index within its bucket, or NONE.
+    private int[] mNext;
+    private int[] mPrevious;
+
+    // Priority of each index, or NOT_QUEUED.
+    private long[] mPriorities;
+
+    // Lowest priority that can still be in the queue.
+    private long mCurrent;
+    private int mSize;
+
+    /**
+     * @param capacity number of indices the queue starts out supporting.
+     * @param maxStep the largest amount any offered priority can be
+     *                above the last priority polled.
+     */
+    public MonotoneBucketQueue(int capacity, int maxStep) {
+        mNext = new int[capacity];
+        mPrevious = new int[capacity];
+        mPriorities = new long[capacity];
+        Arrays.fill(mPriorities, NOT_QUEUED);
+
+        mBucketHeads = new int[0];
+        setMaxStep(maxStep);
+    }
+
+    /**
+     * Whether an edge weight can be a step in a bucket queue, which
+     * needs it to be a whole number between 0 and
+     * {@link #MAX_SMALL_INTEGER_WEIGHT}.
+     *
+     * @param weight of the edge.
+     *
+     * @return true if the weight is a small whole number.
+     */
+    public static boolean isSmallIntegerWeight(double weight) {
+        return weight >= 0.0 && weight <= MAX_SMALL_INTEGER_WEIGHT && weight == Math.rint(weight);
+    }
+
+    /**
+     * If every edge weight in the graph is a small whole number, the
+     * heaviest of them, which is the max step of a bucket queue that
+     * can search the graph.
+     *
+     * @param graph to check.
+     *
+     * @return the heaviest edge weight, or -1 if the edge weights
+     * aren't all small whole numbers.
+     */
+    public static int getMaxSmallIntegerWeight(CompactGraph graph) {
+        int maxWeight = 0;
+
+        for(int edge = 0; edge < graph.getEdgeCount(); edge++) {
+            double weight = graph.getEdgeWeight(edge);
+
+            if(!isSmallIntegerWeight(weight)) {
+                return -1;
+            }
+
+            maxWeight = Math.max(maxWeight, (int) weight);
+        }
+
+        return maxWeight;
+    }
+
+    /**
+     * Change the largest step between the last polled priority and
+     * any offered priority. This empties the queue.
+     *
+     * @param maxStep the largest amount any offered priority can be
+     *                above the last priority polled.
+     */
+    public void setMaxStep(int maxStep) {
+        clear();
+
+        if(maxStep + 1 != mBucketHeads.length) {
+            mBucketHeads = new int[Math.max(0, maxStep) + 1];
+            Arrays.fill(mBucketHeads, NONE);
+        }
+    }
+
+    public int getMaxStep() {
+        return mBucketHeads.length - 1;
+    }
+
+    /**
+     * Make sure the queue can hold indices from 0 up to
+     * (but not including) the given capacity.
+     *
+     * @param capacity number of indices the queue must support.
+     */
+    public void ensureCapacity(int capacity) {
+        int oldCapacity = mPriorities.length;
+
+        if(capacity <= oldCapacity) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, oldCapacity * 2);
+        mNext = Arrays.copyOf(mNext, newCapacity);
+        mPrevious = Arrays.copyOf(mPrevious, newCapacity);
+        mPriorities = Arrays.copyOf(mPriorities, newCapacity);
+        Arrays.fill(mPriorities, oldCapacity, newCapacity, NOT_QUEUED);
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean contains(int index) {
+        return index < mPriorities.length && mPriorities[index] != NOT_QUEUED;
+    }
+
+    /**
+     * Add the index with the given priority, or if the index is
+     * already in the queue lower its priority if the given one is
+     * smaller. A larger priority for a queued index is ignored.
+     *
+     * @param index to add or update.
+     * @param priority of the index, a whole number no lower than the
+     *                 last priority polled and no more than maxStep above it.
+     *
+     * @return true if the queue changed.
+     */
+    public boolean offer(int index, double priority) {
+        ensureCapacity(index + 1);
+
+        long bucket = (long) priority;
+
+        if(bucket < mCurrent || bucket - mCurrent >= mBucketHeads.length) {
+            throw new IllegalArgumentException("Priority " + priority + " is outside the range "
+                    + mCurrent + " to " + (mCurrent + mBucketHeads.length - 1));
+        }
+
+        long oldBucket = mPriorities[index];
+
+        if(oldBucket == NOT_QUEUED) {
+            mSize++;
+        } else if(bucket < oldBucket) {
+            unlink(index, oldBucket);
+        } else {
+            return false;
+        }
+
+        mPriorities[index] = bucket;
+
+        int slot = getSlot(bucket);
+        int head = mBucketHeads[slot];
+
+        mNext[index] = head;
+        mPrevious[index] = NONE;
+
+        if(head != NONE) {
+            mPrevious[head] = index;
+        }
+
+        mBucketHeads[slot] = index;
+        return true;
+    }
+
+    /**
+     * The priority the given index was last queued with.
+     *
+     * @param index to get the priority for.
+     *
+     * @return priority of the index.
+     */
+    public double getPriority(int index) {
+        return mPriorities[index];
+    }
+
+    /**
+     * Remove and return an index with the smallest
+     * priority, the queue must not be empty.
+     *
+     * @return index with the smallest priority.
+     */
+    public int poll() {
+        while(mBucketHeads[getSlot(mCurrent)] == NONE) {
+            mCurrent++;
+        }
+
+        int result = mBucketHeads[getSlot(mCurrent)];
+        unlink(result, mCurrent);
+        mPriorities[result] = NOT_QUEUED;
+        mSize--;
+
+        return result;
+    }
+
+    /**
+     * Remove all the indices from the queue. This only touches
+     * the buckets and the entries that are currently queued.
+     */
+    public void clear() {
+        for(int slot = 0; slot < mBucketHeads.length && mSize > 0; slot++) {
+            for(int index = mBucketHeads[slot]; index != NONE; index = mNext[index]) {
+                mPriorities[index] = NOT_QUEUED;
+                mSize--;
+            }
+
+            mBucketHeads[slot] = NONE;
+        }
+
+        mCurrent = 0L;
+        mSize = 0;
+    }
+
+    private void unlink(int index, long bucket) {
+        int next = mNext[index];
+        int previous = mPrevious[index];
+
+        if(previous == NONE) {
+            mBucketHeads[getSlot(bucket)] = next;
+        } else {
+            mNext[previous] = next;
+        }
+
+        if(next != NONE) {
+            mPrevious[next] = previous;
+        }
+    }
+
+    private int getSlot(long bucket) {
+        return (int) (bucket % mBucketHeads.length);
+    }
+}
@@ -0,0 +1,121 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * A path held as the indices of the nodes along it, from the origin
+ * to the target, in a primitive array owned by the caller.
+ *
+ * Unlike a {@link CompactPath}, a buffer is filled in by a search
+ * rather than created by it, and can be handed to search after
+ * search. Its array only grows when a path is longer than any it
+ * has held before, so repeated searches produce no garbage.
+ */
+public class PathBuffer {
+    private int[] mNodes;
+    private int mLength;
+    private double mTotalDistance;
+
+    public PathBuffer() {
+        this(16);
+    }
+
+    /**
+     * @param capacity how many nodes the buffer can hold before it has to grow.
+     */
+    public PathBuffer(int capacity) {
+        mNodes = new int[Math.max(1, capacity)];
+    }
+
+    /**
+     * Empty the buffer, ready to be filled with a new path.
+     */
+    public void clear() {
+        mLength = 0;
+        mTotalDistance = 0.0;
+    }
+
+    /**
+     * Add a node to the end of the path.
+     *
+     * @param node index of the next node along the path.
+     */
+    public void addStep(int node) {
+        if(mLength == mNodes.length) {
+            mNodes = Arrays.copyOf(mNodes, mNodes.length * 2);
+        }
+
+        mNodes[mLength++] = node;
+    }
+
+    /**
+     * Reverse the order of the nodes, for searches which find
+     * their way back from the target to the origin.
+     */
+    public void reverse() {
+        for(int i = 0, j = mLength - 1; i < j; i++, j--) {
+            int swap = mNodes[i];
+            mNodes[i] = mNodes[j];
+            mNodes[j] = swap;
+        }
+    }
+
+    public void setTotalDistance(double totalDistance) {
+        mTotalDistance = totalDistance;
+    }
+
+    /**
+     * Replace the path in this buffer with a copy of another.
+     *
+     * @param other buffer to copy.
+     */
+    public void copyFrom(PathBuffer other) {
+        if(mNodes.length < other.mLength) {
+            mNodes = new int[other.mNodes.length];
+        }
+
+        System.arraycopy(other.mNodes, 0, mNodes, 0, other.mLength);
+        mLength = other.mLength;
+        mTotalDistance = other.mTotalDistance;
+    }
+
+    public boolean isEmpty() {
+        return mLength == 0;
+    }
+
+    /**
+     * How many nodes the path passes through,
+     * including the origin and the target.
+     *
+     * @return number of nodes in the path.
+     */
+    public int getLength() {
+        return mLength;
+    }
+
+    /**
+     * The node at the given step of the path, where step 0 is
+     * the origin and step getLength() - 1 is the target.
+     *
+     * @param step along the path.
+     *
+     * @return index of the node at that step.
+     */
+    public int getNode(int step) {
+        return mNodes[step];
+    }
+
+    public double getTotalDistance() {
+        return mTotalDistance;
+    }
+
+    /**
+     * Copy the path into a new array, for keeping it after
+     * the buffer is reused.
+     *
+     * @return the node indices of the path, origin first.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(mNodes, mLength);
+    }
+}
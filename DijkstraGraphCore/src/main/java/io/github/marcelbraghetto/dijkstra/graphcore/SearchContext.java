@@ -0,0 +1,117 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Arrays;
+
+/**
+ * Path finding state for a single search, held outside of the
+ * graph so that many searches can run over the same graph at
+ * the same time, each with its own context.
+ *
+ * All the state is kept in primitive arrays indexed by node index.
+ * Like the graph itself, a context uses generation stamps so that
+ * starting a new search does not need to clear every entry, and
+ * the arrays are reused from one search to the next.
+ *
+ * A context must only be used by one search at a time.
+ */
+public class SearchContext {
+    public static final int NO_PARENT = -1;
+
+    private final IndexedPriorityQueue mQueue = new IndexedPriorityQueue(16);
+
+    private double[] mDistances = new double[0];
+    private int[] mParents = new int[0];
+
+    // Generation each node's distance and parent were written in.
+    private int[] mReachedGenerations = new int[0];
+
+    // Generation each node was marked complete in.
+    private int[] mCompleteGenerations = new int[0];
+
+    private int mGeneration;
+
+    /**
+     * Begin a new search over a graph with the given number of
+     * nodes, which makes every node unreached and incomplete.
+     *
+     * @param numNodes in the graph about to be searched.
+     */
+    public void begin(int numNodes) {
+        if(mDistances.length < numNodes) {
+            mDistances = new double[numNodes];
+            mParents = new int[numNodes];
+            mReachedGenerations = new int[numNodes];
+            mCompleteGenerations = new int[numNodes];
+            mGeneration = 0;
+        }
+
+        // If we run out of generations, clear the stamps
+        // so none of them can match a recycled generation.
+        if(mGeneration == Integer.MAX_VALUE) {
+            Arrays.fill(mReachedGenerations, 0);
+            Arrays.fill(mCompleteGenerations, 0);
+            mGeneration = 0;
+        }
+
+        mGeneration++;
+        mQueue.ensureCapacity(numNodes);
+        mQueue.clear();
+    }
+
+    /**
+     * Queue of node indices still to be examined by the search.
+     *
+     * @return the search queue.
+     */
+    public IndexedPriorityQueue getQueue() {
+        return mQueue;
+    }
+
+    public boolean isReached(int nodeIndex) {
+        return mReachedGenerations[nodeIndex] == mGeneration;
+    }
+
+    /**
+     * The distance from the origin to the given node found
+     * so far in this search.
+     *
+     * @param nodeIndex to get the distance for.
+     *
+     * @return distance from the origin, or infinity if not reached.
+     */
+    public double getDistance(int nodeIndex) {
+        return isReached(nodeIndex) ? mDistances[nodeIndex] : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * The node the given node was reached from in this search.
+     *
+     * @param nodeIndex to get the parent for.
+     *
+     * @return index of the parent node, or NO_PARENT.
+     */
+    public int getParent(int nodeIndex) {
+        return isReached(nodeIndex) ? mParents[nodeIndex] : NO_PARENT;
+    }
+
+    /**
+     * Record a new distance and parent for the given node.
+     *
+     * @param nodeIndex to update.
+     * @param parentIndex the node was reached from, or NO_PARENT.
+     * @param distance from the origin to the node.
+     */
+    public void update(int nodeIndex, int parentIndex, double distance) {
+        mReachedGenerations[nodeIndex] = mGeneration;
+        mParents[nodeIndex] = parentIndex;
+        mDistances[nodeIndex] = distance;
+    }
+
+    public boolean isComplete(int nodeIndex) {
+        return mCompleteGenerations[nodeIndex] == mGeneration;
+    }
+
+    public void setComplete(int nodeIndex) {
+        mCompleteGenerations[nodeIndex] = mGeneration;
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Locale;
+
+/**
+ * How much work a single path finding query did. Searches which record
+ * their work (such as the ones answered by a {@link CompactPathQueryEngine})
+ * fill one in, and it can be reused for any number of queries.
+ *
+ * The queue used by the algorithm moves a node up in place when a
+ * shorter distance to it is found, so it never holds stale entries
+ * that have to be skipped when polled. The equivalent measure is the
+ * number of queue updates, which is what a queue that allowed
+ * duplicates would have added as extra entries and later thrown away.
+ */
+public class SearchStats {
+    private String mOriginKey;
+    private String mTargetKey;
+    private boolean mPathFound;
+    private int mSettledNodes;
+    private int mEdgesRelaxed;
+    private int mQueuePushes;
+    private int mQueueUpdates;
+    private int mPeakFrontierSize;
+    private long mElapsedNanos;
+
+    /**
+     * Record the results of a query.
+     *
+     * @param originKey of the node the query started from.
+     * @param targetKey of the node the query was looking for.
+     * @param pathFound whether a path to the target was found.
+     * @param settledNodes how many nodes had their shortest distance settled.
+     * @param edgesRelaxed how many edges were followed out of settled nodes.
+     * @param queuePushes how many nodes were added to the queue.
+     * @param queueUpdates how many queued nodes were moved up the queue.
+     * @param peakFrontierSize the most nodes that were in the queue at once.
+     * @param elapsedNanos how long the query took.
+     */
+    public void set(String originKey,
+                    String targetKey,
+                    boolean pathFound,
+                    int settledNodes,
+                    int edgesRelaxed,
+                    int queuePushes,
+                    int queueUpdates,
+                    int peakFrontierSize,
+                    long elapsedNanos) {
+
+        mOriginKey = originKey;
+        mTargetKey = targetKey;
+        mPathFound = pathFound;
+        mSettledNodes = settledNodes;
+        mEdgesRelaxed = edgesRelaxed;
+        mQueuePushes = queuePushes;
+        mQueueUpdates = queueUpdates;
+        mPeakFrontierSize = peakFrontierSize;
+        mElapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Copy all the values from the given stats.
+     *
+     * @param other stats to copy.
+     */
+    public void copyFrom(SearchStats other) {
+        set(other.mOriginKey,
+            other.mTargetKey,
+            other.mPathFound,
+            other.mSettledNodes,
+            other.mEdgesRelaxed,
+            other.mQueuePushes,
+            other.mQueueUpdates,
+            other.mPeakFrontierSize,
+            other.mElapsedNanos);
+    }
+
+    public String getOriginKey() {
+        return mOriginKey;
+    }
+
+    public String getTargetKey() {
+        return mTargetKey;
+    }
+
+    public boolean isPathFound() {
+        return mPathFound;
+    }
+
+    public int getSettledNodes() {
+        return mSettledNodes;
+    }
+
+    public int getEdgesRelaxed() {
+        return mEdgesRelaxed;
+    }
+
+    public int getQueuePushes() {
+        return mQueuePushes;
+    }
+
+    public int getQueueUpdates() {
+        return mQueueUpdates;
+    }
+
+    public int getPeakFrontierSize() {
+        return mPeakFrontierSize;
+    }
+
+    public long getElapsedNanos() {
+        return mElapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%s > %s: %s, settled %d, relaxed %d, pushes %d, updates %d, peak frontier %d, %.3f ms",
+                mOriginKey,
+                mTargetKey,
+                mPathFound ? "found" : "no path",
+                mSettledNodes,
+                mEdgesRelaxed,
+                mQueuePushes,
+                mQueueUpdates,
+                mPeakFrontierSize,
+                mElapsedNanos / 1000000.0);
+    }
+}
@@ -0,0 +1,131 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Locale;
+
+/**
+ * Running totals of the {@link SearchStats} of many queries, with
+ * histograms of how many nodes each query settled and how long each
+ * took, and a copy of the slowest query so far so pathological
+ * queries can be tracked down.
+ *
+ * Queries can be recorded from any number of threads at once.
+ */
+public class SearchStatsAggregator {
+    private final Histogram mSettledNodesHistogram = new Histogram();
+    private final Histogram mElapsedMicrosHistogram = new Histogram();
+    private final SearchStats mSlowestQuery = new SearchStats();
+
+    private long mQueryCount;
+    private long mPathsFound;
+    private long mSettledNodes;
+    private long mEdgesRelaxed;
+    private long mQueuePushes;
+    private long mQueueUpdates;
+    private long mElapsedNanos;
+    private int mPeakFrontierSize;
+
+    /**
+     * Add the results of a query to the totals.
+     *
+     * @param stats of the query.
+     */
+    public synchronized void record(SearchStats stats) {
+        if(mQueryCount == 0 || stats.getElapsedNanos() > mSlowestQuery.getElapsedNanos()) {
+            mSlowestQuery.copyFrom(stats);
+        }
+
+        mQueryCount++;
+        mPathsFound += stats.isPathFound() ? 1 : 0;
+        mSettledNodes += stats.getSettledNodes();
+        mEdgesRelaxed += stats.getEdgesRelaxed();
+        mQueuePushes += stats.getQueuePushes();
+        mQueueUpdates += stats.getQueueUpdates();
+        mElapsedNanos += stats.getElapsedNanos();
+        mPeakFrontierSize = Math.max(mPeakFrontierSize, stats.getPeakFrontierSize());
+
+        mSettledNodesHistogram.add(stats.getSettledNodes());
+        mElapsedMicrosHistogram.add(stats.getElapsedNanos() / 1000L);
+    }
+
+    public synchronized long getQueryCount() {
+        return mQueryCount;
+    }
+
+    /**
+     * Forget every query recorded so far.
+     */
+    public synchronized void reset() {
+        mQueryCount = 0;
+        mPathsFound = 0;
+        mSettledNodes = 0;
+        mEdgesRelaxed = 0;
+        mQueuePushes = 0;
+        mQueueUpdates = 0;
+        mElapsedNanos = 0;
+        mPeakFrontierSize = 0;
+        mSettledNodesHistogram.clear();
+        mElapsedMicrosHistogram.clear();
+    }
+
+    /**
+     * Describe the totals, averages and histograms as lines
+     * of text, for debug views and logs.
+     *
+     * @return description of all the queries recorded so far.
+     */
+    public synchronized String dump() {
+        StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format(Locale.US, "Queries: %d (%d with a path)\n", mQueryCount, mPathsFound));
+
+        if(mQueryCount == 0) {
+            return sb.toString();
+        }
+
+        sb.append(String.format(Locale.US, "Average settled nodes: %.1f\n", (double) mSettledNodes / mQueryCount));
+        sb.append(String.format(Locale.US, "Average edges relaxed: %.1f\n", (double) mEdgesRelaxed / mQueryCount));
+        sb.append(String.format(Locale.US, "Average queue pushes: %.1f\n", (double) mQueuePushes / mQueryCount));
+        sb.append(String.format(Locale.US, "Average queue updates: %.1f\n", (double) mQueueUpdates / mQueryCount));
+        sb.append(String.format(Locale.US, "Peak frontier size: %d\n", mPeakFrontierSize));
+        sb.append(String.format(Locale.US, "Average time: %.3f ms\n", mElapsedNanos / 1000000.0 / mQueryCount));
+        sb.append("Slowest query: ").append(mSlowestQuery).append('\n');
+        sb.append("Settled nodes per query:\n");
+        mSettledNodesHistogram.appendTo(sb);
+        sb.append("Microseconds per query:\n");
+        mElapsedMicrosHistogram.appendTo(sb);
+
+        return sb.toString();
+    }
+
+    /**
+     * Counts of values in power of two sized buckets, so a few buckets
+     * cover everything from tiny to huge queries: bucket 0 holds zeros,
+     * and bucket b holds values from 2^(b-1) up to 2^b - 1.
+     */
+    private static class Histogram {
+        private final long[] mBuckets = new long[Long.SIZE + 1];
+
+        void add(long value) {
+            mBuckets[Long.SIZE - Long.numberOfLeadingZeros(Math.max(0L, value))]++;
+        }
+
+        void clear() {
+            for(int i = 0; i < mBuckets.length; i++) {
+                mBuckets[i] = 0L;
+            }
+        }
+
+        void appendTo(StringBuilder sb) {
+            for(int bucket = 0; bucket < mBuckets.length; bucket++) {
+                if(mBuckets[bucket] == 0L) {
+                    continue;
+                }
+
+                long low = bucket == 0 ? 0L : 1L << (bucket - 1);
+                long high = bucket == 0 ? 0L : (1L << (bucket - 1)) * 2L - 1L;
+
+                sb.append(String.format(Locale.US, "  %d - %d: %d\n", low, high, mBuckets[bucket]));
+            }
+        }
+    }
+}
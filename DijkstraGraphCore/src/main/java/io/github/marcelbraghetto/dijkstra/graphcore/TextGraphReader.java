@@ -0,0 +1,385 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streaming parser for the text graph format written by
+ * {@link TextGraphWriter}.
+ *
+ * The text is read in fixed size chunks and split into whitespace
+ * separated tokens by hand, and numbers are parsed straight from the
+ * token characters without any regular expressions, so even a huge
+ * graph loads in a small, fixed amount of memory (apart from the graph
+ * itself). Target node keys in the edge lines are looked up in a hash
+ * table keyed on the token characters, so edges don't allocate a
+ * string each.
+ *
+ * The whole text is parsed into a {@link CompactGraph} before anything
+ * is handed back, so badly formatted text never leaves a half loaded
+ * graph behind. The node count at the start of the text is only checked,
+ * not trusted, and the arrays are grown as the nodes are actually read.
+ */
+public class TextGraphReader {
+    // The most nodes a graph may have, far more than any graph
+    // which could be shown on screen.
+    static final int MAX_NODES = 1 << 24;
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_NODE = -1;
+
+    // Mantissas with up to this many decimal digits are exact doubles.
+    private static final int MAX_FAST_DIGITS = 15;
+
+    // Exact powers of ten, for the fast number parsing path.
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private final Reader mReader;
+    private final char[] mBuffer = new char[BUFFER_SIZE];
+    private int mPosition;
+    private int mLimit;
+
+    // The characters of the current token.
+    private char[] mToken = new char[64];
+    private int mTokenLength;
+
+    // The distinct nodes read so far, in the order their keys first
+    // appeared, with an open addressing hash table of their keys
+    // holding positions in these arrays.
+    private String[] mKeys = new String[INITIAL_CAPACITY];
+    private float[] mPositionsX = new float[INITIAL_CAPACITY];
+    private float[] mPositionsY = new float[INITIAL_CAPACITY];
+    private int mNodeCount;
+    private int[] mKeyTable;
+
+    // For each node line in the file, which distinct node it was.
+    private int[] mFileNodes = new int[INITIAL_CAPACITY];
+
+    private TextGraphReader(Reader reader) {
+        mReader = reader;
+        mKeyTable = new int[INITIAL_CAPACITY * 2];
+        Arrays.fill(mKeyTable, NO_NODE);
+    }
+
+    /**
+     * Read a whole graph from the given reader, which is not closed.
+     *
+     * A node key which appears more than once describes a single node
+     * at the last position given for it, keeping the place of the first.
+     * Edges to unknown nodes are skipped.
+     *
+     * @param reader to read the graph text from.
+     *
+     * @return the graph, with each edge weighted by the straight line
+     * distance between its nodes.
+     *
+     * @throws IOException if the text could not be read or is not
+     * a correctly formatted graph.
+     */
+    public static CompactGraph read(Reader reader) throws IOException {
+        return new TextGraphReader(reader).readGraph();
+    }
+
+    private CompactGraph readGraph() throws IOException {
+        int numNodes = nextInt();
+
+        if(numNodes <= 0) {
+            throw new IOException("Graph text has no nodes");
+        }
+
+        if(numNodes > MAX_NODES) {
+            throw new IOException("Graph text has too many nodes: " + numNodes);
+        }
+
+        for(int i = 0; i < numNodes; i++) {
+            nextToken();
+            String key = new String(mToken, 0, mTokenLength);
+            float x = nextFloat();
+            float y = nextFloat();
+
+            if(i == mFileNodes.length) {
+                mFileNodes = Arrays.copyOf(mFileNodes, i * 2);
+            }
+
+            mFileNodes[i] = addNode(key, x, y);
+        }
+
+        CompactGraphBuilder builder = new CompactGraphBuilder(mNodeCount, mNodeCount * 4);
+
+        for(int node = 0; node < mNodeCount; node++) {
+            builder.addNode(mKeys[node], mPositionsX[node], mPositionsY[node]);
+        }
+
+        for(int i = 0; i < numNodes; i++) {
+            int numEdges = nextInt();
+
+            if(numEdges < 0) {
+                throw new IOException("Graph text has a negative edge count: " + numEdges);
+            }
+
+            for(int j = 0; j < numEdges; j++) {
+                nextToken();
+                int target = findKey();
+
+                if(target != NO_NODE) {
+                    builder.addEdge(mFileNodes[i], target);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Add a node, or move the node with the same key if there is one.
+     *
+     * @return position of the node in the node arrays.
+     */
+    private int addNode(String key, float x, float y) {
+        int mask = mKeyTable.length - 1;
+        int slot = key.hashCode() & mask;
+
+        while(mKeyTable[slot] != NO_NODE) {
+            int existing = mKeyTable[slot];
+
+            if(mKeys[existing].equals(key)) {
+                mPositionsX[existing] = x;
+                mPositionsY[existing] = y;
+                return existing;
+            }
+
+            slot = (slot + 1) & mask;
+        }
+
+        if(mNodeCount == mKeys.length) {
+            int capacity = mNodeCount * 2;
+            mKeys = Arrays.copyOf(mKeys, capacity);
+            mPositionsX = Arrays.copyOf(mPositionsX, capacity);
+            mPositionsY = Arrays.copyOf(mPositionsY, capacity);
+        }
+
+        int node = mNodeCount++;
+        mKeys[node] = key;
+        mPositionsX[node] = x;
+        mPositionsY[node] = y;
+        mKeyTable[slot] = node;
+
+        // Keep the table at most half full so probes stay short.
+        if(mNodeCount * 2 > mKeyTable.length) {
+            growKeyTable();
+        }
+
+        return node;
+    }
+
+    private void growKeyTable() {
+        mKeyTable = new int[mKeyTable.length * 2];
+        Arrays.fill(mKeyTable, NO_NODE);
+        int mask = mKeyTable.length - 1;
+
+        for(int node = 0; node < mNodeCount; node++) {
+            int slot = mKeys[node].hashCode() & mask;
+
+            while(mKeyTable[slot] != NO_NODE) {
+                slot = (slot + 1) & mask;
+            }
+
+            mKeyTable[slot] = node;
+        }
+    }
+
+    /**
+     * Find the node whose key matches the current token.
+     *
+     * @return position in the node arrays, or NO_NODE if there is no such node.
+     */
+    private int findKey() {
+        // Same hash as String.hashCode, so it matches the hashes of the node keys.
+        int hash = 0;
+
+        for(int i = 0; i < mTokenLength; i++) {
+            hash = 31 * hash + mToken[i];
+        }
+
+        int mask = mKeyTable.length - 1;
+
+        for(int slot = hash & mask; mKeyTable[slot] != NO_NODE; slot = (slot + 1) & mask) {
+            if(tokenEquals(mKeys[mKeyTable[slot]])) {
+                return mKeyTable[slot];
+            }
+        }
+
+        return NO_NODE;
+    }
+
+    private boolean tokenEquals(String key) {
+        if(key.length() != mTokenLength) {
+            return false;
+        }
+
+        for(int i = 0; i < mTokenLength; i++) {
+            if(key.charAt(i) != mToken[i]) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Read the next whitespace separated token into the token array.
+     *
+     * @throws IOException if there are no more tokens.
+     */
+    private void nextToken() throws IOException {
+        mTokenLength = 0;
+
+        // Skip any whitespace.
+        while(true) {
+            if(mPosition == mLimit && !fill()) {
+                throw new IOException("Unexpected end of graph text");
+            }
+
+            if(mBuffer[mPosition] > ' ') {
+                break;
+            }
+
+            mPosition++;
+        }
+
+        // Gather characters up to the next whitespace or the end of the text.
+        while(mPosition < mLimit || fill()) {
+            char c = mBuffer[mPosition];
+
+            if(c <= ' ') {
+                break;
+            }
+
+            if(mTokenLength == mToken.length) {
+                mToken = Arrays.copyOf(mToken, mTokenLength * 2);
+            }
+
+            mToken[mTokenLength++] = c;
+            mPosition++;
+        }
+    }
+
+    private boolean fill() throws IOException {
+        int count = mReader.read(mBuffer, 0, mBuffer.length);
+
+        if(count <= 0) {
+            return false;
+        }
+
+        mPosition = 0;
+        mLimit = count;
+        return true;
+    }
+
+    private int nextInt() throws IOException {
+        nextToken();
+
+        int i = 0;
+        boolean negative = false;
+
+        if(mToken[0] == '-' || mToken[0] == '+') {
+            negative = mToken[0] == '-';
+            i++;
+        }
+
+        if(i == mTokenLength) {
+            throw numberFormatError("whole number");
+        }
+
+        long value = 0;
+
+        for(; i < mTokenLength; i++) {
+            int digit = mToken[i] - '0';
+
+            if(digit < 0 || digit > 9) {
+                throw numberFormatError("whole number");
+            }
+
+            value = value * 10 + digit;
+
+            if(value > Integer.MAX_VALUE + 1L) {
+                throw numberFormatError("whole number");
+            }
+        }
+
+        value = negative ? -value : value;
+
+        if(value > Integer.MAX_VALUE) {
+            throw numberFormatError("whole number");
+        }
+
+        return (int) value;
+    }
+
+    private float nextFloat() throws IOException {
+        nextToken();
+
+        // Fast path for plain decimals such as '-149.66667', which is
+        // what the graph writer produces for all but extreme values.
+        int i = 0;
+        boolean negative = false;
+
+        if(mToken[0] == '-' || mToken[0] == '+') {
+            negative = mToken[0] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int numDigits = 0;
+        int fractionDigits = 0;
+        boolean seenPoint = false;
+        boolean plain = i < mTokenLength;
+
+        for(; i < mTokenLength; i++) {
+            char c = mToken[i];
+
+            if(c == '.' && !seenPoint) {
+                seenPoint = true;
+                continue;
+            }
+
+            int digit = c - '0';
+
+            if(digit < 0 || digit > 9 || numDigits == MAX_FAST_DIGITS) {
+                plain = false;
+                break;
+            }
+
+            mantissa = mantissa * 10 + digit;
+            numDigits++;
+
+            if(seenPoint) {
+                fractionDigits++;
+            }
+        }
+
+        if(plain && numDigits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            // Both the mantissa and the power of ten are exact doubles, so
+            // the division is correctly rounded before narrowing to float.
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return (float) (negative ? -value : value);
+        }
+
+        // Anything else (exponents, very long numbers, NaN...) goes the slow way.
+        try {
+            return Float.parseFloat(new String(mToken, 0, mTokenLength));
+        } catch (NumberFormatException e) {
+            throw numberFormatError("number");
+        }
+    }
+
+    private IOException numberFormatError(String expected) {
+        return new IOException("Expected a " + expected + " in graph text but found '"
+                + new String(mToken, 0, mTokenLength) + "'");
+    }
+}
@@ -0,0 +1,68 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Streams a graph out in the apps' text graph format, which is:
+ *
+ * Line 1: Number of nodes (n) in the graph
+ * Lines 2 to n + 1: The key, X and Y coordinate of each node
+ * Lines n + 2 to 2n + 1: For each node, its number of edges
+ * followed by the keys of the nodes they connect to
+ *
+ * Rather than building the whole text in memory, the node lines
+ * and then the edge lines are written straight to the writer in
+ * two passes over the nodes, so the writer (ideally buffered)
+ * decides how much is held in memory at once.
+ */
+public final class TextGraphWriter {
+    private TextGraphWriter() { }
+
+    /**
+     * Write the given graph to the given writer. The writer
+     * is flushed but not closed.
+     *
+     * @param graph to write.
+     * @param writer to write the graph text to.
+     *
+     * @throws IOException if the text could not be written.
+     */
+    public static void write(CompactGraph graph, Writer writer) throws IOException {
+        int numNodes = graph.getNodeCount();
+
+        // How many nodes in the graph.
+        writer.write(String.valueOf(numNodes));
+        writer.write('\n');
+
+        // Save the key, x, y data fields of each node on a line. The
+        // nodes go in index order so the edges can follow the same order.
+        for(int i = 0; i < numNodes; i++) {
+            writer.write(graph.getNodeKey(i));
+            writer.write(' ');
+            writer.write(String.valueOf(graph.getNodeX(i)));
+            writer.write(' ');
+            writer.write(String.valueOf(graph.getNodeY(i)));
+            writer.write('\n');
+        }
+
+        // Then a line for each node, with its number of edges
+        // followed by the keys of the nodes they connect to.
+        for(int i = 0; i < numNodes; i++) {
+            int edgeStart = graph.getEdgeStart(i);
+            int edgeEnd = graph.getEdgeEnd(i);
+
+            writer.write(String.valueOf(edgeEnd - edgeStart));
+            writer.write(' ');
+
+            for(int edge = edgeStart; edge < edgeEnd; edge++) {
+                writer.write(graph.getNodeKey(graph.getEdgeTarget(edge)));
+                writer.write(' ');
+            }
+
+            writer.write('\n');
+        }
+
+        writer.flush();
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Checks graphs and landmarks come back exactly as they were after
+ * being written and read again in each of the file formats, and that
+ * badly formatted graph text is rejected.
+ */
+public class GraphFormatsTest {
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    @Test
+    public void binaryGraphRoundTrip() throws IOException {
+        for(CompactGraph graph : TestGraphs.generateAllTypes(500, 1)) {
+            File file = mFolder.newFile();
+            BinaryGraphFormat.write(graph, file);
+            assertSameGraph(graph, BinaryGraphFormat.read(file));
+        }
+    }
+
+    @Test
+    public void binaryLandmarksRoundTrip() throws IOException {
+        for(CompactGraph graph : TestGraphs.generateAllTypes(500, 2)) {
+            Landmarks landmarks = new LandmarksBuilder().build(graph);
+            File file = mFolder.newFile();
+            BinaryLandmarkFormat.write(landmarks, graph, file);
+            Landmarks loaded = BinaryLandmarkFormat.read(file, graph);
+
+            assertEquals(landmarks.getLandmarkCount(), loaded.getLandmarkCount());
+            assertEquals(landmarks.getNodeCount(), loaded.getNodeCount());
+
+            for(int landmark = 0; landmark < landmarks.getLandmarkCount(); landmark++) {
+                assertEquals(landmarks.getLandmark(landmark), loaded.getLandmark(landmark));
+
+                for(int node = 0; node < landmarks.getNodeCount(); node++) {
+                    assertEquals(landmarks.getDistanceFrom(landmark, node), loaded.getDistanceFrom(landmark, node), 0.0);
+                    assertEquals(landmarks.getDistanceTo(landmark, node), loaded.getDistanceTo(landmark, node), 0.0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void binaryLandmarksForAnotherGraphAreRejected() throws IOException {
+        CompactGraph graph = GraphGenerator.generate(GraphGenerator.Type.GRID, 100, 4, 3);
+        CompactGraph otherGraph = GraphGenerator.generate(GraphGenerator.Type.GRID, 100, 4, 4);
+        File file = mFolder.newFile();
+        BinaryLandmarkFormat.write(new LandmarksBuilder().build(graph), graph, file);
+
+        try {
+            BinaryLandmarkFormat.read(file, otherGraph);
+            fail("Landmarks were read for the wrong graph");
+        } catch (IOException e) {
+            // Expected.
+        }
+    }
+
+    @Test
+    public void textGraphRoundTrip() throws IOException {
+        for(CompactGraph graph : TestGraphs.generateAllTypes(500, 5)) {
+            StringWriter writer = new StringWriter();
+            TextGraphWriter.write(graph, writer);
+            assertSameGraph(graph, TextGraphReader.read(new StringReader(writer.toString())));
+        }
+    }
+
+    @Test
+    public void repeatedTextNodeKeepsItsFirstPlaceAndLastPosition() throws IOException {
+        CompactGraph graph = TextGraphReader.read(new StringReader("3\nA 0 0\nB 3 4\nA 6 8\n1 B\n1 A\n1 B\n"));
+
+        assertEquals(2, graph.getNodeCount());
+        assertEquals(0, graph.getNodeIndex("A"));
+        assertEquals(6f, graph.getNodeX(0), 0f);
+        assertEquals(8f, graph.getNodeY(0), 0f);
+        assertEquals(5.0, TestGraphs.getEdgeWeight(graph, 0, 1), 0.0);
+    }
+
+    @Test
+    public void badlyFormattedTextIsRejected() {
+        String[] badTexts = {
+                "",
+                "0\n",
+                "-3\n",
+                "2147483647\nA 1 2\n",
+                "99999999999\n",
+                "2\nA 1 2\nB x 4\n1 B\n1 A\n",
+                "2\nA 1 2\nB 3 4\n1 B\n",
+                "2\nA 1 2\nB 3 4\n1 B\n-1\n"
+        };
+
+        for(String badText : badTexts) {
+            try {
+                TextGraphReader.read(new StringReader(badText));
+                fail("Graph text was accepted: " + badText);
+            } catch (IOException e) {
+                // Expected.
+            }
+        }
+    }
+
+    private static void assertSameGraph(CompactGraph expected, CompactGraph actual) {
+        assertEquals(expected.getNodeCount(), actual.getNodeCount());
+        assertEquals(expected.getEdgeCount(), actual.getEdgeCount());
+
+        for(int node = 0; node < expected.getNodeCount(); node++) {
+            assertEquals(expected.getNodeKey(node), actual.getNodeKey(node));
+            assertEquals(expected.getNodeX(node), actual.getNodeX(node), 0f);
+            assertEquals(expected.getNodeY(node), actual.getNodeY(node), 0f);
+            assertEquals(expected.getEdgeStart(node), actual.getEdgeStart(node));
+            assertEquals(expected.getEdgeEnd(node), actual.getEdgeEnd(node));
+        }
+
+        for(int edge = 0; edge < expected.getEdgeCount(); edge++) {
+            assertEquals(expected.getEdgeTarget(edge), actual.getEdgeTarget(edge));
+            assertEquals(expected.getEdgeWeight(edge), actual.getEdgeWeight(edge), 0.0);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static io.github.marcelbraghetto.dijkstra.graphcore.TestGraphs.EPSILON;
+import static io.github.marcelbraghetto.dijkstra.graphcore.TestGraphs.assertValidPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the paths found by {@link KShortestPaths} against every
+ * loopless path between the two nodes, found by brute force on
+ * graphs small enough to list them all.
+ */
+public class KShortestPathsTest {
+    private static final int MAX_PATHS = 10;
+
+    @Test
+    public void pathsMatchBruteForceOnEveryGraphType() {
+        for(CompactGraph graph : TestGraphs.generateAllTypes(16, 3)) {
+            assertMatchesBruteForce(graph, 3);
+        }
+    }
+
+    @Test
+    public void pathsMatchBruteForceWithTiedWeights() {
+        // Lots of paths share the same length, so the order
+        // among them is arbitrary but the lengths are not.
+        assertMatchesBruteForce(TestGraphs.generateSmallIntegerWeights(12, 6, 4), 4);
+    }
+
+    @Test
+    public void firstPathIsTheShortestPath() {
+        for(CompactGraph graph : TestGraphs.generateAllTypes(400, 6)) {
+            KShortestPaths kShortestPaths = new KShortestPaths(graph);
+            CompactDijkstrasAlgorithm dijkstra = new CompactDijkstrasAlgorithm();
+            Random random = new Random(6);
+
+            for(int i = 0; i < 50; i++) {
+                int origin = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                CompactPath expected = dijkstra.findPath(graph, origin, target);
+                List<CompactPath> paths = kShortestPaths.findPaths(origin, target, MAX_PATHS);
+
+                if(expected == null) {
+                    assertTrue(paths.isEmpty());
+                    continue;
+                }
+
+                assertValidPath(graph, paths.get(0), origin, target, expected.getTotalDistance());
+                assertLooplessAndDistinct(graph, paths, origin, target);
+            }
+        }
+    }
+
+    private static void assertMatchesBruteForce(CompactGraph graph, long seed) {
+        KShortestPaths kShortestPaths = new KShortestPaths(graph);
+        Random random = new Random(seed);
+
+        for(int i = 0; i < 20; i++) {
+            int origin = random.nextInt(graph.getNodeCount());
+            int target = random.nextInt(graph.getNodeCount());
+
+            List<Double> expected = findAllPathDistances(graph, origin, target);
+            List<CompactPath> paths = kShortestPaths.findPaths(origin, target, MAX_PATHS);
+
+            assertEquals(Math.min(MAX_PATHS, expected.size()), paths.size());
+            assertLooplessAndDistinct(graph, paths, origin, target);
+
+            for(int k = 0; k < paths.size(); k++) {
+                assertEquals(expected.get(k), paths.get(k).getTotalDistance(), EPSILON * Math.max(1.0, expected.get(k)));
+            }
+        }
+    }
+
+    private static void assertLooplessAndDistinct(CompactGraph graph, List<CompactPath> paths, int origin, int target) {
+        Set<List<Integer>> seen = new HashSet<>();
+
+        for(CompactPath path : paths) {
+            List<Integer> nodes = new ArrayList<>();
+
+            for(int step = 0; step < path.getLength(); step++) {
+                nodes.add(path.getNode(step));
+            }
+
+            assertEquals("Path revisits a node", nodes.size(), new HashSet<>(nodes).size());
+            assertTrue("Path found twice", seen.add(nodes));
+            assertValidPath(graph, path, origin, target, path.getTotalDistance());
+        }
+
+        for(int k = 1; k < paths.size(); k++) {
+            assertTrue(paths.get(k - 1).getTotalDistance() <= paths.get(k).getTotalDistance() + EPSILON);
+        }
+    }
+
+    /**
+     * The length of every loopless path from the origin to the
+     * target, shortest first. Paths only count once however many
+     * parallel edges they could use, as in {@link KShortestPaths}.
+     */
+    private static List<Double> findAllPathDistances(CompactGraph graph, int origin, int target) {
+        List<Double> distances = new ArrayList<>();
+        findAllPathDistances(graph, origin, target, new boolean[graph.getNodeCount()], 0.0, distances);
+        Collections.sort(distances);
+        return distances;
+    }
+
+    private static void findAllPathDistances(CompactGraph graph, int node, int target, boolean[] visited, double distance, List<Double> distances) {
+        if(node == target) {
+            distances.add(distance);
+            return;
+        }
+
+        visited[node] = true;
+        Set<Integer> followed = new HashSet<>();
+
+        for(int edge = graph.getEdgeStart(node); edge < graph.getEdgeEnd(node); edge++) {
+            int next = graph.getEdgeTarget(edge);
+
+            if(!visited[next] && followed.add(next)) {
+                double weight = TestGraphs.getEdgeWeight(graph, node, next);
+                findAllPathDistances(graph, next, target, visited, distance + weight, distances);
+            }
+        }
+
+        visited[node] = false;
+    }
+}
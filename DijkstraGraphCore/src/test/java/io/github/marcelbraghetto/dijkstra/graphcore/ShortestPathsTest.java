@@ -0,0 +1,232 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static io.github.marcelbraghetto.dijkstra.graphcore.TestGraphs.EPSILON;
+import static io.github.marcelbraghetto.dijkstra.graphcore.TestGraphs.assertValidPath;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks every shortest path algorithm of the graph core finds paths
+ * as short as plain Dijkstra on each type of generated graph. Plain
+ * Dijkstra itself is checked against Floyd-Warshall.
+ */
+public class ShortestPathsTest {
+    private static final int NODE_COUNT = 400;
+    private static final int QUERY_COUNT = 200;
+
+    @Test
+    public void dijkstraMatchesFloydWarshall() {
+        for(CompactGraph graph : allGraphs()) {
+            DistanceMatrix matrix = DistanceMatrix.allocate(graph.getNodeCount(), true);
+            new AllPairsShortestPaths(1).computeWithFloydWarshall(graph, matrix);
+            CompactDijkstrasAlgorithm dijkstra = new CompactDijkstrasAlgorithm();
+
+            for(int origin = 0; origin < graph.getNodeCount(); origin += 37) {
+                for(int target = 0; target < graph.getNodeCount(); target++) {
+                    double expected = matrix.getDistance(origin, target);
+                    CompactPath path = dijkstra.findPath(graph, origin, target);
+
+                    if(expected == Double.POSITIVE_INFINITY) {
+                        assertNull(path);
+                    } else {
+                        assertNotNull(path);
+                        assertValidPath(graph, path, origin, target, expected);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void contractionHierarchyMatchesDijkstra() {
+        for(CompactGraph graph : allGraphs()) {
+            ContractionHierarchyQuery query = new ContractionHierarchyQuery(new ContractionHierarchyBuilder().build(graph));
+            Random random = new Random(1);
+
+            for(int i = 0; i < QUERY_COUNT; i++) {
+                int origin = random.nextInt(graph.getNodeCount());
+                int target = random.nextInt(graph.getNodeCount());
+                assertSamePath(graph, origin, target, query.findPath(origin, target));
+            }
+        }
+    }
+
+    @Test
+    public void landmarksMatchDijkstra() {
+        for(LandmarksBuilder.Strategy strategy : LandmarksBuilder.Strategy.values()) {
+            for(CompactGraph graph : allGraphs()) {
+                Landmarks landmarks = new LandmarksBuilder(strategy, 4, 2).build(graph);
+                LandmarkQuery query = new LandmarkQuery(graph, landmarks);
+                Random random = new Random(2);
+
+                for(int i = 0; i < QUERY_COUNT; i++) {
+                    int origin = random.nextInt(graph.getNodeCount());
+                    int target = random.nextInt(graph.getNodeCount());
+                    assertSamePath(graph, origin, target, query.findPath(origin, target));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void queryEngineMatchesDijkstra() throws InterruptedException {
+        for(CompactGraph graph : allGraphs()) {
+            CompactPathQueryEngine engine = new CompactPathQueryEngine(graph, 2);
+
+            try {
+                assertEngineMatchesDijkstra(graph, engine, 3);
+
+                engine.setLandmarks(new LandmarksBuilder().build(graph));
+                assertEngineMatchesDijkstra(graph, engine, 4);
+            } finally {
+                engine.shutdown();
+            }
+        }
+    }
+
+    @Test
+    public void allPairsMatchDijkstra() throws InterruptedException {
+        for(CompactGraph graph : allGraphs()) {
+            int numNodes = graph.getNodeCount();
+            DistanceMatrix matrix = DistanceMatrix.allocate(numNodes, true);
+            new AllPairsShortestPaths(2).computeWithDijkstra(graph, matrix);
+            CompactDijkstrasAlgorithm dijkstra = new CompactDijkstrasAlgorithm();
+
+            for(int origin = 0; origin < numNodes; origin += 41) {
+                for(int target = 0; target < numNodes; target++) {
+                    CompactPath expected = dijkstra.findPath(graph, origin, target);
+
+                    if(expected == null) {
+                        assertEquals(Double.POSITIVE_INFINITY, matrix.getDistance(origin, target), 0.0);
+                        continue;
+                    }
+
+                    assertEquals(expected.getTotalDistance(), matrix.getDistance(origin, target), EPSILON * expected.getTotalDistance());
+                    assertValidPath(graph, followNextHops(matrix, origin, target), origin, target, expected.getTotalDistance());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void allPairsNextHopsReachTargetAcrossZeroWeightEdges() throws InterruptedException {
+        for(long seed = 0; seed < 20; seed++) {
+            CompactGraph graph = generateWithZeroWeights(60, seed);
+            DistanceMatrix matrix = DistanceMatrix.allocate(graph.getNodeCount(), true);
+            new AllPairsShortestPaths(2).computeWithDijkstra(graph, matrix);
+
+            for(int origin = 0; origin < graph.getNodeCount(); origin++) {
+                for(int target = 0; target < graph.getNodeCount(); target++) {
+                    double distance = matrix.getDistance(origin, target);
+
+                    if(distance != Double.POSITIVE_INFINITY) {
+                        assertValidPath(graph, followNextHops(matrix, origin, target), origin, target, distance);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void assertEngineMatchesDijkstra(CompactGraph graph, CompactPathQueryEngine engine, long seed) throws InterruptedException {
+        Random random = new Random(seed);
+        List<CompactPathQueryEngine.Query> queries = new ArrayList<>();
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            String originKey = graph.getNodeKey(random.nextInt(graph.getNodeCount()));
+            String targetKey = graph.getNodeKey(random.nextInt(graph.getNodeCount()));
+            queries.add(new CompactPathQueryEngine.Query(originKey, targetKey));
+        }
+
+        List<CompactPath> paths = engine.findPaths(queries);
+
+        for(int i = 0; i < QUERY_COUNT; i++) {
+            int origin = graph.getNodeIndex(queries.get(i).getOriginKey());
+            int target = graph.getNodeIndex(queries.get(i).getTargetKey());
+            assertSamePath(graph, origin, target, paths.get(i));
+            assertSamePath(graph, origin, target, engine.findPath(queries.get(i).getOriginKey(), queries.get(i).getTargetKey()));
+        }
+    }
+
+    /**
+     * Check the given path is as short as the one plain Dijkstra finds.
+     */
+    private static void assertSamePath(CompactGraph graph, int origin, int target, CompactPath path) {
+        CompactPath expected = new CompactDijkstrasAlgorithm().findPath(graph, origin, target);
+
+        if(expected == null) {
+            assertNull(path);
+        } else {
+            assertNotNull(path);
+            assertValidPath(graph, path, origin, target, expected.getTotalDistance());
+        }
+    }
+
+    private static CompactPath followNextHops(DistanceMatrix matrix, int origin, int target) {
+        List<Integer> nodes = new ArrayList<>();
+        nodes.add(origin);
+
+        for(int node = origin; node != target; node = matrix.getNextHop(node, target)) {
+            // A shortest path never needs more steps than there are nodes.
+            assertTrue("Next hops loop from " + origin + " to " + target, nodes.size() <= matrix.getNodeCount());
+            nodes.add(matrix.getNextHop(node, target));
+        }
+
+        int[] path = new int[nodes.size()];
+
+        for(int i = 0; i < path.length; i++) {
+            path[i] = nodes.get(i);
+        }
+
+        return new CompactPath(path, matrix.getDistance(origin, target));
+    }
+
+    /**
+     * A small graph where many edges weigh nothing, mixing one way and
+     * two way edges, so lots of paths to the same node tie.
+     */
+    private static CompactGraph generateWithZeroWeights(int nodeCount, long seed) {
+        Random random = new Random(seed);
+        CompactGraphBuilder builder = new CompactGraphBuilder(nodeCount, nodeCount * 6);
+
+        for(int node = 0; node < nodeCount; node++) {
+            builder.addNode("n" + node, 0f, 0f);
+        }
+
+        for(int node = 0; node < nodeCount; node++) {
+            for(int edge = 0; edge < 3; edge++) {
+                int other = random.nextInt(nodeCount);
+                int weight = random.nextBoolean() ? 0 : random.nextInt(4);
+                builder.addEdge(node, other, weight);
+
+                if(random.nextBoolean()) {
+                    builder.addEdge(other, node, weight);
+                }
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * A graph of every generated type, plus one with small whole
+     * number weights, which some searches treat differently.
+     */
+    private static List<CompactGraph> allGraphs() {
+        List<CompactGraph> graphs = new ArrayList<>();
+
+        for(CompactGraph graph : TestGraphs.generateAllTypes(NODE_COUNT, 5)) {
+            graphs.add(graph);
+        }
+
+        graphs.add(TestGraphs.generateSmallIntegerWeights(NODE_COUNT, 4, 5));
+        return graphs;
+    }
+}
@@ -0,0 +1,96 @@
+package io.github.marcelbraghetto.dijkstra.graphcore;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Graphs and checks shared by the graph core tests.
+ */
+final class TestGraphs {
+    // Distances found by different algorithms may add up the
+    // same edge weights in a different order.
+    static final double EPSILON = 1e-9;
+
+    private TestGraphs() { }
+
+    /**
+     * A small graph of every generated type.
+     *
+     * @param nodeCount roughly how many nodes each graph should have.
+     * @param seed for the random numbers.
+     *
+     * @return one graph for each {@link GraphGenerator.Type}.
+     */
+    static CompactGraph[] generateAllTypes(int nodeCount, long seed) {
+        GraphGenerator.Type[] types = GraphGenerator.Type.values();
+        CompactGraph[] graphs = new CompactGraph[types.length];
+
+        for(int i = 0; i < types.length; i++) {
+            graphs[i] = GraphGenerator.generate(types[i], nodeCount, 4, seed);
+        }
+
+        return graphs;
+    }
+
+    /**
+     * A random undirected graph with small whole number edge weights,
+     * including some zero weights, which searches can use a bucket
+     * queue for. Nodes are all placed at the origin.
+     */
+    static CompactGraph generateSmallIntegerWeights(int nodeCount, int degree, long seed) {
+        Random random = new Random(seed);
+        CompactGraphBuilder builder = new CompactGraphBuilder(nodeCount, nodeCount * degree);
+
+        for(int node = 0; node < nodeCount; node++) {
+            builder.addNode("n" + node, 0f, 0f);
+        }
+
+        for(int node = 0; node < nodeCount; node++) {
+            for(int edge = 0; edge < degree / 2; edge++) {
+                int other = random.nextInt(nodeCount);
+                int weight = random.nextInt(20);
+                builder.addEdge(node, other, weight);
+                builder.addEdge(other, node, weight);
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Check the given path runs from the origin to the target along
+     * edges of the graph, and that its total distance is the sum of
+     * its edge weights and the expected shortest distance.
+     */
+    static void assertValidPath(CompactGraph graph, CompactPath path, int origin, int target, double expectedDistance) {
+        assertEquals(origin, path.getNode(0));
+        assertEquals(target, path.getNode(path.getLength() - 1));
+
+        double distance = 0.0;
+
+        for(int step = 0; step + 1 < path.getLength(); step++) {
+            distance += getEdgeWeight(graph, path.getNode(step), path.getNode(step + 1));
+        }
+
+        assertEquals(expectedDistance, path.getTotalDistance(), EPSILON * Math.max(1.0, expectedDistance));
+        assertEquals(path.getTotalDistance(), distance, EPSILON * Math.max(1.0, distance));
+    }
+
+    /**
+     * The lightest edge from one node to another.
+     */
+    static double getEdgeWeight(CompactGraph graph, int origin, int target) {
+        double weight = Double.POSITIVE_INFINITY;
+
+        for(int edge = graph.getEdgeStart(origin); edge < graph.getEdgeEnd(origin); edge++) {
+            if(graph.getEdgeTarget(edge) == target) {
+                weight = Math.min(weight, graph.getEdgeWeight(edge));
+            }
+        }
+
+        assertTrue("No edge from " + origin + " to " + target, weight != Double.POSITIVE_INFINITY);
+        return weight;
+    }
+}
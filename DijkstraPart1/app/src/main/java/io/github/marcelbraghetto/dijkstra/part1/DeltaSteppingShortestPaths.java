@@ -0,0 +1,628 @@
+package io.github.marcelbraghetto.dijkstra.part1;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+
+/**
+ * Calculates the shortest distance from one node to every other node
+ * in a graph using the delta-stepping algorithm, shared between a pool
+ * of worker threads.
+ *
+ * Rather than settling one node at a time like Dijkstra, nodes are
+ * grouped into buckets of width delta by their distance from the
+ * origin, and all the nodes in the lowest bucket are expanded at once.
+ * Edges no heavier than delta (light edges) can put nodes back into
+ * the bucket being expanded, so it is expanded repeatedly until it
+ * stays empty, after which the heavy edges of everything that was in
+ * it are followed once. A small delta does little wasted work but
+ * has little to share between the threads, a large delta the reverse.
+ *
+ * Each worker owns a fixed share of the nodes, and is the only thread
+ * that ever reads or writes their distances, parents and buckets. Edges
+ * to nodes owned by another worker are handed over as requests, which
+ * the owner applies after the next barrier, so no locks or atomic
+ * updates are needed.
+ *
+ * The distances are exactly those found by {@link DijkstrasAlgorithm},
+ * as both keep the smallest sum found along any path. Where several
+ * paths share the shortest distance the parent recorded for a node
+ * may differ, but always gives a path of that distance.
+ *
+ * The edges are copied out of the graph when the engine is created,
+ * so the graph must not be changed while it is in use. Edge weights
+ * must not be negative.
+ */
+public class DeltaSteppingShortestPaths {
+    private static final int NO_PARENT = -1;
+    private static final long NO_BUCKET = -1L;
+
+    // Nodes are shared between the workers in blocks of this many (as a
+    // power of two), so workers rarely write to the same cache line.
+    private static final int OWNER_BLOCK_SHIFT = 6;
+
+    // Most slots the ring of buckets may have, as every worker keeps
+    // its own ring. Bucket widths that would need more are too narrow.
+    static final int MAX_BUCKET_SLOTS = 1 << 20;
+
+    private final Graph mGraph;
+    private final double mDelta;
+    private final int mNumThreads;
+    private final ExecutorService mExecutor;
+
+    // The edges of node n are mEdgeTargets[mEdgeStarts[n] .. mEdgeStarts[n + 1]),
+    // with its light edges first, ending at mLightEdgeEnds[n].
+    private final int[] mEdgeStarts;
+    private final int[] mLightEdgeEnds;
+    private final int[] mEdgeTargets;
+    private final double[] mEdgeWeights;
+
+    // Buckets are reused in a ring, which only has to be big enough
+    // to reach from the current bucket past the heaviest edge.
+    private final int mNumBucketSlots;
+
+    private final double[] mDistances;
+    private final int[] mParents;
+    private final long[] mBuckets;
+    private final int[] mSettledRounds;
+
+    private final Worker[] mWorkers;
+    private final long[] mWorkerNextBuckets;
+    private final boolean[] mWorkerBucketNotEmpty;
+    private CyclicBarrier mBarrier;
+
+    private int mOrigin = NO_PARENT;
+
+    /**
+     * Use one worker per processor core and a bucket width suited
+     * to the edge weights and degree of the graph.
+     *
+     * @param graph to calculate the distances for.
+     */
+    public DeltaSteppingShortestPaths(@NonNull Graph graph) {
+        this(graph, 0.0, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param graph to calculate the distances for.
+     * @param delta width of each bucket, or 0 to choose one from the
+     *              heaviest edge and the average degree of the graph.
+     * @param numThreads how many worker threads to use.
+     *
+     * @throws IllegalArgumentException if the graph has a negative edge
+     * weight, or delta is so much narrower than the heaviest edge that
+     * more than {@link #MAX_BUCKET_SLOTS} buckets would be needed.
+     */
+    public DeltaSteppingShortestPaths(@NonNull Graph graph, double delta, int numThreads) {
+        mGraph = graph;
+        mNumThreads = Math.max(1, numThreads);
+
+        int numNodes = graph.getNodeCount();
+        int numEdges = 0;
+        double maxWeight = 0.0;
+
+        for(int node = 0; node < numNodes; node++) {
+            Node graphNode = graph.getNode(node);
+            numEdges += graphNode.getEdgeCount();
+
+            for(int position = 0; position < graphNode.getEdgeCount(); position++) {
+                double weight = graphNode.getEdge(position).getWeight();
+
+                if(weight < 0.0) {
+                    throw new IllegalArgumentException("Negative edge weight from " + graphNode.getKey());
+                }
+
+                if(weight != Double.POSITIVE_INFINITY) {
+                    maxWeight = Math.max(maxWeight, weight);
+                }
+            }
+        }
+
+        // A bucket as wide as the heaviest edge shared between the
+        // edges of an average node tends to balance the two costs.
+        // The ring then needs about as many slots as the average
+        // degree, which is always far below the limit.
+        if(delta <= 0.0) {
+            delta = numEdges == 0 ? 1.0 : maxWeight * numNodes / numEdges;
+        }
+
+        mDelta = delta > 0.0 ? delta : 1.0;
+
+        double numBucketSlots = Math.ceil(maxWeight / mDelta) + 3.0;
+
+        if(numBucketSlots > MAX_BUCKET_SLOTS) {
+            throw new IllegalArgumentException("Delta " + mDelta + " is too narrow for edges weighing up to "
+                    + maxWeight + ", it must be at least " + maxWeight / (MAX_BUCKET_SLOTS - 4));
+        }
+
+        mNumBucketSlots = (int) numBucketSlots;
+
+        mEdgeStarts = new int[numNodes + 1];
+        mLightEdgeEnds = new int[numNodes];
+        mEdgeTargets = new int[numEdges];
+        mEdgeWeights = new double[numEdges];
+
+        int edge = 0;
+
+        for(int node = 0; node < numNodes; node++) {
+            Node graphNode = graph.getNode(node);
+            mEdgeStarts[node] = edge;
+
+            // Light edges fill in from the start of the node's range
+            // and heavy edges from the end, so each pass only has to
+            // walk the edges it needs.
+            int light = edge;
+            int heavy = edge + graphNode.getEdgeCount();
+
+            for(int position = 0; position < graphNode.getEdgeCount(); position++) {
+                Edge graphEdge = graphNode.getEdge(position);
+                int slot = graphEdge.getWeight() <= mDelta ? light++ : --heavy;
+
+                mEdgeTargets[slot] = graphEdge.getTarget().getIndex();
+                mEdgeWeights[slot] = graphEdge.getWeight();
+            }
+
+            mLightEdgeEnds[node] = light;
+            edge += graphNode.getEdgeCount();
+        }
+
+        mEdgeStarts[numNodes] = edge;
+
+        mDistances = new double[numNodes];
+        mParents = new int[numNodes];
+        mBuckets = new long[numNodes];
+        mSettledRounds = new int[numNodes];
+
+        Arrays.fill(mDistances, Double.POSITIVE_INFINITY);
+        Arrays.fill(mParents, NO_PARENT);
+
+        mWorkers = new Worker[mNumThreads];
+        mWorkerNextBuckets = new long[mNumThreads];
+        mWorkerBucketNotEmpty = new boolean[mNumThreads];
+
+        for(int i = 0; i < mNumThreads; i++) {
+            mWorkers[i] = new Worker(i);
+        }
+
+        mExecutor = Executors.newFixedThreadPool(mNumThreads);
+    }
+
+    /**
+     * Calculate the shortest distance from the given origin to every
+     * node in the graph, replacing the results of any earlier call.
+     * The calling thread blocks until all the workers are done.
+     *
+     * @param origin to calculate the distances from.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    public synchronized void compute(@NonNull Node origin) throws InterruptedException {
+        mOrigin = origin.getIndex();
+        mBarrier = new CyclicBarrier(mNumThreads);
+
+        List<Future<?>> futures = new ArrayList<>(mNumThreads);
+
+        for(Worker worker : mWorkers) {
+            futures.add(mExecutor.submit(worker));
+        }
+
+        try {
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            mOrigin = NO_PARENT;
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            mOrigin = NO_PARENT;
+            mBarrier.reset();
+            throw e;
+        }
+    }
+
+    public double getDelta() {
+        return mDelta;
+    }
+
+    public int getThreadCount() {
+        return mNumThreads;
+    }
+
+    /**
+     * The shortest distance found by the last call to compute.
+     *
+     * @param target to look up.
+     *
+     * @return distance from the origin to the target, or infinity
+     * if it can't be reached.
+     */
+    public synchronized double getDistance(@NonNull Node target) {
+        return mOrigin == NO_PARENT ? Double.POSITIVE_INFINITY : mDistances[target.getIndex()];
+    }
+
+    /**
+     * Build the shortest path from the origin of the last call to
+     * compute to the given target.
+     *
+     * @param target to find the path to.
+     *
+     * @return the shortest path in the same form as
+     * {@link DijkstrasAlgorithm#findPath(Node, Node)}, or null if
+     * the target can't be reached.
+     */
+    @Nullable
+    public synchronized DijkstrasAlgorithm.Path getPath(@NonNull Node target) {
+        if(getDistance(target) == Double.POSITIVE_INFINITY) {
+            return null;
+        }
+
+        DijkstrasAlgorithm.Path path = new DijkstrasAlgorithm.Path();
+        path.setTotalDistance(mDistances[target.getIndex()]);
+
+        for(int step = target.getIndex(); step != NO_PARENT; step = mParents[step]) {
+            path.addStep(mGraph.getNode(step).getKey());
+        }
+
+        return path;
+    }
+
+    /**
+     * Fill the given buffer with the shortest path from the origin
+     * of the last call to compute to the given target.
+     *
+     * @param target to find the path to.
+     * @param path buffer to fill with the node indices of the path,
+     *             which is left empty if the target can't be reached.
+     *
+     * @return true if there is a path to the target.
+     */
+    public synchronized boolean getPath(@NonNull Node target, @NonNull PathBuffer path) {
+        path.clear();
+
+        if(getDistance(target) == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        path.setTotalDistance(mDistances[target.getIndex()]);
+
+        for(int step = target.getIndex(); step != NO_PARENT; step = mParents[step]) {
+            path.addStep(step);
+        }
+
+        path.reverse();
+        return true;
+    }
+
+    /**
+     * Stop the worker threads, the engine can't
+     * be used to compute distances afterward.
+     */
+    public void shutdown() {
+        mExecutor.shutdown();
+    }
+
+    private int getOwner(int node) {
+        return (node >>> OWNER_BLOCK_SHIFT) % mNumThreads;
+    }
+
+    /**
+     * One of the worker threads, along with the buckets of the
+     * nodes it owns and the requests it is sending to the others.
+     */
+    private class Worker implements Callable<Void> {
+        private final int mId;
+        private final IntList[] mBucketSlots = new IntList[mNumBucketSlots];
+        private final RequestList[] mOutgoing = new RequestList[mNumThreads];
+        private final IntList mFrontier = new IntList();
+        private final IntList mSettled = new IntList();
+
+        // Slots of the ring that currently have nodes in them.
+        private int mNumFilledSlots;
+
+        // Lowest bucket a node may be put into right now. Rounding can
+        // put a node a bucket lower than it belongs in, which must never
+        // be one that has already been expanded or it would be lost.
+        private long mMinBucket;
+
+        Worker(int id) {
+            mId = id;
+
+            for(int i = 0; i < mNumThreads; i++) {
+                mOutgoing[i] = new RequestList();
+            }
+        }
+
+        @Override
+        public Void call() throws InterruptedException, BrokenBarrierException {
+            try {
+                run();
+            } catch (RuntimeException | Error e) {
+                // Don't leave the other workers waiting forever at the barrier.
+                mBarrier.reset();
+                throw e;
+            }
+
+            return null;
+        }
+
+        private void run() throws InterruptedException, BrokenBarrierException {
+            reset();
+            mMinBucket = 0L;
+
+            if(getOwner(mOrigin) == mId) {
+                apply(mOrigin, 0.0, NO_PARENT);
+            }
+
+            long current = 0L;
+            int round = 0;
+
+            while(true) {
+                mWorkerNextBuckets[mId] = findNextBucket(current);
+                mBarrier.await();
+
+                current = Long.MAX_VALUE;
+
+                for(long next : mWorkerNextBuckets) {
+                    current = Math.min(current, next);
+                }
+
+                if(current == Long.MAX_VALUE) {
+                    break;
+                }
+
+                round++;
+                mSettled.clear();
+                mMinBucket = current;
+
+                // Keep expanding the current bucket until none of the
+                // workers have anything left in it.
+                while(true) {
+                    takeBucket(current, round);
+                    sendRequests(mFrontier, true);
+                    mBarrier.await();
+
+                    applyRequests();
+                    mWorkerBucketNotEmpty[mId] = getSlot(current).size() > 0;
+                    mBarrier.await();
+
+                    boolean bucketNotEmpty = false;
+
+                    for(boolean notEmpty : mWorkerBucketNotEmpty) {
+                        bucketNotEmpty |= notEmpty;
+                    }
+
+                    if(!bucketNotEmpty) {
+                        break;
+                    }
+                }
+
+                // Heavy edges always reach past the current bucket,
+                // so they only need following once everything in
+                // it has its final distance. Any node rounded down
+                // into the current bucket goes in the next one instead.
+                sendRequests(mSettled, false);
+                mBarrier.await();
+
+                mMinBucket = current + 1;
+                applyRequests();
+                current++;
+            }
+        }
+
+        /**
+         * Put every node this worker owns back to unreached.
+         */
+        private void reset() {
+            int numNodes = mDistances.length;
+            int blockSize = 1 << OWNER_BLOCK_SHIFT;
+
+            for(int block = mId * blockSize; block < numNodes; block += mNumThreads * blockSize) {
+                int end = Math.min(numNodes, block + blockSize);
+
+                Arrays.fill(mDistances, block, end, Double.POSITIVE_INFINITY);
+                Arrays.fill(mParents, block, end, NO_PARENT);
+                Arrays.fill(mBuckets, block, end, NO_BUCKET);
+                Arrays.fill(mSettledRounds, block, end, 0);
+            }
+
+            for(IntList slot : mBucketSlots) {
+                if(slot != null) {
+                    slot.clear();
+                }
+            }
+
+            mNumFilledSlots = 0;
+        }
+
+        /**
+         * The lowest bucket at or after the given one
+         * holding any nodes owned by this worker.
+         *
+         * @return the bucket, or Long.MAX_VALUE if there are none.
+         */
+        private long findNextBucket(long start) {
+            if(mNumFilledSlots == 0) {
+                return Long.MAX_VALUE;
+            }
+
+            for(long bucket = start; bucket < start + mNumBucketSlots; bucket++) {
+                if(getSlot(bucket).size() > 0) {
+                    return bucket;
+                }
+            }
+
+            return Long.MAX_VALUE;
+        }
+
+        /**
+         * Empty the given bucket into the frontier, skipping nodes
+         * which have since moved to a lower bucket.
+         */
+        private void takeBucket(long bucket, int round) {
+            IntList slot = getSlot(bucket);
+            mFrontier.clear();
+
+            if(slot.size() > 0) {
+                mNumFilledSlots--;
+            }
+
+            for(int i = 0; i < slot.size(); i++) {
+                int node = slot.get(i);
+
+                if(mBuckets[node] != bucket) {
+                    continue;
+                }
+
+                mBuckets[node] = NO_BUCKET;
+                mFrontier.add(node);
+
+                if(mSettledRounds[node] != round) {
+                    mSettledRounds[node] = round;
+                    mSettled.add(node);
+                }
+            }
+
+            slot.clear();
+        }
+
+        /**
+         * Follow the light or heavy edges of the given nodes, and
+         * queue a request with the owner of each edge target.
+         */
+        private void sendRequests(@NonNull IntList nodes, boolean light) {
+            for(RequestList outgoing : mOutgoing) {
+                outgoing.clear();
+            }
+
+            for(int i = 0; i < nodes.size(); i++) {
+                int node = nodes.get(i);
+                double distance = mDistances[node];
+                int start = light ? mEdgeStarts[node] : mLightEdgeEnds[node];
+                int end = light ? mLightEdgeEnds[node] : mEdgeStarts[node + 1];
+
+                for(int edge = start; edge < end; edge++) {
+                    int target = mEdgeTargets[edge];
+                    mOutgoing[getOwner(target)].add(target, node, distance + mEdgeWeights[edge]);
+                }
+            }
+        }
+
+        /**
+         * Apply the requests every worker has queued for this one.
+         */
+        private void applyRequests() {
+            for(Worker sender : mWorkers) {
+                RequestList requests = sender.mOutgoing[mId];
+
+                for(int i = 0; i < requests.mSize; i++) {
+                    apply(requests.mTargets[i], requests.mDistances[i], requests.mParents[i]);
+                }
+            }
+        }
+
+        /**
+         * Adopt a new distance and parent for a node if the
+         * distance is shorter, moving it to its new bucket.
+         */
+        private void apply(int node, double distance, int parent) {
+            if(distance >= mDistances[node]) {
+                return;
+            }
+
+            mDistances[node] = distance;
+            mParents[node] = parent;
+
+            long bucket = Math.max(mMinBucket, (long) (distance / mDelta));
+
+            // A node left behind in its old bucket is skipped when
+            // that bucket is taken, as its bucket no longer matches.
+            if(mBuckets[node] != bucket) {
+                mBuckets[node] = bucket;
+
+                IntList slot = getSlot(bucket);
+
+                if(slot.size() == 0) {
+                    mNumFilledSlots++;
+                }
+
+                slot.add(node);
+            }
+        }
+
+        @NonNull
+        private IntList getSlot(long bucket) {
+            int index = (int) (bucket % mNumBucketSlots);
+
+            if(mBucketSlots[index] == null) {
+                mBucketSlots[index] = new IntList();
+            }
+
+            return mBucketSlots[index];
+        }
+    }
+
+    /**
+     * Requests from one worker to another to shorten
+     * the distance to a node, kept in parallel arrays.
+     */
+    private static class RequestList {
+        private int[] mTargets = new int[16];
+        private int[] mParents = new int[16];
+        private double[] mDistances = new double[16];
+        private int mSize;
+
+        void add(int target, int parent, double distance) {
+            if(mSize == mTargets.length) {
+                mTargets = Arrays.copyOf(mTargets, mSize * 2);
+                mParents = Arrays.copyOf(mParents, mSize * 2);
+                mDistances = Arrays.copyOf(mDistances, mSize * 2);
+            }
+
+            mTargets[mSize] = target;
+            mParents[mSize] = parent;
+            mDistances[mSize] = distance;
+            mSize++;
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+    }
+
+    private static class IntList {
+        private int[] mValues = new int[16];
+        private int mSize;
+
+        void add(int value) {
+            if(mSize == mValues.length) {
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            }
+
+            mValues[mSize++] = value;
+        }
+
+        int get(int index) {
+            return mValues[index];
+        }
+
+        int size() {
+            return mSize;
+        }
+
+        void clear() {
+            mSize = 0;
+        }
+    }
+}
@@ -3,20 +3,47 @@ package io.github.marcelbraghetto.dijkstra.part1;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Arrays;
 import java.util.Stack;
 
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.MonotoneBucketQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchStats;
+
 /**
  * Created by Marcel Braghetto on 7/09/15.
  *
  * Simple example of Dijkstras algorithm that uses
  * a priority queue to track which nodes should be
  * completed and what node should be examined next.
+ *
+ * An instance can be reused for many searches, which
+ * avoids re allocating its queue each time.
+ *
+ * If every edge weight in the graph is a small whole number (see
+ * {@link Graph#getMaxSmallIntegerWeight()}) a bucket queue is used
+ * in place of the priority queue, which queues and polls nodes in
+ * constant time.
  */
 public class DijkstrasAlgorithm {
+    // The priority queue is very important because it allows us to add nodes into
+    // it which will automatically be placed in order based on their distance from
+    // the origin. Because of this, we can always guarantee that the first item in
+    // the queue is the one with the minimum distance. The queue is keyed by node
+    // index, so a node whose distance improves is moved up in place rather than
+    // being added a second time.
+    private final IndexedPriorityQueue mRemainingNodes = new IndexedPriorityQueue(16);
+
+    // Used instead of the priority queue for graphs with small whole
+    // number weights, created the first time such a graph is searched.
+    private MonotoneBucketQueue mRemainingNodeBuckets;
+    private boolean mUseBuckets;
+
+    // Lookup from node index back to the queued node, kept alongside
+    // the queue so nodes can be recovered without any allocation.
+    private Node[] mQueuedNodes = new Node[16];
+
     /**
      * Attempt to calculate the shortest path between the
      * given origin node and target node.
@@ -32,43 +59,130 @@ public class DijkstrasAlgorithm {
      */
     @Nullable
     public Path findPath(@NonNull Node origin, @NonNull Node target) {
-        // The visited nodes track each node that has been visited, and will also
-        // contain the distances and parent node information.
-        Set<Node> visitedNodes = new HashSet<>();
-
-        // The priority queue is very important because it allows us to add nodes into
-        // it which will automatically be placed in order based on their distance from
-        // the origin. Because of this, we can always guarantee that the first item in
-        // the queue is the one with the minimum distance.
-        PriorityQueue<Node> remainingNodes = new PriorityQueue<>(10, new Comparator<Node>() {
-            @Override
-            public int compare(Node a, Node b) {
-                if(a.getPathFindingDistanceFromOrigin() > b.getPathFindingDistanceFromOrigin()) {
-                    return 1;
-                }
+        return findPath(origin, target, null);
+    }
 
-                if(a.getPathFindingDistanceFromOrigin() < b.getPathFindingDistanceFromOrigin()) {
-                    return -1;
-                }
+    /**
+     * Attempt to calculate the shortest path between the
+     * given origin node and target node, recording how much
+     * work the search did.
+     *
+     * It is assumed that all nodes in the underlying graph
+     * are in a 'path finding reset' state before running this algorithm.
+     *
+     * @param origin to start from.
+     * @param target to attempt to find the shortest path to.
+     * @param stats to fill in with the work done by the search,
+     *              or null to skip recording it.
+     *
+     * @return a path structure representing the shortest path, or
+     * null if no path to the target could be found.
+     */
+    @Nullable
+    public Path findPath(@NonNull Node origin, @NonNull Node target, @Nullable SearchStats stats) {
+        // If the target node is not complete, then it must have never
+        // been reached (was unreachable from the origin).
+        if(!search(origin, target, stats)) {
+            return null;
+        }
 
-                return 0;
-            }
-        });
+        // At this stage, we will have the shortest paths between the origin
+        // node and all completed nodes, so walk backwards from the target node
+        // through its parent nodes to build the actual path that the caller
+        // was looking for.
+        Node stepNode = target;
+
+        // Create a new path to generate an ordered step
+        // by step path from the origin to the target.
+        Path path = new Path();
+
+        // Add the target node initially.
+        path.addStep(stepNode.getKey());
+
+        // Capture what the total distance was to the target.
+        path.setTotalDistance(stepNode.getPathFindingDistanceFromOrigin());
+
+        // Iterate backward through each parent node, adding it to
+        // the path until we hit the origin.
+        while(stepNode != null && stepNode.getPathFindingParentNode() != null) {
+            path.addStep(stepNode.getPathFindingParentNode().getKey());
+            stepNode = stepNode.getPathFindingParentNode();
+        }
+
+        // This will contain the stack of steps to follow to travel
+        // from the origin node to the target node in the minimum
+        // distance found in the graph.
+        return path;
+    }
+
+    /**
+     * Attempt to calculate the shortest path between the given origin
+     * node and target node, filling the node indices of the path into
+     * a buffer supplied by the caller. Unlike the other findPath methods
+     * this allocates nothing, so suits searching again and again.
+     *
+     * It is assumed that all nodes in the underlying graph
+     * are in a 'path finding reset' state before running this algorithm.
+     *
+     * @param origin to start from.
+     * @param target to attempt to find the shortest path to.
+     * @param stats to fill in with the work done by the search,
+     *              or null to skip recording it.
+     * @param path buffer to fill with the shortest path, origin first,
+     *             which is left empty if the target can't be reached.
+     *
+     * @return true if a path to the target was found.
+     */
+    public boolean findPath(@NonNull Node origin, @NonNull Node target, @Nullable SearchStats stats, @NonNull PathBuffer path) {
+        path.clear();
+
+        if(!search(origin, target, stats)) {
+            return false;
+        }
+
+        path.setTotalDistance(target.getPathFindingDistanceFromOrigin());
+
+        // Walk back from the target to the origin, then flip the steps over.
+        for(Node stepNode = target; stepNode != null; stepNode = stepNode.getPathFindingParentNode()) {
+            path.addStep(stepNode.getIndex());
+        }
+
+        path.reverse();
+        return true;
+    }
+
+    /**
+     * Run the search, leaving the shortest distances and parent
+     * nodes it finds in the nodes themselves.
+     *
+     * @return true if the target was reached.
+     */
+    private boolean search(@NonNull Node origin, @NonNull Node target, @Nullable SearchStats stats) {
+        long startTime = stats == null ? 0L : System.nanoTime();
+
+        // Work counters, kept in locals as they cost next to nothing
+        // to update, and only copied out if stats were asked for.
+        int settledNodes = 0;
+        int edgesRelaxed = 0;
+        int improvements = 0;
+        int peakFrontierSize = 1;
+
+        clearQueue(origin.getParentGraph().getMaxSmallIntegerWeight());
 
         origin.updatePathFindingData(null, 0.0);    // Configure the origin node.
-        visitedNodes.add(origin);                   // Put the origin node into the visited nodes.
-        remainingNodes.offer(origin);               // Put the origin node into the queue.
+        enqueue(origin);                            // Put the origin node into the queue.
 
         // Dequeue nodes as long as there are nodes left.
-        while (!remainingNodes.isEmpty()) {
+        while (!isQueueEmpty()) {
             // Grab the next node from the queue, which should be the
             // next minimum distance node from the origin.
-            Node currentNode = remainingNodes.poll();
+            Node currentNode = mQueuedNodes[pollQueue()];
 
             // Since it is the first item in the priority queue, it
             // should be the next minimum distance node, mark it as
             // completed.
             currentNode.setPathFindingComplete();
+            settledNodes++;
 
             // Short circuit! If we just discovered the target
             // node in a completed state, then there is no
@@ -82,7 +196,11 @@ public class DijkstrasAlgorithm {
 
             // Loop through all the edges from the current node,
             // which represent its neighbours.
-            for(Edge edge : currentNode.getEdges().values()) {
+            edgesRelaxed += currentNode.getEdgeCount();
+
+            for(int position = 0, numEdges = currentNode.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = currentNode.getEdge(position);
+
                 // Find out what the target node for this edge is
                 Node edgeTarget = edge.getTarget();
 
@@ -96,70 +214,102 @@ public class DijkstrasAlgorithm {
                 // of the edge we are looking at inside this loop.
                 double distanceToEdgeTarget = currentNode.getPathFindingDistanceFromOrigin() + edge.getWeight();
 
-                // If the edge target has already been visited...
-                if(visitedNodes.contains(edgeTarget)) {
-                    // and our current calculated distance is smaller than the distance
-                    // already stored in the edge target ...
-                    if(distanceToEdgeTarget < edgeTarget.getPathFindingDistanceFromOrigin()) {
-                        // then adopt the calculated distance and the current node as its parent node ...
-                        edgeTarget.updatePathFindingData(currentNode, distanceToEdgeTarget);
-
-                        // and update the set of visited nodes.
-                        visitedNodes.remove(edgeTarget);
-                        visitedNodes.add(edgeTarget);
-                    }
-                } else {
-                    // Otherwise, this edge target has never been visited before, so
-                    // simply adopt the calculated distance and current node as its parent ...
+                // A node that has never been visited still has its reset distance
+                // of infinity, so this single comparison covers both the 'never
+                // visited' case and the 'found a shorter way' case ...
+                if(distanceToEdgeTarget < edgeTarget.getPathFindingDistanceFromOrigin()) {
+                    // adopt the calculated distance and the current node as its parent node ...
                     edgeTarget.updatePathFindingData(currentNode, distanceToEdgeTarget);
+                    improvements++;
 
-                    // and add it to the set of visited nodes.
-                    visitedNodes.add(edgeTarget);
+                    // and add it to the queue, or move it up the queue if it was
+                    // already waiting in there with a larger distance.
+                    enqueue(edgeTarget);
                 }
-
-                // Add the edge target to the priority queue, which will take into
-                // account its distance from the origin when deciding where to
-                // place it in the queue. The result will be that if this particular
-                // edge target had the smallest distance, it will be in the first
-                // position in the queue.
-                remainingNodes.add(edgeTarget);
             }
+
+            // The queue only grows while edges are followed, so its
+            // largest size is always seen at the end of a node.
+            peakFrontierSize = Math.max(peakFrontierSize, getQueueSize());
         }
 
-        // At this stage, we will have our visited nodes data full with
-        // the shortest paths between the origin node and all other nodes,
-        // so find the target node in the visited nodes and walk backwards
-        // through its parent nodes to build the actual path that the caller
-        // was looking for.
-        Node stepNode = target;
+        if(stats != null) {
+            // Nodes are never queued again once settled, so every node that
+            // was queued has either been settled or is still in the queue, and
+            // every other improvement must have moved a node up the queue.
+            int queuePushes = settledNodes + getQueueSize();
 
-        // If the target node is not in the visited nodes collection, then it
-        // must have never been visited (was unreachable from the origin).
-        if(!visitedNodes.contains(stepNode)) {
-            return null;
+            stats.set(origin.getKey(),
+                      target.getKey(),
+                      target.isPathFindingComplete(),
+                      settledNodes,
+                      edgesRelaxed,
+                      queuePushes,
+                      improvements + 1 - queuePushes,
+                      peakFrontierSize,
+                      System.nanoTime() - startTime);
         }
 
-        // Otherwise create a new path to generate an ordered step
-        // by step path from the origin to the target.
-        Path path = new Path();
+        return target.isPathFindingComplete();
+    }
 
-        // Add the target node initially.
-        path.addStep(stepNode.getKey());
+    /**
+     * Add the node to the queue using its current distance from
+     * the origin, or move it up if it is already queued.
+     *
+     * @param node to queue.
+     */
+    private void enqueue(@NonNull Node node) {
+        int index = node.getIndex();
 
-        // Capture what the total distance was to the target.
-        path.setTotalDistance(stepNode.getPathFindingDistanceFromOrigin());
+        if(index >= mQueuedNodes.length) {
+            mQueuedNodes = Arrays.copyOf(mQueuedNodes, Math.max(index + 1, mQueuedNodes.length * 2));
+        }
 
-        // Iterate backward through each parent node, adding it to
-        // the path until we hit the origin.
-        while(stepNode != null && stepNode.getPathFindingParentNode() != null) {
-            path.addStep(stepNode.getPathFindingParentNode().getKey());
-            stepNode = stepNode.getPathFindingParentNode();
+        mQueuedNodes[index] = node;
+
+        if(mUseBuckets) {
+            mRemainingNodeBuckets.offer(index, node.getPathFindingDistanceFromOrigin());
+        } else {
+            mRemainingNodes.offer(index, node.getPathFindingDistanceFromOrigin());
         }
+    }
 
-        // This will contain the stack of steps to follow to travel
-        // from the origin node to the target node in the minimum
-        // distance found in the graph.
-        return path;
+    /**
+     * Empty the queue ready for a new search, and pick the kind
+     * of queue to use for it.
+     *
+     * @param maxSmallIntegerWeight the heaviest edge weight in the graph
+     *                              being searched if they are all small
+     *                              whole numbers, otherwise -1.
+     */
+    private void clearQueue(int maxSmallIntegerWeight) {
+        mUseBuckets = maxSmallIntegerWeight >= 0;
+        mRemainingNodes.clear();
+
+        if(!mUseBuckets) {
+            return;
+        }
+
+        if(mRemainingNodeBuckets == null) {
+            mRemainingNodeBuckets = new MonotoneBucketQueue(16, maxSmallIntegerWeight);
+        } else if(mRemainingNodeBuckets.getMaxStep() != maxSmallIntegerWeight) {
+            mRemainingNodeBuckets.setMaxStep(maxSmallIntegerWeight);
+        } else {
+            mRemainingNodeBuckets.clear();
+        }
+    }
+
+    private boolean isQueueEmpty() {
+        return mUseBuckets ? mRemainingNodeBuckets.isEmpty() : mRemainingNodes.isEmpty();
+    }
+
+    private int pollQueue() {
+        return mUseBuckets ? mRemainingNodeBuckets.poll() : mRemainingNodes.poll();
+    }
+
+    private int getQueueSize() {
+        return mUseBuckets ? mRemainingNodeBuckets.size() : mRemainingNodes.size();
     }
 
     /**
@@ -1,10 +1,17 @@
 package io.github.marcelbraghetto.dijkstra.part1;
 
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraphBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.MonotoneBucketQueue;
+
 /**
  * Created by Marcel Braghetto on 7/09/15.
  *
@@ -14,6 +21,16 @@ import java.util.Map;
 public class Graph {
     private Map<String, Node> mNodes = new HashMap<>();
 
+    // The same nodes as above, ordered by node index.
+    private List<Node> mIndexedNodes = new ArrayList<>();
+
+    // Current path finding generation, see resetPathFindingData.
+    private int mPathFindingGeneration;
+
+    // Heaviest edge weight so far, while every edge weight has
+    // been a small whole number, or -1 once one hasn't.
+    private int mMaxSmallIntegerWeight;
+
     /**
      * In this example we will just create a new node
      * if we ask for one that doesn't exist.
@@ -37,12 +54,90 @@ public class Graph {
     /**
      * Add a new node with the given unique node key into
      * the graph. Passing a node key that already exists
-     * will replace it.
+     * will replace it, and the new node takes over the
+     * index of the node it replaced.
      *
      * @param key of the node to add.
      */
     public void addNode(@NonNull String key) {
-        mNodes.put(key, new Node(key));
+        Node existing = mNodes.get(key);
+        int index = existing == null ? mNodes.size() : existing.getIndex();
+        Node node = new Node(this, index, key);
+        mNodes.put(key, node);
+
+        if(existing == null) {
+            mIndexedNodes.add(node);
+        } else {
+            mIndexedNodes.set(index, node);
+        }
+    }
+
+    /**
+     * Find the node with the given key, without creating
+     * it if it doesn't exist.
+     *
+     * @param key to find.
+     *
+     * @return the node with the given key, or null if there isn't one.
+     */
+    @Nullable
+    public Node findNode(@NonNull String key) {
+        return mNodes.get(key);
+    }
+
+    /**
+     * Find the node with the given node index.
+     *
+     * @param index of the node, between 0 and the node count (exclusive).
+     *
+     * @return the node with the given index.
+     */
+    @NonNull
+    public Node getNode(int index) {
+        return mIndexedNodes.get(index);
+    }
+
+    /**
+     * How many nodes are in the graph. Node indices are
+     * always between 0 and this value (exclusive).
+     *
+     * @return number of nodes in the graph.
+     */
+    public int getNodeCount() {
+        return mNodes.size();
+    }
+
+    /**
+     * Take a frozen snapshot of the current nodes and directed,
+     * weighted edges in the compact, int indexed form used by the
+     * graph core, for example to build landmarks with. Each node
+     * keeps its node index in the snapshot, and nodes have no
+     * position so are all placed at the origin.
+     *
+     * @return compact snapshot of the graph.
+     */
+    @NonNull
+    public CompactGraph createCompactGraph() {
+        int numEdges = 0;
+
+        for(Node node : mIndexedNodes) {
+            numEdges += node.getEdgeCount();
+        }
+
+        CompactGraphBuilder builder = new CompactGraphBuilder(mIndexedNodes.size(), numEdges);
+
+        for(Node node : mIndexedNodes) {
+            builder.addNode(node.getKey(), 0f, 0f);
+        }
+
+        for(Node node : mIndexedNodes) {
+            for(int position = 0; position < node.getEdgeCount(); position++) {
+                Edge edge = node.getEdge(position);
+                builder.addEdge(node.getIndex(), edge.getTarget().getIndex(), edge.getWeight());
+            }
+        }
+
+        return builder.build();
     }
 
     /**
@@ -64,14 +159,73 @@ public class Graph {
         origin.addEdge(target, weight);
     }
 
+    /**
+     * If every edge weight in the graph is a whole number between 0
+     * and {@link MonotoneBucketQueue#MAX_SMALL_INTEGER_WEIGHT}, the
+     * heaviest of them. Searches use this to switch from a binary heap
+     * to a bucket queue, which has one bucket per possible distance in
+     * reach of the current node.
+     *
+     * Once an edge with any other weight has been added this stays -1,
+     * even if the node the edge came from is later replaced.
+     *
+     * @return the heaviest edge weight, or -1 if the edge weights
+     * aren't all small whole numbers.
+     */
+    public int getMaxSmallIntegerWeight() {
+        return mMaxSmallIntegerWeight;
+    }
+
+    /**
+     * Called by a node of this graph when an edge is added to it.
+     *
+     * @param weight of the new edge.
+     */
+    void onEdgeAdded(double weight) {
+        if(mMaxSmallIntegerWeight < 0) {
+            return;
+        }
+
+        if(MonotoneBucketQueue.isSmallIntegerWeight(weight)) {
+            mMaxSmallIntegerWeight = Math.max(mMaxSmallIntegerWeight, (int) weight);
+        } else {
+            mMaxSmallIntegerWeight = -1;
+        }
+    }
+
     /**
      * Before running a path finding algorithm over the nodes
      * in the graph, this method should be called to reset all
      * the nodes back into their default state for path finding.
+     *
+     * Rather than visiting every node, this starts a new path
+     * finding 'generation'. Each node remembers the generation
+     * its path finding data was written in, and treats data from
+     * an older generation as reset the next time it is used, so
+     * a search only pays for the nodes it actually touches.
      */
     public void resetPathFindingData() {
-        for(Node node : mNodes.values()) {
-            node.resetPathFindingData();
+        // In the very unlikely event we run out of generations, fall
+        // back to forgetting the generation of every node so none of
+        // them can match a recycled generation number.
+        if(mPathFindingGeneration == Integer.MAX_VALUE) {
+            for(Node node : mNodes.values()) {
+                node.invalidatePathFindingGeneration();
+            }
+
+            mPathFindingGeneration = 0;
+            return;
         }
+
+        mPathFindingGeneration++;
+    }
+
+    /**
+     * The current path finding generation, see {@link #resetPathFindingData()}.
+     *
+     * @return current path finding generation.
+     */
+    public int getPathFindingGeneration() {
+        return mPathFindingGeneration;
     }
 }
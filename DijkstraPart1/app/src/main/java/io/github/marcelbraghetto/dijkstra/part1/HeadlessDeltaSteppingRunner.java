@@ -0,0 +1,152 @@
+package io.github.marcelbraghetto.dijkstra.part1;
+
+import android.support.annotation.NonNull;
+
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Measures how {@link DeltaSteppingShortestPaths} speeds up with the
+ * number of worker threads, on a random directed graph with random
+ * edge weights, and checks every distance it finds against a full
+ * {@link DijkstrasAlgorithm} search. Like {@link HeadlessQueryRunner}
+ * it can be run on a desktop JVM:
+ *
+ * HeadlessDeltaSteppingRunner nodeCount degree seed [maxThreads [delta]]
+ *
+ * The thread counts tried are the powers of two up to maxThreads
+ * (by default the number of processor cores), and maxThreads itself.
+ */
+public final class HeadlessDeltaSteppingRunner {
+    private static final int RUNS_PER_THREAD_COUNT = 5;
+    private static final double MAX_EDGE_WEIGHT = 100.0;
+
+    private HeadlessDeltaSteppingRunner() { }
+
+    public static void main(String[] args) throws InterruptedException {
+        if(args.length < 3 || args.length > 5) {
+            System.err.println("Usage: HeadlessDeltaSteppingRunner nodeCount degree seed [maxThreads [delta]]");
+            System.exit(1);
+        }
+
+        int nodeCount = Integer.parseInt(args[0]);
+        int degree = Integer.parseInt(args[1]);
+        long seed = Long.parseLong(args[2]);
+        int maxThreads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+        double delta = args.length > 4 ? Double.parseDouble(args[4]) : 0.0;
+
+        Graph graph = createGraph(nodeCount, degree, seed);
+        Node origin = graph.getNode(0);
+
+        // The engine's results tell us which reachable node is furthest
+        // away, and a Dijkstra search to it settles every node closer.
+        DeltaSteppingShortestPaths reference = new DeltaSteppingShortestPaths(graph, delta, 1);
+        Node furthest = origin;
+
+        try {
+            reference.compute(origin);
+
+            for(int node = 0; node < graph.getNodeCount(); node++) {
+                double distance = reference.getDistance(graph.getNode(node));
+
+                if(distance != Double.POSITIVE_INFINITY && distance > reference.getDistance(furthest)) {
+                    furthest = graph.getNode(node);
+                }
+            }
+        } finally {
+            reference.shutdown();
+        }
+
+        DijkstrasAlgorithm dijkstra = new DijkstrasAlgorithm();
+        long dijkstraNanos = Long.MAX_VALUE;
+
+        for(int run = 0; run < RUNS_PER_THREAD_COUNT; run++) {
+            graph.resetPathFindingData();
+            long startTime = System.nanoTime();
+            dijkstra.findPath(origin, furthest);
+            dijkstraNanos = Math.min(dijkstraNanos, System.nanoTime() - startTime);
+        }
+
+        System.out.println(String.format(Locale.US, "Nodes: %d, edges per node: %d, delta: %.3f",
+                graph.getNodeCount(), degree, reference.getDelta()));
+        System.out.println(String.format(Locale.US, "Dijkstra: %.3f ms", dijkstraNanos / 1000000.0));
+        System.out.println("threads, ms, speed-up over 1 thread, speed-up over Dijkstra, mismatches");
+
+        double singleThreadMillis = 0.0;
+
+        for(int numThreads = 1; numThreads <= maxThreads; numThreads = numThreads < maxThreads ? Math.min(maxThreads, numThreads * 2) : numThreads + 1) {
+            DeltaSteppingShortestPaths engine = new DeltaSteppingShortestPaths(graph, delta, numThreads);
+            long bestNanos = Long.MAX_VALUE;
+
+            try {
+                for(int run = 0; run < RUNS_PER_THREAD_COUNT; run++) {
+                    long startTime = System.nanoTime();
+                    engine.compute(origin);
+                    bestNanos = Math.min(bestNanos, System.nanoTime() - startTime);
+                }
+            } finally {
+                engine.shutdown();
+            }
+
+            double millis = bestNanos / 1000000.0;
+
+            if(numThreads == 1) {
+                singleThreadMillis = millis;
+            }
+
+            System.out.println(String.format(Locale.US, "%d, %.3f, %.2f, %.2f, %d",
+                    numThreads,
+                    millis,
+                    singleThreadMillis / millis,
+                    dijkstraNanos / 1000000.0 / millis,
+                    countMismatches(graph, engine, furthest)));
+        }
+    }
+
+    /**
+     * Compare the distances found by the engine with those left in
+     * the nodes by the last Dijkstra search to the furthest node.
+     */
+    private static int countMismatches(@NonNull Graph graph, @NonNull DeltaSteppingShortestPaths engine, @NonNull Node furthest) {
+        int mismatches = 0;
+
+        for(int index = 0; index < graph.getNodeCount(); index++) {
+            Node node = graph.getNode(index);
+            double distance = engine.getDistance(node);
+
+            if(node.isPathFindingComplete()) {
+                mismatches += distance == node.getPathFindingDistanceFromOrigin() ? 0 : 1;
+            } else {
+                // Dijkstra stopped before reaching this node,
+                // so it can't be any closer than where it stopped.
+                mismatches += distance >= furthest.getPathFindingDistanceFromOrigin() ? 0 : 1;
+            }
+        }
+
+        return mismatches;
+    }
+
+    /**
+     * Build a directed graph where every node has edges of random
+     * weight to the given number of random other nodes.
+     */
+    @NonNull
+    private static Graph createGraph(int nodeCount, int degree, long seed) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+
+        for(int node = 0; node < nodeCount; node++) {
+            graph.addNode(String.valueOf(node));
+        }
+
+        for(int node = 0; node < nodeCount; node++) {
+            for(int edge = 0; edge < degree; edge++) {
+                graph.connectNodes(String.valueOf(node),
+                                   String.valueOf(random.nextInt(nodeCount)),
+                                   random.nextDouble() * MAX_EDGE_WEIGHT);
+            }
+        }
+
+        return graph;
+    }
+}
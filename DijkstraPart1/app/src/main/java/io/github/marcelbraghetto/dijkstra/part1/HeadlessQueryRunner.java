@@ -0,0 +1,98 @@
+package io.github.marcelbraghetto.dijkstra.part1;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPathQueryEngine;
+import io.github.marcelbraghetto.dijkstra.graphcore.GraphGenerator;
+import io.github.marcelbraghetto.dijkstra.graphcore.LandmarksBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchStatsAggregator;
+
+/**
+ * Runs a batch of random queries over a generated graph through
+ * the {@link PathQueryEngine} without any Android UI, then prints
+ * the aggregated search stats. Nothing here touches the Android
+ * APIs, so it can be run on a desktop JVM with the compiled app
+ * and graph core classes on the class path:
+ *
+ * HeadlessQueryRunner type nodeCount degree queryCount seed [landmarkCount]
+ *
+ * where type is one of the {@link GraphGenerator.Type} names. If a
+ * landmark count is given, landmarks are chosen for the graph first
+ * and the queries are guided by them.
+ */
+public final class HeadlessQueryRunner {
+    private HeadlessQueryRunner() { }
+
+    public static void main(String[] args) throws InterruptedException {
+        if(args.length != 5 && args.length != 6) {
+            System.err.println("Usage: HeadlessQueryRunner " + Arrays.toString(GraphGenerator.Type.values())
+                    + " nodeCount degree queryCount seed [landmarkCount]");
+            System.exit(1);
+        }
+
+        GraphGenerator.Type type = GraphGenerator.Type.valueOf(args[0]);
+        int nodeCount = Integer.parseInt(args[1]);
+        int degree = Integer.parseInt(args[2]);
+        int queryCount = Integer.parseInt(args[3]);
+        long seed = Long.parseLong(args[4]);
+
+        Graph graph = createGraph(GraphGenerator.generate(type, nodeCount, degree, seed));
+
+        Random random = new Random(seed);
+        List<CompactPathQueryEngine.Query> queries = new ArrayList<>(queryCount);
+
+        for(int i = 0; i < queryCount; i++) {
+            String originKey = graph.getNode(random.nextInt(graph.getNodeCount())).getKey();
+            String targetKey = graph.getNode(random.nextInt(graph.getNodeCount())).getKey();
+            queries.add(new CompactPathQueryEngine.Query(originKey, targetKey));
+        }
+
+        SearchStatsAggregator statsAggregator = new SearchStatsAggregator();
+        PathQueryEngine engine = new PathQueryEngine(graph);
+        engine.setStatsAggregator(statsAggregator);
+
+        if(args.length == 6) {
+            LandmarksBuilder builder = new LandmarksBuilder(LandmarksBuilder.Strategy.AVOID, Integer.parseInt(args[5]), seed);
+            long startTime = System.nanoTime();
+            engine.setLandmarks(builder.build(graph.createCompactGraph()));
+            System.out.println(String.format(Locale.US, "Landmarks built in %.1f ms", (System.nanoTime() - startTime) / 1000000.0));
+        }
+
+        try {
+            engine.findPaths(queries);
+        } finally {
+            engine.shutdown();
+        }
+
+        System.out.print(statsAggregator.dump());
+    }
+
+    /**
+     * Copy a generated graph into the node based graph used here.
+     */
+    @NonNull
+    private static Graph createGraph(@NonNull CompactGraph compactGraph) {
+        Graph graph = new Graph();
+
+        for(int node = 0; node < compactGraph.getNodeCount(); node++) {
+            graph.addNode(compactGraph.getNodeKey(node));
+        }
+
+        for(int node = 0; node < compactGraph.getNodeCount(); node++) {
+            for(int edge = compactGraph.getEdgeStart(node); edge < compactGraph.getEdgeEnd(node); edge++) {
+                graph.connectNodes(compactGraph.getNodeKey(node),
+                                   compactGraph.getNodeKey(compactGraph.getEdgeTarget(edge)),
+                                   compactGraph.getEdgeWeight(edge));
+            }
+        }
+
+        return graph;
+    }
+}
@@ -8,6 +8,9 @@ import android.widget.TextView;
 
 import java.util.Stack;
 
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchStats;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchStatsAggregator;
+
 /**
  * This is a basic example of using a small graph
  * and Dijkstra's algorithm to find paths.
@@ -16,6 +19,9 @@ public class MainActivity extends Activity {
     private TextView mDebugTextView;
 
     private Graph mGraph;
+    private DijkstrasAlgorithm mDijkstrasAlgorithm;
+    private SearchStats mSearchStats;
+    private SearchStatsAggregator mStatsAggregator;
 
     private String mOrigin;
     private String mTarget;
@@ -28,6 +34,9 @@ public class MainActivity extends Activity {
         mDebugTextView = (TextView) findViewById(R.id.debug_text_view);
 
         mGraph = new Graph();
+        mDijkstrasAlgorithm = new DijkstrasAlgorithm();
+        mSearchStats = new SearchStats();
+        mStatsAggregator = new SearchStatsAggregator();
 
         // Populate all the nodes for the graph.
         mGraph.addNode("A");
@@ -64,7 +73,8 @@ public class MainActivity extends Activity {
         Node targetNode = mGraph.getNode(mTarget);
 
         // Perform the path finding.
-        DijkstrasAlgorithm.Path path = new DijkstrasAlgorithm().findPath(originNode, targetNode);
+        DijkstrasAlgorithm.Path path = mDijkstrasAlgorithm.findPath(originNode, targetNode, mSearchStats);
+        mStatsAggregator.record(mSearchStats);
 
         if(path == null) {
             printLine("No path could be found...");
@@ -80,6 +90,11 @@ public class MainActivity extends Activity {
             printLine(sb.toString());
             printLine("Total distance: " + path.getTotalDistance());
         }
+
+        printLine("---------- Search stats ----------");
+        printLine(mSearchStats.toString());
+        printLine("---------- All searches so far ----------");
+        printLine(mStatsAggregator.dump());
     }
 
     private void printLine(String message) {
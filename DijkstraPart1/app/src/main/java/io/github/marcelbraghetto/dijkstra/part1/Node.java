@@ -3,7 +3,9 @@ package io.github.marcelbraghetto.dijkstra.part1;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -17,9 +19,17 @@ public class Node {
     // Unique identifier for this node.
     private String mKey;
 
+    // Position of this node within its graph, used to index
+    // into primitive path finding structures.
+    private int mIndex;
+
     // Collection of all connections to other nodes.
     private Map<Node, Edge> mEdges;
 
+    // The same edges in the order they were added, so searches can
+    // walk them by position without allocating an iterator.
+    private final List<Edge> mEdgeList;
+
     // The total distance from this node to an 'origin'
     // node, used for path finding.
     private double mPathFindingDistanceFromOrigin;
@@ -31,9 +41,21 @@ public class Node {
     // respect to path finding.
     private boolean mIsPathFindingComplete;
 
-    public Node(@NonNull String key) {
+    // The graph this node belongs to, which decides the current
+    // path finding generation.
+    private final Graph mParentGraph;
+
+    // The path finding generation the path finding data above was
+    // last written in. If it doesn't match the graph's current
+    // generation, the data is stale and treated as being reset.
+    private int mPathFindingGeneration = -1;
+
+    public Node(@NonNull Graph parentGraph, int index, @NonNull String key) {
+        mParentGraph = parentGraph;
+        mIndex = index;
         mKey = key;
         mEdges = new HashMap<>();
+        mEdgeList = new ArrayList<>();
     }
 
     /**
@@ -48,7 +70,15 @@ public class Node {
             return;
         }
 
-        mEdges.put(target, new Edge(target, weight));
+        Edge edge = new Edge(target, weight);
+        mEdges.put(target, edge);
+        mEdgeList.add(edge);
+        mParentGraph.onEdgeAdded(weight);
+    }
+
+    @NonNull
+    public Graph getParentGraph() {
+        return mParentGraph;
     }
 
     @NonNull
@@ -56,11 +86,32 @@ public class Node {
         return mKey;
     }
 
+    public int getIndex() {
+        return mIndex;
+    }
+
     @NonNull
     public Map<Node, Edge> getEdges() {
         return mEdges;
     }
 
+    public int getEdgeCount() {
+        return mEdgeList.size();
+    }
+
+    /**
+     * The edge at the given position, where positions run from 0 to
+     * getEdgeCount() - 1 in the order the edges were added.
+     *
+     * @param position of the edge.
+     *
+     * @return the edge.
+     */
+    @NonNull
+    public Edge getEdge(int position) {
+        return mEdgeList.get(position);
+    }
+
     /**
      * Resetting the node is used for path finding to clear
      * any previously calculated path finding data and get
@@ -70,14 +121,36 @@ public class Node {
         mPathFindingDistanceFromOrigin = Double.POSITIVE_INFINITY;
         mPathFindingParentNode = null;
         mIsPathFindingComplete = false;
+        mPathFindingGeneration = mParentGraph.getPathFindingGeneration();
+    }
+
+    /**
+     * Forget the path finding generation so the path finding data
+     * will be considered stale whatever the current generation is.
+     */
+    public void invalidatePathFindingGeneration() {
+        mPathFindingGeneration = -1;
+    }
+
+    /**
+     * If the path finding data was written during an earlier path
+     * finding generation, reset it now. This lets the graph reset
+     * every node for a new search without visiting each of them.
+     */
+    private void validatePathFindingData() {
+        if(mPathFindingGeneration != mParentGraph.getPathFindingGeneration()) {
+            resetPathFindingData();
+        }
     }
 
     public double getPathFindingDistanceFromOrigin() {
+        validatePathFindingData();
         return mPathFindingDistanceFromOrigin;
     }
 
     @Nullable
     public Node getPathFindingParentNode() {
+        validatePathFindingData();
         return mPathFindingParentNode;
     }
 
@@ -91,6 +164,7 @@ public class Node {
      * @param distanceFromOrigin the total distance from the origin to this node.
      */
     public void updatePathFindingData(@Nullable Node parentNode, double distanceFromOrigin) {
+        validatePathFindingData();
         mPathFindingParentNode = parentNode;
         mPathFindingDistanceFromOrigin = distanceFromOrigin;
     }
@@ -101,6 +175,7 @@ public class Node {
      * @return true if the node is 'complete'.
      */
     public boolean isPathFindingComplete() {
+        validatePathFindingData();
         return mIsPathFindingComplete;
     }
 
@@ -108,6 +183,7 @@ public class Node {
      * Mark this node as 'complete' for path finding.
      */
     public void setPathFindingComplete() {
+        validatePathFindingData();
         mIsPathFindingComplete = true;
     }
 }
\ No newline at end of file
@@ -0,0 +1,132 @@
+package io.github.marcelbraghetto.dijkstra.part1;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPathQueryEngine;
+import io.github.marcelbraghetto.dijkstra.graphcore.Landmarks;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchStatsAggregator;
+
+/**
+ * Answers shortest path queries over a graph from many
+ * threads at once, with a {@link CompactPathQueryEngine}
+ * searching a snapshot of the graph.
+ *
+ * Unlike {@link DijkstrasAlgorithm}, none of the path finding
+ * state is stored in the nodes, so any number of threads can
+ * search at once. The graph is snapshotted when the engine is
+ * created and again when landmarks are set, so changes made to
+ * it in between aren't seen by the queries.
+ */
+public class PathQueryEngine {
+    private final Graph mGraph;
+    private final CompactPathQueryEngine mEngine;
+
+    public PathQueryEngine(@NonNull Graph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PathQueryEngine(@NonNull Graph graph, int numThreads) {
+        mGraph = graph;
+        mEngine = new CompactPathQueryEngine(graph.createCompactGraph(), numThreads);
+    }
+
+    /**
+     * Set where to record the work done by each query.
+     *
+     * @param statsAggregator to record into, or null to stop recording.
+     */
+    public void setStatsAggregator(@Nullable SearchStatsAggregator statsAggregator) {
+        mEngine.setStatsAggregator(statsAggregator);
+    }
+
+    /**
+     * Guide every query with the given landmarks, or go back to
+     * plain Dijkstra. The landmarks are usually built once with a
+     * {@link io.github.marcelbraghetto.dijkstra.graphcore.LandmarksBuilder}
+     * from {@link Graph#createCompactGraph()} and saved, as choosing
+     * them takes a number of full searches of the graph.
+     *
+     * The graph is snapshotted again here, so the landmarks must have
+     * been built for the graph as it is now.
+     *
+     * @param landmarks built for the graph, or null to stop using them.
+     */
+    public void setLandmarks(@Nullable Landmarks landmarks) {
+        mEngine.setGraph(mGraph.createCompactGraph());
+        mEngine.setLandmarks(landmarks);
+    }
+
+    /**
+     * Find the shortest path between the given nodes on the
+     * calling thread. This is safe to call from any number of
+     * threads at the same time.
+     *
+     * @param originKey of the node to start from.
+     * @param targetKey of the node to find the shortest path to.
+     *
+     * @return the shortest path, or null if there is no path
+     * or either node does not exist.
+     */
+    @Nullable
+    public DijkstrasAlgorithm.Path findPath(@NonNull String originKey, @NonNull String targetKey) {
+        return createPath(mEngine.findPath(originKey, targetKey));
+    }
+
+    /**
+     * Find the shortest paths for all the given queries, spreading
+     * the work across the worker threads. The calling thread blocks
+     * until every query has been answered.
+     *
+     * @param queries to answer.
+     *
+     * @return the path for each query in the same order as the
+     * queries, with null entries for queries that have no path.
+     *
+     * @throws InterruptedException if the calling thread is
+     * interrupted while waiting for the results.
+     */
+    @NonNull
+    public List<DijkstrasAlgorithm.Path> findPaths(@NonNull List<CompactPathQueryEngine.Query> queries) throws InterruptedException {
+        List<CompactPath> compactPaths = mEngine.findPaths(queries);
+        List<DijkstrasAlgorithm.Path> paths = new ArrayList<>(compactPaths.size());
+
+        for(CompactPath compactPath : compactPaths) {
+            paths.add(createPath(compactPath));
+        }
+
+        return paths;
+    }
+
+    /**
+     * Stop the worker threads, the engine can't be
+     * used for batches of queries afterward.
+     */
+    public void shutdown() {
+        mEngine.shutdown();
+    }
+
+    /**
+     * Turn a path of node indices into the stack of node keys
+     * used by {@link DijkstrasAlgorithm.Path}, origin on top.
+     */
+    @Nullable
+    private DijkstrasAlgorithm.Path createPath(@Nullable CompactPath compactPath) {
+        if(compactPath == null) {
+            return null;
+        }
+
+        DijkstrasAlgorithm.Path path = new DijkstrasAlgorithm.Path();
+        path.setTotalDistance(compactPath.getTotalDistance());
+
+        for(int step = compactPath.getLength() - 1; step >= 0; step--) {
+            path.addStep(mGraph.getNode(compactPath.getNode(step)).getKey());
+        }
+
+        return path;
+    }
+}
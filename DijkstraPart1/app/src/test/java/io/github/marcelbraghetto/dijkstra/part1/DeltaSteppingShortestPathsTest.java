@@ -0,0 +1,124 @@
+package io.github.marcelbraghetto.dijkstra.part1;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the distances and paths found by {@link DeltaSteppingShortestPaths}
+ * are exactly those found by {@link DijkstrasAlgorithm}.
+ */
+public class DeltaSteppingShortestPathsTest {
+    @Test
+    public void heavyEdgeRoundedIntoCurrentBucketIsStillExpanded() throws InterruptedException {
+        // u is in bucket 88, and the distance to v across the heavy edge
+        // divides by delta to just under 89, so v is put in bucket 88 while
+        // its heavy edges are being followed.
+        double delta = 1.085;
+        Graph graph = new Graph();
+        graph.addNode("o");
+        graph.addNode("u");
+        graph.addNode("v");
+        graph.addNode("t");
+        graph.connectNodes("o", "u", 95.47999999999999);
+        graph.connectNodes("u", "v", Math.nextUp(delta));
+        graph.connectNodes("v", "t", 1.0);
+
+        for(int numThreads = 1; numThreads <= 2; numThreads++) {
+            assertMatchesDijkstra(graph, delta, numThreads, 0);
+        }
+    }
+
+    @Test
+    public void randomGraphsMatchDijkstra() throws InterruptedException {
+        for(int seed = 0; seed < 20; seed++) {
+            Graph graph = createRandomGraph(300, 3, seed);
+            Random random = new Random(seed);
+
+            // Default, narrow and very wide buckets, on up to three workers.
+            for(double delta : new double[] { 0.0, 0.5 + random.nextDouble(), 1000.0 }) {
+                assertMatchesDijkstra(graph, delta, 1 + seed % 3, random.nextInt(graph.getNodeCount()));
+            }
+        }
+    }
+
+    @Test
+    public void engineCanBeReusedForAnotherOrigin() throws InterruptedException {
+        Graph graph = createRandomGraph(200, 2, 7);
+        DeltaSteppingShortestPaths engine = new DeltaSteppingShortestPaths(graph, 0.0, 2);
+
+        try {
+            for(int origin = 0; origin < 5; origin++) {
+                engine.compute(graph.getNode(origin));
+                assertDistancesMatch(graph, engine, origin);
+            }
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void deltaNeedingTooManyBucketsIsRejected() {
+        Graph graph = new Graph();
+        graph.addNode("a");
+        graph.addNode("b");
+        graph.connectNodes("a", "b", 1000000.0);
+
+        new DeltaSteppingShortestPaths(graph, 1e-3, 1);
+    }
+
+    private static void assertMatchesDijkstra(Graph graph, double delta, int numThreads, int origin) throws InterruptedException {
+        DeltaSteppingShortestPaths engine = new DeltaSteppingShortestPaths(graph, delta, numThreads);
+
+        try {
+            engine.compute(graph.getNode(origin));
+            assertDistancesMatch(graph, engine, origin);
+        } finally {
+            engine.shutdown();
+        }
+    }
+
+    private static void assertDistancesMatch(Graph graph, DeltaSteppingShortestPaths engine, int origin) {
+        DijkstrasAlgorithm dijkstra = new DijkstrasAlgorithm();
+        PathBuffer path = new PathBuffer();
+
+        for(int target = 0; target < graph.getNodeCount(); target++) {
+            graph.resetPathFindingData();
+            DijkstrasAlgorithm.Path expected = dijkstra.findPath(graph.getNode(origin), graph.getNode(target));
+            double expectedDistance = expected == null ? Double.POSITIVE_INFINITY : expected.getTotalDistance();
+
+            assertEquals("Distance to node " + target, expectedDistance, engine.getDistance(graph.getNode(target)), 0.0);
+            assertEquals(expected != null, engine.getPath(graph.getNode(target), path));
+
+            if(expected != null) {
+                assertEquals(origin, path.getNode(0));
+                assertEquals(target, path.getNode(path.getLength() - 1));
+                assertTrue(path.getLength() >= 1);
+            }
+        }
+    }
+
+    private static Graph createRandomGraph(int numNodes, int degree, long seed) {
+        Random random = new Random(seed);
+        Graph graph = new Graph();
+
+        for(int node = 0; node < numNodes; node++) {
+            graph.addNode("n" + node);
+        }
+
+        for(int node = 0; node < numNodes; node++) {
+            for(int edge = 0; edge < degree; edge++) {
+                // Some zero weight edges, and some much heavier than the rest.
+                double weight = random.nextInt(10) == 0 ? 0.0 : random.nextDouble() * (random.nextInt(10) == 0 ? 500.0 : 20.0);
+                graph.connectNodes("n" + node, "n" + random.nextInt(numNodes), weight);
+            }
+        }
+
+        return graph;
+    }
+}
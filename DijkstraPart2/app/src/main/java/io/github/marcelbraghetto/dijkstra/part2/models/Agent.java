@@ -0,0 +1,123 @@
+package io.github.marcelbraghetto.dijkstra.part2.models;
+
+import android.graphics.PointF;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
+import io.github.marcelbraghetto.dijkstra.part2.systems.RoutePlanner;
+
+/**
+ * Lightweight actor for the multi actor simulation, which follows a
+ * route of node indices from node to node. Unlike the crab it has no
+ * bitmap of its own, so thousands of them can be simulated at once.
+ */
+public class Agent implements RoutePlanner.Listener {
+    public static final int NO_NODE = -1;
+
+    private final int mId;
+    private final PointF mPosition;
+    private final float mSpeed;
+
+    // Node indices from the origin to the destination, and the
+    // position in the route of the node being travelled to.
+    private int[] mRoute;
+    private int mRouteStep;
+
+    private int mLastVisitedNode;
+    private int mDestination = NO_NODE;
+    private boolean mAwaitingRoute;
+
+    /**
+     * @param id to tell the agent apart from others.
+     * @param startNode node the agent starts at.
+     * @param speed distance the agent travels each tick (in DPs).
+     */
+    public Agent(int id, @NonNull Node startNode, float speed) {
+        mId = id;
+        mSpeed = speed;
+        mLastVisitedNode = startNode.getIndex();
+        mPosition = new PointF(startNode.getPosition().x, startNode.getPosition().y);
+    }
+
+    public int getId() {
+        return mId;
+    }
+
+    @NonNull
+    public PointF getPosition() {
+        return mPosition;
+    }
+
+    public int getLastVisitedNode() {
+        return mLastVisitedNode;
+    }
+
+    /**
+     * The node the agent is heading for.
+     *
+     * @return destination node index, or NO_NODE if it has none.
+     */
+    public int getDestination() {
+        return mDestination;
+    }
+
+    /**
+     * Whether the agent has reached the end of its route (or never had
+     * one) and is not already waiting for a new one to be planned.
+     *
+     * @return true if the agent should be given a new destination.
+     */
+    public boolean needsRoute() {
+        return !mAwaitingRoute && (mRoute == null || mRouteStep >= mRoute.length);
+    }
+
+    /**
+     * Mark the agent as waiting for a route to the given destination.
+     *
+     * @param destination node index the route was requested to.
+     */
+    public void setAwaitingRoute(int destination) {
+        mAwaitingRoute = true;
+        mDestination = destination;
+    }
+
+    @Override
+    public void onRoutePlanned(int origin, int target, @Nullable int[] route) {
+        mAwaitingRoute = false;
+        mRoute = route;
+        mRouteStep = 0;
+
+        if(route == null) {
+            mDestination = NO_NODE;
+        }
+    }
+
+    /**
+     * Move the agent along its route by one tick.
+     *
+     * @param graph the route belongs to.
+     */
+    public void update(@NonNull Graph graph) {
+        float remaining = mSpeed;
+
+        // A fast agent may pass more than one node in a single tick.
+        while(mRoute != null && mRouteStep < mRoute.length && remaining > 0f) {
+            PointF next = graph.getNode(mRoute[mRouteStep]).getPosition();
+            float deltaX = next.x - mPosition.x;
+            float deltaY = next.y - mPosition.y;
+            float distance = (float) Math.sqrt(deltaX * deltaX + deltaY * deltaY);
+
+            if(distance <= remaining) {
+                mPosition.set(next.x, next.y);
+                mLastVisitedNode = mRoute[mRouteStep];
+                mRouteStep++;
+                remaining -= distance;
+            } else {
+                float scale = remaining / distance;
+                mPosition.set(mPosition.x + deltaX * scale, mPosition.y + deltaY * scale);
+                remaining = 0f;
+            }
+        }
+    }
+}
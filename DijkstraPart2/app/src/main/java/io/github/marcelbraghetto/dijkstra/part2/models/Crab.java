@@ -2,8 +2,7 @@ package io.github.marcelbraghetto.dijkstra.part2.models;
 
 import android.support.annotation.NonNull;
 
-import java.util.Stack;
-
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
 import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
 import io.github.marcelbraghetto.dijkstra.part2.utils.MathUtils;
 import io.github.marcelbraghetto.dijkstra.part2.R;
@@ -16,10 +15,16 @@ import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
  */
 public class Crab extends Actor {
     private static final float EPSILON = ScreenUtils.dpToPx(1f);
+
+    // Distance moved each simulation tick.
     private static final float SPEED = 2f;
 
     private final Graph mParentGraph;
-    private Stack<String> mPath;
+
+    // Node indices of the path being followed, and the step
+    // along it that will become the next target node.
+    private final PathBuffer mPath;
+    private int mNextStep;
 
     private Node mLastVisitedNode;
     private Node mTargetNode;
@@ -29,6 +34,7 @@ public class Crab extends Actor {
     public Crab(@NonNull Graph parentGraph, @NonNull Node initialNode) {
         super(ScreenUtils.getBitmap(R.drawable.crab));
         mParentGraph = parentGraph;
+        mPath = new PathBuffer();
         mDirection = new MutableVector(0.0, 0.0);
         mLastVisitedNode = initialNode;
         setPosition(mLastVisitedNode.getPosition().x, mLastVisitedNode.getPosition().y);
@@ -38,10 +44,18 @@ public class Crab extends Actor {
         mActive = active;
     }
 
-    public void setPath(@NonNull Stack<String> path) {
-        mPath = path;
-        if(mPath.size() > 0) {
-            mTargetNode = mParentGraph.getNode(mPath.pop());
+    /**
+     * Start following a new path, which is copied so the
+     * given buffer can be reused straight away.
+     *
+     * @param path to follow, an empty path stops the crab.
+     */
+    public void setPath(@NonNull PathBuffer path) {
+        mPath.copyFrom(path);
+        mNextStep = 0;
+
+        if(mNextStep < mPath.getLength()) {
+            mTargetNode = mParentGraph.getNode(mPath.getNode(mNextStep++));
         } else {
             mTargetNode = null;
         }
@@ -62,8 +76,8 @@ public class Crab extends Actor {
         // the path or if there are no more, then we've arrived at
         // the target node.
         if(MathUtils.distanceBetween(mPosition, mTargetNode.getPosition()) < EPSILON) {
-            if(mPath.size() > 0) {
-                mTargetNode = mParentGraph.getNode(mPath.pop());
+            if(mNextStep < mPath.getLength()) {
+                mTargetNode = mParentGraph.getNode(mPath.getNode(mNextStep++));
                 mLastVisitedNode = mTargetNode;
             }
             return;
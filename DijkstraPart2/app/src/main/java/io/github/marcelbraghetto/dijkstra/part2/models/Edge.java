@@ -18,6 +18,9 @@ public class Edge {
     private double mWeight;
     private PointF mMidPoint;
 
+    // Label for the current weight, built when first asked for.
+    private String mLabel;
+
     public Edge(@NonNull Node origin, @NonNull Node target) {
         mMidPoint = new PointF();
         mOrigin = origin;
@@ -56,9 +59,19 @@ public class Edge {
         return mOrigin;
     }
 
+    /**
+     * The weight of this edge rounded to a whole number,
+     * which is kept until the edge is next invalidated.
+     *
+     * @return label text for the edge.
+     */
     @NonNull
     public String getLabel() {
-        return String.valueOf(Math.round(mWeight));
+        if(mLabel == null) {
+            mLabel = String.valueOf(Math.round(mWeight));
+        }
+
+        return mLabel;
     }
 
     /**
@@ -69,5 +82,6 @@ public class Edge {
     public void invalidate() {
         mWeight = MathUtils.distanceBetween(mOrigin.getPosition(), mTarget.getPosition());
         MathUtils.midPoint(mOrigin.getPosition(), mTarget.getPosition(), mMidPoint);
+        mLabel = null;
     }
 }
\ No newline at end of file
@@ -21,6 +21,11 @@ public class TreasureChest extends Actor {
         mTargetNode = targetNode;
     }
 
+    @Nullable
+    public Node getTargetNode() {
+        return mTargetNode;
+    }
+
     @Override
     public void update() {
         if(mTargetNode != null) {
@@ -0,0 +1,24 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+import io.github.marcelbraghetto.dijkstra.part2.utils.MathUtils;
+
+/**
+ * A* search, which is Dijkstras algorithm with the queue ordered
+ * by the distance from the origin plus the straight line distance
+ * to the target.
+ *
+ * Because every edge weight in the graph is the straight line
+ * distance between its two nodes, the straight line distance to
+ * the target can never overestimate the real remaining distance,
+ * so the paths found are still the shortest ones but far fewer
+ * nodes tend to be settled on the way.
+ */
+public class AStarAlgorithm extends DijkstrasAlgorithm {
+    @Override
+    protected double getHeuristic(@NonNull Node node, @NonNull Node target) {
+        return MathUtils.distanceBetween(node.getPosition(), target.getPosition());
+    }
+}
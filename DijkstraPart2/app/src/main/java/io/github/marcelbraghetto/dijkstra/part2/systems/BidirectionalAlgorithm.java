@@ -0,0 +1,305 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+import io.github.marcelbraghetto.dijkstra.part2.utils.MathUtils;
+
+/**
+ * Bidirectional search, which grows one search forward from the
+ * origin and another backward from the target at the same time
+ * until the two frontiers meet in the middle.
+ *
+ * The backward search walks the same edges as the forward one,
+ * so this only works for graphs where every connection exists in
+ * both directions with the same weight, which is how our graph
+ * connects its nodes.
+ *
+ * Optionally the straight line distance can be used to steer both
+ * searches toward each other (bidirectional A*). To keep the two
+ * searches consistent, the forward search uses the 'average'
+ * estimate of half the distance to the target minus half the
+ * distance to the origin, and the backward search uses the
+ * opposite of that.
+ *
+ * Each search keeps its own distances and parents in arrays
+ * indexed by node index, so the path finding data inside the
+ * nodes is not used and does not need to be reset.
+ */
+public class BidirectionalAlgorithm implements PathFinder {
+    private final boolean mUseHeuristic;
+
+    private final IndexedPriorityQueue mForwardQueue = new IndexedPriorityQueue(16);
+    private final IndexedPriorityQueue mBackwardQueue = new IndexedPriorityQueue(16);
+
+    // Search state for each direction, indexed by node index.
+    private double[] mForwardDistances = new double[0];
+    private double[] mBackwardDistances = new double[0];
+    private Node[] mForwardParents = new Node[0];
+    private Node[] mBackwardParents = new Node[0];
+    private boolean[] mForwardComplete = new boolean[0];
+    private boolean[] mBackwardComplete = new boolean[0];
+
+    // Lookup from node index back to the node.
+    private Node[] mNodes = new Node[0];
+
+    // Indices of every node the last search touched, so only
+    // they need to be reset before the next search.
+    private int[] mTouchedNodes = new int[16];
+    private int mTouchedCount;
+
+    private int mSettledNodeCount;
+
+    // Origin and target of the current search.
+    private Node mOrigin;
+    private Node mTarget;
+
+    // Best path length found so far, and the node where the
+    // forward and backward halves of that path join.
+    private double mBestDistance;
+    private Node mMeetingNode;
+
+    /**
+     * Create a new bidirectional search.
+     *
+     * @param useHeuristic true to use the straight line distance
+     *                     to steer the search (bidirectional A*),
+     *                     false for plain bidirectional Dijkstra.
+     */
+    public BidirectionalAlgorithm(boolean useHeuristic) {
+        mUseHeuristic = useHeuristic;
+    }
+
+    @Override
+    public boolean findPath(@NonNull Node origin, @NonNull Node target, @NonNull PathBuffer path) {
+        path.clear();
+        reset();
+
+        mOrigin = origin;
+        mTarget = target;
+        mBestDistance = Double.POSITIVE_INFINITY;
+        mMeetingNode = null;
+
+        label(origin, true, null, 0.0);
+        label(target, false, null, 0.0);
+
+        // Keep going while both searches have nodes left. Every path
+        // still to be discovered must pass through a node in each queue,
+        // and the queue priorities are lower bounds on the two halves of
+        // such a path, so once they add up to at least the best path
+        // found so far, nothing shorter can exist and we can stop.
+        while(!mForwardQueue.isEmpty() && !mBackwardQueue.isEmpty()) {
+            if(mForwardQueue.peekPriority() + mBackwardQueue.peekPriority() >= mBestDistance) {
+                break;
+            }
+
+            // Expand whichever search has the smaller frontier, which
+            // keeps the two halves of the work roughly balanced.
+            if(mForwardQueue.size() <= mBackwardQueue.size()) {
+                expand(true);
+            } else {
+                expand(false);
+            }
+        }
+
+        if(mMeetingNode == null) {
+            return false;
+        }
+
+        path.setTotalDistance(mBestDistance);
+
+        // First add the forward half from the meeting node back to the
+        // origin, and flip it over so it runs from the origin ...
+        for(Node step = mMeetingNode; step != null; step = mForwardParents[step.getIndex()]) {
+            path.addStep(step.getIndex());
+        }
+
+        path.reverse();
+
+        // then the backward half from just after the meeting node on to the target.
+        for(Node step = mBackwardParents[mMeetingNode.getIndex()]; step != null; step = mBackwardParents[step.getIndex()]) {
+            path.addStep(step.getIndex());
+        }
+
+        return true;
+    }
+
+    @Override
+    public int getSettledNodeCount() {
+        return mSettledNodeCount;
+    }
+
+    /**
+     * Settle the next node in one direction and relax its edges.
+     *
+     * @param forward true to expand the forward search, false for the backward search.
+     */
+    private void expand(boolean forward) {
+        int currentIndex;
+        double currentDistance;
+
+        // Note the state arrays are not held in locals here, as labelling
+        // a neighbour can grow (and so replace) them.
+        if(forward) {
+            currentIndex = mForwardQueue.poll();
+            mForwardComplete[currentIndex] = true;
+            currentDistance = mForwardDistances[currentIndex];
+        } else {
+            currentIndex = mBackwardQueue.poll();
+            mBackwardComplete[currentIndex] = true;
+            currentDistance = mBackwardDistances[currentIndex];
+        }
+
+        Node currentNode = mNodes[currentIndex];
+        mSettledNodeCount++;
+
+        for(int position = 0, numEdges = currentNode.getEdgeCount(); position < numEdges; position++) {
+            Edge edge = currentNode.getEdge(position);
+            Node edgeTarget = edge.getTarget();
+
+            if(isComplete(edgeTarget.getIndex(), forward)) {
+                continue;
+            }
+
+            label(edgeTarget, forward, currentNode, currentDistance + edge.getWeight());
+        }
+    }
+
+    /**
+     * Offer a new distance for a node in one direction, adopting it
+     * if it is shorter than what the node already has. If the other
+     * direction has reached the node too, this also checks whether
+     * joining the two halves at this node gives a shorter path.
+     *
+     * @param node to update.
+     * @param forward true for the forward search, false for the backward search.
+     * @param parent node the distance was reached from, or null for the start node.
+     * @param distance from the start of the search in the given direction.
+     */
+    private void label(@NonNull Node node, boolean forward, @Nullable Node parent, double distance) {
+        int index = node.getIndex();
+        touch(node);
+
+        if(distance >= (forward ? mForwardDistances[index] : mBackwardDistances[index])) {
+            return;
+        }
+
+        if(forward) {
+            mForwardDistances[index] = distance;
+            mForwardParents[index] = parent;
+            mForwardQueue.offer(index, distance + getPotential(node));
+        } else {
+            mBackwardDistances[index] = distance;
+            mBackwardParents[index] = parent;
+            mBackwardQueue.offer(index, distance - getPotential(node));
+        }
+
+        double totalDistance = mForwardDistances[index] + mBackwardDistances[index];
+
+        if(totalDistance < mBestDistance) {
+            mBestDistance = totalDistance;
+            mMeetingNode = node;
+        }
+    }
+
+    /**
+     * The forward search estimate for the given node. The backward
+     * search uses the negative of this value. Averaging the two
+     * directions like this keeps the estimate consistent for both
+     * searches, which plain straight line distances would not be.
+     *
+     * @param node to estimate for.
+     *
+     * @return forward potential of the node.
+     */
+    private double getPotential(@NonNull Node node) {
+        if(!mUseHeuristic) {
+            return 0.0;
+        }
+
+        double toTarget = MathUtils.distanceBetween(node.getPosition(), mTarget.getPosition());
+        double toOrigin = MathUtils.distanceBetween(node.getPosition(), mOrigin.getPosition());
+
+        return (toTarget - toOrigin) / 2.0;
+    }
+
+    private boolean isComplete(int index, boolean forward) {
+        if(index >= mNodes.length) {
+            return false;
+        }
+
+        return forward ? mForwardComplete[index] : mBackwardComplete[index];
+    }
+
+    /**
+     * Make sure there is room to track the given node and record
+     * it as touched by this search if it hasn't been already.
+     *
+     * @param node to track.
+     */
+    private void touch(@NonNull Node node) {
+        int index = node.getIndex();
+
+        if(index >= mNodes.length) {
+            grow(index + 1);
+        }
+
+        if(mNodes[index] != null) {
+            return;
+        }
+
+        mNodes[index] = node;
+
+        if(mTouchedCount == mTouchedNodes.length) {
+            mTouchedNodes = Arrays.copyOf(mTouchedNodes, mTouchedCount * 2);
+        }
+
+        mTouchedNodes[mTouchedCount++] = index;
+    }
+
+    private void grow(int capacity) {
+        int oldCapacity = mNodes.length;
+        int newCapacity = Math.max(capacity, oldCapacity * 2);
+
+        mForwardDistances = Arrays.copyOf(mForwardDistances, newCapacity);
+        mBackwardDistances = Arrays.copyOf(mBackwardDistances, newCapacity);
+        mForwardParents = Arrays.copyOf(mForwardParents, newCapacity);
+        mBackwardParents = Arrays.copyOf(mBackwardParents, newCapacity);
+        mForwardComplete = Arrays.copyOf(mForwardComplete, newCapacity);
+        mBackwardComplete = Arrays.copyOf(mBackwardComplete, newCapacity);
+        mNodes = Arrays.copyOf(mNodes, newCapacity);
+
+        Arrays.fill(mForwardDistances, oldCapacity, newCapacity, Double.POSITIVE_INFINITY);
+        Arrays.fill(mBackwardDistances, oldCapacity, newCapacity, Double.POSITIVE_INFINITY);
+
+        mForwardQueue.ensureCapacity(newCapacity);
+        mBackwardQueue.ensureCapacity(newCapacity);
+    }
+
+    /**
+     * Clear the state of every node touched by the previous search.
+     */
+    private void reset() {
+        for(int i = 0; i < mTouchedCount; i++) {
+            int index = mTouchedNodes[i];
+            mForwardDistances[index] = Double.POSITIVE_INFINITY;
+            mBackwardDistances[index] = Double.POSITIVE_INFINITY;
+            mForwardParents[index] = null;
+            mBackwardParents[index] = null;
+            mForwardComplete[index] = false;
+            mBackwardComplete[index] = false;
+            mNodes[index] = null;
+        }
+
+        mTouchedCount = 0;
+        mSettledNodeCount = 0;
+        mForwardQueue.clear();
+        mBackwardQueue.clear();
+    }
+}
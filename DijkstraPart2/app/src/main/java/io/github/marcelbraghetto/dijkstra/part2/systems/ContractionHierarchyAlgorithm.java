@@ -0,0 +1,41 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchy;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchyBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.ContractionHierarchyQuery;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+
+/**
+ * Path finder backed by a {@link ContractionHierarchy} of a graph.
+ *
+ * The hierarchy is built in the background the first time a path is
+ * needed, and then reused until the graph changes, at which point it
+ * is built again, see {@link PreparedPathFinder}. This suits maps which
+ * are mostly left alone between edits, as each search then only costs
+ * a handful of node visits.
+ */
+public class ContractionHierarchyAlgorithm extends PreparedPathFinder<ContractionHierarchyQuery> {
+    public ContractionHierarchyAlgorithm(@NonNull Graph graph) {
+        super(graph);
+    }
+
+    @NonNull
+    @Override
+    protected ContractionHierarchyQuery prepare(@NonNull CompactGraph snapshot, int revision) {
+        ContractionHierarchy hierarchy = new ContractionHierarchyBuilder().build(snapshot);
+        return new ContractionHierarchyQuery(hierarchy);
+    }
+
+    @Override
+    protected boolean findPath(@NonNull ContractionHierarchyQuery query, int origin, int target, @NonNull PathBuffer path) {
+        return query.findPath(origin, target, path);
+    }
+
+    @Override
+    protected int getSettledNodeCount(@NonNull ContractionHierarchyQuery query) {
+        return query.getSettledNodeCount();
+    }
+}
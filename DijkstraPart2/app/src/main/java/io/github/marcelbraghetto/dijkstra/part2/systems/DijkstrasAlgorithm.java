@@ -1,15 +1,12 @@
 package io.github.marcelbraghetto.dijkstra.part2.systems;
 
 import android.support.annotation.NonNull;
-import android.support.annotation.Nullable;
 
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.Arrays;
 
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
 import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
-import io.github.marcelbraghetto.dijkstra.part2.models.GraphPath;
 import io.github.marcelbraghetto.dijkstra.part2.models.Node;
 
 /**
@@ -18,60 +15,46 @@ import io.github.marcelbraghetto.dijkstra.part2.models.Node;
  * Simple example of Dijkstras algorithm that uses
  * a priority queue to track which nodes should be
  * completed and what node should be examined next.
+ *
+ * An instance can be reused for many searches, which
+ * avoids re allocating its queue each time.
  */
-public class DijkstrasAlgorithm {
-    /**
-     * Attempt to calculate the shortest path between the
-     * given origin node and target node.
-     *
-     * It is assumed that all nodes in the underlying graph
-     * are in a 'path finding reset' state before running this algorithm.
-     *
-     * @param origin to start from.
-     * @param target to attempt to find the shortest path to.
-     *
-     * @return a path structure representing the shortest path, or
-     * null if no path to the target could be found.
-     */
-    @Nullable
-    public GraphPath findPath(@NonNull Node origin, @NonNull Node target) {
-        // The visited nodes track each node that has been visited, and will also
-        // contain the distances and parent node information.
-        Set<Node> visitedNodes = new HashSet<>();
-
-        // The priority queue is very important because it allows us to add nodes into
-        // it which will automatically be placed in order based on their distance from
-        // the origin. Because of this, we can always guarantee that the first item in
-        // the queue is the one with the minimum distance.
-        PriorityQueue<Node> remainingNodes = new PriorityQueue<>(10, new Comparator<Node>() {
-            @Override
-            public int compare(Node a, Node b) {
-                if(a.getPathFindingDistanceFromOrigin() > b.getPathFindingDistanceFromOrigin()) {
-                    return 1;
-                }
-
-                if(a.getPathFindingDistanceFromOrigin() < b.getPathFindingDistanceFromOrigin()) {
-                    return -1;
-                }
-
-                return 0;
-            }
-        });
+public class DijkstrasAlgorithm implements PathFinder {
+    // The priority queue is very important because it allows us to add nodes into
+    // it which will automatically be placed in order based on their distance from
+    // the origin. Because of this, we can always guarantee that the first item in
+    // the queue is the one with the minimum distance. The queue is keyed by node
+    // index, so a node whose distance improves is moved up in place rather than
+    // being added a second time.
+    private final IndexedPriorityQueue mRemainingNodes = new IndexedPriorityQueue(16);
+
+    // Lookup from node index back to the queued node, kept alongside
+    // the queue so nodes can be recovered without any allocation.
+    private Node[] mQueuedNodes = new Node[16];
+
+    // How many nodes the last search marked as complete.
+    private int mSettledNodeCount;
+
+    @Override
+    public boolean findPath(@NonNull Node origin, @NonNull Node target, @NonNull PathBuffer path) {
+        path.clear();
+        mRemainingNodes.clear();
+        mSettledNodeCount = 0;
 
         origin.updatePathFindingData(null, 0.0);    // Configure the origin node.
-        visitedNodes.add(origin);                   // Put the origin node into the visited nodes.
-        remainingNodes.offer(origin);               // Put the origin node into the queue.
+        enqueue(origin, target);                    // Put the origin node into the queue.
 
         // Dequeue nodes as long as there are nodes left.
-        while (!remainingNodes.isEmpty()) {
+        while (!mRemainingNodes.isEmpty()) {
             // Grab the next node from the queue, which should be the
             // next minimum distance node from the origin.
-            Node currentNode = remainingNodes.poll();
+            Node currentNode = mQueuedNodes[mRemainingNodes.poll()];
 
             // Since it is the first item in the priority queue, it
             // should be the next minimum distance node, mark it as
             // completed.
             currentNode.setPathFindingComplete();
+            mSettledNodeCount++;
 
             // Short circuit! If we just discovered the target
             // node in a completed state, then there is no
@@ -85,7 +68,9 @@ public class DijkstrasAlgorithm {
 
             // Loop through all the edges from the current node,
             // which represent its neighbours.
-            for(Edge edge : currentNode.getEdges().values()) {
+            for(int position = 0, numEdges = currentNode.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = currentNode.getEdge(position);
+
                 // Find out what the target node for this edge is
                 Node edgeTarget = edge.getTarget();
 
@@ -99,69 +84,89 @@ public class DijkstrasAlgorithm {
                 // of the edge we are looking at inside this loop.
                 double distanceToEdgeTarget = currentNode.getPathFindingDistanceFromOrigin() + edge.getWeight();
 
-                // If the edge target has already been visited...
-                if(visitedNodes.contains(edgeTarget)) {
-                    // and our current calculated distance is smaller than the distance
-                    // already stored in the edge target ...
-                    if(distanceToEdgeTarget < edgeTarget.getPathFindingDistanceFromOrigin()) {
-                        // then adopt the calculated distance and the current node as its parent node ...
-                        edgeTarget.updatePathFindingData(currentNode, distanceToEdgeTarget);
-
-                        // and update the set of visited nodes.
-                        visitedNodes.remove(edgeTarget);
-                        visitedNodes.add(edgeTarget);
-                    }
-                } else {
-                    // Otherwise, this edge target has never been visited before, so
-                    // simply adopt the calculated distance and current node as its parent ...
+                // A node that has never been visited still has its reset distance
+                // of infinity, so this single comparison covers both the 'never
+                // visited' case and the 'found a shorter way' case ...
+                if(distanceToEdgeTarget < edgeTarget.getPathFindingDistanceFromOrigin()) {
+                    // adopt the calculated distance and the current node as its parent node ...
                     edgeTarget.updatePathFindingData(currentNode, distanceToEdgeTarget);
 
-                    // and add it to the set of visited nodes.
-                    visitedNodes.add(edgeTarget);
+                    // and add it to the queue, or move it up the queue if it was
+                    // already waiting in there with a larger distance.
+                    enqueue(edgeTarget, target);
                 }
-
-                // Add the edge target to the priority queue, which will take into
-                // account its distance from the origin when deciding where to
-                // place it in the queue. The result will be that if this particular
-                // edge target had the smallest distance, it will be in the first
-                // position in the queue.
-                remainingNodes.add(edgeTarget);
             }
         }
 
-        // At this stage, we will have our visited nodes data full with
-        // the shortest paths between the origin node and all other nodes,
-        // so find the target node in the visited nodes and walk backwards
+        // At this stage, we will have the shortest paths between the origin
+        // node and all completed nodes, so walk backwards from the target node
         // through its parent nodes to build the actual path that the caller
         // was looking for.
         Node stepNode = target;
 
-        // If the target node is not in the visited nodes collection, then it
-        // must have never been visited (was unreachable from the origin).
-        if(!visitedNodes.contains(stepNode)) {
-            return null;
+        // If the target node is not complete, then it must have never
+        // been reached (was unreachable from the origin).
+        if(!stepNode.isPathFindingComplete()) {
+            return false;
         }
 
-        // Otherwise create a new path to generate an ordered step
-        // by step path from the origin to the target.
-        GraphPath path = new GraphPath();
-
-        // Add the target node initially.
-        path.addStep(stepNode.getKey());
-
         // Capture what the total distance was to the target.
         path.setTotalDistance(stepNode.getPathFindingDistanceFromOrigin());
 
         // Iterate backward through each parent node, adding it to
-        // the path until we hit the origin.
-        while(stepNode != null && stepNode.getPathFindingParentNode() != null) {
-            path.addStep(stepNode.getPathFindingParentNode().getKey());
+        // the path until we hit the origin ...
+        while(stepNode != null) {
+            path.addStep(stepNode.getIndex());
             stepNode = stepNode.getPathFindingParentNode();
         }
 
-        // This will contain the stack of steps to follow to travel
-        // from the origin node to the target node in the minimum
-        // distance found in the graph.
-        return path;
+        // then flip it over so it runs from the origin to the target.
+        path.reverse();
+        return true;
+    }
+
+    @Override
+    public int getSettledNodeCount() {
+        return mSettledNodeCount;
+    }
+
+    /**
+     * Estimate of the remaining distance from the given node to
+     * the target, which is added to a node's distance from the
+     * origin when ordering the queue. Plain Dijkstra has no
+     * estimate so always returns zero.
+     *
+     * Subclasses may return a better estimate to steer the search
+     * toward the target, however the estimate must never be more
+     * than the real remaining distance, and must obey the triangle
+     * inequality across every edge, otherwise completed nodes might
+     * not really be on their shortest paths.
+     *
+     * @param node to estimate the remaining distance from.
+     * @param target the search is heading toward.
+     *
+     * @return estimated remaining distance to the target.
+     */
+    protected double getHeuristic(@NonNull Node node, @NonNull Node target) {
+        return 0.0;
+    }
+
+    /**
+     * Add the node to the queue using its current distance from
+     * the origin (plus the heuristic estimate to the target), or
+     * move it up if it is already queued.
+     *
+     * @param node to queue.
+     * @param target the search is heading toward.
+     */
+    private void enqueue(@NonNull Node node, @NonNull Node target) {
+        int index = node.getIndex();
+
+        if(index >= mQueuedNodes.length) {
+            mQueuedNodes = Arrays.copyOf(mQueuedNodes, Math.max(index + 1, mQueuedNodes.length * 2));
+        }
+
+        mQueuedNodes[index] = node;
+        mRemainingNodes.offer(index, node.getPathFindingDistanceFromOrigin() + getHeuristic(node, target));
     }
 }
@@ -0,0 +1,54 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+/**
+ * Shortest distances from each of a list of source nodes to each
+ * of a list of target nodes, filled in by {@link ManyToManyShortestPaths}.
+ *
+ * Rows are sources and columns are targets, in the order they were
+ * given, stored row by row in a single primitive array.
+ */
+public class DistanceTable {
+    private final int mNumSources;
+    private final int mNumTargets;
+    private final double[] mDistances;
+
+    DistanceTable(int numSources, int numTargets) {
+        mNumSources = numSources;
+        mNumTargets = numTargets;
+        mDistances = new double[numSources * numTargets];
+    }
+
+    public int getSourceCount() {
+        return mNumSources;
+    }
+
+    public int getTargetCount() {
+        return mNumTargets;
+    }
+
+    /**
+     * The shortest distance from a source to a target.
+     *
+     * @param source position of the source in the list of sources.
+     * @param target position of the target in the list of targets.
+     *
+     * @return shortest distance, or infinity if the target can't be reached.
+     */
+    public double getDistance(int source, int target) {
+        return mDistances[source * mNumTargets + target];
+    }
+
+    /**
+     * The distances as one array, row by row, where the distance from
+     * source s to target t is at s * getTargetCount() + t.
+     *
+     * @return the backing array of distances, which must not be changed.
+     */
+    public double[] getDistances() {
+        return mDistances;
+    }
+
+    void setDistance(int source, int target, double distance) {
+        mDistances[source * mNumTargets + target] = distance;
+    }
+}
@@ -0,0 +1,311 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Shortest path tree from every node of a graph to a single root node,
+ * which can be repaired when edge weights change rather than searched
+ * again from scratch (in the style of Ramalingam and Reps).
+ *
+ * When a node is moved, only its own edges change weight:
+ *
+ * - An edge that got shorter can only make paths shorter, so the
+ *   improvement is pushed outward from its ends with Dijkstra.
+ *
+ * - A tree edge that got longer may invalidate the distance of every
+ *   node below it in the tree (the 'affected' nodes). Those nodes
+ *   forget their distance, take the best distance offered by any
+ *   unaffected neighbour, and Dijkstra settles them from there.
+ *
+ * Nodes which were not affected keep their distances, so a small move
+ * usually only touches a small part of the graph.
+ *
+ * The graph is undirected, so the tree path from a node up to the
+ * root is also the shortest path from that node to the root.
+ */
+public class DynamicShortestPathTree {
+    private static final int NO_PARENT = -1;
+
+    private final Graph mGraph;
+    private final IndexedPriorityQueue mQueue;
+
+    private Node mRoot;
+    private double[] mDistances;
+    private int[] mParents;
+
+    // Weight of the tree edge to each node's parent, as it was when
+    // the parent was chosen, so we can tell if the edge got longer.
+    private double[] mParentWeights;
+
+    // Affected nodes, marked with the current repair number,
+    // and listed in the stack while a repair is running.
+    private int[] mAffected;
+    private int mRepair;
+    private int[] mStack;
+    private int mStackSize;
+
+    public DynamicShortestPathTree(@NonNull Graph graph) {
+        mGraph = graph;
+        mQueue = new IndexedPriorityQueue(0);
+        mDistances = new double[0];
+        mParents = new int[0];
+        mParentWeights = new double[0];
+        mAffected = new int[0];
+        mStack = new int[0];
+    }
+
+    /**
+     * Build the tree from scratch with a full Dijkstra search.
+     *
+     * @param root node every path in the tree leads to.
+     */
+    public void build(@NonNull Node root) {
+        int numNodes = mGraph.getNodeCount();
+
+        if(mDistances.length < numNodes) {
+            mDistances = new double[numNodes];
+            mParents = new int[numNodes];
+            mParentWeights = new double[numNodes];
+            mAffected = new int[numNodes];
+            mStack = new int[numNodes];
+            mRepair = 0;
+        }
+
+        mRoot = root;
+        Arrays.fill(mDistances, 0, numNodes, Double.POSITIVE_INFINITY);
+        Arrays.fill(mParents, 0, numNodes, NO_PARENT);
+        mQueue.clear();
+        mQueue.ensureCapacity(numNodes);
+
+        int rootIndex = root.getIndex();
+        mDistances[rootIndex] = 0.0;
+        mQueue.offer(rootIndex, 0.0);
+        settleQueue();
+    }
+
+    /**
+     * Throw the tree away, for example after nodes or edges were added,
+     * so {@link #isBuiltFor(Node)} is false until it is built again.
+     */
+    public void invalidate() {
+        mRoot = null;
+    }
+
+    /**
+     * Whether the tree is currently built and leads to the given root.
+     *
+     * @param root node to check.
+     *
+     * @return true if the tree can be repaired rather than rebuilt.
+     */
+    public boolean isBuiltFor(@Nullable Node root) {
+        return root != null && root == mRoot;
+    }
+
+    /**
+     * Repair the tree after the given node was moved, which changes the
+     * weight of each of its edges. The edges must already be invalidated.
+     *
+     * @param movedNode node whose edges have changed weight.
+     */
+    public void nodeMoved(@NonNull Node movedNode) {
+        int moved = movedNode.getIndex();
+        mQueue.clear();
+        mStackSize = 0;
+
+        if(++mRepair == Integer.MAX_VALUE) {
+            Arrays.fill(mAffected, 0);
+            mRepair = 1;
+        }
+
+        // Find the tree edges that got longer. The subtree hanging below
+        // each of them may now have a shorter route elsewhere.
+        int parent = mParents[moved];
+
+        if(parent != NO_PARENT && weightBetween(movedNode, mGraph.getNode(parent)) > mParentWeights[moved]) {
+            markSubtree(moved);
+        } else {
+            for(int position = 0, numEdges = movedNode.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = movedNode.getEdge(position);
+                int neighbour = edge.getTarget().getIndex();
+
+                if(mParents[neighbour] == moved && edge.getWeight() > mParentWeights[neighbour]) {
+                    markSubtree(neighbour);
+                }
+            }
+        }
+
+        seedAffected();
+
+        // Every edge of the moved node may have become shorter, so
+        // offer each end of each edge a new route through the other.
+        for(int position = 0, numEdges = movedNode.getEdgeCount(); position < numEdges; position++) {
+            Edge edge = movedNode.getEdge(position);
+            int neighbour = edge.getTarget().getIndex();
+
+            if(!isAffected(neighbour)) {
+                relax(neighbour, moved, edge.getWeight());
+            }
+
+            if(!isAffected(moved)) {
+                relax(moved, neighbour, edge.getWeight());
+            }
+        }
+
+        settleQueue();
+    }
+
+    /**
+     * The current shortest distance from the given node to the root.
+     *
+     * @param node to get the distance for.
+     *
+     * @return distance to the root, or infinity if it can't be reached.
+     */
+    public double getDistance(@NonNull Node node) {
+        return mDistances[node.getIndex()];
+    }
+
+    /**
+     * Follow the tree from the given node up to the root.
+     *
+     * @param origin node to start the path from.
+     * @param path buffer to fill with the path from the origin to the
+     *             root, which is left empty if the root can't be reached.
+     *
+     * @return true if the root can be reached from the origin.
+     */
+    public boolean getPath(@NonNull Node origin, @NonNull PathBuffer path) {
+        path.clear();
+        int originIndex = origin.getIndex();
+
+        if(mDistances[originIndex] == Double.POSITIVE_INFINITY) {
+            return false;
+        }
+
+        // Parents point toward the root, so the steps are already in order.
+        for(int index = originIndex; index != NO_PARENT; index = mParents[index]) {
+            path.addStep(index);
+        }
+
+        path.setTotalDistance(mDistances[originIndex]);
+        return true;
+    }
+
+    /**
+     * Mark every node in the subtree below (and including) the
+     * given node as affected, adding them to the stack.
+     */
+    private void markSubtree(int subtreeRoot) {
+        if(isAffected(subtreeRoot)) {
+            return;
+        }
+
+        // The subtree is found by walking the graph edges from the subtree
+        // root, only stepping to neighbours whose parent is the current node.
+        int next = mStackSize;
+        mStack[mStackSize++] = subtreeRoot;
+        mAffected[subtreeRoot] = mRepair;
+
+        while(next < mStackSize) {
+            int index = mStack[next++];
+            Node node = mGraph.getNode(index);
+
+            for(int position = 0, numEdges = node.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = node.getEdge(position);
+                int neighbour = edge.getTarget().getIndex();
+
+                if(mParents[neighbour] == index && !isAffected(neighbour)) {
+                    mAffected[neighbour] = mRepair;
+                    mStack[mStackSize++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Forget the distance of every affected node, then seed each of them
+     * with the best distance offered by its unaffected neighbours. This is
+     * only done once all the affected nodes are marked, so no node can be
+     * seeded from a distance which is about to be forgotten.
+     */
+    private void seedAffected() {
+        int stackSize = mStackSize;
+
+        for(int i = 0; i < stackSize; i++) {
+            int index = mStack[i];
+            mDistances[index] = Double.POSITIVE_INFINITY;
+            mParents[index] = NO_PARENT;
+            mQueue.update(index, Double.POSITIVE_INFINITY);
+        }
+
+        for(int i = 0; i < stackSize; i++) {
+            int index = mStack[i];
+            Node node = mGraph.getNode(index);
+
+            for(int position = 0, numEdges = node.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = node.getEdge(position);
+                int neighbour = edge.getTarget().getIndex();
+
+                if(!isAffected(neighbour)) {
+                    relax(index, neighbour, edge.getWeight());
+                }
+            }
+        }
+    }
+
+    /**
+     * Standard Dijkstra over whatever is in the queue, relaxing
+     * edges until every distance is settled again.
+     */
+    private void settleQueue() {
+        while(!mQueue.isEmpty()) {
+            int index = mQueue.poll();
+            double distance = mDistances[index];
+
+            if(distance == Double.POSITIVE_INFINITY) {
+                // Everything left in the queue is unreachable.
+                mQueue.clear();
+                return;
+            }
+
+            Node node = mGraph.getNode(index);
+
+            for(int position = 0, numEdges = node.getEdgeCount(); position < numEdges; position++) {
+                Edge edge = node.getEdge(position);
+                relax(edge.getTarget().getIndex(), index, edge.getWeight());
+            }
+        }
+    }
+
+    /**
+     * Route the given node through the given parent if that is shorter.
+     */
+    private void relax(int index, int parent, double weight) {
+        double distance = mDistances[parent] + weight;
+
+        if(distance < mDistances[index]) {
+            mDistances[index] = distance;
+            mParents[index] = parent;
+            mParentWeights[index] = weight;
+            mQueue.update(index, distance);
+        }
+    }
+
+    private boolean isAffected(int index) {
+        return mAffected[index] == mRepair;
+    }
+
+    private static double weightBetween(@NonNull Node origin, @NonNull Node target) {
+        Edge edge = origin.getEdges().get(target);
+        return edge == null ? Double.POSITIVE_INFINITY : edge.getWeight();
+    }
+}
@@ -4,19 +4,36 @@ import android.graphics.PointF;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
-import java.util.Scanner;
-import java.util.Stack;
 
+import io.github.marcelbraghetto.dijkstra.graphcore.BinaryGraphFormat;
+import io.github.marcelbraghetto.dijkstra.graphcore.BinaryLandmarkFormat;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactDijkstrasAlgorithm;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraphBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.KShortestPaths;
+import io.github.marcelbraghetto.dijkstra.graphcore.Landmarks;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.graphcore.TextGraphReader;
+import io.github.marcelbraghetto.dijkstra.graphcore.TextGraphWriter;
 import io.github.marcelbraghetto.dijkstra.part2.models.Crab;
 import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
 import io.github.marcelbraghetto.dijkstra.part2.models.GraphPath;
 import io.github.marcelbraghetto.dijkstra.part2.models.Node;
 import io.github.marcelbraghetto.dijkstra.part2.models.TreasureChest;
 import io.github.marcelbraghetto.dijkstra.part2.ui.DemoRenderer;
-import io.github.marcelbraghetto.dijkstra.part2.utils.MathUtils;
+import io.github.marcelbraghetto.dijkstra.part2.utils.FileUtils;
 import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
 
 /**
@@ -28,17 +45,85 @@ import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
  * This graph will behave as a weighted, but NOT directed
  * graph (ie, two nodes that are connected are connected
  * in both directions).
+ *
+ * The actors are moved by a SimulationThread while the UI thread
+ * draws and drags the nodes, so the methods that change the graph
+ * or its actors are synchronized. Only the UI thread changes the
+ * nodes and edges, so it can draw them without taking the lock.
  */
 public class Graph {
     private static final float TOUCH_EPSILON = ScreenUtils.dpToPx(10f);
 
+    // Size of each cell of the spatial index, roughly the
+    // spacing between nodes on a typical map.
+    private static final float SPATIAL_INDEX_CELL_SIZE = 64f;
+
+    // Agents share a few destinations, so their routes can be
+    // planned together, and travel at the same speed as the crab.
+    private static final int NUM_AGENT_TARGETS = 8;
+    private static final float AGENT_SPEED = 2f;
+
+    /**
+     * The algorithms that can be used to find the
+     * path from the crab to the treasure chest.
+     */
+    public enum PathFindingMode {
+        DIJKSTRA,
+        A_STAR,
+        BIDIRECTIONAL_DIJKSTRA,
+        BIDIRECTIONAL_A_STAR,
+        CONTRACTION_HIERARCHY,
+        LANDMARKS
+    }
+
     private final Map<String, Node> mNodes;
+
+    // The same nodes as above, ordered by node index.
+    private final List<Node> mIndexedNodes;
+
+    // The same nodes again, filed by position.
+    private final SpatialIndex mSpatialIndex;
+
+    // Current path finding generation, see resetPathFindingData.
+    private int mPathFindingGeneration;
+
+    // Incremented whenever the nodes, edges or edge weights change.
+    private int mRevision;
+
+    private PathFinder mPathFinder;
+
+    // Landmarks for A* queries and the revision they were built
+    // for, kept with the graph so they can be saved alongside it.
+    private Landmarks mLandmarks;
+    private int mLandmarksRevision;
+
+    // Finds alternative routes in a snapshot of the graph,
+    // and the revision the snapshot was taken at.
+    private KShortestPaths mKShortestPaths;
+    private int mKShortestPathsRevision;
+
+    // Shortest paths to the treasure chest, repaired as nodes are dragged.
+    private final DynamicShortestPathTree mRouteTree;
+
+    // Reused for every path found for the crab, which copies it.
+    private final PathBuffer mCrabPath;
+
     private TreasureChest mTreasureChest;
     private Crab mCrab;
     private Random mRandom;
 
+    // Optional many agent simulation, run alongside the crab,
+    // and how many agents to start it with for each new graph.
+    private SimulationEngine mSimulationEngine;
+    private int mNumAgents;
+
     public Graph() {
         mNodes = new HashMap<>();
+        mIndexedNodes = new ArrayList<>();
+        mSpatialIndex = new SpatialIndex(SPATIAL_INDEX_CELL_SIZE);
+        mPathFinder = new DijkstrasAlgorithm();
+        mRouteTree = new DynamicShortestPathTree(this);
+        mCrabPath = new PathBuffer();
         mRandom = new Random();
     }
 
@@ -65,18 +150,68 @@ public class Graph {
     /**
      * Add a new node with the given unique node key into
      * the graph. Passing a node key that already exists
-     * will replace it.
+     * will replace it, and the new node takes over the
+     * index of the node it replaced.
      *
      * @param key of the node to add.
      * @return the new node.
      */
     @NonNull
-    public Node addNode(@NonNull String key, @NonNull PointF position) {
-        Node node = new Node(key, position);
+    public synchronized Node addNode(@NonNull String key, @NonNull PointF position) {
+        Node existing = mNodes.get(key);
+        int index = existing == null ? mNodes.size() : existing.getIndex();
+        Node node = new Node(this, index, key, position);
         mNodes.put(key, node);
+        mRevision++;
+        mRouteTree.invalidate();
+
+        if(existing == null) {
+            mIndexedNodes.add(node);
+        } else {
+            mIndexedNodes.set(index, node);
+            mSpatialIndex.remove(existing);
+        }
+
+        mSpatialIndex.add(node);
+
         return node;
     }
 
+    /**
+     * Find the node with the given key, without creating
+     * it if it doesn't exist.
+     *
+     * @param key to find.
+     *
+     * @return the node with the given key, or null if there isn't one.
+     */
+    @Nullable
+    public Node findNode(@NonNull String key) {
+        return mNodes.get(key);
+    }
+
+    /**
+     * Find the node with the given node index.
+     *
+     * @param index of the node, between 0 and the node count (exclusive).
+     *
+     * @return the node with the given index.
+     */
+    @NonNull
+    public Node getNode(int index) {
+        return mIndexedNodes.get(index);
+    }
+
+    /**
+     * How many nodes are in the graph. Node indices are
+     * always between 0 and this value (exclusive).
+     *
+     * @return number of nodes in the graph.
+     */
+    public int getNodeCount() {
+        return mNodes.size();
+    }
+
     /**
      * Connecting nodes will create a new edge between the origin node
      * and the target node, and assign the edge with the given weight.
@@ -87,7 +222,7 @@ public class Graph {
      * @param originKey to connect from.
      * @param targetKey to connect to.
      */
-    public void connectNodes(@NonNull String originKey, @NonNull String targetKey) {
+    public synchronized void connectNodes(@NonNull String originKey, @NonNull String targetKey) {
         Node origin = mNodes.get(originKey);
         Node target = mNodes.get(targetKey);
 
@@ -95,26 +230,259 @@ public class Graph {
             return;
         }
 
+        connectNodes(origin, target);
+    }
+
+    /**
+     * Connect two nodes which are already in the graph,
+     * without having to look them up by key.
+     *
+     * @param origin to connect from.
+     * @param target to connect to.
+     */
+    void connectNodes(@NonNull Node origin, @NonNull Node target) {
         origin.addEdge(target);
         target.addEdge(origin);
+        mRevision++;
+        mRouteTree.invalidate();
     }
 
     /**
      * Before running a path finding algorithm over the nodes
      * in the graph, this method should be called to reset all
      * the nodes back into their default state for path finding.
+     *
+     * Rather than visiting every node, this starts a new path
+     * finding 'generation'. Each node remembers the generation
+     * its path finding data was written in, and treats data from
+     * an older generation as reset the next time it is used, so
+     * a search only pays for the nodes it actually touches.
      */
     public void resetPathFindingData() {
-        for(Node node : mNodes.values()) {
-            node.resetPathFindingData();
+        // In the very unlikely event we run out of generations, fall
+        // back to forgetting the generation of every node so none of
+        // them can match a recycled generation number.
+        if(mPathFindingGeneration == Integer.MAX_VALUE) {
+            for(Node node : mNodes.values()) {
+                node.invalidatePathFindingGeneration();
+            }
+
+            mPathFindingGeneration = 0;
+            return;
+        }
+
+        mPathFindingGeneration++;
+    }
+
+    /**
+     * The current path finding generation, see {@link #resetPathFindingData()}.
+     *
+     * @return current path finding generation.
+     */
+    public int getPathFindingGeneration() {
+        return mPathFindingGeneration;
+    }
+
+    /**
+     * Choose which algorithm is used when the crab needs
+     * to find its way to the treasure chest.
+     *
+     * @param mode of path finding to use.
+     */
+    public synchronized void setPathFindingMode(@NonNull PathFindingMode mode) {
+        switch(mode) {
+            case A_STAR:
+                mPathFinder = new AStarAlgorithm();
+                break;
+            case BIDIRECTIONAL_DIJKSTRA:
+                mPathFinder = new BidirectionalAlgorithm(false);
+                break;
+            case BIDIRECTIONAL_A_STAR:
+                mPathFinder = new BidirectionalAlgorithm(true);
+                break;
+            case CONTRACTION_HIERARCHY:
+                mPathFinder = new ContractionHierarchyAlgorithm(this);
+                break;
+            case LANDMARKS:
+                mPathFinder = new LandmarkAlgorithm(this);
+                break;
+            default:
+                mPathFinder = new DijkstrasAlgorithm();
+                break;
+        }
+    }
+
+    /**
+     * How many nodes were settled the last time a path was
+     * found for the crab, useful for comparing how much work
+     * each path finding mode does.
+     *
+     * @return number of nodes settled by the last search.
+     */
+    public int getLastSettledNodeCount() {
+        return mPathFinder.getSettledNodeCount();
+    }
+
+    /**
+     * Take a frozen snapshot of the current nodes and edges
+     * in a compact, int indexed form which can be searched
+     * with the {@link CompactDijkstrasAlgorithm}. Each node
+     * keeps its node index in the snapshot.
+     *
+     * Any changes made to the graph afterward (such as moving
+     * a node) will not be reflected in the snapshot.
+     *
+     * @return compact snapshot of the graph.
+     */
+    @NonNull
+    public CompactGraph createCompactGraph() {
+        int numNodes = mIndexedNodes.size();
+        CompactGraphBuilder builder = new CompactGraphBuilder(numNodes, numNodes * 4);
+
+        for(Node node : mIndexedNodes) {
+            builder.addNode(node.getKey(), node.getPosition().x, node.getPosition().y);
+        }
+
+        for(Node node : mIndexedNodes) {
+            for(Edge edge : node.getEdges().values()) {
+                builder.addEdge(node.getIndex(), edge.getTarget().getIndex(), edge.getWeight());
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * The landmarks for the graph at the given revision, if they
+     * have been built or loaded, without building them.
+     *
+     * @param revision of the graph the landmarks are needed for.
+     *
+     * @return the landmarks, or null if there aren't any for the revision.
+     */
+    @Nullable
+    synchronized Landmarks getLandmarks(int revision) {
+        return mLandmarksRevision == revision ? mLandmarks : null;
+    }
+
+    /**
+     * Keep the given landmarks with the graph, so they are saved
+     * alongside it. They are dropped if the graph has changed since
+     * the snapshot they were built from was taken.
+     *
+     * @param landmarks built for the graph.
+     * @param revision of the graph the landmarks were built for.
+     */
+    synchronized void setLandmarks(@NonNull Landmarks landmarks, int revision) {
+        if(revision == mRevision) {
+            mLandmarks = landmarks;
+            mLandmarksRevision = revision;
+        }
+    }
+
+    /**
+     * The landmarks for the graph as it is now, without building them.
+     *
+     * @return the current landmarks, or null if there aren't any.
+     */
+    @Nullable
+    private synchronized Landmarks getCurrentLandmarks() {
+        return getLandmarks(mRevision);
+    }
+
+    /**
+     * Calculate the shortest distance from every one of the given source
+     * nodes to every one of the given target nodes, for example from every
+     * crab to every treasure chest. The searches run in parallel, and the
+     * graph is locked until they are done.
+     *
+     * @param sources nodes to measure from, which become the rows of the table.
+     * @param targets nodes to measure to, which become the columns of the table.
+     *
+     * @return the table of distances, with infinity for unreachable pairs.
+     *
+     * @throws InterruptedException if interrupted while waiting for the searches.
+     */
+    @NonNull
+    public synchronized DistanceTable computeDistanceTable(@NonNull List<Node> sources, @NonNull List<Node> targets) throws InterruptedException {
+        return new ManyToManyShortestPaths().compute(this, sources, targets);
+    }
+
+    /**
+     * Find up to the given number of the shortest paths between the given
+     * nodes which don't visit any node more than once, best first, so
+     * travellers heading the same way can be spread across them instead
+     * of all taking the identical route, see {@link KShortestPaths}.
+     *
+     * The paths are found in a snapshot of the graph, which is taken the
+     * first time they are needed and reused until the graph changes.
+     *
+     * @param origin to start from.
+     * @param target to find paths to.
+     * @param maxPaths the most paths to find.
+     *
+     * @return the paths found, shortest first, which is empty if
+     * the target can't be reached.
+     */
+    @NonNull
+    public synchronized List<GraphPath> findKShortestPaths(@NonNull Node origin, @NonNull Node target, int maxPaths) {
+        if(mKShortestPaths == null || mKShortestPathsRevision != mRevision) {
+            mKShortestPaths = new KShortestPaths(createCompactGraph());
+            mKShortestPathsRevision = mRevision;
+        }
+
+        // The compact graph is taken in node index order, so
+        // node indices can be used directly in the search.
+        List<CompactPath> compactPaths = mKShortestPaths.findPaths(origin.getIndex(), target.getIndex(), maxPaths);
+        List<GraphPath> paths = new ArrayList<>(compactPaths.size());
+
+        for(CompactPath compactPath : compactPaths) {
+            paths.add(createGraphPath(compactPath));
+        }
+
+        return paths;
+    }
+
+    /**
+     * Turn a path found in a snapshot from {@link #createCompactGraph()}
+     * into a path of node keys in this graph.
+     *
+     * @param compactPath to convert.
+     *
+     * @return the same path as node keys.
+     */
+    @NonNull
+    public GraphPath createGraphPath(@NonNull CompactPath compactPath) {
+        // The path is a stack with the origin on top, so add the target first.
+        GraphPath path = new GraphPath();
+        path.setTotalDistance(compactPath.getTotalDistance());
+
+        for(int step = compactPath.getLength() - 1; step >= 0; step--) {
+            path.addStep(getNode(compactPath.getNode(step)).getKey());
         }
+
+        return path;
+    }
+
+    /**
+     * A number which changes whenever the nodes, edges or edge
+     * weights of the graph change, so anything derived from the
+     * graph can tell when it needs to be rebuilt.
+     *
+     * @return current revision of the graph.
+     */
+    public int getRevision() {
+        return mRevision;
     }
 
     /**
      * Invalidate the graph, causing all distances to be re calculated
      * for edges between nodes.
      */
-    public void invalidate() {
+    public synchronized void invalidate() {
+        mRevision++;
+        mRouteTree.invalidate();
+
         // Loop over all our nodes.
         for(Node node : mNodes.values()) {
             // And for each edge for the given node refresh it.
@@ -124,19 +492,19 @@ public class Graph {
         }
     }
 
-    public void dragInteractionStarted() {
+    public synchronized void dragInteractionStarted() {
         pauseAnimation();
     }
 
-    public void dragInteractionEnded() {
+    public synchronized void dragInteractionEnded() {
         resumeAnimation();
     }
 
-    public void pauseAnimation() {
+    public synchronized void pauseAnimation() {
         mCrab.setActive(false);
     }
 
-    public void resumeAnimation() {
+    public synchronized void resumeAnimation() {
         mCrab.setActive(true);
     }
 
@@ -147,7 +515,7 @@ public class Graph {
      * @param nodeKey for the node to set the position.
      * @param position to assign to the node.
      */
-    public void setNodePosition(@NonNull String nodeKey, @NonNull PointF position) {
+    public synchronized void setNodePosition(@NonNull String nodeKey, @NonNull PointF position) {
         Node node = mNodes.get(nodeKey);
 
         // Trying to set a position on a non existing node?
@@ -157,9 +525,49 @@ public class Graph {
 
         // Set the node to the new position.
         node.updatePosition(position.x, position.y);
+        mSpatialIndex.update(node);
 
-        // Invalidate the graph to update edges etc.
-        invalidate();
+        // Only the edges touching the node have changed, so there
+        // is no need to invalidate the whole graph.
+        for(Edge edge : node.getEdges().values()) {
+            edge.invalidate();
+
+            // Every edge has a twin going back the other way.
+            Edge reverseEdge = edge.getTarget().getEdges().get(node);
+
+            if(reverseEdge != null) {
+                reverseEdge.invalidate();
+            }
+        }
+
+        mRevision++;
+        refreshCrabPath(node);
+    }
+
+    /**
+     * After a node was moved, give the crab the new shortest path to
+     * the treasure chest. The first time this is called for the current
+     * treasure chest position a full shortest path tree is built, and
+     * after that the tree is only repaired around the moved node.
+     *
+     * @param movedNode node which was moved.
+     */
+    private void refreshCrabPath(@NonNull Node movedNode) {
+        if(mCrab == null || mTreasureChest == null || mTreasureChest.getTargetNode() == null) {
+            return;
+        }
+
+        Node treasureChestNode = mTreasureChest.getTargetNode();
+
+        if(mRouteTree.isBuiltFor(treasureChestNode)) {
+            mRouteTree.nodeMoved(movedNode);
+        } else {
+            mRouteTree.build(treasureChestNode);
+        }
+
+        // An empty path stops the crab if the treasure can't be reached.
+        mRouteTree.getPath(mCrab.getLastVisitedNode(), mCrabPath);
+        mCrab.setPath(mCrabPath);
     }
 
     /**
@@ -167,9 +575,8 @@ public class Graph {
      * close enough to that point and return its key if found.
      *
      * An 'epsilon' value is used to provide a radius for an
-     * acceptable match to a node. The first node found that
-     * is within this epsilon value is chosen and no further
-     * evaluation occurs.
+     * acceptable match to a node. If more than one node is
+     * within this epsilon value, the nearest is chosen.
      *
      * @param position of the touch point in density independent pixels.
      *
@@ -178,13 +585,39 @@ public class Graph {
      */
     @Nullable
     public String getNodeNearPosition(@NonNull PointF position) {
-        for(Node node : mNodes.values()) {
-            if(MathUtils.distanceBetween(position, node.getPosition()) < TOUCH_EPSILON) {
-                return node.getKey();
-            }
-        }
+        Node node = mSpatialIndex.findNearest(position.x, position.y, TOUCH_EPSILON);
+        return node == null ? null : node.getKey();
+    }
 
-        return null;
+    /**
+     * Find the nodes nearest to the given X/Y coordinate (in DPs).
+     *
+     * @param position to search around.
+     * @param count how many nodes to find.
+     *
+     * @return up to 'count' nodes, nearest first.
+     */
+    @NonNull
+    public List<Node> findNearestNodes(@NonNull PointF position, int count) {
+        List<Node> result = new ArrayList<>(count);
+        mSpatialIndex.findNearest(position.x, position.y, count, result);
+        return result;
+    }
+
+    /**
+     * Find every node within the given distance of an
+     * X/Y coordinate (both in DPs).
+     *
+     * @param position to search around.
+     * @param radius furthest distance from the position.
+     *
+     * @return the nodes in range, in no particular order.
+     */
+    @NonNull
+    public List<Node> findNodesInRadius(@NonNull PointF position, float radius) {
+        List<Node> result = new ArrayList<>();
+        mSpatialIndex.findInRadius(position.x, position.y, radius, result);
+        return result;
     }
 
     /**
@@ -192,13 +625,13 @@ public class Graph {
      * configure the 'crab' actor to find the shortest path
      * to the treasure and begin to travel to it.
      */
-    public void moveTreasureChestToRandomNode() {
+    public synchronized void moveTreasureChestToRandomNode() {
         pauseAnimation();
 
         // We don't want to select the same node that the crab is on.
         Node lastVisitedNode = mCrab.getLastVisitedNode();
 
-        int numNodes = mNodes.size();
+        int numNodes = mIndexedNodes.size();
         Node treasureChestTargetNode = null;
 
         // We should expect to find a new target node, for this demo
@@ -206,68 +639,108 @@ public class Graph {
         // where you might potentially exclude the only valid choice
         // and be stuck in an infinite loop.
         while(treasureChestTargetNode == null) {
-            // Pick a node at random from our set of nodes
-            int randomIndex = mRandom.nextInt(numNodes);
-            int count = 0;
+            // Pick a node at random from our set of nodes, and if it
+            // is not our excluded node then assign it to the treasure.
+            Node node = mIndexedNodes.get(mRandom.nextInt(numNodes));
 
-            for(Node node : mNodes.values()) {
-                // If the current count matches our random index AND
-                // the node at that position is not our excluded node
-                // then select it and assign it to the treasure.
-                if(count == randomIndex && node != lastVisitedNode) {
-                    treasureChestTargetNode = node;
-                    break;
-                }
-
-                count++;
+            if(node != lastVisitedNode) {
+                treasureChestTargetNode = node;
             }
         }
 
         mTreasureChest.setTargetNode(treasureChestTargetNode);
 
         // This is where we call on our implementation of Dijkstra's algorithm
-        // to formulate a path from the crab to the treasure chest.
+        // (or one of its variations depending on the path finding mode) to formulate a path
+        // from the crab to the treasure chest.
         resetPathFindingData();
-        GraphPath path = new DijkstrasAlgorithm().findPath(lastVisitedNode, treasureChestTargetNode);
+        mPathFinder.findPath(lastVisitedNode, treasureChestTargetNode, mCrabPath);
 
-        // If we successfully found a path, assign it
-        // to our crab actor.
-        if(path != null) {
-            mCrab.setPath(path.getPath());
-        } else {
-            mCrab.setPath(new Stack<String>());
-        }
+        // Assign the path to our crab actor, which will stay
+        // put if no path was found and the path is empty.
+        mCrab.setPath(mCrabPath);
 
         resumeAnimation();
     }
 
     /**
-     * Render the elements of the graph into the given
-     * renderer instance.
+     * Render the nodes and edges of the graph into the given renderer
+     * instance. The actors are rendered from a SimulationSnapshot.
      *
      * @param renderer to send render commands to.
      */
     public void render(@NonNull DemoRenderer renderer) {
-        // Loop through all the nodes in our collection.
-        for(Node node : mNodes.values()) {
-            // Loop through all the edges for the given node.
-            for(Edge edge : node.getEdges().values()) {
-                renderer.renderEdge(edge);
-            }
-        }
+        // Draw all the edges at once.
+        renderer.renderEdges(this);
 
         // Draw each of the nodes after the edges (so they are on top).
         for(Node node : mNodes.values()) {
             renderer.renderNode(node);
         }
+    }
+
+    /**
+     * Advance the actors and any agent simulation by one tick.
+     */
+    public synchronized void update() {
+        // The actors only exist once a graph has been loaded.
+        if(mCrab != null) {
+            mTreasureChest.update();
+            mCrab.update();
+        }
+
+        if(mSimulationEngine != null) {
+            mSimulationEngine.tick();
+        }
+    }
+
+    /**
+     * Capture the positions of the actors and agents as they are
+     * after the last update, ready for rendering.
+     *
+     * @param snapshot to capture the positions into.
+     */
+    public synchronized void captureSnapshot(@NonNull SimulationSnapshot snapshot) {
+        snapshot.begin();
+
+        if(mCrab != null) {
+            snapshot.addActor(mTreasureChest);
+            snapshot.addActor(mCrab);
+        }
+
+        if(mSimulationEngine != null) {
+            mSimulationEngine.captureSnapshot(snapshot);
+        }
+    }
 
-        // Update and render the treasure chest actor.
-        mTreasureChest.update();
-        renderer.renderActor(mTreasureChest);
+    /**
+     * Run the given number of agents around the graph alongside the
+     * crab, see {@link SimulationEngine}. Each agent travels between a
+     * handful of destinations shared by all of them, so their routes can
+     * be planned in batches. The agents are started again at random
+     * nodes whenever a new graph is loaded.
+     *
+     * @param numAgents to run, or 0 to stop running agents.
+     */
+    public synchronized void setAgentCount(int numAgents) {
+        mNumAgents = numAgents;
+        mSimulationEngine = numAgents > 0 && !mIndexedNodes.isEmpty() ? createSimulationEngine() : null;
+    }
+
+    @NonNull
+    private SimulationEngine createSimulationEngine() {
+        SimulationEngine simulationEngine = new SimulationEngine(this, mRandom.nextLong());
+        int numNodes = mIndexedNodes.size();
 
-        // Update and render the crab actor.
-        mCrab.update();
-        renderer.renderActor(mCrab);
+        for(int i = 0; i < NUM_AGENT_TARGETS; i++) {
+            simulationEngine.addTargetNode(mIndexedNodes.get(mRandom.nextInt(numNodes)));
+        }
+
+        for(int i = 0; i < mNumAgents; i++) {
+            simulationEngine.addAgent(mIndexedNodes.get(mRandom.nextInt(numNodes)), AGENT_SPEED);
+        }
+
+        return simulationEngine;
     }
 
     /**
@@ -307,55 +780,124 @@ public class Graph {
      * 3 A F D
      *
      * @param graphText correctly formatted graph data text.
+     *
+     * @throws IllegalArgumentException if the text is not correctly formatted.
      */
-    public void deserializeGraph(@NonNull String graphText) {
-        mNodes.clear();
+    public synchronized void deserializeGraph(@NonNull String graphText) {
+        try {
+            deserializeGraph(new StringReader(graphText));
+        } catch (IOException e) {
+            // A string can't fail to be read, so the text itself was bad.
+            throw new IllegalArgumentException(e.getMessage(), e);
+        }
+    }
 
-        Scanner scanner = new Scanner(graphText);
+    /**
+     * Clear the current graph instance and deserialize the graph
+     * from text in the format described in {@link #deserializeGraph(String)},
+     * streamed from the given reader. The whole text is parsed before
+     * the current graph is cleared, so if it is not correctly formatted
+     * the current graph is left as it was.
+     *
+     * @param reader to read the graph text from, which is not closed.
+     *
+     * @throws IOException if the text could not be read or is not
+     * correctly formatted.
+     */
+    public synchronized void deserializeGraph(@NonNull Reader reader) throws IOException {
+        loadGraph(TextGraphReader.read(reader), null);
+    }
 
-        int numNodes = scanner.nextInt();
+    /**
+     * Clear the current graph instance and load the graph stored
+     * in the given binary graph file, see {@link BinaryGraphFormat}.
+     *
+     * @param file to load the graph from.
+     *
+     * @throws IOException if the file could not be loaded.
+     */
+    public synchronized void deserializeGraph(@NonNull File file) throws IOException {
+        CompactGraph compactGraph = BinaryGraphFormat.read(file);
+
+        // Any landmarks saved alongside the graph are picked up
+        // straight away, unless they are for a different graph.
+        File landmarkFile = BinaryLandmarkFormat.getLandmarkFile(file);
+        Landmarks landmarks = null;
+
+        if(landmarkFile.exists()) {
+            try {
+                landmarks = BinaryLandmarkFormat.read(landmarkFile, compactGraph);
+            } catch (IOException e) {
+                // They will be built again when they are next needed.
+                landmarks = null;
+            }
+        }
 
-        // In order to post process the node edges in the correct order,
-        // we create a temporary array to hold the nodes while they are
-        // being parsed so they can be found by the same position index
-        // later.
-        Node[] orderedNodes = new Node[numNodes];
+        loadGraph(compactGraph, landmarks);
+    }
 
-        for(int i = 0; i < numNodes;i++) {
-            // Create and add a new node into the graph with the given data values.
-            orderedNodes[i] = addNode(scanner.next(), new PointF(scanner.nextFloat(), scanner.nextFloat()));
-        }
+    /**
+     * Replace the current graph with the nodes and edges of the
+     * given compact graph, keeping their node indices.
+     *
+     * @param compactGraph to load.
+     * @param landmarks loaded for the compact graph, or null if there aren't any.
+     */
+    private void loadGraph(@NonNull CompactGraph compactGraph, @Nullable Landmarks landmarks) {
+        clear();
+        mLandmarks = landmarks;
 
-        int numEdges;
-        String originNodeKey;
-        String targetNodeKey;
+        int numNodes = compactGraph.getNodeCount();
+        Node[] nodes = new Node[numNodes];
 
-        // Loop through each of the nodes to parse and process their edges.
-        for(int i = 0; i < numNodes;i++) {
-            // Grab the correct node key from the previously cached
-            // array of parsed nodes.
-            originNodeKey = orderedNodes[i].getKey();
+        for(int i = 0; i < numNodes; i++) {
+            PointF position = new PointF(compactGraph.getNodeX(i), compactGraph.getNodeY(i));
+            nodes[i] = addNode(compactGraph.getNodeKey(i), position);
+        }
 
-            // Find out how many edges this particular node has.
-            numEdges = scanner.nextInt();
+        for(int i = 0; i < numNodes; i++) {
+            int edgeEnd = compactGraph.getEdgeEnd(i);
 
-            // Read each of the edge data records and 'connect' the
-            // current node and the target node inside the graph.
-            for(int j = 0; j < numEdges;j++) {
-                targetNodeKey = scanner.next();
-                connectNodes(originNodeKey, targetNodeKey);
+            for(int edge = compactGraph.getEdgeStart(i); edge < edgeEnd; edge++) {
+                connectNodes(nodes[i], nodes[compactGraph.getEdgeTarget(edge)]);
             }
         }
 
+        graphLoaded();
+    }
+
+    /**
+     * Remove all the nodes from the graph, ready to load a new one.
+     */
+    private void clear() {
+        mNodes.clear();
+        mIndexedNodes.clear();
+        mSpatialIndex.clear();
+        mSimulationEngine = null;
+        mLandmarks = null;
+    }
+
+    /**
+     * Called once all the nodes and edges of a newly
+     * loaded graph have been added.
+     */
+    private void graphLoaded() {
         // The graph should now be populated so create
         // our actors and set them up.
         mTreasureChest = new TreasureChest();
-        mCrab = new Crab(this, orderedNodes[0]);
+        mCrab = new Crab(this, mIndexedNodes.get(0));
+
+        if(mNumAgents > 0) {
+            mSimulationEngine = createSimulationEngine();
+        }
 
         // Invalidate the graph to cause all the distances
         // to be calculated.
         invalidate();
 
+        // Landmarks loaded with the graph are for the graph as loaded.
+        mLandmarksRevision = mRevision;
+
         // Begin the simulation!
         moveTreasureChestToRandomNode();
     }
@@ -370,46 +912,68 @@ public class Graph {
      */
     @NonNull
     public String serializeGraph() {
-        // Track the node data and edge data in separate
-        // string builders to avoid passing across the
-        // data twice - we need to record all the nodes
-        // first so when they are deserialized, they all
-        // exist by the time the edges are deserialized.
-        StringBuilder nodeData = new StringBuilder();
-        StringBuilder edgeData = new StringBuilder();
-
-        // How many nodes in the graph.
-        nodeData.append(mNodes.size());
-        nodeData.append("\n");
-
-        for(Node node : mNodes.values()) {
-            // Save the key, x, y data fields on a line.
-            nodeData.append(node.getKey());
-            nodeData.append(" ");
-            nodeData.append(node.getPosition().x);
-            nodeData.append(" ");
-            nodeData.append(node.getPosition().y);
-            nodeData.append("\n");
-
-            // Add the number of edges for this node.
-            edgeData.append(node.getEdges().size());
-            edgeData.append(" ");
-
-            // Loop through all the edges for the current node
-            // and emit them to the data record.
-            for(Edge edge : node.getEdges().values()) {
-                edgeData.append(edge.getTarget().getKey());
-                edgeData.append(" ");
-            }
+        StringWriter writer = new StringWriter();
 
-            // Prepare the edge data for the next line.
-            edgeData.append("\n");
+        try {
+            serializeGraph(writer);
+        } catch (IOException e) {
+            // A string writer can't fail.
+            throw new IllegalStateException(e);
         }
 
-        // Combine the edge data and the node data to
-        // form a full data set.
-        nodeData.append(edgeData);
+        return writer.toString();
+    }
 
-        return nodeData.toString();
+    /**
+     * Stream the graph in the same text format as
+     * {@link #serializeGraph()} to the given writer,
+     * without building the whole text in memory.
+     *
+     * @param writer to write to, which is flushed but not closed.
+     *
+     * @throws IOException if the text could not be written.
+     */
+    public void serializeGraph(@NonNull Writer writer) throws IOException {
+        TextGraphWriter.write(createCompactGraph(), writer);
+    }
+
+    /**
+     * Save the graph into the given file in the binary graph
+     * format, which can be loaded much faster than the text
+     * format, see {@link BinaryGraphFormat}.
+     *
+     * The graph is written to a temporary file which then replaces
+     * the given file, so if saving fails part way through (or the app
+     * is killed) the previous contents of the file are left intact.
+     *
+     * If the graph has up to date landmarks they are saved alongside
+     * it, see {@link BinaryLandmarkFormat}, and loaded with it again.
+     *
+     * This can be called from a background thread, as long as the
+     * graph is not changed until it returns.
+     *
+     * @param file to save the graph into.
+     *
+     * @throws IOException if the file could not be written.
+     */
+    public void serializeGraph(@NonNull File file) throws IOException {
+        final CompactGraph compactGraph = createCompactGraph();
+        final Landmarks landmarks = getCurrentLandmarks();
+
+        FileUtils.writeFileAtomically(file, new FileUtils.FileContentWriter() {
+            @Override
+            public void write(@NonNull File file) throws IOException {
+                BinaryGraphFormat.write(compactGraph, file);
+            }
+        });
+
+        if(landmarks != null) {
+            FileUtils.writeFileAtomically(BinaryLandmarkFormat.getLandmarkFile(file), new FileUtils.FileContentWriter() {
+                @Override
+                public void write(@NonNull File file) throws IOException {
+                    BinaryLandmarkFormat.write(landmarks, compactGraph, file);
+                }
+            });
+        }
     }
 }
\ No newline at end of file
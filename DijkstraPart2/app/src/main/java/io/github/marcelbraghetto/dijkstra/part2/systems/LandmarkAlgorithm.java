@@ -0,0 +1,48 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.LandmarkQuery;
+import io.github.marcelbraghetto.dijkstra.graphcore.Landmarks;
+import io.github.marcelbraghetto.dijkstra.graphcore.LandmarksBuilder;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+
+/**
+ * Path finder using A* guided by the graph's {@link Landmarks}
+ * rather than the straight line distance to the target.
+ *
+ * Like {@link ContractionHierarchyAlgorithm}, the search runs over a
+ * snapshot of the graph prepared in the background, which is reused
+ * until the graph changes. The landmarks are kept by the graph itself,
+ * so landmarks loaded alongside a saved graph are used as they are, and
+ * are only built again once the graph has been changed.
+ */
+public class LandmarkAlgorithm extends PreparedPathFinder<LandmarkQuery> {
+    public LandmarkAlgorithm(@NonNull Graph graph) {
+        super(graph);
+    }
+
+    @NonNull
+    @Override
+    protected LandmarkQuery prepare(@NonNull CompactGraph snapshot, int revision) {
+        Landmarks landmarks = mGraph.getLandmarks(revision);
+
+        if(landmarks == null) {
+            landmarks = new LandmarksBuilder().build(snapshot);
+            mGraph.setLandmarks(landmarks, revision);
+        }
+
+        return new LandmarkQuery(snapshot, landmarks);
+    }
+
+    @Override
+    protected boolean findPath(@NonNull LandmarkQuery query, int origin, int target, @NonNull PathBuffer path) {
+        return query.findPath(origin, target, path);
+    }
+
+    @Override
+    protected int getSettledNodeCount(@NonNull LandmarkQuery query) {
+        return query.getSettledNodeCount();
+    }
+}
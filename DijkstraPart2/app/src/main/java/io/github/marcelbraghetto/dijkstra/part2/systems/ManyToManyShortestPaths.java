@@ -0,0 +1,199 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchContext;
+import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Calculates the shortest distance from each of a set of source
+ * nodes to each of a set of target nodes, filling in a
+ * {@link DistanceTable}.
+ *
+ * Rather than searching once for every pair, a single Dijkstra
+ * search from each source finds its distance to every target, and
+ * stops as soon as the last target has been settled. Edges in the
+ * graph go both ways, so when there are more sources than targets
+ * the searches run from the targets instead, which gives the same
+ * distances with fewer searches.
+ *
+ * The searches are shared between a pool of worker threads. The
+ * graph must not be changed while the table is being calculated.
+ */
+public class ManyToManyShortestPaths {
+    private final int mNumThreads;
+
+    public ManyToManyShortestPaths() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public ManyToManyShortestPaths(int numThreads) {
+        mNumThreads = Math.max(1, numThreads);
+    }
+
+    /**
+     * Calculate the distance from every source to every target.
+     *
+     * @param graph containing the nodes.
+     * @param sources nodes to measure from, which become the rows of the table.
+     * @param targets nodes to measure to, which become the columns of the table.
+     *
+     * @return the table of distances.
+     *
+     * @throws InterruptedException if interrupted while waiting for the workers.
+     */
+    @NonNull
+    public DistanceTable compute(@NonNull final Graph graph,
+                                 @NonNull List<Node> sources,
+                                 @NonNull List<Node> targets) throws InterruptedException {
+
+        final DistanceTable table = new DistanceTable(sources.size(), targets.size());
+        final boolean searchFromTargets = targets.size() < sources.size();
+        final int[] searchOrigins = toIndices(searchFromTargets ? targets : sources);
+        final int[] searchGoals = toIndices(searchFromTargets ? sources : targets);
+
+        // Which nodes are goals, shared read only by all the searches.
+        final boolean[] isGoal = new boolean[graph.getNodeCount()];
+        int numDistinctGoals = 0;
+
+        for(int goal : searchGoals) {
+            if(!isGoal[goal]) {
+                isGoal[goal] = true;
+                numDistinctGoals++;
+            }
+        }
+
+        final int numGoals = numDistinctGoals;
+        int numWorkers = Math.min(mNumThreads, searchOrigins.length);
+
+        // Not worth starting any threads for a single search.
+        if(numWorkers <= 1) {
+            SearchContext context = new SearchContext();
+
+            for(int row = 0; row < searchOrigins.length; row++) {
+                computeRow(graph, table, searchFromTargets, searchOrigins, searchGoals, isGoal, numGoals, row, context);
+            }
+
+            return table;
+        }
+
+        // Workers claim searches one at a time from a shared counter,
+        // so a few expensive searches don't hold up a whole slice.
+        final AtomicInteger nextRow = new AtomicInteger();
+
+        ExecutorService executor = Executors.newFixedThreadPool(numWorkers);
+        List<Future<?>> futures = new ArrayList<>(numWorkers);
+
+        try {
+            for(int i = 0; i < numWorkers; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() {
+                        SearchContext context = new SearchContext();
+
+                        for(int row = nextRow.getAndIncrement(); row < searchOrigins.length; row = nextRow.getAndIncrement()) {
+                            computeRow(graph, table, searchFromTargets, searchOrigins, searchGoals, isGoal, numGoals, row, context);
+                        }
+
+                        return null;
+                    }
+                }));
+            }
+
+            for(Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return table;
+    }
+
+    /**
+     * Run a Dijkstra search from one origin until every goal is
+     * settled, then copy its distances to the goals into the table.
+     */
+    private void computeRow(@NonNull Graph graph,
+                            @NonNull DistanceTable table,
+                            boolean searchFromTargets,
+                            @NonNull int[] searchOrigins,
+                            @NonNull int[] searchGoals,
+                            @NonNull boolean[] isGoal,
+                            int numGoals,
+                            int row,
+                            @NonNull SearchContext context) {
+
+        int origin = searchOrigins[row];
+        int goalsRemaining = numGoals;
+
+        context.begin(graph.getNodeCount());
+        IndexedPriorityQueue queue = context.getQueue();
+
+        context.update(origin, SearchContext.NO_PARENT, 0.0);
+        queue.offer(origin, 0.0);
+
+        while(!queue.isEmpty()) {
+            int currentIndex = queue.poll();
+            context.setComplete(currentIndex);
+
+            // Once the last goal is settled, nothing
+            // further out can change its distance.
+            if(isGoal[currentIndex] && --goalsRemaining == 0) {
+                break;
+            }
+
+            double currentDistance = context.getDistance(currentIndex);
+
+            for(Edge edge : graph.getNode(currentIndex).getEdges().values()) {
+                int edgeTargetIndex = edge.getTarget().getIndex();
+
+                if(context.isComplete(edgeTargetIndex)) {
+                    continue;
+                }
+
+                double distanceToEdgeTarget = currentDistance + edge.getWeight();
+
+                if(distanceToEdgeTarget < context.getDistance(edgeTargetIndex)) {
+                    context.update(edgeTargetIndex, currentIndex, distanceToEdgeTarget);
+                    queue.offer(edgeTargetIndex, distanceToEdgeTarget);
+                }
+            }
+        }
+
+        for(int column = 0; column < searchGoals.length; column++) {
+            int goal = searchGoals[column];
+            double distance = context.isComplete(goal) ? context.getDistance(goal) : Double.POSITIVE_INFINITY;
+
+            if(searchFromTargets) {
+                table.setDistance(column, row, distance);
+            } else {
+                table.setDistance(row, column, distance);
+            }
+        }
+    }
+
+    @NonNull
+    private static int[] toIndices(@NonNull List<Node> nodes) {
+        int[] indices = new int[nodes.size()];
+
+        for(int i = 0; i < indices.length; i++) {
+            indices[i] = nodes.get(i).getIndex();
+        }
+
+        return indices;
+    }
+}
@@ -0,0 +1,41 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Contract for an algorithm that can find the shortest
+ * path between two nodes of a graph.
+ */
+public interface PathFinder {
+    /**
+     * Attempt to calculate the shortest path between the
+     * given origin node and target node.
+     *
+     * It is assumed that all nodes in the underlying graph
+     * are in a 'path finding reset' state before running this algorithm.
+     *
+     * The path is written into a buffer supplied by the caller as
+     * node indices, so searching again and again (for example every
+     * time a node is dragged) produces no garbage.
+     *
+     * @param origin to start from.
+     * @param target to attempt to find the shortest path to.
+     * @param path buffer to fill with the shortest path, origin first,
+     *             which is left empty if the target can't be reached.
+     *
+     * @return true if a path to the target was found.
+     */
+    boolean findPath(@NonNull Node origin, @NonNull Node target, @NonNull PathBuffer path);
+
+    /**
+     * How many nodes were settled (marked as complete) during
+     * the most recent call to find a path, which is a good
+     * measure of how much work the search had to do.
+     *
+     * @return number of nodes settled by the last search.
+     */
+    int getSettledNodeCount();
+}
@@ -0,0 +1,109 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPath;
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactPathQueryEngine;
+import io.github.marcelbraghetto.dijkstra.part2.models.GraphPath;
+
+/**
+ * Answers shortest path queries over a graph from many
+ * threads at once, with a {@link CompactPathQueryEngine}
+ * searching a snapshot of the graph.
+ *
+ * Unlike {@link DijkstrasAlgorithm}, none of the path finding
+ * state is stored in the nodes, so any number of threads can
+ * search at once. A new snapshot is taken whenever the graph's
+ * revision has changed (including moving its nodes, which changes
+ * edge weights) since the last one, and queries already running
+ * finish on the old snapshot.
+ */
+public class PathQueryEngine {
+    private final Graph mGraph;
+    private final CompactPathQueryEngine mEngine;
+    private int mEngineRevision;
+
+    public PathQueryEngine(@NonNull Graph graph) {
+        this(graph, Runtime.getRuntime().availableProcessors());
+    }
+
+    public PathQueryEngine(@NonNull Graph graph, int numThreads) {
+        mGraph = graph;
+
+        synchronized(graph) {
+            mEngineRevision = graph.getRevision();
+            mEngine = new CompactPathQueryEngine(graph.createCompactGraph(), numThreads);
+        }
+    }
+
+    /**
+     * Find the shortest path between the given nodes on the
+     * calling thread. This is safe to call from any number of
+     * threads at the same time.
+     *
+     * @param originKey of the node to start from.
+     * @param targetKey of the node to find the shortest path to.
+     *
+     * @return the shortest path, or null if there is no path
+     * or either node does not exist.
+     */
+    @Nullable
+    public GraphPath findPath(@NonNull String originKey, @NonNull String targetKey) {
+        CompactPath compactPath = getEngine().findPath(originKey, targetKey);
+        return compactPath == null ? null : mGraph.createGraphPath(compactPath);
+    }
+
+    /**
+     * Find the shortest paths for all the given queries, spreading
+     * the work across the worker threads. The calling thread blocks
+     * until every query has been answered.
+     *
+     * @param queries to answer.
+     *
+     * @return the path for each query in the same order as the
+     * queries, with null entries for queries that have no path.
+     *
+     * @throws InterruptedException if the calling thread is
+     * interrupted while waiting for the results.
+     */
+    @NonNull
+    public List<GraphPath> findPaths(@NonNull List<CompactPathQueryEngine.Query> queries) throws InterruptedException {
+        List<CompactPath> compactPaths = getEngine().findPaths(queries);
+        List<GraphPath> paths = new ArrayList<>(compactPaths.size());
+
+        for(CompactPath compactPath : compactPaths) {
+            paths.add(compactPath == null ? null : mGraph.createGraphPath(compactPath));
+        }
+
+        return paths;
+    }
+
+    /**
+     * Stop the worker threads, the engine can't be
+     * used for batches of queries afterward.
+     */
+    public void shutdown() {
+        mEngine.shutdown();
+    }
+
+    /**
+     * The engine, searching a snapshot of the graph as it is now.
+     * The graph is locked while its revision is checked and the
+     * snapshot taken, so it can't change part way through.
+     */
+    @NonNull
+    private synchronized CompactPathQueryEngine getEngine() {
+        synchronized(mGraph) {
+            if(mEngineRevision != mGraph.getRevision()) {
+                mEngineRevision = mGraph.getRevision();
+                mEngine.setGraph(mGraph.createCompactGraph());
+            }
+        }
+
+        return mEngine;
+    }
+}
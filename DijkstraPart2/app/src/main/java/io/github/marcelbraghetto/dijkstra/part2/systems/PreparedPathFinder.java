@@ -0,0 +1,150 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.CompactGraph;
+import io.github.marcelbraghetto.dijkstra.graphcore.PathBuffer;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Base for path finders which search a structure prepared from a
+ * snapshot of the graph, such as a contraction hierarchy, which takes
+ * far longer to prepare than a single search.
+ *
+ * The structure is prepared on a background thread the first time a
+ * path is needed after the graph changes, so dragging nodes around never
+ * waits for it. Until it is ready for the graph as it is now, paths are
+ * found with plain Dijkstra instead. If the graph changes again while a
+ * structure is being prepared, it is thrown away and prepared again for
+ * the newer graph.
+ *
+ * @param <Q> the prepared structure to search.
+ */
+abstract class PreparedPathFinder<Q> implements PathFinder {
+    // Shared by every prepared path finder, so switching
+    // modes never has two preparations running at once.
+    private static final ExecutorService sPreparationExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "PathFinderPreparation");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    protected final Graph mGraph;
+
+    // Searches the live graph until the prepared structure is ready.
+    private final DijkstrasAlgorithm mFallback;
+
+    // The latest graph revision a structure was asked for, and the
+    // newest structure which is ready along with its revision.
+    private volatile int mRequestedRevision;
+    private volatile Prepared<Q> mPrepared;
+
+    private int mSettledNodeCount;
+
+    protected PreparedPathFinder(@NonNull Graph graph) {
+        mGraph = graph;
+        mFallback = new DijkstrasAlgorithm();
+        mRequestedRevision = -1;
+    }
+
+    @Override
+    public boolean findPath(@NonNull Node origin, @NonNull Node target, @NonNull PathBuffer path) {
+        int revision = mGraph.getRevision();
+        Prepared<Q> prepared = mPrepared;
+
+        if(prepared != null && prepared.mRevision == revision) {
+            // The compact graph is taken in node index order, so
+            // node indices can be used directly in the structure.
+            boolean found = findPath(prepared.mStructure, origin.getIndex(), target.getIndex(), path);
+            mSettledNodeCount = getSettledNodeCount(prepared.mStructure);
+            return found;
+        }
+
+        if(mRequestedRevision != revision) {
+            requestPreparation(revision);
+        }
+
+        boolean found = mFallback.findPath(origin, target, path);
+        mSettledNodeCount = mFallback.getSettledNodeCount();
+        return found;
+    }
+
+    @Override
+    public int getSettledNodeCount() {
+        return mSettledNodeCount;
+    }
+
+    /**
+     * Prepare the structure for the given snapshot of the graph.
+     * This is called on a background thread.
+     *
+     * @param snapshot of the graph to prepare the structure for.
+     * @param revision of the graph the snapshot was taken at.
+     *
+     * @return the prepared structure.
+     */
+    @NonNull
+    protected abstract Q prepare(@NonNull CompactGraph snapshot, int revision);
+
+    /**
+     * Search the prepared structure.
+     *
+     * @param structure to search.
+     * @param origin index of the node to start from.
+     * @param target index of the node to find the shortest path to.
+     * @param path buffer to fill with the shortest path.
+     *
+     * @return true if a path to the target was found.
+     */
+    protected abstract boolean findPath(@NonNull Q structure, int origin, int target, @NonNull PathBuffer path);
+
+    /**
+     * How many nodes the last search of the given structure settled.
+     *
+     * @param structure which was searched.
+     *
+     * @return number of nodes settled by the last search.
+     */
+    protected abstract int getSettledNodeCount(@NonNull Q structure);
+
+    /**
+     * Snapshot the graph on the calling thread, while it can't be
+     * changed, and prepare the structure for it in the background.
+     */
+    private void requestPreparation(final int revision) {
+        final CompactGraph snapshot = mGraph.createCompactGraph();
+        mRequestedRevision = revision;
+
+        sPreparationExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                // Skip preparations the graph has already moved on from.
+                if(mRequestedRevision != revision) {
+                    return;
+                }
+
+                mPrepared = new Prepared<>(prepare(snapshot, revision), revision);
+            }
+        });
+    }
+
+    /**
+     * A prepared structure and the graph revision it was prepared for.
+     */
+    private static class Prepared<Q> {
+        final Q mStructure;
+        final int mRevision;
+
+        Prepared(@NonNull Q structure, int revision) {
+            mStructure = structure;
+            mRevision = revision;
+        }
+    }
+}
@@ -0,0 +1,324 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import io.github.marcelbraghetto.dijkstra.graphcore.IndexedPriorityQueue;
+import io.github.marcelbraghetto.dijkstra.graphcore.SearchContext;
+import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+
+/**
+ * Collects route requests and answers them in batches, sharing one
+ * search between every request that starts at the same node or ends
+ * at the same node.
+ *
+ * A single Dijkstra search from a node finds the shortest path from
+ * it to every other node (one to many). Since our graphs are not
+ * directed, a search from a target node equally gives the shortest
+ * path from every other node to it (many to one). So when planning,
+ * the node shared by the most outstanding requests is searched from,
+ * all of its requests are answered from that one search tree, and
+ * this repeats until every request has been answered.
+ *
+ * Routes are handed back as arrays of node indices, from the origin
+ * to the target inclusive.
+ *
+ * An instance is not thread safe, requests and planning should all
+ * happen on the same thread.
+ */
+public class RoutePlanner {
+    /**
+     * Receives a planned route.
+     */
+    public interface Listener {
+        /**
+         * Called from {@link #planRoutes()} with the route for a request.
+         *
+         * @param origin node index the route starts at.
+         * @param target node index the route ends at.
+         * @param route node indices from origin to target, or null if
+         *              the target can't be reached from the origin.
+         */
+        void onRoutePlanned(int origin, int target, @Nullable int[] route);
+    }
+
+    private final Graph mGraph;
+    private final SearchContext mSearchContext = new SearchContext();
+
+    // Requests made since the last plan.
+    private int[] mOrigins = new int[16];
+    private int[] mTargets = new int[16];
+    private final List<Listener> mListeners = new ArrayList<>();
+    private int mNumRequests;
+
+    // Requests grouped by origin and by target, in compressed sparse row
+    // form. Group keys are node * 2 for origins and node * 2 + 1 for targets.
+    private int[] mGroupOffsets = new int[0];
+    private int[] mGroupRequests = new int[0];
+    private int[] mGroupCounts = new int[0];
+
+    private boolean[] mAnswered = new boolean[16];
+
+    // Groups ordered by how many unanswered requests they have.
+    private final IndexedPriorityQueue mGroupQueue = new IndexedPriorityQueue(0);
+
+    // Nodes the current search still has to reach, stamped with the search number.
+    private int[] mWanted = new int[0];
+    private int mSearch;
+
+    private int mLastSearchCount;
+
+    public RoutePlanner(@NonNull Graph graph) {
+        mGraph = graph;
+    }
+
+    /**
+     * Ask for a route, which will be delivered to the listener
+     * the next time {@link #planRoutes()} is called.
+     *
+     * @param origin node index to start from.
+     * @param target node index to finish at.
+     * @param listener to receive the route.
+     */
+    public void requestRoute(int origin, int target, @NonNull Listener listener) {
+        if(mNumRequests == mOrigins.length) {
+            mOrigins = Arrays.copyOf(mOrigins, mNumRequests * 2);
+            mTargets = Arrays.copyOf(mTargets, mNumRequests * 2);
+        }
+
+        mOrigins[mNumRequests] = origin;
+        mTargets[mNumRequests] = target;
+        mListeners.add(listener);
+        mNumRequests++;
+    }
+
+    public int getPendingRequestCount() {
+        return mNumRequests;
+    }
+
+    /**
+     * How many searches the last call to {@link #planRoutes()} needed,
+     * which is at most the number of requests and often far fewer.
+     *
+     * @return number of searches run by the last plan.
+     */
+    public int getLastSearchCount() {
+        return mLastSearchCount;
+    }
+
+    /**
+     * Plan every outstanding request and deliver the routes.
+     */
+    public void planRoutes() {
+        mLastSearchCount = 0;
+
+        if(mNumRequests == 0) {
+            return;
+        }
+
+        // Listeners may ask for more routes while theirs are being
+        // delivered, those are left for the next plan.
+        int numPlanned = mNumRequests;
+        int numNodes = mGraph.getNodeCount();
+        groupRequests(numNodes, numPlanned);
+
+        // Always search from whichever origin or target is shared by
+        // the most requests that haven't been answered yet, so the
+        // queue is keyed on the negative of the counts.
+        IndexedPriorityQueue groups = mGroupQueue;
+        groups.clear();
+        groups.ensureCapacity(numNodes * 2);
+
+        for(int request = 0; request < numPlanned; request++) {
+            int originGroup = mOrigins[request] * 2;
+            int targetGroup = mTargets[request] * 2 + 1;
+            groups.offer(originGroup, -mGroupCounts[originGroup]);
+            groups.offer(targetGroup, -mGroupCounts[targetGroup]);
+        }
+
+        while(!groups.isEmpty()) {
+            int group = groups.poll();
+
+            if(mGroupCounts[group] == 0) {
+                continue;
+            }
+
+            boolean fromTarget = (group & 1) == 1;
+            int root = group >> 1;
+
+            search(root, group, fromTarget);
+            mLastSearchCount++;
+
+            // Answer every remaining request in the group from the tree.
+            for(int i = mGroupOffsets[group]; i < mGroupOffsets[group + 1]; i++) {
+                int request = mGroupRequests[i];
+
+                if(mAnswered[request]) {
+                    continue;
+                }
+
+                mAnswered[request] = true;
+                deliver(request, fromTarget);
+
+                // The request no longer counts toward its other group.
+                int otherGroup = fromTarget ? mOrigins[request] * 2 : mTargets[request] * 2 + 1;
+                mGroupCounts[otherGroup]--;
+
+                if(groups.contains(otherGroup)) {
+                    groups.update(otherGroup, -mGroupCounts[otherGroup]);
+                }
+            }
+
+            mGroupCounts[group] = 0;
+        }
+
+        // Keep any requests made by the listeners for the next plan.
+        int numNew = mNumRequests - numPlanned;
+        System.arraycopy(mOrigins, numPlanned, mOrigins, 0, numNew);
+        System.arraycopy(mTargets, numPlanned, mTargets, 0, numNew);
+        mListeners.subList(0, numPlanned).clear();
+        mNumRequests = numNew;
+    }
+
+    /**
+     * Sort the requests into groups by origin and by target.
+     */
+    private void groupRequests(int numNodes, int numRequests) {
+        int numGroups = numNodes * 2;
+
+        if(mGroupCounts.length < numGroups) {
+            mGroupCounts = new int[numGroups];
+            mGroupOffsets = new int[numGroups + 1];
+        } else {
+            Arrays.fill(mGroupCounts, 0, numGroups, 0);
+        }
+
+        if(mGroupRequests.length < numRequests * 2) {
+            mGroupRequests = new int[numRequests * 2];
+        }
+
+        if(mAnswered.length < numRequests) {
+            mAnswered = new boolean[numRequests];
+        } else {
+            Arrays.fill(mAnswered, 0, numRequests, false);
+        }
+
+        for(int request = 0; request < numRequests; request++) {
+            mGroupCounts[mOrigins[request] * 2]++;
+            mGroupCounts[mTargets[request] * 2 + 1]++;
+        }
+
+        mGroupOffsets[0] = 0;
+
+        for(int group = 0; group < numGroups; group++) {
+            mGroupOffsets[group + 1] = mGroupOffsets[group] + mGroupCounts[group];
+        }
+
+        // Fill each group, using the counts as insert positions
+        // then putting them back afterward.
+        for(int request = 0; request < numRequests; request++) {
+            int originGroup = mOrigins[request] * 2;
+            int targetGroup = mTargets[request] * 2 + 1;
+            mGroupRequests[mGroupOffsets[originGroup + 1] - mGroupCounts[originGroup]--] = request;
+            mGroupRequests[mGroupOffsets[targetGroup + 1] - mGroupCounts[targetGroup]--] = request;
+        }
+
+        for(int group = 0; group < numGroups; group++) {
+            mGroupCounts[group] = mGroupOffsets[group + 1] - mGroupOffsets[group];
+        }
+    }
+
+    /**
+     * Dijkstra search from the given root, stopping as soon as the other
+     * end of every unanswered request in the group has been settled.
+     */
+    private void search(int root, int group, boolean fromTarget) {
+        int numNodes = mGraph.getNodeCount();
+
+        if(mWanted.length < numNodes) {
+            mWanted = new int[numNodes];
+            mSearch = 0;
+        }
+
+        mSearch++;
+        int numWanted = 0;
+
+        for(int i = mGroupOffsets[group]; i < mGroupOffsets[group + 1]; i++) {
+            int request = mGroupRequests[i];
+            int node = fromTarget ? mOrigins[request] : mTargets[request];
+
+            if(!mAnswered[request] && mWanted[node] != mSearch) {
+                mWanted[node] = mSearch;
+                numWanted++;
+            }
+        }
+
+        mSearchContext.begin(numNodes);
+        IndexedPriorityQueue queue = mSearchContext.getQueue();
+
+        mSearchContext.update(root, SearchContext.NO_PARENT, 0.0);
+        queue.offer(root, 0.0);
+
+        while(!queue.isEmpty() && numWanted > 0) {
+            int current = queue.poll();
+            mSearchContext.setComplete(current);
+
+            if(mWanted[current] == mSearch) {
+                numWanted--;
+            }
+
+            double currentDistance = mSearchContext.getDistance(current);
+
+            for(Edge edge : mGraph.getNode(current).getEdges().values()) {
+                int edgeTarget = edge.getTarget().getIndex();
+
+                if(mSearchContext.isComplete(edgeTarget)) {
+                    continue;
+                }
+
+                double distance = currentDistance + edge.getWeight();
+
+                if(distance < mSearchContext.getDistance(edgeTarget)) {
+                    mSearchContext.update(edgeTarget, current, distance);
+                    queue.offer(edgeTarget, distance);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the route for a request out of the search tree and hand it over.
+     */
+    private void deliver(int request, boolean fromTarget) {
+        int origin = mOrigins[request];
+        int target = mTargets[request];
+
+        // The tree leads back to its root, which is the target if we
+        // searched from the target, otherwise the origin.
+        int leaf = fromTarget ? origin : target;
+        int[] route = null;
+
+        if(mSearchContext.isComplete(leaf)) {
+            int length = 0;
+
+            for(int node = leaf; node != SearchContext.NO_PARENT; node = mSearchContext.getParent(node)) {
+                length++;
+            }
+
+            route = new int[length];
+            int position = fromTarget ? 0 : length - 1;
+            int step = fromTarget ? 1 : -1;
+
+            for(int node = leaf; node != SearchContext.NO_PARENT; node = mSearchContext.getParent(node)) {
+                route[position] = node;
+                position += step;
+            }
+        }
+
+        mListeners.get(request).onRoutePlanned(origin, target, route);
+    }
+}
@@ -0,0 +1,177 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import io.github.marcelbraghetto.dijkstra.part2.models.Agent;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Simulates many agents travelling around a graph, each heading for
+ * one of a set of target nodes, then on to another when it arrives.
+ *
+ * Agents don't search for their own routes. Each tick, every agent
+ * that needs a new route adds a request to the {@link RoutePlanner},
+ * which answers the whole batch at the end of the tick. Agents heading
+ * for the same target (or leaving the same node) share one search, so
+ * a tick costs at most one search per distinct target, however many
+ * agents there are.
+ *
+ * The graph must not change shape (nodes or edges added) while the
+ * simulation is running, though nodes can be moved.
+ */
+public class SimulationEngine {
+    private final Graph mGraph;
+    private final RoutePlanner mRoutePlanner;
+    private final List<Agent> mAgents;
+    private final List<Node> mTargetNodes;
+    private final Random mRandom;
+
+    private int mLastRouteRequestCount;
+    private long mTickCount;
+
+    /**
+     * @param graph for the agents to travel around.
+     * @param seed for choosing destinations, so a simulation can be replayed.
+     */
+    public SimulationEngine(@NonNull Graph graph, long seed) {
+        mGraph = graph;
+        mRoutePlanner = new RoutePlanner(graph);
+        mAgents = new ArrayList<>();
+        mTargetNodes = new ArrayList<>();
+        mRandom = new Random(seed);
+    }
+
+    /**
+     * Add a node that agents can choose as a destination. Adding
+     * a node which is already a target has no effect.
+     *
+     * @param node to add as a target.
+     */
+    public void addTargetNode(@NonNull Node node) {
+        for(Node targetNode : mTargetNodes) {
+            if(targetNode.getIndex() == node.getIndex()) {
+                return;
+            }
+        }
+
+        mTargetNodes.add(node);
+    }
+
+    /**
+     * Add a new agent, which will be given a destination on the next tick.
+     *
+     * @param startNode node the agent starts at.
+     * @param speed distance the agent travels each tick (in DPs).
+     *
+     * @return the new agent.
+     */
+    @NonNull
+    public Agent addAgent(@NonNull Node startNode, float speed) {
+        Agent agent = new Agent(mAgents.size(), startNode, speed);
+        mAgents.add(agent);
+        return agent;
+    }
+
+    @NonNull
+    public List<Agent> getAgents() {
+        return Collections.unmodifiableList(mAgents);
+    }
+
+    public long getTickCount() {
+        return mTickCount;
+    }
+
+    /**
+     * How many routes were requested during the last tick.
+     *
+     * @return number of route requests in the last tick.
+     */
+    public int getLastRouteRequestCount() {
+        return mLastRouteRequestCount;
+    }
+
+    /**
+     * How many searches were needed to plan the routes of the last tick.
+     *
+     * @return number of searches in the last tick.
+     */
+    public int getLastSearchCount() {
+        return mRoutePlanner.getLastSearchCount();
+    }
+
+    /**
+     * Advance the simulation by one step, moving every agent along its
+     * route, then planning new routes for the agents that need them.
+     */
+    public void tick() {
+        for(Agent agent : mAgents) {
+            agent.update(mGraph);
+        }
+
+        for(Agent agent : mAgents) {
+            if(!agent.needsRoute()) {
+                continue;
+            }
+
+            Node destination = pickDestination(agent.getLastVisitedNode());
+
+            if(destination != null) {
+                agent.setAwaitingRoute(destination.getIndex());
+                mRoutePlanner.requestRoute(agent.getLastVisitedNode(), destination.getIndex(), agent);
+            }
+        }
+
+        mLastRouteRequestCount = mRoutePlanner.getPendingRequestCount();
+        mRoutePlanner.planRoutes();
+        mTickCount++;
+    }
+
+    /**
+     * Add the position of every agent to the given snapshot.
+     *
+     * @param snapshot to add the agents to.
+     */
+    public void captureSnapshot(@NonNull SimulationSnapshot snapshot) {
+        for(Agent agent : mAgents) {
+            snapshot.addAgent(agent);
+        }
+    }
+
+    /**
+     * Choose a random target node other than the given node.
+     *
+     * @return the chosen node, or null if there is no other target.
+     */
+    private Node pickDestination(int currentNode) {
+        int numTargets = mTargetNodes.size();
+        int currentTarget = -1;
+
+        for(int i = 0; i < numTargets; i++) {
+            if(mTargetNodes.get(i).getIndex() == currentNode) {
+                currentTarget = i;
+                break;
+            }
+        }
+
+        // Targets are distinct, so if the agent is at one of them, choose
+        // from the others by skipping over its slot.
+        int numChoices = currentTarget < 0 ? numTargets : numTargets - 1;
+
+        if(numChoices == 0) {
+            return null;
+        }
+
+        int choice = mRandom.nextInt(numChoices);
+
+        if(currentTarget >= 0 && choice >= currentTarget) {
+            choice++;
+        }
+
+        return mTargetNodes.get(choice);
+    }
+}
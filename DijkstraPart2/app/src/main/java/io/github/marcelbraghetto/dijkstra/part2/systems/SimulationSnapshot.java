@@ -0,0 +1,144 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+import io.github.marcelbraghetto.dijkstra.part2.models.Actor;
+import io.github.marcelbraghetto.dijkstra.part2.models.Agent;
+import io.github.marcelbraghetto.dijkstra.part2.ui.DemoRenderer;
+
+/**
+ * The positions of everything that moves in the simulation, as of the
+ * last two simulation ticks. The renderer draws from a snapshot rather
+ * than the live actors, so it never sees the simulation half way through
+ * a tick, and it can blend between the two ticks so movement looks smooth
+ * whatever the frame rate.
+ *
+ * A snapshot is filled by calling begin, then adding the actors followed
+ * by the agents. Anything added in the same place as in the previous tick
+ * keeps its previous position, anything new starts where it is.
+ */
+public class SimulationSnapshot {
+    // Actors first, then agents, with their x, y positions as of
+    // the last tick and the tick before.
+    private Object[] mOwners = new Object[16];
+    private Object[] mPreviousOwners = new Object[16];
+    private float[] mPositions = new float[32];
+    private float[] mPreviousPositions = new float[32];
+
+    private int mCount;
+    private int mPreviousCount;
+    private int mActorCount;
+
+    /**
+     * Start capturing a new tick, keeping the current
+     * positions as the previous positions.
+     */
+    public void begin() {
+        Object[] owners = mPreviousOwners;
+        mPreviousOwners = mOwners;
+        mOwners = owners;
+
+        float[] positions = mPreviousPositions;
+        mPreviousPositions = mPositions;
+        mPositions = positions;
+
+        mPreviousCount = mCount;
+        mCount = 0;
+        mActorCount = 0;
+    }
+
+    /**
+     * Add an actor, which must come before any agents.
+     *
+     * @param actor to add.
+     */
+    public void addActor(@NonNull Actor actor) {
+        add(actor, actor.getPosition().x, actor.getPosition().y);
+        mActorCount++;
+    }
+
+    /**
+     * Add a simulation agent.
+     *
+     * @param agent to add.
+     */
+    public void addAgent(@NonNull Agent agent) {
+        add(agent, agent.getPosition().x, agent.getPosition().y);
+    }
+
+    private void add(@NonNull Object owner, float x, float y) {
+        ensureCapacity(mCount + 1);
+
+        int position = mCount * 2;
+        mOwners[mCount] = owner;
+        mPositions[position] = x;
+        mPositions[position + 1] = y;
+
+        // Something new has nowhere to move from.
+        if(mCount >= mPreviousCount || mPreviousOwners[mCount] != owner) {
+            mPreviousOwners[mCount] = owner;
+            mPreviousPositions[position] = x;
+            mPreviousPositions[position + 1] = y;
+        }
+
+        mCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if(capacity <= mOwners.length) {
+            return;
+        }
+
+        int newCapacity = Math.max(capacity, mOwners.length * 2);
+        mOwners = Arrays.copyOf(mOwners, newCapacity);
+        mPreviousOwners = Arrays.copyOf(mPreviousOwners, newCapacity);
+        mPositions = Arrays.copyOf(mPositions, newCapacity * 2);
+        mPreviousPositions = Arrays.copyOf(mPreviousPositions, newCapacity * 2);
+    }
+
+    /**
+     * Make this snapshot a copy of the given one.
+     *
+     * @param other snapshot to copy.
+     */
+    public void copyFrom(@NonNull SimulationSnapshot other) {
+        ensureCapacity(other.mCount);
+
+        // Drop anything left over from a bigger snapshot.
+        if(other.mCount < mCount) {
+            Arrays.fill(mOwners, other.mCount, mCount, null);
+        }
+
+        System.arraycopy(other.mOwners, 0, mOwners, 0, other.mCount);
+        System.arraycopy(other.mPositions, 0, mPositions, 0, other.mCount * 2);
+        System.arraycopy(other.mPreviousPositions, 0, mPreviousPositions, 0, other.mCount * 2);
+        mCount = other.mCount;
+        mActorCount = other.mActorCount;
+    }
+
+    /**
+     * Render everything in the snapshot, part way between where
+     * it was on the previous tick and where it is now.
+     *
+     * @param renderer to send render commands to.
+     * @param alpha how far through the time between the two ticks
+     *              to draw, from 0 (previous tick) to 1 (last tick).
+     */
+    public void render(@NonNull DemoRenderer renderer, float alpha) {
+        for(int i = 0; i < mCount; i++) {
+            int position = i * 2;
+            float previousX = mPreviousPositions[position];
+            float previousY = mPreviousPositions[position + 1];
+            float x = previousX + (mPositions[position] - previousX) * alpha;
+            float y = previousY + (mPositions[position + 1] - previousY) * alpha;
+
+            if(i < mActorCount) {
+                renderer.renderActor((Actor) mOwners[i], x, y);
+            } else {
+                renderer.renderAgent((Agent) mOwners[i], x, y);
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Runs the simulation of a graph on its own thread, at a fixed number
+ * of ticks per second however fast or slow the screen is drawn.
+ *
+ * After every tick the positions of the actors are captured in a
+ * snapshot, which the UI thread reads to draw from. Path finding and
+ * anything else the simulation does therefore never holds up drawing,
+ * and the actors move at the same speed at any frame rate.
+ *
+ * The graph is locked while it is updated, so anything changing it
+ * from another thread should go through its synchronized methods.
+ */
+public class SimulationThread extends Thread {
+    public static final int TICKS_PER_SECOND = 60;
+    public static final long TICK_NANOS = 1000000000L / TICKS_PER_SECOND;
+
+    // If the simulation falls a long way behind, such as when the device
+    // was busy, give up on catching up rather than running ticks flat out.
+    private static final int MAX_TICKS_PER_LOOP = 5;
+
+    private final Graph mGraph;
+    private final SimulationSnapshot mSnapshot;
+    private final TimingStats mTickStats;
+
+    // When the snapshot was last captured, guarded by the snapshot.
+    private long mSnapshotTime;
+
+    private volatile boolean mRunning;
+
+    public SimulationThread(@NonNull Graph graph) {
+        super("SimulationThread");
+        mGraph = graph;
+        mSnapshot = new SimulationSnapshot();
+        mTickStats = new TimingStats();
+        mRunning = true;
+    }
+
+    /**
+     * Stop the simulation and wait for the thread to finish, after
+     * which the graph won't be touched by this thread again.
+     */
+    public void shutdown() {
+        mRunning = false;
+        interrupt();
+
+        try {
+            join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * How long the simulation ticks are taking.
+     *
+     * @return timings of the ticks.
+     */
+    @NonNull
+    public TimingStats getTickStats() {
+        return mTickStats;
+    }
+
+    /**
+     * Copy the latest snapshot into the given one.
+     *
+     * @param snapshot to copy the latest snapshot into.
+     *
+     * @return how far the time now is through the tick after the
+     * snapshot, from 0 to 1, to blend the snapshot positions with.
+     */
+    public float readSnapshot(@NonNull SimulationSnapshot snapshot) {
+        synchronized(mSnapshot) {
+            snapshot.copyFrom(mSnapshot);
+            float alpha = (System.nanoTime() - mSnapshotTime) / (float) TICK_NANOS;
+            return Math.max(0f, Math.min(1f, alpha));
+        }
+    }
+
+    @Override
+    public void run() {
+        long previousTime = System.nanoTime();
+        long unsimulatedNanos = 0;
+
+        while(mRunning) {
+            long now = System.nanoTime();
+            unsimulatedNanos += now - previousTime;
+            previousTime = now;
+
+            int ticks = 0;
+
+            while(unsimulatedNanos >= TICK_NANOS && ticks < MAX_TICKS_PER_LOOP) {
+                tick();
+                unsimulatedNanos -= TICK_NANOS;
+                ticks++;
+            }
+
+            if(unsimulatedNanos >= TICK_NANOS) {
+                unsimulatedNanos %= TICK_NANOS;
+            }
+
+            // Sleep until the next tick is due.
+            long sleepNanos = TICK_NANOS - unsimulatedNanos;
+
+            try {
+                Thread.sleep(sleepNanos / 1000000L, (int) (sleepNanos % 1000000L));
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private void tick() {
+        long startTime = System.nanoTime();
+
+        synchronized(mGraph) {
+            mGraph.update();
+
+            synchronized(mSnapshot) {
+                mGraph.captureSnapshot(mSnapshot);
+                mSnapshotTime = System.nanoTime();
+            }
+        }
+
+        mTickStats.record(System.nanoTime() - startTime);
+    }
+}
@@ -0,0 +1,372 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+
+/**
+ * Uniform grid over the positions of the nodes in a graph, so finding
+ * the nodes near a point only needs to look in the few grid cells
+ * around it, rather than measuring the distance to every node.
+ *
+ * Only cells that hold at least one node are stored, so the grid can
+ * cover any area (including negative coordinates) without wasting
+ * memory. Moving a node is cheap, it only changes cell if it crosses
+ * a cell boundary.
+ *
+ * The index has to be told about every node that is added, removed
+ * or moved, which {@link Graph} takes care of.
+ */
+public class SpatialIndex {
+    private static final long NO_CELL = Long.MIN_VALUE;
+
+    private final float mCellSize;
+    private final Map<Long, List<Node>> mCells;
+
+    // The cell each node is currently filed under, by node index.
+    private long[] mNodeCells;
+
+    // Range of cell coordinates that have ever held a node, used to
+    // know when a search has looked everywhere it needs to.
+    private int mMinCellX = Integer.MAX_VALUE;
+    private int mMinCellY = Integer.MAX_VALUE;
+    private int mMaxCellX = Integer.MIN_VALUE;
+    private int mMaxCellY = Integer.MIN_VALUE;
+
+    // Scratch space for k nearest searches.
+    private Node[] mNearestNodes = new Node[0];
+    private double[] mNearestDistances = new double[0];
+
+    /**
+     * @param cellSize width and height of each grid cell, ideally
+     *                 around the typical distance between nodes.
+     */
+    public SpatialIndex(float cellSize) {
+        mCellSize = cellSize;
+        mCells = new HashMap<>();
+        mNodeCells = new long[0];
+    }
+
+    /**
+     * Remove every node from the index.
+     */
+    public void clear() {
+        mCells.clear();
+        Arrays.fill(mNodeCells, NO_CELL);
+        mMinCellX = Integer.MAX_VALUE;
+        mMinCellY = Integer.MAX_VALUE;
+        mMaxCellX = Integer.MIN_VALUE;
+        mMaxCellY = Integer.MIN_VALUE;
+    }
+
+    /**
+     * Add a node to the index at its current position.
+     *
+     * @param node to add.
+     */
+    public void add(@NonNull Node node) {
+        int index = node.getIndex();
+
+        if(index >= mNodeCells.length) {
+            int oldLength = mNodeCells.length;
+            mNodeCells = Arrays.copyOf(mNodeCells, Math.max(index + 1, oldLength * 2));
+            Arrays.fill(mNodeCells, oldLength, mNodeCells.length, NO_CELL);
+        }
+
+        int cellX = toCell(node.getPosition().x);
+        int cellY = toCell(node.getPosition().y);
+        long cell = toCellKey(cellX, cellY);
+
+        List<Node> nodes = mCells.get(cell);
+
+        if(nodes == null) {
+            nodes = new ArrayList<>(4);
+            mCells.put(cell, nodes);
+        }
+
+        nodes.add(node);
+        mNodeCells[index] = cell;
+
+        mMinCellX = Math.min(mMinCellX, cellX);
+        mMinCellY = Math.min(mMinCellY, cellY);
+        mMaxCellX = Math.max(mMaxCellX, cellX);
+        mMaxCellY = Math.max(mMaxCellY, cellY);
+    }
+
+    /**
+     * Remove a node from the index.
+     *
+     * @param node to remove.
+     */
+    public void remove(@NonNull Node node) {
+        int index = node.getIndex();
+
+        if(index >= mNodeCells.length || mNodeCells[index] == NO_CELL) {
+            return;
+        }
+
+        long cell = mNodeCells[index];
+        List<Node> nodes = mCells.get(cell);
+        nodes.remove(node);
+
+        if(nodes.isEmpty()) {
+            mCells.remove(cell);
+        }
+
+        mNodeCells[index] = NO_CELL;
+    }
+
+    /**
+     * Refile a node after its position has changed.
+     *
+     * @param node which has moved.
+     */
+    public void update(@NonNull Node node) {
+        int index = node.getIndex();
+        long cell = toCellKey(toCell(node.getPosition().x), toCell(node.getPosition().y));
+
+        // Most moves stay within the same cell.
+        if(index < mNodeCells.length && mNodeCells[index] == cell) {
+            return;
+        }
+
+        remove(node);
+        add(node);
+    }
+
+    /**
+     * Find the node closest to the given point, within a maximum distance.
+     *
+     * @param x coordinate of the point.
+     * @param y coordinate of the point.
+     * @param maxDistance furthest a node can be from the point.
+     *
+     * @return the nearest node, or null if no node is close enough.
+     */
+    @Nullable
+    public Node findNearest(float x, float y, float maxDistance) {
+        Node nearest = null;
+        double nearestDistance = (double) maxDistance * maxDistance;
+
+        int left = toCell(x - maxDistance);
+        int right = toCell(x + maxDistance);
+        int top = toCell(y - maxDistance);
+        int bottom = toCell(y + maxDistance);
+
+        for(int cellY = top; cellY <= bottom; cellY++) {
+            for(int cellX = left; cellX <= right; cellX++) {
+                List<Node> nodes = mCells.get(toCellKey(cellX, cellY));
+
+                if(nodes == null) {
+                    continue;
+                }
+
+                for(Node node : nodes) {
+                    double distance = distanceSquared(node, x, y);
+
+                    if(distance < nearestDistance) {
+                        nearestDistance = distance;
+                        nearest = node;
+                    }
+                }
+            }
+        }
+
+        return nearest;
+    }
+
+    /**
+     * Find the k nodes closest to the given point.
+     *
+     * The search looks at rings of cells further and further out from
+     * the point, and stops once the ring is further away than the k'th
+     * nearest node found so far.
+     *
+     * @param x coordinate of the point.
+     * @param y coordinate of the point.
+     * @param k how many nodes to find.
+     * @param output list to add the nodes to, nearest first. There may
+     *               be fewer than k if the index holds fewer nodes.
+     */
+    public void findNearest(float x, float y, int k, @NonNull List<Node> output) {
+        if(k <= 0 || mCells.isEmpty()) {
+            return;
+        }
+
+        if(mNearestNodes.length < k) {
+            mNearestNodes = new Node[k];
+            mNearestDistances = new double[k];
+        }
+
+        int count = 0;
+        int centreX = toCell(x);
+        int centreY = toCell(y);
+
+        // How many rings it takes to cover every cell that holds a node.
+        int maxRing = Math.max(
+                Math.max(centreX - mMinCellX, mMaxCellX - centreX),
+                Math.max(centreY - mMinCellY, mMaxCellY - centreY));
+
+        for(int ring = 0; ring <= maxRing; ring++) {
+            // Any node outside the rings searched so far is at least this
+            // far away, as the point can be anywhere in the centre cell.
+            if(count == k) {
+                double ringDistance = (double) (ring - 1) * mCellSize;
+
+                if(ringDistance > 0.0 && ringDistance * ringDistance >= mNearestDistances[k - 1]) {
+                    break;
+                }
+            }
+
+            for(int cellY = centreY - ring; cellY <= centreY + ring; cellY++) {
+                // Only the outline of the ring, the inside was done already.
+                boolean edgeRow = cellY == centreY - ring || cellY == centreY + ring;
+                int step = edgeRow || ring == 0 ? 1 : 2 * ring;
+
+                for(int cellX = centreX - ring; cellX <= centreX + ring; cellX += step) {
+                    List<Node> nodes = mCells.get(toCellKey(cellX, cellY));
+
+                    if(nodes == null) {
+                        continue;
+                    }
+
+                    for(Node node : nodes) {
+                        count = insertNearest(node, distanceSquared(node, x, y), count, k);
+                    }
+                }
+            }
+        }
+
+        for(int i = 0; i < count; i++) {
+            output.add(mNearestNodes[i]);
+            mNearestNodes[i] = null;
+        }
+    }
+
+    /**
+     * Find every node within the given distance of a point.
+     *
+     * @param x coordinate of the point.
+     * @param y coordinate of the point.
+     * @param radius furthest a node can be from the point.
+     * @param output list to add the nodes to, in no particular order.
+     */
+    public void findInRadius(float x, float y, float radius, @NonNull List<Node> output) {
+        double radiusSquared = (double) radius * radius;
+        int start = output.size();
+
+        findInRect(x - radius, y - radius, x + radius, y + radius, output);
+
+        // Drop the nodes in the corners of the square that
+        // are outside the circle, keeping the list packed.
+        int kept = start;
+
+        for(int i = start; i < output.size(); i++) {
+            Node node = output.get(i);
+
+            if(distanceSquared(node, x, y) <= radiusSquared) {
+                output.set(kept++, node);
+            }
+        }
+
+        output.subList(kept, output.size()).clear();
+    }
+
+    /**
+     * Find every node inside the given rectangle (inclusive).
+     *
+     * @param left smallest X coordinate.
+     * @param top smallest Y coordinate.
+     * @param right largest X coordinate.
+     * @param bottom largest Y coordinate.
+     * @param output list to add the nodes to, in no particular order.
+     */
+    public void findInRect(float left, float top, float right, float bottom, @NonNull List<Node> output) {
+        int cellLeft = Math.max(toCell(left), mMinCellX);
+        int cellRight = Math.min(toCell(right), mMaxCellX);
+        int cellTop = Math.max(toCell(top), mMinCellY);
+        int cellBottom = Math.min(toCell(bottom), mMaxCellY);
+
+        if(cellLeft > cellRight || cellTop > cellBottom) {
+            return;
+        }
+
+        // A huge rectangle over a sparse grid is quicker to answer by
+        // checking the occupied cells than by visiting every cell in it.
+        long numCells = (long) (cellRight - cellLeft + 1) * (cellBottom - cellTop + 1);
+
+        if(numCells > mCells.size()) {
+            for(List<Node> nodes : mCells.values()) {
+                addNodesInRect(nodes, left, top, right, bottom, output);
+            }
+            return;
+        }
+
+        for(int cellY = cellTop; cellY <= cellBottom; cellY++) {
+            for(int cellX = cellLeft; cellX <= cellRight; cellX++) {
+                List<Node> nodes = mCells.get(toCellKey(cellX, cellY));
+
+                if(nodes != null) {
+                    addNodesInRect(nodes, left, top, right, bottom, output);
+                }
+            }
+        }
+    }
+
+    private static void addNodesInRect(@NonNull List<Node> nodes, float left, float top, float right, float bottom, @NonNull List<Node> output) {
+        for(Node node : nodes) {
+            float x = node.getPosition().x;
+            float y = node.getPosition().y;
+
+            if(x >= left && x <= right && y >= top && y <= bottom) {
+                output.add(node);
+            }
+        }
+    }
+
+    /**
+     * Insert a node into the sorted k nearest scratch arrays
+     * if it is closer than the furthest one kept so far.
+     *
+     * @return the new number of nodes kept.
+     */
+    private int insertNearest(@NonNull Node node, double distance, int count, int k) {
+        if(count == k && distance >= mNearestDistances[k - 1]) {
+            return count;
+        }
+
+        int position = count == k ? k - 1 : count++;
+
+        while(position > 0 && mNearestDistances[position - 1] > distance) {
+            mNearestNodes[position] = mNearestNodes[position - 1];
+            mNearestDistances[position] = mNearestDistances[position - 1];
+            position--;
+        }
+
+        mNearestNodes[position] = node;
+        mNearestDistances[position] = distance;
+
+        return count;
+    }
+
+    private int toCell(float coordinate) {
+        return (int) Math.floor(coordinate / mCellSize);
+    }
+
+    private static long toCellKey(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    private static double distanceSquared(@NonNull Node node, float x, float y) {
+        double dx = node.getPosition().x - x;
+        double dy = node.getPosition().y - y;
+        return dx * dx + dy * dy;
+    }
+}
@@ -0,0 +1,61 @@
+package io.github.marcelbraghetto.dijkstra.part2.systems;
+
+/**
+ * Keeps the average and worst duration of something timed over and
+ * over, such as drawing a frame or running a simulation tick. Times
+ * can be recorded on one thread and read on another.
+ */
+public class TimingStats {
+    private static final float NANOS_PER_MILLI = 1000000f;
+
+    private long mCount;
+    private long mTotalNanos;
+    private long mMaxNanos;
+
+    /**
+     * Record one more timing.
+     *
+     * @param nanos how long it took in nanoseconds.
+     */
+    public synchronized void record(long nanos) {
+        mCount++;
+        mTotalNanos += nanos;
+
+        if(nanos > mMaxNanos) {
+            mMaxNanos = nanos;
+        }
+    }
+
+    /**
+     * How many timings have been recorded since the last reset.
+     *
+     * @return number of timings.
+     */
+    public synchronized long getCount() {
+        return mCount;
+    }
+
+    /**
+     * @return average of the timings since the last reset in milliseconds.
+     */
+    public synchronized float getAverageMillis() {
+        return mCount == 0 ? 0f : mTotalNanos / (float) mCount / NANOS_PER_MILLI;
+    }
+
+    /**
+     * @return longest timing since the last reset in milliseconds.
+     */
+    public synchronized float getMaxMillis() {
+        return mMaxNanos / NANOS_PER_MILLI;
+    }
+
+    /**
+     * Forget all the timings so far, so the stats
+     * cover only what is recorded from now on.
+     */
+    public synchronized void reset() {
+        mCount = 0;
+        mTotalNanos = 0;
+        mMaxNanos = 0;
+    }
+}
@@ -13,17 +13,25 @@ import android.util.AttributeSet;
 import android.view.MotionEvent;
 import android.view.View;
 
+import java.util.Locale;
+
 import io.github.marcelbraghetto.dijkstra.part2.R;
 import io.github.marcelbraghetto.dijkstra.part2.models.Actor;
-import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Agent;
 import io.github.marcelbraghetto.dijkstra.part2.models.Node;
 import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
+import io.github.marcelbraghetto.dijkstra.part2.systems.SimulationSnapshot;
+import io.github.marcelbraghetto.dijkstra.part2.systems.SimulationThread;
+import io.github.marcelbraghetto.dijkstra.part2.systems.TimingStats;
 import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
 
 /**
  * Created by Marcel Braghetto on 12/09/15.
  */
 public class DemoCanvasView extends View {
+    // How often the frame and tick timings on screen are refreshed.
+    private static final long METRICS_INTERVAL_NANOS = 1000000000L;
+
     private DemoRenderer mDemoRenderer;
     private Graph mGraph;
     private Bitmap mNodeDot;
@@ -31,12 +39,24 @@ public class DemoCanvasView extends View {
     private Paint mLinePaint;
     private Paint mNodeLabelPaint;
     private Paint mEdgeLabelPaint;
+    private Paint mAgentPaint;
+    private Paint mMetricsPaint;
 
     private int mNodeDotOffset;
     private float mTextOffset;
+    private float mAgentRadius;
 
     private String mDragNodeKey;
 
+    // The simulation runs on its own thread, and each frame
+    // draws the actors from a copy of its latest snapshot.
+    private SimulationThread mSimulationThread;
+    private final SimulationSnapshot mSnapshot = new SimulationSnapshot();
+
+    private final TimingStats mFrameStats = new TimingStats();
+    private String mMetricsText = "";
+    private long mMetricsTime;
+
     private boolean mIsAnimating;
     private Handler mHandler;
     private Runnable mRunnable;
@@ -54,8 +74,12 @@ public class DemoCanvasView extends View {
     }
 
     public void setGraph(@NonNull Graph graph) {
+        stopSimulation();
         mGraph = graph;
 
+        mSimulationThread = new SimulationThread(graph);
+        mSimulationThread.start();
+
         mIsAnimating = true;
         startAnimating();
     }
@@ -63,6 +87,14 @@ public class DemoCanvasView extends View {
     public void stop() {
         mIsAnimating = false;
         mHandler.removeCallbacks(mRunnable);
+        stopSimulation();
+    }
+
+    private void stopSimulation() {
+        if(mSimulationThread != null) {
+            mSimulationThread.shutdown();
+            mSimulationThread = null;
+        }
     }
 
     public void init() {
@@ -91,6 +123,18 @@ public class DemoCanvasView extends View {
         mEdgeLabelPaint.setAntiAlias(true);
         mEdgeLabelPaint.setTextSize(ScreenUtils.dpToPx(9));
 
+        mAgentPaint = new Paint();
+        mAgentPaint.setColor(Color.YELLOW);
+        mAgentPaint.setStyle(Paint.Style.FILL);
+        mAgentPaint.setAntiAlias(true);
+        mAgentRadius = ScreenUtils.dpToPx(4);
+
+        mMetricsPaint = new Paint();
+        mMetricsPaint.setColor(Color.BLACK);
+        mMetricsPaint.setTextAlign(Paint.Align.LEFT);
+        mMetricsPaint.setAntiAlias(true);
+        mMetricsPaint.setTextSize(ScreenUtils.dpToPx(10));
+
         mRunnable = new Runnable() {
             @Override
             public void run() {
@@ -117,9 +161,44 @@ public class DemoCanvasView extends View {
             return;
         }
 
+        long startTime = System.nanoTime();
+
         mDemoRenderer.setCanvas(canvas);
         mGraph.render(mDemoRenderer);
+
+        if(mSimulationThread != null) {
+            float alpha = mSimulationThread.readSnapshot(mSnapshot);
+            mSnapshot.render(mDemoRenderer, alpha);
+        }
+
+        canvas.drawText(mMetricsText, ScreenUtils.dpToPx(8), ScreenUtils.dpToPx(16), mMetricsPaint);
         mDemoRenderer.setCanvas(null);
+
+        mFrameStats.record(System.nanoTime() - startTime);
+        updateMetrics(startTime);
+    }
+
+    /**
+     * Every so often, refresh the frame and tick timings shown on
+     * screen, then start timing afresh for the next interval.
+     */
+    private void updateMetrics(long now) {
+        if(now - mMetricsTime < METRICS_INTERVAL_NANOS || mSimulationThread == null) {
+            return;
+        }
+
+        TimingStats tickStats = mSimulationThread.getTickStats();
+
+        mMetricsText = String.format(Locale.US,
+                "Frame %.2f ms (max %.2f)  Tick %.2f ms (max %.2f)",
+                mFrameStats.getAverageMillis(),
+                mFrameStats.getMaxMillis(),
+                tickStats.getAverageMillis(),
+                tickStats.getMaxMillis());
+
+        mFrameStats.reset();
+        tickStats.reset();
+        mMetricsTime = now;
     }
 
     @Override
@@ -154,6 +233,7 @@ public class DemoCanvasView extends View {
      * Renderer to visualise the data.
      */
     private class DefaultDemoRenderer implements DemoRenderer {
+        private final EdgeRenderCache mEdgeRenderCache = new EdgeRenderCache();
         private Canvas mCanvas;
 
         public void setCanvas(@Nullable Canvas canvas) {
@@ -179,28 +259,39 @@ public class DemoCanvasView extends View {
         }
 
         @Override
-        public void renderEdge(@NonNull Edge edge) {
-            mCanvas.drawLine(
-                    ScreenUtils.dpToPx(edge.getOrigin().getPosition().x),
-                    ScreenUtils.dpToPx(edge.getOrigin().getPosition().y),
-                    ScreenUtils.dpToPx(edge.getTarget().getPosition().x),
-                    ScreenUtils.dpToPx(edge.getTarget().getPosition().y),
-                    mLinePaint);
+        public void renderEdges(@NonNull Graph graph) {
+            mEdgeRenderCache.update(graph);
 
-            mCanvas.drawText(
-                    edge.getLabel(),
-                    ScreenUtils.dpToPx(edge.getMidPoint().x),
-                    ScreenUtils.dpToPx(edge.getMidPoint().y),
-                    mEdgeLabelPaint);
+            int edgeCount = mEdgeRenderCache.getEdgeCount();
+
+            // All the lines in one go, then the labels over the top.
+            mCanvas.drawLines(mEdgeRenderCache.getLines(), 0, edgeCount * 4, mLinePaint);
+
+            for(int i = 0; i < edgeCount; i++) {
+                mCanvas.drawText(
+                        mEdgeRenderCache.getEdge(i).getLabel(),
+                        mEdgeRenderCache.getLabelX(i),
+                        mEdgeRenderCache.getLabelY(i),
+                        mEdgeLabelPaint);
+            }
         }
 
         @Override
-        public void renderActor(@NonNull Actor actor) {
+        public void renderActor(@NonNull Actor actor, float x, float y) {
             mCanvas.drawBitmap(
                     actor.getBitmap(),
-                    ScreenUtils.dpToPx(actor.getPosition().x) + actor.getOffsetX(),
-                    ScreenUtils.dpToPx(actor.getPosition().y) + actor.getOffsetY(),
+                    ScreenUtils.dpToPx(x) + actor.getOffsetX(),
+                    ScreenUtils.dpToPx(y) + actor.getOffsetY(),
                     null);
         }
+
+        @Override
+        public void renderAgent(@NonNull Agent agent, float x, float y) {
+            mCanvas.drawCircle(
+                    ScreenUtils.dpToPx(x),
+                    ScreenUtils.dpToPx(y),
+                    mAgentRadius,
+                    mAgentPaint);
+        }
     }
 }
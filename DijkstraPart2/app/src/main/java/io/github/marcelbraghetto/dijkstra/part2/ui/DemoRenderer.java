@@ -4,9 +4,10 @@ import android.graphics.Canvas;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
-import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Agent;
 import io.github.marcelbraghetto.dijkstra.part2.models.Node;
 import io.github.marcelbraghetto.dijkstra.part2.models.Actor;
+import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
 
 /**
  * Created by Marcel Braghetto on 12/09/15.
@@ -30,16 +31,30 @@ public interface DemoRenderer {
     void renderNode(@NonNull Node node);
 
     /**
-     * Render an edge with the given information.
+     * Render all the edges of the given graph. Implementations
+     * may keep what they draw for as long as the revision of
+     * the graph stays the same.
      *
-     * @param edge to render.
+     * @param graph to render the edges of.
      */
-    void renderEdge(@NonNull Edge edge);
+    void renderEdges(@NonNull Graph graph);
 
     /**
-     * Render the given actor.
+     * Render the given actor at the given position, which
+     * may be between where it was and where it is now.
      *
      * @param actor to render.
+     * @param x position to render at (in DPs).
+     * @param y position to render at (in DPs).
      */
-    void renderActor(@NonNull Actor actor);
+    void renderActor(@NonNull Actor actor, float x, float y);
+
+    /**
+     * Render the given simulation agent at the given position.
+     *
+     * @param agent to render.
+     * @param x position to render at (in DPs).
+     * @param y position to render at (in DPs).
+     */
+    void renderAgent(@NonNull Agent agent, float x, float y);
 }
@@ -0,0 +1,130 @@
+package io.github.marcelbraghetto.dijkstra.part2.ui;
+
+import android.support.annotation.NonNull;
+
+import java.util.Arrays;
+
+import io.github.marcelbraghetto.dijkstra.part2.models.Edge;
+import io.github.marcelbraghetto.dijkstra.part2.models.Node;
+import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
+import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
+
+/**
+ * Holds everything needed to draw the edges of a graph, already
+ * converted to pixels, so drawing a frame doesn't need to walk the
+ * edge maps or allocate anything.
+ *
+ * Our edges come in pairs, one in each direction, which look the same
+ * on screen, so only one edge of each pair is kept. The line end points
+ * are packed into a single array in the form Canvas.drawLines expects,
+ * so all the lines can be drawn with one call.
+ *
+ * The cache is only rebuilt when the revision of the graph changes,
+ * which happens whenever nodes or edges are added or moved.
+ */
+public class EdgeRenderCache {
+    private static final int NO_REVISION = -1;
+
+    private Graph mGraph;
+    private int mRevision = NO_REVISION;
+
+    // Pairs of x, y end points for each line.
+    private float[] mLines = new float[0];
+
+    // One edge of each pair, with the x, y position of its label.
+    private Edge[] mEdges = new Edge[0];
+    private float[] mLabelPositions = new float[0];
+    private int mEdgeCount;
+
+    /**
+     * Rebuild the cache for the given graph, if it has
+     * changed since the cache was last built.
+     *
+     * @param graph to cache the edges of.
+     */
+    public void update(@NonNull Graph graph) {
+        if(graph == mGraph && graph.getRevision() == mRevision) {
+            return;
+        }
+
+        mGraph = graph;
+        mRevision = graph.getRevision();
+        mEdgeCount = 0;
+
+        int numNodes = graph.getNodeCount();
+
+        for(int i = 0; i < numNodes; i++) {
+            Node node = graph.getNode(i);
+
+            for(Edge edge : node.getEdges().values()) {
+                Node target = edge.getTarget();
+
+                // Skip the second edge of each pair, unless it has no twin.
+                if(target.getIndex() < node.getIndex() && target.getEdges().containsKey(node)) {
+                    continue;
+                }
+
+                addEdge(edge);
+            }
+        }
+
+        // Don't keep edges from an earlier, bigger graph alive.
+        Arrays.fill(mEdges, mEdgeCount, mEdges.length, null);
+    }
+
+    private void addEdge(@NonNull Edge edge) {
+        if(mEdgeCount == mEdges.length) {
+            int capacity = Math.max(16, mEdgeCount * 2);
+            mEdges = Arrays.copyOf(mEdges, capacity);
+            mLines = Arrays.copyOf(mLines, capacity * 4);
+            mLabelPositions = Arrays.copyOf(mLabelPositions, capacity * 2);
+        }
+
+        int line = mEdgeCount * 4;
+        mLines[line] = ScreenUtils.dpToPx(edge.getOrigin().getPosition().x);
+        mLines[line + 1] = ScreenUtils.dpToPx(edge.getOrigin().getPosition().y);
+        mLines[line + 2] = ScreenUtils.dpToPx(edge.getTarget().getPosition().x);
+        mLines[line + 3] = ScreenUtils.dpToPx(edge.getTarget().getPosition().y);
+
+        int label = mEdgeCount * 2;
+        mLabelPositions[label] = ScreenUtils.dpToPx(edge.getMidPoint().x);
+        mLabelPositions[label + 1] = ScreenUtils.dpToPx(edge.getMidPoint().y);
+
+        mEdges[mEdgeCount] = edge;
+        mEdgeCount++;
+    }
+
+    /**
+     * How many edges are in the cache, with each pair
+     * of matching edges counted once.
+     *
+     * @return number of cached edges.
+     */
+    public int getEdgeCount() {
+        return mEdgeCount;
+    }
+
+    /**
+     * End points of the edge lines in pixels, four floats for
+     * each edge. Only the first getEdgeCount() * 4 are in use.
+     *
+     * @return packed line end points.
+     */
+    @NonNull
+    public float[] getLines() {
+        return mLines;
+    }
+
+    @NonNull
+    public Edge getEdge(int position) {
+        return mEdges[position];
+    }
+
+    public float getLabelX(int position) {
+        return mLabelPositions[position * 2];
+    }
+
+    public float getLabelY(int position) {
+        return mLabelPositions[position * 2 + 1];
+    }
+}
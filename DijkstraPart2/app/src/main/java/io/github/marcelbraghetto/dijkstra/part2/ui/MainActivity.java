@@ -1,11 +1,22 @@
 package io.github.marcelbraghetto.dijkstra.part2.ui;
 
-import android.app.Activity;
 import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
+import android.view.MenuInflater;
+import android.view.MenuItem;
 import android.view.View;
 import android.view.ViewTreeObserver;
 import android.widget.Button;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import io.github.marcelbraghetto.dijkstra.part2.R;
 import io.github.marcelbraghetto.dijkstra.part2.systems.Graph;
 import io.github.marcelbraghetto.dijkstra.part2.utils.FileUtils;
@@ -15,12 +26,65 @@ import io.github.marcelbraghetto.dijkstra.part2.utils.ScreenUtils;
  * This is a basic example of using a small graph
  * and Dijkstra's algorithm to find paths.
  */
-public class MainActivity extends Activity {
-    private static final String SAVED_GRAPH_FILE = "saved_graph.txt";
+public class MainActivity extends AppCompatActivity {
+    private static final String SAVED_GRAPH_FILE = "saved_graph.bin";
+
+    // Graphs used to be saved in the text format, which is
+    // still loaded if there is no binary saved graph yet.
+    private static final String LEGACY_SAVED_GRAPH_FILE = "saved_graph.txt";
+
+    // How many agents to run alongside the crab when they are turned on.
+    private static final int NUM_AGENTS = 200;
+
+    // Graphs are saved one at a time in the background. These are shared
+    // by every instance of the activity, so a save started as one instance
+    // stops can be waited for before the next instance loads the graph.
+    private static final ExecutorService sSaveExecutor = Executors.newSingleThreadExecutor();
+    private static Future<?> sPendingSave;
 
     private Graph mGraph;
     private DemoCanvasView mStage;
 
+    // Chosen from the menu, and kept when a new graph is created.
+    private Graph.PathFindingMode mPathFindingMode = Graph.PathFindingMode.DIJKSTRA;
+    private boolean mAgentsEnabled;
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        MenuInflater inflater = getMenuInflater();
+        inflater.inflate(R.menu.main_menu, menu);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch(item.getItemId()) {
+            case R.id.menu_item_dijkstra:
+                setPathFindingMode(item, Graph.PathFindingMode.DIJKSTRA);
+                return true;
+            case R.id.menu_item_a_star:
+                setPathFindingMode(item, Graph.PathFindingMode.A_STAR);
+                return true;
+            case R.id.menu_item_bidirectional_dijkstra:
+                setPathFindingMode(item, Graph.PathFindingMode.BIDIRECTIONAL_DIJKSTRA);
+                return true;
+            case R.id.menu_item_bidirectional_a_star:
+                setPathFindingMode(item, Graph.PathFindingMode.BIDIRECTIONAL_A_STAR);
+                return true;
+            case R.id.menu_item_contraction_hierarchy:
+                setPathFindingMode(item, Graph.PathFindingMode.CONTRACTION_HIERARCHY);
+                return true;
+            case R.id.menu_item_landmarks:
+                setPathFindingMode(item, Graph.PathFindingMode.LANDMARKS);
+                return true;
+            case R.id.menu_item_agents:
+                setAgentsEnabled(item, !item.isChecked());
+                return true;
+        }
+
+        return super.onOptionsItemSelected(item);
+    }
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -60,8 +124,41 @@ public class MainActivity extends Activity {
         });
     }
 
+    /**
+     * Use the given path finding mode from the next time the
+     * crab looks for the treasure chest.
+     *
+     * @param item from the menu for the mode.
+     * @param mode of path finding to use.
+     */
+    private void setPathFindingMode(MenuItem item, Graph.PathFindingMode mode) {
+        item.setChecked(true);
+        mPathFindingMode = mode;
+
+        if(mGraph != null) {
+            mGraph.setPathFindingMode(mode);
+        }
+    }
+
+    /**
+     * Start or stop the agents travelling around the graph with the crab.
+     *
+     * @param item from the menu for the agents.
+     * @param enabled true to run the agents.
+     */
+    private void setAgentsEnabled(MenuItem item, boolean enabled) {
+        item.setChecked(enabled);
+        mAgentsEnabled = enabled;
+
+        if(mGraph != null) {
+            mGraph.setAgentCount(enabled ? NUM_AGENTS : 0);
+        }
+    }
+
     private void begin() {
         mGraph = new Graph();
+        mGraph.setPathFindingMode(mPathFindingMode);
+        mGraph.setAgentCount(mAgentsEnabled ? NUM_AGENTS : 0);
         mStage.init();
         mStage.setGraph(mGraph);
         loadSavedGraph();
@@ -78,16 +175,29 @@ public class MainActivity extends Activity {
     };
 
     private void loadGraph(int id) {
+        int resourceId;
+
         switch (id) {
-            case 1:
-                mGraph.deserializeGraph(FileUtils.loadRawTextFile(R.raw.treasure_graph1));
-                break;
             case 2:
-                mGraph.deserializeGraph(FileUtils.loadRawTextFile(R.raw.treasure_graph2));
+                resourceId = R.raw.treasure_graph2;
                 break;
             case 3:
-                mGraph.deserializeGraph(FileUtils.loadRawTextFile(R.raw.treasure_graph3));
+                resourceId = R.raw.treasure_graph3;
                 break;
+            default:
+                resourceId = R.raw.treasure_graph1;
+                break;
+        }
+
+        Reader reader = FileUtils.openRawTextFile(resourceId);
+
+        try {
+            mGraph.deserializeGraph(reader);
+        } catch (IOException e) {
+            // The bundled graphs are part of the app, so this is a bug.
+            throw new IllegalStateException("Unable to load graph " + id, e);
+        } finally {
+            FileUtils.closeQuietly(reader);
         }
 
         mStage.invalidate();
@@ -98,20 +208,83 @@ public class MainActivity extends Activity {
      * moved graph nodes around.
      */
     private void loadSavedGraph() {
-        String savedGraphText = FileUtils.loadTextFile(SAVED_GRAPH_FILE);
+        waitForPendingSave();
+
+        File savedGraphFile = getFileStreamPath(SAVED_GRAPH_FILE);
 
         // If there was a saved graph, load it.
-        if(savedGraphText != null) {
-            mGraph.deserializeGraph(savedGraphText);
-            mStage.invalidate();
-        } else {
-            // Otherwise load the default graph.
-            loadGraph(1);
+        if(savedGraphFile.exists()) {
+            try {
+                mGraph.deserializeGraph(savedGraphFile);
+                mStage.invalidate();
+                return;
+            } catch (IOException e) {
+                // Fall through to the older saved graph or the default.
+            }
+        }
+
+        Reader savedGraphReader = FileUtils.openTextFile(LEGACY_SAVED_GRAPH_FILE);
+
+        if(savedGraphReader != null) {
+            try {
+                mGraph.deserializeGraph(savedGraphReader);
+                mStage.invalidate();
+                return;
+            } catch (IOException e) {
+                // Fall through to the default graph.
+            } finally {
+                FileUtils.closeQuietly(savedGraphReader);
+            }
         }
+
+        // Otherwise load the default graph.
+        loadGraph(1);
     }
 
+    /**
+     * Save the graph on a background thread so large graphs don't hold
+     * up the activity stopping. Once stopped, this activity won't touch
+     * its graph again (a new one is created when it starts again), so
+     * the graph is safe to read from another thread.
+     */
     private void saveGraph() {
-        FileUtils.saveTextFile(SAVED_GRAPH_FILE, mGraph.serializeGraph());
+        if(mGraph == null) {
+            return;
+        }
+
+        final Graph graph = mGraph;
+        final File savedGraphFile = getFileStreamPath(SAVED_GRAPH_FILE);
+
+        sPendingSave = sSaveExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    graph.serializeGraph(savedGraphFile);
+                } catch (IOException e) {
+                    // Nothing we can do, the previously saved graph is left as it was.
+                }
+            }
+        });
+    }
+
+    /**
+     * If a graph is still being saved, wait for it to finish
+     * so we don't load an older version of it.
+     */
+    private void waitForPendingSave() {
+        if(sPendingSave == null) {
+            return;
+        }
+
+        try {
+            sPendingSave.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            // The save failed, so whatever was saved before is still there.
+        }
+
+        sPendingSave = null;
     }
 
     @Override
@@ -1,16 +1,22 @@
 package io.github.marcelbraghetto.dijkstra.part2.utils;
 
-import android.content.Context;
+import android.os.Build;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.annotation.RawRes;
-
-import java.io.BufferedReader;
-import java.io.FileInputStream;
+import android.system.ErrnoException;
+import android.system.Os;
+import android.system.OsConstants;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileDescriptor;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
 
 import io.github.marcelbraghetto.dijkstra.part2.MainApp;
 
@@ -20,69 +26,165 @@ import io.github.marcelbraghetto.dijkstra.part2.MainApp;
  * Helper methods for loading files for the demo.
  */
 public final class FileUtils {
-    private static final String NEWLINE = "\n";
+    // Suffix of the temporary file written before replacing a file.
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+
+    /**
+     * Writes the content of a file, see {@link #writeFileAtomically}.
+     */
+    public interface FileContentWriter {
+        void write(@NonNull File file) throws IOException;
+    }
+
+    /**
+     * Writes the content of a stream, see {@link #writeStreamAtomically}.
+     */
+    public interface StreamContentWriter {
+        void write(@NonNull OutputStream outputStream) throws IOException;
+    }
 
     private FileUtils() { }
 
-    public static boolean saveTextFile(@NonNull String fileName, @NonNull String text) {
-        FileOutputStream outputStream;
+    /**
+     * Replace the given file with new content, without ever leaving a
+     * half written file behind. The content is written to a temporary
+     * file next to it, which the content writer must sync to disk, and
+     * then renamed over the file, which either fully happens or doesn't
+     * happen at all. Finally the directory is synced too, so the rename
+     * itself survives a crash.
+     *
+     * @param file to replace.
+     * @param contentWriter to write the new content into the temporary file.
+     *
+     * @throws IOException if the content could not be written, in which
+     * case the original file is left as it was, or if the directory
+     * could not be synced after the file was replaced.
+     */
+    public static void writeFileAtomically(@NonNull File file, @NonNull FileContentWriter contentWriter) throws IOException {
+        File tempFile = new File(file.getPath() + TEMP_FILE_SUFFIX);
+        boolean success = false;
 
         try {
-            outputStream = MainApp.getContext().openFileOutput(fileName, Context.MODE_PRIVATE);
-            outputStream.write(text.getBytes());
-            outputStream.close();
-        } catch (Exception e) {
-            return false;
+            contentWriter.write(tempFile);
+
+            if(!tempFile.renameTo(file)) {
+                throw new IOException("Unable to replace " + file);
+            }
+
+            success = true;
+        } finally {
+            if(!success) {
+                tempFile.delete();
+            }
         }
 
-        return true;
+        syncDirectory(file.getAbsoluteFile().getParentFile());
     }
 
-    @Nullable
-    public static String loadTextFile(@NonNull String fileName) {
-        StringBuilder sb = new StringBuilder("");
+    /**
+     * Replace the given file with content streamed through a buffered
+     * output stream, in the same crash safe way as
+     * {@link #writeFileAtomically(File, FileContentWriter)}. The stream
+     * is synced to disk before it replaces the file.
+     *
+     * @param file to replace.
+     * @param contentWriter to write the new content to the stream.
+     *
+     * @throws IOException if the content could not be written, in which
+     * case the original file is left as it was, or if the directory
+     * could not be synced after the file was replaced.
+     */
+    public static void writeStreamAtomically(@NonNull File file, @NonNull final StreamContentWriter contentWriter) throws IOException {
+        writeFileAtomically(file, new FileContentWriter() {
+            @Override
+            public void write(@NonNull File tempFile) throws IOException {
+                FileOutputStream fileOutputStream = new FileOutputStream(tempFile);
+
+                try {
+                    BufferedOutputStream outputStream = new BufferedOutputStream(fileOutputStream);
+                    contentWriter.write(outputStream);
+                    outputStream.flush();
+
+                    // Make sure the content is on disk before it replaces the file.
+                    fileOutputStream.getFD().sync();
+                } finally {
+                    fileOutputStream.close();
+                }
+            }
+        });
+    }
 
-        try {
-            FileInputStream fileInputStream = MainApp.getContext().openFileInput(fileName);
-            InputStreamReader inputStreamReader = new InputStreamReader(fileInputStream);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
+    /**
+     * Sync a directory to disk, so the files renamed into it are
+     * still there after a crash. Directories can only be opened for
+     * syncing from Lollipop onward, so before that this does nothing.
+     *
+     * @param directory to sync.
+     *
+     * @throws IOException if the directory could not be synced.
+     */
+    private static void syncDirectory(@Nullable File directory) throws IOException {
+        if(directory == null || Build.VERSION.SDK_INT < Build.VERSION_CODES.LOLLIPOP) {
+            return;
+        }
 
-            String readString = bufferedReader.readLine();
+        try {
+            FileDescriptor descriptor = Os.open(directory.getPath(), OsConstants.O_RDONLY, 0);
 
-            while(readString != null) {
-                sb.append(readString).append(NEWLINE);
-                readString = bufferedReader.readLine();
+            try {
+                Os.fsync(descriptor);
+            } finally {
+                Os.close(descriptor);
             }
+        } catch (ErrnoException e) {
+            throw new IOException("Unable to sync " + directory, e);
+        }
+    }
 
-            inputStreamReader.close();
+    /**
+     * Open a saved text file for streaming, rather than
+     * loading all of it into a string.
+     *
+     * @param fileName of the saved file.
+     *
+     * @return reader for the file, or null if it couldn't be opened.
+     */
+    @Nullable
+    public static Reader openTextFile(@NonNull String fileName) {
+        try {
+            return new InputStreamReader(MainApp.getContext().openFileInput(fileName));
         } catch (IOException e) {
             return null;
         }
-
-        return sb.toString();
     }
 
+    /**
+     * Open a raw text resource for streaming, rather than
+     * loading all of it into a string.
+     *
+     * @param resourceId of the raw resource.
+     *
+     * @return reader for the resource.
+     */
     @NonNull
-    public static String loadRawTextFile(@RawRes int resourceId) {
-        StringBuilder sb = new StringBuilder("");
-
-        try {
-            InputStream inputStream = MainApp.getContext().getResources().openRawResource(resourceId);
-            InputStreamReader inputStreamReader = new InputStreamReader(inputStream);
-            BufferedReader bufferedReader = new BufferedReader(inputStreamReader);
-
-            String readString = bufferedReader.readLine();
+    public static Reader openRawTextFile(@RawRes int resourceId) {
+        return new InputStreamReader(MainApp.getContext().getResources().openRawResource(resourceId));
+    }
 
-            while(readString != null) {
-                sb.append(readString).append(NEWLINE);
-                readString = bufferedReader.readLine();
-            }
+    /**
+     * Close the given stream, ignoring any error.
+     *
+     * @param closeable to close.
+     */
+    public static void closeQuietly(@Nullable Closeable closeable) {
+        if(closeable == null) {
+            return;
+        }
 
-            inputStreamReader.close();
+        try {
+            closeable.close();
         } catch (IOException e) {
-            return "";
+            // Nothing useful to do about it.
         }
-
-        return sb.toString();
     }
-}
\ No newline at end of file
+}